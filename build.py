@@ -195,6 +195,7 @@ CTX.INPUT['executors'] = """
  deleteexecutor.cpp
  distinctexecutor.cpp
  executorutil.cpp
+ hashjoinexecutor.cpp
  indexscanexecutor.cpp
  insertexecutor.cpp
  limitexecutor.cpp
@@ -212,6 +213,7 @@ CTX.INPUT['executors'] = """
 
 CTX.INPUT['expressions'] = """
  abstractexpression.cpp
+ compiledpredicate.cpp
  expressionutil.cpp
  tupleaddressexpression.cpp
 """
@@ -224,6 +226,7 @@ CTX.INPUT['plannodes'] = """
  aggregatenode.cpp
  deletenode.cpp
  distinctnode.cpp
+ hashjoinnode.cpp
  indexscannode.cpp
  insertnode.cpp
  limitnode.cpp
@@ -314,9 +317,12 @@ CTX.TESTS['common'] = """
 CTX.TESTS['execution'] = """
  engine_test
  executors_test
+ receive_test
+ vectorized_test
 """
 
 CTX.TESTS['expressions'] = """
+ compiledpredicate_test
  expression_test
 """
 
@@ -38,6 +38,7 @@ PlanFragment::PlanFragment(Catalog *catalog, CatalogType *parent, const string &
     m_fields["nontransactional"] = value;
     m_fields["fastaggregate"] = value;
     m_fields["fastcombine"] = value;
+    m_fields["vectorized"] = value;
 }
 
 void PlanFragment::update() {
@@ -49,6 +50,7 @@ void PlanFragment::update() {
     m_nontransactional = m_fields["nontransactional"].intValue;
     m_fastaggregate = m_fields["fastaggregate"].intValue;
     m_fastcombine = m_fields["fastcombine"].intValue;
+    m_vectorized = m_fields["vectorized"].intValue;
 }
 
 CatalogType * PlanFragment::addChild(const std::string &collectionName, const std::string &childName) {
@@ -95,3 +97,7 @@ bool PlanFragment::fastcombine() const {
     return m_fastcombine;
 }
 
+bool PlanFragment::vectorized() const {
+    return m_vectorized;
+}
+
@@ -46,6 +46,7 @@ protected:
     bool m_nontransactional;
     bool m_fastaggregate;
     bool m_fastcombine;
+    bool m_vectorized;
 
     virtual void update();
 
@@ -70,6 +71,8 @@ public:
     bool fastaggregate() const;
     /** GETTER: Whether this PlanFragment just combines its input tables and therefore can be executed in Java */
     bool fastcombine() const;
+    /** GETTER: Whether this PlanFragment is a scan pipeline that the EE can execute batch-at-a-time */
+    bool vectorized() const;
 };
 
 } // namespace catalog
@@ -54,6 +54,7 @@ Procedure::Procedure(Catalog *catalog, CatalogType *parent, const string &path,
     m_fields["reduceInputQuery"] = value;
     m_fields["reduceEmitTable"] = value;
     m_fields["hasjava"] = value;
+    m_fields["straightline"] = value;
     m_fields["partitiontable"] = value;
     m_fields["partitioncolumn"] = value;
     m_fields["partitionparameter"] = value;
@@ -77,6 +78,7 @@ void Procedure::update() {
     m_reduceInputQuery = m_fields["reduceInputQuery"].strValue.c_str();
     m_reduceEmitTable = m_fields["reduceEmitTable"].strValue.c_str();
     m_hasjava = m_fields["hasjava"].intValue;
+    m_straightline = m_fields["straightline"].intValue;
     m_partitiontable = m_fields["partitiontable"].typeValue;
     m_partitioncolumn = m_fields["partitioncolumn"].typeValue;
     m_partitionparameter = m_fields["partitionparameter"].intValue;
@@ -208,6 +210,10 @@ bool Procedure::hasjava() const {
     return m_hasjava;
 }
 
+bool Procedure::straightline() const {
+    return m_straightline;
+}
+
 const Table * Procedure::partitiontable() const {
     return dynamic_cast<Table*>(m_partitiontable);
 }
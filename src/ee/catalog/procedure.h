@@ -61,6 +61,7 @@ protected:
     std::string m_reduceInputQuery;
     std::string m_reduceEmitTable;
     bool m_hasjava;
+    bool m_straightline;
     CatalogType* m_partitiontable;
     CatalogType* m_partitioncolumn;
     int32_t m_partitionparameter;
@@ -107,6 +108,8 @@ public:
     const std::string & reduceEmitTable() const;
     /** GETTER: Is this a full java stored procedure or is it just a single stmt? */
     bool hasjava() const;
+    /** GETTER: Does this Procedure only execute one fixed batch of Statements whose parameters come directly from its input parameters? */
+    bool straightline() const;
     /** GETTER: Which table contains the partition column for this procedure? */
     const Table * partitiontable() const;
     /** GETTER: Which column in the partitioned table is this procedure mapped on? */
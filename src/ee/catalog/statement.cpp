@@ -45,6 +45,7 @@ Statement::Statement(Catalog *catalog, CatalogType *parent, const string &path,
     m_fields["secondaryindex"] = value;
     m_fields["prefetchable"] = value;
     m_fields["deferrable"] = value;
+    m_fields["straightlineindex"] = value;
     m_fields["paramnum"] = value;
     m_childCollections["parameters"] = &m_parameters;
     m_childCollections["output_columns"] = &m_output_columns;
@@ -71,6 +72,7 @@ void Statement::update() {
     m_secondaryindex = m_fields["secondaryindex"].intValue;
     m_prefetchable = m_fields["prefetchable"].intValue;
     m_deferrable = m_fields["deferrable"].intValue;
+    m_straightlineindex = m_fields["straightlineindex"].intValue;
     m_paramnum = m_fields["paramnum"].intValue;
     m_has_singlesited = m_fields["has_singlesited"].intValue;
     m_exptree = m_fields["exptree"].strValue.c_str();
@@ -177,6 +179,10 @@ bool Statement::deferrable() const {
     return m_deferrable;
 }
 
+int32_t Statement::straightlineindex() const {
+    return m_straightlineindex;
+}
+
 int32_t Statement::paramnum() const {
     return m_paramnum;
 }
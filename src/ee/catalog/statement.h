@@ -52,6 +52,7 @@ protected:
     bool m_secondaryindex;
     bool m_prefetchable;
     bool m_deferrable;
+    int32_t m_straightlineindex;
     int32_t m_paramnum;
     CatalogMap<StmtParameter> m_parameters;
     CatalogMap<Column> m_output_columns;
@@ -91,6 +92,8 @@ public:
     bool prefetchable() const;
     /** GETTER: Whether this query does not need to executed immediately in this transaction */
     bool deferrable() const;
+    /** GETTER: The position of this Statement in its Procedure's straight-line batch */
+    int32_t straightlineindex() const;
     int32_t paramnum() const;
     /** GETTER: The set of parameters to this SQL statement */
     const CatalogMap<StmtParameter> & parameters() const;
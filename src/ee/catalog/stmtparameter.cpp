@@ -36,6 +36,7 @@ StmtParameter::StmtParameter(Catalog *catalog, CatalogType *parent, const string
     m_fields["index"] = value;
     m_fields["procparameter"] = value;
     m_fields["procparameteroffset"] = value;
+    m_fields["straightlineprocparameter"] = value;
 }
 
 void StmtParameter::update() {
@@ -44,6 +45,7 @@ void StmtParameter::update() {
     m_index = m_fields["index"].intValue;
     m_procparameter = m_fields["procparameter"].typeValue;
     m_procparameteroffset = m_fields["procparameteroffset"].intValue;
+    m_straightlineprocparameter = m_fields["straightlineprocparameter"].intValue;
 }
 
 CatalogType * StmtParameter::addChild(const std::string &collectionName, const std::string &childName) {
@@ -78,3 +80,7 @@ int32_t StmtParameter::procparameteroffset() const {
     return m_procparameteroffset;
 }
 
+int32_t StmtParameter::straightlineprocparameter() const {
+    return m_straightlineprocparameter;
+}
+
@@ -44,6 +44,7 @@ protected:
     int32_t m_index;
     CatalogType* m_procparameter;
     int32_t m_procparameteroffset;
+    int32_t m_straightlineprocparameter;
 
     virtual void update();
 
@@ -62,6 +63,8 @@ public:
     const ProcParameter * procparameter() const;
     /** GETTER: If the ProcParameter is an array, which index in that array are we paired to */
     int32_t procparameteroffset() const;
+    /** GETTER: The index of the ProcParameter that is passed to this parameter in its Procedure's straight-line batch */
+    int32_t straightlineprocparameter() const;
 };
 
 } // namespace catalog
@@ -645,7 +645,8 @@ bool VoltDBEngine::clearAndLoadAllPlanFragments() {
                 int64_t fragId = uniqueIdForFragment(pf_iterator->second);
 //                 fprintf(stderr, "Initializing Single-Partition: %jd\n", (intmax_t)fragId);
                 std::string planNodeTree = pf_iterator->second->plannodetree();
-                if (!initPlanFragment(fragId, planNodeTree)) {
+                if (!initPlanFragment(fragId, planNodeTree,
+                                      pf_iterator->second->vectorized())) {
                     VOLT_ERROR("Failed to initialize plan fragment '%s' from"
                                " catalogs\nFailed SQL Statement: %s",
                                pf_iterator->second->name().c_str(),
@@ -661,7 +662,8 @@ bool VoltDBEngine::clearAndLoadAllPlanFragments() {
                 int64_t fragId = uniqueIdForFragment(pf_iterator2->second);
 //                 fprintf(stderr, "Initializing Multi-Partition: %jd\n", (intmax_t)fragId);
                 std::string planNodeTree = pf_iterator2->second->plannodetree();
-                if (!initPlanFragment(fragId, planNodeTree)) {
+                if (!initPlanFragment(fragId, planNodeTree,
+                                      pf_iterator2->second->vectorized())) {
                     VOLT_ERROR("Failed to initialize multi-partition plan fragment '%s' from"
                                " catalogs\nFailed SQL Statement: %s",
                                pf_iterator2->second->name().c_str(),
@@ -681,7 +683,8 @@ bool VoltDBEngine::clearAndLoadAllPlanFragments() {
 // Initialization Functions
 // -------------------------------------------------
 bool VoltDBEngine::initPlanFragment(const int64_t fragId,
-                                    const std::string planNodeTree) {
+                                    const std::string planNodeTree,
+                                    bool vectorized) {
 
     // Deserialize the PlanFragment and stick in our local map
 
@@ -722,9 +725,13 @@ bool VoltDBEngine::initPlanFragment(const int64_t fragId,
     }
 
     // Initialize the vector of executors for this planfragment, used at runtime.
-    for (int ctr = 0, cnt = (int)pnf->getExecuteList().size();
-         ctr < cnt; ctr++) {
-        ev->list.push_back(pnf->getExecuteList()[ctr]->getExecutor());
+    if (vectorized) {
+        fuseVectorizedScans(pnf->getExecuteList(), ev->list);
+    } else {
+        for (int ctr = 0, cnt = (int)pnf->getExecuteList().size();
+             ctr < cnt; ctr++) {
+            ev->list.push_back(pnf->getExecuteList()[ctr]->getExecutor());
+        }
     }
     m_executorMap[fragId] = ev;
 
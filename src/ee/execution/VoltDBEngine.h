@@ -379,7 +379,8 @@ class __attribute__((visibility("default"))) VoltDBEngine {
         // -------------------------------------------------
         bool clearAndLoadAllPlanFragments();
         bool initTable(const int32_t databaseId, const catalog::Table *catalogTable);
-        bool initPlanFragment(const int64_t fragId, const std::string planNodeTree);
+        bool initPlanFragment(const int64_t fragId, const std::string planNodeTree,
+                              bool vectorized = false);
         bool initPlanNode(const int64_t fragId, AbstractPlanNode* node, int* tempTableMemoryInBytes);
         bool initCluster(const catalog::Cluster *catalogCluster);
         bool initMaterializedViews();
@@ -57,6 +57,7 @@
 namespace voltdb {
 
 class VoltDBEngine;
+class SeqScanPlanNode;
 
 /**
  * AbstractExecutor provides the API for initializing and invoking executors.
@@ -85,6 +86,15 @@ class AbstractExecutor {
 
     inline bool forceTupleCount() const { return (this->force_send_tuple_count); }
 
+    /**
+     * Offer this executor the chance to read its input straight out of the
+     * target table of its child SeqScan in a vectorized PlanFragment.
+     * Returns true if the executor took it, in which case the child's own
+     * executor does not need to run and no TempTable is built in between.
+     * <b>Default is false</b>.
+     */
+    virtual bool fuseChildScan(SeqScanPlanNode* scan_node) { return false; }
+
     /**
      * Returns the plannode that generated this executor.
      */
@@ -60,17 +60,23 @@
 #include "common/tabletuple.h"
 #include "common/FatalException.hpp"
 #include "executors/abstractexecutor.h"
+#include "executors/receiveexecutor.h"
+#include "executors/tuplebatch.h"
 #include "expressions/abstractexpression.h"
 #include "plannodes/aggregatenode.h"
 #include "plannodes/projectionnode.h"
+#include "plannodes/receivenode.h"
+#include "plannodes/seqscannode.h"
 #include "storage/table.h"
 #include "storage/tablefactory.h"
 #include "storage/tableiterator.h"
 
 
 #include "boost/unordered_map.hpp"
+#include "boost/scoped_ptr.hpp"
 
 #include <algorithm>
+#include <cstring>
 #include <exception>
 #include <limits>
 #include <set>
@@ -367,10 +373,13 @@ class AggregateExecutor : public AbstractExecutor
 {
 public:
     AggregateExecutor(VoltDBEngine* engine, AbstractPlanNode* abstract_node) :
-        AbstractExecutor(engine, abstract_node), m_groupByKeySchema(NULL)
+        AbstractExecutor(engine, abstract_node), m_groupByKeySchema(NULL),
+        m_fusedScan(NULL), m_streamedReceive(NULL)
     { };
     ~AggregateExecutor();
 
+    bool fuseChildScan(SeqScanPlanNode* scan_node);
+
 protected:
     bool p_init(AbstractPlanNode* abstract_node,
                 const catalog::Database *catalog_db, int* tempTableMemoryInBytes);
@@ -384,12 +393,29 @@ protected:
     PassThroughColType m_passThroughColumns;
     Pool m_memoryPool;
     TupleSchema* m_groupByKeySchema;
+
+    /*
+     * If set, we are part of a vectorized PlanFragment and we scan and
+     * filter this node's target table ourselves instead of reading the
+     * scan's output table.
+     */
+    SeqScanPlanNode* m_fusedScan;
+    boost::scoped_ptr<CompiledPredicate> m_fusedPredicate;
+
+    /*
+     * If set, our input is the partial aggregates sent back from each
+     * partition and we pull them in from the RECEIVE one dependency at
+     * a time instead of waiting for their union.
+     */
+    ReceiveExecutor* m_streamedReceive;
 };
 
 /*
  * Interface for an aggregator (not an an individual aggregate) that
  * will aggregate some number of tuples and produce the results in the
- * provided output table.
+ * provided output table. If streamed is true, the input table's storage
+ * is reused before finalize() is called, so the aggregator must not hold
+ * on to references into it.
  */
 template<PlanNodeType aggregateType>
 class Aggregator {
@@ -402,7 +428,8 @@ public:
                Table* output_table,
                std::vector<ExpressionType>* agg_types,
                std::vector<int>* groupByCols,
-               std::vector<ValueType>* col_types);
+               std::vector<ValueType>* col_types,
+               bool streamed);
     bool nextTuple(TableTuple nextTuple, TableTuple prevTuple);
     bool finalize(TableTuple prevTuple);
 
@@ -513,7 +540,8 @@ public:
                       Table* output_table,
                       std::vector<ExpressionType> *agg_types,
                       std::vector<int> *groupByCols,
-                      std::vector<ValueType> *col_types)
+                      std::vector<ValueType> *col_types,
+                      bool streamed)
         : m_memoryPool(memoryPool),
           m_groupByKeySchema(groupByKeySchema),
           m_node(node),
@@ -523,6 +551,7 @@ public:
           m_aggTypes(agg_types),
           m_groupByCols(groupByCols),
           m_colTypes(col_types),
+          m_streamed(streamed),
           groupByKeyTuple(groupByKeySchema)
     {
         groupByKeyTuple.
@@ -553,7 +582,23 @@ public:
                 static_cast<AggregateList*>
                 (m_memoryPool->allocate(sizeof(AggregateList) +
                                         (sizeof(void*) * m_colTypes->size())));
-            aggregateList->m_groupTuple = nextTuple;
+            if (m_streamed)
+            {
+                // When the input is streamed in from a RECEIVE, its
+                // storage is reused for the next dependency before we
+                // finalize, so keep our own copy of the group's first
+                // tuple
+                char* groupTupleData = static_cast<char*>
+                    (m_memoryPool->allocate(nextTuple.tupleLength()));
+                ::memcpy(groupTupleData, nextTuple.address(),
+                         nextTuple.tupleLength());
+                aggregateList->m_groupTuple =
+                    TableTuple(groupTupleData, nextTuple.getSchema());
+            }
+            else
+            {
+                aggregateList->m_groupTuple = nextTuple;
+            }
             for (int i = 0; i < m_colTypes->size(); i++)
             {
                 // Map aggregate index i to the corresponding output
@@ -647,6 +692,7 @@ private:
     std::vector<ExpressionType>* m_aggTypes;
     std::vector<int>* m_groupByCols;
     std::vector<ValueType>* m_colTypes;
+    bool m_streamed;
     HashAggregateMapType m_aggregates;
     int m_numAggColumns;
     int m_lastColumnIndex;
@@ -669,7 +715,8 @@ public:
                       Table* output_table,
                       std::vector<ExpressionType>* agg_types,
                       std::vector<int>* groupByCols,
-                      std::vector<ValueType>* col_types) :
+                      std::vector<ValueType>* col_types,
+                      bool streamed) :
         m_memoryPool(memoryPool),
         m_groupByKeySchema(groupByKeySchema),
         m_node(node),
@@ -968,6 +1015,24 @@ AggregateExecutor<aggregateType>::p_init(AbstractPlanNode *abstract_node,
                                                    groupByColumnAllowNull,
                                                    true);
         delete[] columnNames;
+
+        //
+        // A hash aggregate does not care what order its input arrives in,
+        // so if the planner says our RECEIVE is only bringing back partial
+        // aggregates we can take them one dependency at a time
+        //
+        ReceivePlanNode* receive_node =
+            dynamic_cast<ReceivePlanNode*>(child_node);
+        if (aggregateType == PLAN_NODE_TYPE_HASHAGGREGATE &&
+            receive_node != NULL && receive_node->isCombineAggregates())
+        {
+            m_streamedReceive =
+                dynamic_cast<ReceiveExecutor*>(receive_node->getExecutor());
+            if (m_streamedReceive != NULL)
+            {
+                m_streamedReceive->setStreamed();
+            }
+        }
     }
     return true;
 }
@@ -984,7 +1049,9 @@ bool AggregateExecutor<aggregateType>::p_execute(const NValueArray &params)
     VOLT_DEBUG("Executing %s", node->debug().c_str());
     Table* output_table = node->getOutputTable();
     assert(output_table);
-    Table* input_table = node->getInputTables()[0];
+    Table* input_table = (m_fusedScan != NULL ?
+                          m_fusedScan->getTargetTable() :
+                          node->getInputTables()[0]);
     assert(input_table);
     VOLT_DEBUG("%s Input Table\n%s", node->debug().c_str(), input_table->debug().c_str());
 
@@ -1005,15 +1072,83 @@ bool AggregateExecutor<aggregateType>::p_execute(const NValueArray &params)
                                          node, &m_passThroughColumns,
                                          input_table, output_table,
                                          &agg_types,
-                                         &groupByColumns, &col_types);
+                                         &groupByColumns, &col_types,
+                                         m_streamedReceive != NULL);
 
-    VOLT_TRACE("looping..");
-    for (TableTuple cur(input_table->schema()); it.next(cur);
-         prev.move(cur.address()))
+    if (m_fusedScan != NULL)
     {
-        if (!aggregator.nextTuple( cur, prev))
+        //
+        // OPTIMIZATION: VECTORIZED SCAN
+        // Filter the target table a batch at a time and feed the
+        // selected tuples right into the aggregator
+        //
+        AbstractExpression* predicate = m_fusedScan->getPredicate();
+        if (predicate != NULL)
         {
-            return false;
+            predicate->substitute(params);
+        }
+        CompiledPredicate* compiled = NULL;
+        if (m_fusedPredicate.get() != NULL && m_fusedPredicate->bind(params))
+        {
+            compiled = m_fusedPredicate.get();
+        }
+        VOLT_TRACE("looping over batches..");
+        TableTuple scratch(input_table->schema());
+        TableTuple cur(input_table->schema());
+        TupleBatch batch;
+        while (batch.fill(it, scratch))
+        {
+            if (compiled != NULL)
+            {
+                batch.filter(compiled, scratch);
+            }
+            else
+            {
+                batch.filter(predicate, scratch);
+            }
+            for (int ctr = 0, cnt = batch.selected(); ctr < cnt; ctr++)
+            {
+                cur.move(batch.selectedAddress(ctr));
+                if (!aggregator.nextTuple(cur, prev))
+                {
+                    return false;
+                }
+                prev.move(cur.address());
+            }
+        }
+    }
+    else if (m_streamedReceive != NULL)
+    {
+        //
+        // OPTIMIZATION: COMBINE AGGREGATES
+        // Fold each partition's partial aggregates into ours and then
+        // throw them away before loading the next partition's
+        //
+        VOLT_TRACE("combining dependencies..");
+        TableTuple cur(input_table->schema());
+        while (m_streamedReceive->loadNextDependency())
+        {
+            TableIterator dep_it(input_table);
+            while (dep_it.next(cur))
+            {
+                if (!aggregator.nextTuple(cur, prev))
+                {
+                    return false;
+                }
+            }
+            input_table->deleteAllTuples(false);
+        }
+    }
+    else
+    {
+        VOLT_TRACE("looping..");
+        for (TableTuple cur(input_table->schema()); it.next(cur);
+             prev.move(cur.address()))
+        {
+            if (!aggregator.nextTuple( cur, prev))
+            {
+                return false;
+            }
         }
     }
     VOLT_TRACE("finalizing..");
@@ -1026,6 +1161,26 @@ bool AggregateExecutor<aggregateType>::p_execute(const NValueArray &params)
     return true;
 }
 
+template<PlanNodeType aggregateType>
+bool AggregateExecutor<aggregateType>::fuseChildScan(SeqScanPlanNode* scan_node)
+{
+    assert(scan_node);
+    // The aggregate columns were resolved against the scan's output
+    // schema, so we can only read the target table directly if the scan
+    // does not reshape or cut off its tuples
+    if (scan_node->getInlinePlanNode(PLAN_NODE_TYPE_PROJECTION) != NULL ||
+        scan_node->getInlinePlanNode(PLAN_NODE_TYPE_LIMIT) != NULL)
+    {
+        return false;
+    }
+    VOLT_DEBUG("Fusing %s into %s", scan_node->debug().c_str(),
+               abstract_node->debug().c_str());
+    m_fusedScan = scan_node;
+    m_fusedPredicate.reset(CompiledPredicate::compile(scan_node->getPredicate(),
+                                                      scan_node->getTargetTable()->schema()));
+    return true;
+}
+
 template<PlanNodeType aggregateType>
 AggregateExecutor<aggregateType>::~AggregateExecutor()
 {
@@ -66,6 +66,7 @@ AbstractExecutor* getNewExecutor(VoltDBEngine *engine,
     case PLAN_NODE_TYPE_MATERIALIZE: return new MaterializeExecutor(engine, abstract_node);
     case PLAN_NODE_TYPE_NESTLOOP: return new NestLoopExecutor(engine, abstract_node);
     case PLAN_NODE_TYPE_NESTLOOPINDEX: return new NestLoopIndexExecutor(engine, abstract_node);
+    case PLAN_NODE_TYPE_HASHJOIN: return new HashJoinExecutor(engine, abstract_node);
     case PLAN_NODE_TYPE_ORDERBY: return new OrderByExecutor(engine, abstract_node);
     case PLAN_NODE_TYPE_PROJECTION: return new ProjectionExecutor(engine, abstract_node);
     case PLAN_NODE_TYPE_RECEIVE: return new ReceiveExecutor(engine, abstract_node);
@@ -79,4 +80,30 @@ AbstractExecutor* getNewExecutor(VoltDBEngine *engine,
     return NULL;
 }
 
+void fuseVectorizedScans(const std::vector<AbstractPlanNode*>& executeList,
+                         std::vector<AbstractExecutor*>& list) {
+    std::vector<bool> fused(executeList.size(), false);
+    for (int ctr = 0, cnt = (int)executeList.size(); ctr < cnt; ctr++) {
+        AbstractPlanNode* node = executeList[ctr];
+        if (node->getPlanNodeType() != PLAN_NODE_TYPE_SEQSCAN) continue;
+
+        SeqScanExecutor* scan_executor = dynamic_cast<SeqScanExecutor*>(node->getExecutor());
+        assert(scan_executor);
+        scan_executor->setVectorized(true);
+
+        if (node->getParents().size() != 1) continue;
+        AbstractPlanNode* parent = node->getParents()[0];
+        if (parent->getExecutor()->fuseChildScan(dynamic_cast<SeqScanPlanNode*>(node))) {
+            VOLT_DEBUG("Fused %s into %s", node->debug().c_str(),
+                       parent->debug().c_str());
+            fused[ctr] = true;
+        }
+    }
+    for (int ctr = 0, cnt = (int)executeList.size(); ctr < cnt; ctr++) {
+        if (fused[ctr] == false) {
+            list.push_back(executeList[ctr]->getExecutor());
+        }
+    }
+}
+
 }
@@ -46,6 +46,7 @@
 #ifndef HSTOREEXECUTORUTIL_H
 #define HSTOREEXECUTORUTIL_H
 
+#include <vector>
 #include "common/types.h"
 #include "executors/abstractexecutor.h"
 #include "plannodes/abstractplannode.h"
@@ -53,6 +54,17 @@
 namespace voltdb {
 class VoltDBEngine;
 AbstractExecutor* getNewExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node);
+
+/*
+ * The catalog told us that this PlanFragment is a simple scan pipeline.
+ * Switch every SeqScan in the execute list over to batch-at-a-time
+ * execution, and if the scan's only consumer can read the target table
+ * itself, let it and leave the scan's executor (and thus its TempTable)
+ * out of the runtime list. Every other executor is appended to the list
+ * in execution order.
+ */
+void fuseVectorizedScans(const std::vector<AbstractPlanNode*>& executeList,
+                         std::vector<AbstractExecutor*>& list);
 }
 
 #endif
@@ -0,0 +1,263 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2010 VoltDB L.L.C.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB L.L.C. are licensed under the following
+ * terms and conditions:
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/* Copyright (C) 2008 by H-Store Project
+ * Brown University
+ * Massachusetts Institute of Technology
+ * Yale University
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <stack>
+#include "hashjoinexecutor.h"
+#include "common/debuglog.h"
+#include "common/TupleSchema.h"
+#include "expressions/abstractexpression.h"
+#include "expressions/tuplevalueexpression.h"
+#include "storage/table.h"
+#include "storage/temptable.h"
+#include "storage/tableiterator.h"
+#include "plannodes/hashjoinnode.h"
+
+namespace voltdb {
+
+bool HashJoinExecutor::p_init(AbstractPlanNode* abstract_node, const catalog::Database* catalog_db, int* tempTableMemoryInBytes) {
+    VOLT_TRACE("init HashJoin Executor");
+
+    // the output schema and the tuple indexes in the predicate are
+    // exactly the same as for a NestLoop
+    if (!NestLoopExecutor::p_init(abstract_node, catalog_db, tempTableMemoryInBytes)) {
+        return false;
+    }
+    m_tempTableMemoryInBytes = tempTableMemoryInBytes;
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(abstract_node);
+    assert(node);
+    const TupleSchema *outer_schema = node->getInputTables()[0]->schema();
+    const TupleSchema *inner_schema = node->getInputTables()[1]->schema();
+
+    // Pull out every outer.col = inner.col term of the top-level
+    // conjunction. Terms between columns of different types are left
+    // to the predicate since their values would not hash the same.
+    std::stack<const AbstractExpression*> stack;
+    if (node->getPredicate() != NULL) {
+        stack.push(node->getPredicate());
+    }
+    while (!stack.empty()) {
+        const AbstractExpression *expr = stack.top();
+        stack.pop();
+        if (expr->getExpressionType() == EXPRESSION_TYPE_CONJUNCTION_AND) {
+            stack.push(expr->getLeft());
+            stack.push(expr->getRight());
+            continue;
+        }
+        if (expr->getExpressionType() != EXPRESSION_TYPE_COMPARE_EQUAL ||
+            expr->getLeft()->getExpressionType() != EXPRESSION_TYPE_VALUE_TUPLE ||
+            expr->getRight()->getExpressionType() != EXPRESSION_TYPE_VALUE_TUPLE) {
+            continue;
+        }
+        const TupleValueExpression *left = dynamic_cast<const TupleValueExpression*>(expr->getLeft());
+        const TupleValueExpression *right = dynamic_cast<const TupleValueExpression*>(expr->getRight());
+        if (left->getTupleIndex() == right->getTupleIndex()) {
+            continue;
+        }
+        const TupleValueExpression *outer = (left->getTupleIndex() == 0 ? left : right);
+        const TupleValueExpression *inner = (left->getTupleIndex() == 0 ? right : left);
+        if (outer_schema->columnType(outer->getColumnId()) != inner_schema->columnType(inner->getColumnId())) {
+            continue;
+        }
+        m_outerKeyColumns.push_back(outer->getColumnId());
+        m_innerKeyColumns.push_back(inner->getColumnId());
+    }
+
+    if (m_innerKeyColumns.empty()) {
+        VOLT_DEBUG("No equi-join columns in HashJoin predicate. Executing as a NestLoop");
+        return true;
+    }
+
+    std::vector<ValueType> keyColumnTypes;
+    std::vector<int32_t> keyColumnSizes;
+    std::vector<bool> keyColumnAllowNull;
+    for (int ii = 0; ii < m_innerKeyColumns.size(); ii++) {
+        const int column = m_innerKeyColumns[ii];
+        keyColumnTypes.push_back(inner_schema->columnType(column));
+        keyColumnSizes.push_back(inner_schema->columnLength(column));
+        keyColumnAllowNull.push_back(inner_schema->columnAllowNull(column));
+    }
+    m_keySchema = TupleSchema::createTupleSchema(keyColumnTypes,
+                                                 keyColumnSizes,
+                                                 keyColumnAllowNull,
+                                                 true);
+    return true;
+}
+
+HashJoinExecutor::~HashJoinExecutor() {
+    releaseHashTable();
+    if (m_keySchema != NULL) {
+        TupleSchema::freeTupleSchema(m_keySchema);
+    }
+}
+
+/**
+ * Insert every inner tuple with a non-null key into the hash table.
+ * Returns false if the table would not fit in the temp table memory
+ * that is left for this fragment.
+ */
+bool HashJoinExecutor::buildHashTable(Table* inner_table) {
+    const int key_cols = static_cast<int>(m_innerKeyColumns.size());
+    const int entry_bytes = m_keySchema->tupleLength() +
+                            static_cast<int>(sizeof(HashJoinMapType::value_type) + 2 * sizeof(void*));
+
+    TableTuple inner_tuple(inner_table->schema());
+    TableTuple key(m_keySchema);
+    key.moveNoHeader(static_cast<char*>(m_memoryPool.allocate(m_keySchema->tupleLength())));
+    TableIterator iterator(inner_table);
+    while (iterator.next(inner_tuple)) {
+        bool has_null = false;
+        for (int ii = 0; ii < key_cols; ii++) {
+            const NValue value = inner_tuple.getNValue(m_innerKeyColumns[ii]);
+            has_null = has_null || value.isNull();
+            key.setNValue(ii, value);
+        }
+        // NULL never compares equal to anything
+        if (has_null) continue;
+
+        m_hashTableBytes += entry_bytes;
+        *m_tempTableMemoryInBytes += entry_bytes;
+        if (*m_tempTableMemoryInBytes > MAX_TEMP_TABLE_MEMORY) {
+            VOLT_DEBUG("HashJoin table exceeded the temp table memory limit after %d tuples",
+                       (int)m_hashTable.size());
+            return false;
+        }
+        m_hashTable.insert(HashJoinMapType::value_type(key, inner_tuple.address()));
+        key.moveNoHeader(static_cast<char*>(m_memoryPool.allocate(m_keySchema->tupleLength())));
+    }
+    return true;
+}
+
+void HashJoinExecutor::releaseHashTable() {
+    m_hashTable.clear();
+    m_memoryPool.purge();
+    if (m_tempTableMemoryInBytes != NULL) {
+        *m_tempTableMemoryInBytes -= m_hashTableBytes;
+    }
+    m_hashTableBytes = 0;
+}
+
+bool HashJoinExecutor::p_execute(const NValueArray &params) {
+    VOLT_DEBUG("executing HashJoin...");
+    if (m_keySchema == NULL) {
+        return NestLoopExecutor::p_execute(params);
+    }
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(abstract_node);
+    assert(node);
+    assert(node->getInputTables().size() == 2);
+
+    TempTable* output_table = dynamic_cast<TempTable*>(node->getOutputTable());
+    assert(output_table);
+    Table* outer_table = node->getInputTables()[0];
+    assert(outer_table);
+    Table* inner_table = node->getInputTables()[1];
+    assert(inner_table);
+
+    AbstractExpression *predicate = node->getPredicate();
+    if (predicate) {
+        predicate->substitute(params);
+        VOLT_TRACE ("predicate: %s", predicate->debug(true).c_str());
+    }
+
+    //
+    // Build
+    //
+    releaseHashTable();
+    if (!buildHashTable(inner_table)) {
+        releaseHashTable();
+        return NestLoopExecutor::p_execute(params);
+    }
+
+    //
+    // Probe
+    //
+    const int key_cols = static_cast<int>(m_outerKeyColumns.size());
+    const int outer_cols = outer_table->columnCount();
+    const int inner_cols = inner_table->columnCount();
+    TableTuple outer_tuple(outer_table->schema());
+    TableTuple inner_tuple(inner_table->schema());
+    TableTuple &joined = output_table->tempTuple();
+    TableTuple probe(m_keySchema);
+    probe.moveNoHeader(static_cast<char*>(m_memoryPool.allocate(m_keySchema->tupleLength())));
+
+    try {
+        TableIterator iterator(outer_table);
+        while (iterator.next(outer_tuple)) {
+            bool has_null = false;
+            for (int ii = 0; ii < key_cols; ii++) {
+                const NValue value = outer_tuple.getNValue(m_outerKeyColumns[ii]);
+                has_null = has_null || value.isNull();
+                probe.setNValue(ii, value);
+            }
+            if (has_null) continue;
+
+            std::pair<HashJoinMapType::const_iterator, HashJoinMapType::const_iterator> matches =
+                m_hashTable.equal_range(probe);
+            if (matches.first == matches.second) continue;
+
+            for (int col_ctr = 0; col_ctr < outer_cols; col_ctr++) {
+                joined.setNValue(col_ctr, outer_tuple.getNValue(col_ctr));
+            }
+            for (HashJoinMapType::const_iterator iter = matches.first; iter != matches.second; iter++) {
+                inner_tuple.move(iter->second);
+                if (predicate == NULL || predicate->eval(&outer_tuple, &inner_tuple).isTrue()) {
+                    for (int col_ctr = 0; col_ctr < inner_cols; col_ctr++) {
+                        joined.setNValue(col_ctr + outer_cols, inner_tuple.getNValue(col_ctr));
+                    }
+                    output_table->insertTupleNonVirtual(joined);
+                }
+            }
+        }
+    } catch (...) {
+        releaseHashTable();
+        throw;
+    }
+
+    releaseHashTable();
+    return (true);
+}
+
+}
@@ -46,12 +46,14 @@
 #include <algorithm>
 #include <vector>
 #include "orderbyexecutor.h"
+#include "receiveexecutor.h"
 #include "common/debuglog.h"
 #include "common/common.h"
 #include "common/tabletuple.h"
 #include "common/FatalException.hpp"
 #include "plannodes/orderbynode.h"
 #include "plannodes/limitnode.h"
+#include "plannodes/receivenode.h"
 #include "storage/table.h"
 #include "storage/temptable.h"
 #include "storage/tableiterator.h"
@@ -117,6 +119,15 @@ OrderByExecutor::p_init(AbstractPlanNode* abstract_node,
         dynamic_cast<LimitPlanNode*>(node->
                                      getInlinePlanNode(PLAN_NODE_TYPE_LIMIT));
 
+    // if every partition already sorted what it sent us, we only have
+    // to merge the dependencies that our RECEIVE loaded
+    ReceivePlanNode* receive_node = dynamic_cast<ReceivePlanNode*>(child_node);
+    if (receive_node != NULL && receive_node->isMergeSorted())
+    {
+        merge_receive =
+            dynamic_cast<ReceiveExecutor*>(receive_node->getExecutor());
+    }
+
     return true;
 }
 
@@ -163,6 +174,89 @@ private:
     size_t m_keyCount;
 };
 
+/**
+ * Position in one of the sorted runs being merged
+ */
+struct RunCursor
+{
+    size_t pos;
+    size_t end;
+};
+
+class RunCursorComparer
+{
+public:
+    RunCursorComparer(const vector<TableTuple>& tuples, TupleComparer& comparer)
+        : m_tuples(tuples), m_comparer(comparer)
+    {
+    }
+
+    // The std heap functions keep the largest element at the front, so
+    // compare the heads backwards to pop the run with the smallest one
+    bool operator()(const RunCursor& a, const RunCursor& b)
+    {
+        return m_comparer(m_tuples[b.pos], m_tuples[a.pos]);
+    }
+
+private:
+    const vector<TableTuple>& m_tuples;
+    TupleComparer& m_comparer;
+};
+
+/**
+ * Replace the contents of xs, which is a concatenation of sorted runs of
+ * the given sizes, with the first 'limit' tuples (or all of them if limit
+ * is negative) of their merge. Returns false if the runs don't add up to
+ * xs, in which case xs is left alone.
+ */
+static bool
+mergeRuns(vector<TableTuple>& xs, const vector<int>& runs,
+          TupleComparer& comparer, int limit)
+{
+    vector<RunCursor> heap;
+    size_t start = 0;
+    for (int ii = 0; ii < runs.size(); ii++)
+    {
+        if (runs[ii] > 0)
+        {
+            RunCursor cursor = { start, start + runs[ii] };
+            heap.push_back(cursor);
+        }
+        start += runs[ii];
+    }
+    if (start != xs.size())
+    {
+        return false;
+    }
+
+    size_t count = xs.size();
+    if (limit >= 0 && limit < count)
+    {
+        count = limit;
+    }
+    vector<TableTuple> merged;
+    merged.reserve(count);
+
+    RunCursorComparer heap_comparer(xs, comparer);
+    make_heap(heap.begin(), heap.end(), heap_comparer);
+    while (merged.size() < count)
+    {
+        pop_heap(heap.begin(), heap.end(), heap_comparer);
+        RunCursor& cursor = heap.back();
+        merged.push_back(xs[cursor.pos]);
+        if (++cursor.pos < cursor.end)
+        {
+            push_heap(heap.begin(), heap.end(), heap_comparer);
+        }
+        else
+        {
+            heap.pop_back();
+        }
+    }
+    xs.swap(merged);
+    return true;
+}
+
 bool
 OrderByExecutor::p_execute(const NValueArray &params)
 {
@@ -195,15 +289,63 @@ OrderByExecutor::p_execute(const NValueArray &params)
     TableIterator iterator(input_table);
     TableTuple tuple(input_table->schema());
     vector<TableTuple> xs;
-    while (iterator.next(tuple))
+    TupleComparer comparer(node->getSortColumns(), node->getSortDirections());
+    if (merge_receive != NULL && merge_receive->getRunSizes().size() > 1)
+    {
+        //
+        // OPTIMIZATION: K-WAY MERGE
+        // Our input is one sorted run per partition, so we merge the runs
+        // instead of sorting them again and stop once we hit the limit
+        //
+        while (iterator.next(tuple))
+        {
+            assert(tuple.isActive());
+            xs.push_back(tuple);
+        }
+        if (!mergeRuns(xs, merge_receive->getRunSizes(), comparer, limit))
+        {
+            VOLT_WARN("Received %d tuples that do not match the sorted run"
+                      " sizes. Sorting them instead", (int)xs.size());
+            sort(xs.begin(), xs.end(), comparer);
+        }
+    }
+    else if (limit >= 0)
     {
-        assert(tuple.isActive());
-        xs.push_back(tuple);
+        //
+        // OPTIMIZATION: TOP-N
+        // We only need the first 'limit' tuples in sort order, so keep them
+        // in a bounded max-heap whose front is the worst tuple kept so far.
+        // Any tuple that sorts before it replaces it.
+        //
+        xs.reserve(std::min(static_cast<int64_t>(limit), input_table->activeTupleCount()));
+        while (iterator.next(tuple))
+        {
+            assert(tuple.isActive());
+            if (xs.size() < limit)
+            {
+                xs.push_back(tuple);
+                push_heap(xs.begin(), xs.end(), comparer);
+            }
+            else if (limit > 0 && comparer(tuple, xs.front()))
+            {
+                pop_heap(xs.begin(), xs.end(), comparer);
+                xs.back() = tuple;
+                push_heap(xs.begin(), xs.end(), comparer);
+            }
+        }
+        sort_heap(xs.begin(), xs.end(), comparer);
+    }
+    else
+    {
+        while (iterator.next(tuple))
+        {
+            assert(tuple.isActive());
+            xs.push_back(tuple);
+        }
+        VOLT_TRACE("\n***** Input Table PreSort:\n '%s'",
+                   input_table->debug().c_str());
+        sort(xs.begin(), xs.end(), comparer);
     }
-    VOLT_TRACE("\n***** Input Table PreSort:\n '%s'",
-               input_table->debug().c_str());
-    sort(xs.begin(), xs.end(), TupleComparer(node->getSortColumns(),
-                                             node->getSortDirections()));
 
     int tuple_ctr = 0;
     for (vector<TableTuple>::iterator it = xs.begin(); it != xs.end(); it++)
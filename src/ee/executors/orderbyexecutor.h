@@ -55,6 +55,7 @@ namespace voltdb {
     class UndoLog;
     class ReadWriteSet;
     class LimitPlanNode;
+    class ReceiveExecutor;
 
     /**
      *
@@ -62,7 +63,8 @@ namespace voltdb {
     class OrderByExecutor : public AbstractExecutor {
     public:
         OrderByExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node)
-            : AbstractExecutor(engine, abstract_node), limit_node(NULL)
+            : AbstractExecutor(engine, abstract_node), limit_node(NULL),
+              merge_receive(NULL)
             { }
         ~OrderByExecutor();
 
@@ -73,6 +75,9 @@ namespace voltdb {
 
     private:
         LimitPlanNode *limit_node;
+
+        // If set, our input is a union of already sorted runs
+        ReceiveExecutor *merge_receive;
     };
 
 }
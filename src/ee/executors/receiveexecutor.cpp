@@ -87,20 +87,34 @@ bool ReceiveExecutor::p_init(AbstractPlanNode *abstract_node,
     return true;
 }
 
+bool ReceiveExecutor::loadNextDependency() {
+    Table* output_table = abstract_node->getOutputTable();
+    int64_t before = output_table->activeTupleCount();
+    if (engine->loadNextDependency(output_table) <= 0) {
+        return false;
+    }
+    m_runSizes.push_back(static_cast<int>(output_table->activeTupleCount() - before));
+    return true;
+}
+
 bool ReceiveExecutor::p_execute(const NValueArray &params) {
-    int loadedDeps = 0;
-    ReceivePlanNode* node = dynamic_cast<ReceivePlanNode*>(abstract_node);
-    Table* output_table = dynamic_cast<Table*>(node->getOutputTable());
+    m_runSizes.clear();
+
+    // OPTIMIZATION: COMBINE AGGREGATES
+    // The aggregate above us will stream the dependencies in itself
+    if (m_streamed) {
+        VOLT_TRACE("Leaving dependencies to be streamed by our parent");
+        return true;
+    }
 
     // iterate dependencies stored in the frontend and union them
     // into the output_table. The engine does this work for peanuts.
 
     // todo: should pass the transaction's string pool through
     // as the underlying table loader would use it.
-    do {
-        loadedDeps =
-        engine->loadNextDependency(output_table);
-    } while (loadedDeps > 0);
+    while (loadNextDependency()) {
+        // Keep going...
+    }
 
     return true;
 }
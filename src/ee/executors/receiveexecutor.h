@@ -50,6 +50,7 @@
 #include "common/valuevector.h"
 #include "executors/abstractexecutor.h"
 #include <iostream>
+#include <vector>
 
 namespace voltdb {
 
@@ -57,22 +58,46 @@ class UndoLog;
 class ReadWriteSet;
 
 /**
+ * Unions the dependencies sent to this fragment into its output table.
  *
+ * If the plan node is marked as merge-sorted, the number of tuples each
+ * dependency contributed is remembered so that the ORDER BY above can
+ * merge the sorted runs. If it is marked as combining aggregates and the
+ * aggregate above agrees to stream, nothing is loaded here; the aggregate
+ * pulls in one dependency at a time through loadNextDependency() and
+ * clears the output table in between.
  */
 class ReceiveExecutor : public AbstractExecutor {
     public:
         ReceiveExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node)
-            : AbstractExecutor(engine, abstract_node)
+            : AbstractExecutor(engine, abstract_node), m_streamed(false)
     {
         this->engine = engine;
     }
         ~ReceiveExecutor();
         bool needsPostExecuteClear() { return true; }
+
+        /**
+         * Append the next dependency to the output table. Returns false
+         * once every dependency has been loaded.
+         */
+        bool loadNextDependency();
+
+        /**
+         * Leave the dependencies for our parent to load. Only called by a
+         * parent that will call loadNextDependency() until it returns false.
+         */
+        void setStreamed() { m_streamed = true; }
+
+        /** The number of tuples loaded from each dependency, in order */
+        const std::vector<int>& getRunSizes() const { return m_runSizes; }
     protected:
         bool p_init(AbstractPlanNode*, const catalog::Database* catalog_db, int* tempTableMemoryInBytes);
         bool p_execute(const NValueArray &params);
     private:
         VoltDBEngine *engine;
+        std::vector<int> m_runSizes;
+        bool m_streamed;
 };
 
 }
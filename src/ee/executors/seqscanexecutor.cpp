@@ -45,6 +45,7 @@
 
 #include <iostream>
 #include "seqscanexecutor.h"
+#include "tuplebatch.h"
 #include "common/debuglog.h"
 #include "common/common.h"
 #include "common/tabletuple.h"
@@ -113,6 +114,14 @@ bool SeqScanExecutor::p_init(AbstractPlanNode *abstract_node,
                     tempTableMemoryInBytes));
         }
     }
+
+    //
+    // OPTIMIZATION: COMPILED PREDICATE
+    // Plan fragments get executed over and over again, so it's worth
+    // trying to flatten the predicate once right here
+    //
+    m_compiledPredicate.reset(CompiledPredicate::compile(node->getPredicate(),
+                                                         node->getTargetTable()->schema()));
     return true;
 }
 
@@ -202,58 +211,73 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
             VOLT_TRACE("SCAN PREDICATE B:\n%s\n",
                        predicate->debug(true).c_str());
         }
+        CompiledPredicate *compiled = NULL;
+        if (m_compiledPredicate.get() != NULL &&
+            m_compiledPredicate->bind(params))
+        {
+            compiled = m_compiledPredicate.get();
+        }
 
         int tuple_ctr = 0;
-        while (iterator.next(tuple))
+        if (m_vectorized)
         {
-            VOLT_TRACE("INPUT TUPLE: %s, %d/%d\n",
-                       tuple.debug(target_table->name()).c_str(), tuple_ctr,
-                       (int)target_table->activeTupleCount());
             //
-            // For each tuple we need to evaluate it against our predicate
+            // OPTIMIZATION: VECTORIZED SCAN
+            // Pull a batch of tuples out of the table, run the predicate
+            // over the whole batch in one tight loop, and then only touch
+            // the tuples that made it through
             //
-            if (predicate == NULL || predicate->eval(&tuple, NULL).isTrue())
+            TableTuple scratch(target_table->schema());
+            TupleBatch batch;
+            bool done = false;
+            while (!done && batch.fill(iterator, scratch))
             {
-                //
-                // Nested Projection
-                // Project (or replace) values from input tuple
-                //
-                if (projection_node != NULL)
+                if (compiled != NULL) {
+                    batch.filter(compiled, scratch);
+                } else {
+                    batch.filter(predicate, scratch);
+                }
+                for (int ctr = 0, cnt = batch.selected(); ctr < cnt; ctr++)
                 {
-                    TableTuple &temp_tuple = output_table->tempTuple();
-                    for (int ctr = 0; ctr < num_of_columns; ctr++)
-                    {
-                        NValue value =
-                            projection_node->
-                          getOutputColumnExpressions()[ctr]->eval(&tuple, NULL);
-                        temp_tuple.setNValue(ctr, value);
-                    }
-                    if (!output_table->insertTuple(temp_tuple))
+                    tuple.move(batch.selectedAddress(ctr));
+                    if (!insertOutputTuple(tuple, target_table, output_table,
+                                           projection_node, num_of_columns))
                     {
-                        VOLT_ERROR("Failed to insert tuple from table '%s' into"
-                                   " output table '%s'",
-                                   target_table->name().c_str(),
-                                   output_table->name().c_str());
                         return false;
                     }
+                    ++tuple_ctr;
+                    // Check whether we have gone past our limit
+                    if (limit >= 0 && tuple_ctr >= limit) {
+                        done = true;
+                        break;
+                    }
                 }
-                else
+            }
+        }
+        else
+        {
+            while (iterator.next(tuple))
+            {
+                VOLT_TRACE("INPUT TUPLE: %s, %d/%d\n",
+                           tuple.debug(target_table->name()).c_str(), tuple_ctr,
+                           (int)target_table->activeTupleCount());
+                //
+                // For each tuple we need to evaluate it against our predicate
+                //
+                if (predicate == NULL ||
+                    (compiled != NULL ? compiled->eval(&tuple) :
+                                        predicate->eval(&tuple, NULL).isTrue()))
                 {
-                    //
-                    // Insert the tuple into our output table
-                    //
-                    if (!output_table->insertTuple(tuple)) {
-                        VOLT_ERROR("Failed to insert tuple from table '%s' into"
-                                   " output table '%s'",
-                                   target_table->name().c_str(),
-                                   output_table->name().c_str());
+                    if (!insertOutputTuple(tuple, target_table, output_table,
+                                           projection_node, num_of_columns))
+                    {
                         return false;
                     }
-                }
-                ++tuple_ctr;
-                // Check whether we have gone past our limit
-                if (limit >= 0 && tuple_ctr >= limit) {
-                    break;
+                    ++tuple_ctr;
+                    // Check whether we have gone past our limit
+                    if (limit >= 0 && tuple_ctr >= limit) {
+                        break;
+                    }
                 }
             }
         }
@@ -263,3 +287,46 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
 
     return true;
 }
+
+bool SeqScanExecutor::insertOutputTuple(TableTuple &tuple, Table* target_table,
+                                        Table* output_table,
+                                        ProjectionPlanNode* projection_node,
+                                        int num_of_columns) {
+    //
+    // Nested Projection
+    // Project (or replace) values from input tuple
+    //
+    if (projection_node != NULL)
+    {
+        TableTuple &temp_tuple = output_table->tempTuple();
+        for (int ctr = 0; ctr < num_of_columns; ctr++)
+        {
+            NValue value =
+                projection_node->
+              getOutputColumnExpressions()[ctr]->eval(&tuple, NULL);
+            temp_tuple.setNValue(ctr, value);
+        }
+        if (!output_table->insertTuple(temp_tuple))
+        {
+            VOLT_ERROR("Failed to insert tuple from table '%s' into"
+                       " output table '%s'",
+                       target_table->name().c_str(),
+                       output_table->name().c_str());
+            return false;
+        }
+    }
+    else
+    {
+        //
+        // Insert the tuple into our output table
+        //
+        if (!output_table->insertTuple(tuple)) {
+            VOLT_ERROR("Failed to insert tuple from table '%s' into"
+                       " output table '%s'",
+                       target_table->name().c_str(),
+                       output_table->name().c_str());
+            return false;
+        }
+    }
+    return true;
+}
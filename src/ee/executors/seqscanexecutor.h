@@ -49,22 +49,47 @@
 #include "common/common.h"
 #include "common/valuevector.h"
 #include "executors/abstractexecutor.h"
+#include "expressions/compiledpredicate.h"
+#include "boost/scoped_ptr.hpp"
 
 namespace voltdb
 {
     class UndoLog;
     class ReadWriteSet;
 
+    class ProjectionPlanNode;
+
     class SeqScanExecutor : public AbstractExecutor {
     public:
         SeqScanExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node)
-            : AbstractExecutor(engine, abstract_node)
+            : AbstractExecutor(engine, abstract_node), m_vectorized(false)
         {}
+
+        /**
+         * Scan the target table TUPLE_BATCH_SIZE tuples at a time instead
+         * of one tuple at a time. Set by the engine when the catalog marks
+         * the PlanFragment as vectorized.
+         */
+        inline void setVectorized(bool vectorized) { m_vectorized = vectorized; }
+        inline bool isVectorized() const { return m_vectorized; }
+
     protected:
         bool p_init(AbstractPlanNode* abstract_node,
                     const catalog::Database* catalog_db, int* tempTableMemoryInBytes);
         bool p_execute(const NValueArray& params);
         bool needsOutputTableClear();
+
+    private:
+        bool insertOutputTuple(TableTuple &tuple, Table* target_table,
+                               Table* output_table,
+                               ProjectionPlanNode* projection_node,
+                               int num_of_columns);
+
+        bool m_vectorized;
+
+        // Type-specialized version of the scan predicate, if it has a
+        // shape that CompiledPredicate knows how to handle
+        boost::scoped_ptr<CompiledPredicate> m_compiledPredicate;
     };
 }
 
@@ -0,0 +1,144 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2010 VoltDB L.L.C.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB L.L.C. are licensed under the following
+ * terms and conditions:
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/* Copyright (C) 2008 by H-Store Project
+ * Brown University
+ * Massachusetts Institute of Technology
+ * Yale University
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#ifndef HSTORETUPLEBATCH_H
+#define HSTORETUPLEBATCH_H
+
+#include "common/common.h"
+#include "common/tabletuple.h"
+#include "expressions/abstractexpression.h"
+#include "expressions/compiledpredicate.h"
+#include "storage/tableiterator.h"
+
+namespace voltdb {
+
+/**
+ * Number of tuples that a vectorized executor pulls out of its input
+ * before it runs the next stage of the pipeline over them.
+ */
+#define TUPLE_BATCH_SIZE 1024
+
+/**
+ * A TupleBatch holds the addresses of up to TUPLE_BATCH_SIZE tuples from a
+ * single table plus a selection vector of the ones that survived the
+ * predicate. Executors in vectorized PlanFragments fill a batch from a
+ * TableIterator, filter it in one tight loop, and then hand the selected
+ * tuples to the next stage without copying them into a TempTable.
+ */
+class TupleBatch {
+  public:
+    TupleBatch() : m_size(0), m_selected(0) {}
+
+    /**
+     * Pull up to TUPLE_BATCH_SIZE tuple addresses out of the iterator.
+     * Returns false once the iterator has nothing left to give.
+     */
+    inline bool fill(TableIterator &iterator, TableTuple &scratch) {
+        m_size = 0;
+        m_selected = 0;
+        while (m_size < TUPLE_BATCH_SIZE && iterator.next(scratch)) {
+            m_addresses[m_size++] = scratch.address();
+        }
+        return (m_size > 0);
+    }
+
+    /**
+     * Evaluate the predicate over every tuple in the batch and build the
+     * selection vector. The write into the selection vector is unconditional
+     * so that the loop does not branch on the result of the predicate.
+     * A NULL predicate selects everything. This is the fallback for
+     * predicates that CompiledPredicate could not flatten, and it still
+     * pays for one interpreted eval() per tuple.
+     */
+    inline void filter(AbstractExpression *predicate, TableTuple &scratch) {
+        if (predicate == NULL) {
+            for (int ctr = 0; ctr < m_size; ctr++) {
+                m_selection[ctr] = ctr;
+            }
+            m_selected = m_size;
+            return;
+        }
+        int selected = 0;
+        for (int ctr = 0; ctr < m_size; ctr++) {
+            scratch.move(m_addresses[ctr]);
+            m_selection[selected] = ctr;
+            selected += (predicate->eval(&scratch, NULL).isTrue() ? 1 : 0);
+        }
+        m_selected = selected;
+    }
+
+    /**
+     * Same as above, but for a predicate that was flattened into a
+     * CompiledPredicate when the plan fragment was loaded. The compiled
+     * predicate works on the whole batch at once, one term at a time, so
+     * there is no virtual call per tuple.
+     */
+    inline void filter(const CompiledPredicate *predicate, TableTuple &scratch) {
+        assert(predicate);
+        m_selected = predicate->filter(m_addresses, m_size, m_selection);
+    }
+
+    /** Number of tuples pulled into the batch */
+    inline int size() const { return m_size; }
+
+    /** Number of tuples that passed the last call to filter() */
+    inline int selected() const { return m_selected; }
+
+    /** Address of the idx-th selected tuple */
+    inline char* selectedAddress(int idx) const {
+        assert(idx < m_selected);
+        return m_addresses[m_selection[idx]];
+    }
+
+  private:
+    char* m_addresses[TUPLE_BATCH_SIZE];
+    int m_selection[TUPLE_BATCH_SIZE];
+    int m_size;
+    int m_selected;
+};
+
+}
+
+#endif
@@ -0,0 +1,209 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2010 VoltDB L.L.C.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB L.L.C. are licensed under the following
+ * terms and conditions:
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/* Copyright (C) 2008 by H-Store Project
+ * Brown University
+ * Massachusetts Institute of Technology
+ * Yale University
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "compiledpredicate.h"
+#include "common/debuglog.h"
+#include "common/ValuePeeker.hpp"
+#include "expressions/abstractexpression.h"
+#include "expressions/constantvalueexpression.h"
+#include "expressions/parametervalueexpression.h"
+#include "expressions/tuplevalueexpression.h"
+
+namespace voltdb {
+
+static inline bool isCompilableIntegerType(ValueType type) {
+    switch (type) {
+        case VALUE_TYPE_TINYINT:
+        case VALUE_TYPE_SMALLINT:
+        case VALUE_TYPE_INTEGER:
+        case VALUE_TYPE_BIGINT:
+            return true;
+        default:
+            return false;
+    }
+}
+
+static inline uint8_t storageWidth(ValueType type) {
+    switch (type) {
+        case VALUE_TYPE_TINYINT:  return 1;
+        case VALUE_TYPE_SMALLINT: return 2;
+        case VALUE_TYPE_INTEGER:  return 4;
+        default:                  return 8;
+    }
+}
+
+/**
+ * Flip a comparison so that the column ends up on the left side
+ * (i.e., ? < col becomes col > ?)
+ */
+static inline ExpressionType reverseComparison(ExpressionType type) {
+    switch (type) {
+        case EXPRESSION_TYPE_COMPARE_LESSTHAN:
+            return EXPRESSION_TYPE_COMPARE_GREATERTHAN;
+        case EXPRESSION_TYPE_COMPARE_GREATERTHAN:
+            return EXPRESSION_TYPE_COMPARE_LESSTHAN;
+        case EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO:
+            return EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO;
+        case EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO:
+            return EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO;
+        default:
+            return type;
+    }
+}
+
+CompiledPredicate::CompiledPredicate(const std::vector<Term> &terms) :
+    m_termsVector(terms), m_alwaysFalse(false)
+{
+    m_terms = (m_termsVector.empty() ? NULL : &m_termsVector[0]);
+    m_numTerms = (int)m_termsVector.size();
+}
+
+CompiledPredicate* CompiledPredicate::compile(const AbstractExpression *predicate,
+                                              const TupleSchema *schema) {
+    if (predicate == NULL || schema == NULL) return NULL;
+
+    std::vector<Term> terms;
+    if (!flatten(predicate, schema, terms) || terms.empty()) {
+        VOLT_DEBUG("Unable to compile predicate:\n%s", predicate->debug(true).c_str());
+        return NULL;
+    }
+    VOLT_DEBUG("Compiled predicate into %d terms:\n%s",
+               (int)terms.size(), predicate->debug(true).c_str());
+    return new CompiledPredicate(terms);
+}
+
+bool CompiledPredicate::flatten(const AbstractExpression *expr,
+                                const TupleSchema *schema,
+                                std::vector<Term> &terms) {
+    if (expr == NULL) return false;
+
+    ExpressionType type = expr->getExpressionType();
+    switch (type) {
+        case EXPRESSION_TYPE_CONJUNCTION_AND:
+            return (flatten(expr->getLeft(), schema, terms) &&
+                    flatten(expr->getRight(), schema, terms));
+        case EXPRESSION_TYPE_COMPARE_EQUAL:
+        case EXPRESSION_TYPE_COMPARE_NOTEQUAL:
+        case EXPRESSION_TYPE_COMPARE_LESSTHAN:
+        case EXPRESSION_TYPE_COMPARE_GREATERTHAN:
+        case EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO:
+        case EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO:
+            break;
+        default:
+            return false;
+    }
+
+    // Figure out which side is the column
+    const AbstractExpression *column_expr = expr->getLeft();
+    const AbstractExpression *value_expr = expr->getRight();
+    if (column_expr == NULL || value_expr == NULL) return false;
+    if (column_expr->getExpressionType() != EXPRESSION_TYPE_VALUE_TUPLE) {
+        std::swap(column_expr, value_expr);
+        type = reverseComparison(type);
+    }
+    const TupleValueExpression *tve = dynamic_cast<const TupleValueExpression*>(column_expr);
+    if (tve == NULL || tve->getTupleIndex() != 0) return false;
+
+    const int column = tve->getColumnId();
+    if (column < 0 || column >= schema->columnCount()) return false;
+    if (!isCompilableIntegerType(schema->columnType(column))) return false;
+
+    Term term;
+    term.op = type;
+    term.offset = schema->columnOffset(column) + TUPLE_HEADER_SIZE;
+    term.width = storageWidth(schema->columnType(column));
+    term.paramIdx = -1;
+    term.value = 0;
+
+    // And then figure out what we're comparing it against
+    switch (value_expr->getExpressionType()) {
+        case EXPRESSION_TYPE_VALUE_PARAMETER: {
+            const ParameterValueExpression *pve =
+                dynamic_cast<const ParameterValueExpression*>(value_expr);
+            if (pve == NULL) return false;
+            term.paramIdx = pve->getParameterId();
+            break;
+        }
+        case EXPRESSION_TYPE_VALUE_CONSTANT: {
+            const ConstantValueExpression *cve =
+                dynamic_cast<const ConstantValueExpression*>(value_expr);
+            if (cve == NULL) return false;
+            const NValue &value = cve->getValue();
+            if (value.isNull() ||
+                !isCompilableIntegerType(ValuePeeker::peekValueType(value))) {
+                return false;
+            }
+            term.value = ValuePeeker::peekAsBigInt(value);
+            break;
+        }
+        default:
+            return false;
+    }
+    terms.push_back(term);
+    return true;
+}
+
+bool CompiledPredicate::bind(const NValueArray &params) {
+    m_alwaysFalse = false;
+    for (int ctr = 0; ctr < m_numTerms; ctr++) {
+        Term &term = m_terms[ctr];
+        if (term.paramIdx < 0) continue;
+        if (term.paramIdx >= params.size()) return false;
+
+        const NValue &param = params[term.paramIdx];
+        if (param.isNull()) {
+            // Comparing anything to NULL is never true
+            m_alwaysFalse = true;
+            continue;
+        }
+        if (!isCompilableIntegerType(ValuePeeker::peekValueType(param))) {
+            return false;
+        }
+        term.value = ValuePeeker::peekAsBigInt(param);
+    }
+    return true;
+}
+
+}
@@ -0,0 +1,209 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2010 VoltDB L.L.C.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB L.L.C. are licensed under the following
+ * terms and conditions:
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/* Copyright (C) 2008 by H-Store Project
+ * Brown University
+ * Massachusetts Institute of Technology
+ * Yale University
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#ifndef HSTORECOMPILEDPREDICATE_H
+#define HSTORECOMPILEDPREDICATE_H
+
+#include <vector>
+#include "common/common.h"
+#include "common/tabletuple.h"
+#include "common/TupleSchema.h"
+#include "common/valuevector.h"
+#include "common/value_defs.h"
+
+namespace voltdb {
+
+class AbstractExpression;
+
+/**
+ * A CompiledPredicate is a flattened, type-specialized version of a scan
+ * predicate. When a plan fragment is loaded, the executor hands its
+ * predicate to CompiledPredicate::compile(). If the expression tree is a
+ * conjunction of integer column-vs-parameter (or column-vs-constant)
+ * comparisons, we turn it into a flat array of terms that are evaluated
+ * straight off of the tuple's storage. There are no virtual calls and no
+ * NValue temporaries on the per-tuple path.
+ *
+ * Anything else (ORs, strings, decimals, expressions on both sides, joins)
+ * is rejected at compile time and the executor keeps using the
+ * interpreted AbstractExpression tree.
+ */
+class CompiledPredicate {
+  public:
+    /**
+     * Try to compile the given predicate against the schema of the tuples
+     * that it will be evaluated over. Returns NULL if the expression does
+     * not have a shape that we know how to specialize. The caller owns
+     * the returned object.
+     */
+    static CompiledPredicate* compile(const AbstractExpression *predicate,
+                                      const TupleSchema *schema);
+
+    /**
+     * Load the parameter values for this execution into the terms.
+     * Returns false if a parameter does not have an integer type, in which
+     * case the caller must fall back to the interpreted expression for
+     * this execution.
+     */
+    bool bind(const NValueArray &params);
+
+    /**
+     * Evaluate the predicate over a tuple. Equivalent to
+     * predicate->eval(tuple, NULL).isTrue() for the original expression.
+     */
+    inline bool eval(const TableTuple *tuple) const {
+        if (m_alwaysFalse) return false;
+        const char *data = tuple->address();
+        for (int ctr = 0; ctr < m_numTerms; ctr++) {
+            if (!evalTerm(m_terms[ctr], data)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Evaluate the predicate over a batch of tuples one term at a time.
+     * Each term runs in its own tight loop over the tuples that passed the
+     * terms before it, so the per-tuple work is just the comparison.
+     * Writes the indexes (into addresses) of the tuples that passed into
+     * selection and returns how many there were.
+     */
+    inline int filter(char* const *addresses, int count, int *selection) const {
+        if (m_alwaysFalse) return 0;
+        for (int ctr = 0; ctr < count; ctr++) {
+            selection[ctr] = ctr;
+        }
+        int selected = count;
+        for (int term = 0; term < m_numTerms && selected > 0; term++) {
+            const Term &t = m_terms[term];
+            int passed = 0;
+            for (int ctr = 0; ctr < selected; ctr++) {
+                const int idx = selection[ctr];
+                selection[passed] = idx;
+                passed += (evalTerm(t, addresses[idx]) ? 1 : 0);
+            }
+            selected = passed;
+        }
+        return selected;
+    }
+
+    inline int getTermCount() const { return m_numTerms; }
+
+  private:
+    struct Term {
+        // Comparison operator. Always in the form of <column> OP <value>
+        ExpressionType op;
+        // Offset of the column from the start of the tuple (incl. header)
+        uint32_t offset;
+        // Width of the column's storage in bytes (1, 2, 4, or 8)
+        uint8_t width;
+        // Index into the parameter array, or -1 if the value is a constant
+        int paramIdx;
+        // The value that we are comparing against
+        int64_t value;
+    };
+
+    CompiledPredicate(const std::vector<Term> &terms);
+
+    static bool flatten(const AbstractExpression *expr,
+                        const TupleSchema *schema,
+                        std::vector<Term> &terms);
+
+    static inline bool evalTerm(const Term &term, const char *data) {
+        int64_t lhs;
+        const char *ptr = data + term.offset;
+        switch (term.width) {
+            case 1: {
+                const int8_t v = *reinterpret_cast<const int8_t*>(ptr);
+                if (v == INT8_NULL) return false;
+                lhs = v;
+                break;
+            }
+            case 2: {
+                const int16_t v = *reinterpret_cast<const int16_t*>(ptr);
+                if (v == INT16_NULL) return false;
+                lhs = v;
+                break;
+            }
+            case 4: {
+                const int32_t v = *reinterpret_cast<const int32_t*>(ptr);
+                if (v == INT32_NULL) return false;
+                lhs = v;
+                break;
+            }
+            default: {
+                const int64_t v = *reinterpret_cast<const int64_t*>(ptr);
+                if (v == INT64_NULL) return false;
+                lhs = v;
+                break;
+            }
+        }
+        switch (term.op) {
+            case EXPRESSION_TYPE_COMPARE_EQUAL:
+                return (lhs == term.value);
+            case EXPRESSION_TYPE_COMPARE_NOTEQUAL:
+                return (lhs != term.value);
+            case EXPRESSION_TYPE_COMPARE_LESSTHAN:
+                return (lhs < term.value);
+            case EXPRESSION_TYPE_COMPARE_GREATERTHAN:
+                return (lhs > term.value);
+            case EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO:
+                return (lhs <= term.value);
+            case EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO:
+                return (lhs >= term.value);
+            default:
+                return false;
+        }
+    }
+
+    std::vector<Term> m_termsVector;
+    Term *m_terms;
+    int m_numTerms;
+    // Set by bind() when one of the parameters is NULL
+    bool m_alwaysFalse;
+};
+
+}
+
+#endif
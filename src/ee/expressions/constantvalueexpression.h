@@ -81,6 +81,10 @@ class ConstantValueExpression : public AbstractExpression {
           value.debug() + "\n";
     }
 
+    const voltdb::NValue& getValue() const {
+        return this->value;
+    }
+
   protected:
     voltdb::NValue value;
 };
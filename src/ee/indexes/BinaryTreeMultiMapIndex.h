@@ -47,6 +47,8 @@
 #define BINARYTREEMULTIMAPINDEX_H_
 
 #include <map>
+#include <vector>
+#include <algorithm>
 #include <iostream>
 #include "indexes/tableindex.h"
 #include "common/tabletuple.h"
@@ -79,6 +81,29 @@ public:
         return addEntryPrivate(tuple, m_tmp1);
     }
 
+    bool addEntries(TableTuple *tuple, const std::vector<void*> &addresses)
+    {
+        // sort the new entries by their keys first so that each one can be
+        // added next to the previous one instead of searching the whole tree
+        std::vector<std::pair<KeyType, const void*> > entries;
+        entries.reserve(addresses.size());
+        for (size_t i = 0; i < addresses.size(); ++i) {
+            tuple->move(addresses[i]);
+            m_tmp1.setFromTuple(tuple, column_indices_, m_keySchema);
+            entries.push_back(std::pair<KeyType, const void*>(m_tmp1, addresses[i]));
+        }
+        std::stable_sort(entries.begin(), entries.end(),
+                         IndexEntryComparator<KeyType, KeyComparator>(m_entries.key_comp()));
+
+        bool success = true;
+        typename MapType::iterator hint = m_entries.end();
+        for (size_t i = 0; i < entries.size(); ++i) {
+            ++m_inserts;
+            hint = m_entries.insert(hint, entries[i]);
+        }
+        return success;
+    }
+
     bool deleteEntry(const TableTuple *tuple)
     {
         m_tmp1.setFromTuple(tuple, column_indices_, m_keySchema);
@@ -75,6 +75,16 @@ TableIndex::~TableIndex()
     voltdb::TupleSchema::freeTupleSchema(m_keySchema);
 }
 
+bool TableIndex::addEntries(TableTuple *tuple, const std::vector<void*> &addresses)
+{
+    bool success = true;
+    for (size_t i = 0; i < addresses.size(); ++i) {
+        tuple->move(addresses[i]);
+        success = addEntry(tuple) && success;
+    }
+    return success;
+}
+
 std::string TableIndex::debug() const
 {
     std::ostringstream buffer;
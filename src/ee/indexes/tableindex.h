@@ -83,6 +83,24 @@ struct TableIndexScheme {
     TupleSchema *keySchema;
 };
 
+/**
+ * Orders (key, tuple address) pairs by their key so that the tree indexes
+ * can sort a batch of new entries before adding them.
+ */
+template<typename KeyType, class KeyComparator>
+class IndexEntryComparator {
+public:
+    IndexEntryComparator(const KeyComparator &cmp) : m_cmp(cmp) {}
+
+    inline bool operator()(const std::pair<KeyType, const void*> &lhs,
+                           const std::pair<KeyType, const void*> &rhs) const {
+        return m_cmp(lhs.first, rhs.first);
+    }
+
+private:
+    KeyComparator m_cmp;
+};
+
 /**
  * voltdb::TableIndex class represents a secondary index on a table which
  * is currently implemented as a binary tree (std::map) mapping from key value
@@ -122,6 +140,14 @@ public:
      */
     virtual bool addEntry(const TableTuple *tuple) = 0;
 
+    /**
+     * adds an index entry for each of the tuples at the given addresses.
+     * this is used when bulk loading a table, so implementations are free
+     * to reorder the entries to build the index faster. the passed tuple
+     * is used as a cursor. returns false if any entry was not added.
+     */
+    virtual bool addEntries(TableTuple *tuple, const std::vector<void*> &addresses);
+
     /**
      * removes the index entry linked to given value (and tuple
      * pointer, if it's non-unique index).
@@ -53,12 +53,14 @@
 using namespace std;
 using namespace voltdb;
 
-ReceivePlanNode::ReceivePlanNode(CatalogId id) : AbstractPlanNode(id)
+ReceivePlanNode::ReceivePlanNode(CatalogId id)
+  : AbstractPlanNode(id), m_mergeSorted(false), m_combineAggregates(false)
 {
     // Do nothing
 }
 
-ReceivePlanNode::ReceivePlanNode() : AbstractPlanNode()
+ReceivePlanNode::ReceivePlanNode()
+  : AbstractPlanNode(), m_mergeSorted(false), m_combineAggregates(false)
 {
     // Do nothing
 }
@@ -169,6 +171,19 @@ ReceivePlanNode::loadFromJSONObject(json_spirit::Object& obj,
         m_outputColumnTypes.push_back(outputColumn.getType());
         m_outputColumnSizes.push_back(outputColumn.getSize());
     }
+
+    json_spirit::Value mergeSortedValue =
+        json_spirit::find_value(obj, "MERGE_SORTED");
+    if (!(mergeSortedValue == json_spirit::Value::null))
+    {
+        m_mergeSorted = mergeSortedValue.get_bool();
+    }
+    json_spirit::Value combineValue =
+        json_spirit::find_value(obj, "COMBINE_AGGREGATES");
+    if (!(combineValue == json_spirit::Value::null))
+    {
+        m_combineAggregates = combineValue.get_bool();
+    }
 //     fprintf(stderr, "%s\n--------------------------------\n", this->debug(true).c_str());
 }
 
@@ -72,6 +72,18 @@ class ReceivePlanNode : public AbstractPlanNode
     std::vector<int32_t>& getOutputColumnSizes();
     const std::vector<int32_t>& getOutputColumnSizes() const;
 
+    /**
+     * True if every incoming dependency is already sorted by the
+     * ORDER BY directly above this node.
+     */
+    bool isMergeSorted() const { return m_mergeSorted; }
+
+    /**
+     * True if the incoming dependencies are partial aggregates that the
+     * hash aggregate directly above this node will pull in one at a time.
+     */
+    bool isCombineAggregates() const { return m_combineAggregates; }
+
     std::string debugInfo(const std::string& spacer) const;
 
     virtual int getColumnIndexFromGuid(int guid,
@@ -93,6 +105,9 @@ protected:
     std::vector<std::string> m_outputColumnNames;
     std::vector<ValueType> m_outputColumnTypes;
     std::vector<int32_t> m_outputColumnSizes;
+
+    bool m_mergeSorted;
+    bool m_combineAggregates;
 };
 
 }
@@ -689,13 +689,17 @@ void PersistentTable::processLoadedTuple(bool allowELT, TableTuple &tuple) {
  * to do add tuples to indexes
  */
 void PersistentTable::populateIndexes(int tupleCount) {
-    // populate indexes. walk the contiguous memory in the inner loop.
+    if (m_indexCount == 0) return;
+
+    // populate indexes. collect the addresses of the new tuples once and
+    // let each index add them all at once so that it can sort them first.
+    std::vector<void*> addresses;
+    addresses.reserve(tupleCount);
+    for (int j = 0; j < tupleCount; ++j) {
+        addresses.push_back(dataPtrForTuple((int) m_usedTuples + j));
+    }
     for (int i = m_indexCount - 1; i >= 0;--i) {
-        TableIndex *index = m_indexes[i];
-        for (int j = 0; j < tupleCount; ++j) {
-            m_tmpTarget1.move(dataPtrForTuple((int) m_usedTuples + j));
-            index->addEntry(&m_tmpTarget1);
-        }
+        m_indexes[i]->addEntries(&m_tmpTarget1, addresses);
     }
 }
 
@@ -765,6 +765,109 @@ SHAREDLIB_JNIEXPORT jint JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeExecu
     return org_voltdb_jni_ExecutionEngine_ERRORCODE_ERROR;
 }
 
+/**
+ * Executes the query plan fragments for multiple single-partition transactions
+ * in a single call. Each transaction's fragments are executed in their own undo
+ * quantum so that they can still be committed or rolled back separately.
+ * The results for each transaction are written one after another into the
+ * result buffer using the same layout as nativeExecuteQueryPlanFragmentsAndGetResults.
+ * If a fragment fails, then execution stops and the undo quanta for that
+ * transaction and the ones before it are left for the caller to clean up.
+ * @param engine_ptr the VoltDBEngine pointer
+ * @param num_batches the number of transactions
+ * @param batch_sizes the number of fragments for each transaction
+ * @param plan_fragment_ids the fragment ids of all of the transactions
+ * @param txnIds the transaction id for each batch
+ * @param undoTokens the undo token for each batch
+ * @return error code
+ */
+SHAREDLIB_JNIEXPORT jint JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeExecuteQueryPlanFragmentBatches
+(JNIEnv *env,
+        jobject obj,
+        jlong engine_ptr,
+        jint num_batches,
+        jintArray batch_sizes,
+        jlongArray plan_fragment_ids,
+        jintArray input_depIds,
+        jintArray output_depIds,
+        jlongArray txnIds,
+        jlong lastCommittedTxnId,
+        jlongArray undoTokens) {
+    //VOLT_DEBUG("nativeExecuteQueryPlanFragmentBatches() start");
+
+    // setup
+    VoltDBEngine *engine = castToEngine(engine_ptr);
+    assert(engine);
+    Topend *topend = static_cast<JNITopend*>(engine->getTopend())->updateJNIEnv(env);
+    try {
+        updateJNILogProxy(engine); //JNIEnv pointer can change between calls, must be updated
+        engine->resetReusedResultOutputBuffer();
+        Pool *stringPool = engine->getStringPool();
+
+        // per-transaction info
+        jint *batch_sizes_buffer = env->GetIntArrayElements(batch_sizes, NULL);
+        jlong *txnIds_buffer = env->GetLongArrayElements(txnIds, NULL);
+        jlong *undoTokens_buffer = env->GetLongArrayElements(undoTokens, NULL);
+
+        jlong* fragment_ids_buffer = engine->getBatchFragmentIdsContainer();
+        jint* input_depIds_buffer = engine->getBatchInputDepIdsContainer();
+        jint* output_depIds_buffer = engine->getBatchOutputDepIdsContainer();
+
+        // all fragments' parameters are in this buffer
+        ReferenceSerializeInput serialize_in(engine->getParameterBuffer(), engine->getParameterBufferCapacity());
+        NValueArray &params = engine->getParameterContainer();
+
+        int failures = 0;
+        int offset = 0;
+        for (int b = 0; b < num_batches && failures == 0; ++b) {
+            int batch_size = batch_sizes_buffer[b];
+            assert (batch_size <= MAX_BATCH_COUNT);
+            env->GetLongArrayRegion(plan_fragment_ids, offset, batch_size, fragment_ids_buffer);
+            env->GetIntArrayRegion(input_depIds, offset, batch_size, input_depIds_buffer);
+            env->GetIntArrayRegion(output_depIds, offset, batch_size, output_depIds_buffer);
+            offset += batch_size;
+
+            // Each txn gets its own undo quantum
+            engine->setUndoToken(undoTokens_buffer[b]);
+
+            for (int i = 0; i < batch_size; ++i) {
+                int cnt = serialize_in.readShort();
+                if (cnt < 0) {
+                    throwFatalException("parameter count is negative: %d", cnt);
+                }
+                assert (cnt < MAX_PARAM_COUNT);
+                deserializeParameterSetCommon(cnt, serialize_in, params, stringPool);
+
+                engine->setUsedParamcnt(cnt);
+                // success is 0 and error is 1.
+                if (engine->executeQuery(fragment_ids_buffer[i],
+                                         output_depIds_buffer[i],
+                                         input_depIds_buffer[i],
+                                         params, txnIds_buffer[b], lastCommittedTxnId, i == 0,
+                                         i == (batch_size - 1)))
+                {
+                    ++failures;
+                    break;
+                }
+            }
+        }
+
+        // cleanup
+        env->ReleaseIntArrayElements(batch_sizes, batch_sizes_buffer, JNI_ABORT);
+        env->ReleaseLongArrayElements(txnIds, txnIds_buffer, JNI_ABORT);
+        env->ReleaseLongArrayElements(undoTokens, undoTokens_buffer, JNI_ABORT);
+        stringPool->purge();
+
+        if (failures > 0)
+            return org_voltdb_jni_ExecutionEngine_ERRORCODE_ERROR;
+        else
+            return org_voltdb_jni_ExecutionEngine_ERRORCODE_SUCCESS;
+    } catch (FatalException e) {
+        topend->crashVoltDB(e);
+    }
+    return org_voltdb_jni_ExecutionEngine_ERRORCODE_ERROR;
+}
+
 /**
  * Serialize the result temporary table.
  * @param engine_ptr the VoltDBEngine pointer
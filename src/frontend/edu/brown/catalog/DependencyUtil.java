@@ -32,6 +32,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.voltdb.catalog.Column;
 import org.voltdb.catalog.Database;
@@ -72,7 +73,7 @@ public class DependencyUtil {
      */
     private final Map<String, Set<String>> column_descendants = new HashMap<String, Set<String>>();
 
-    private static final Map<Database, DependencyUtil> singletons = new HashMap<Database, DependencyUtil>();
+    private static final Map<Database, DependencyUtil> singletons = new ConcurrentHashMap<Database, DependencyUtil>();
 
     /**
      * Return a singleton instance for the given catalog
@@ -1,7 +1,7 @@
 package edu.brown.catalog.special;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.voltdb.catalog.Catalog;
 import org.voltdb.catalog.CatalogType;
@@ -16,7 +16,7 @@ import org.voltdb.catalog.Procedure;
 public class NullProcParameter extends SpecialProcParameter {
     public static final int PARAM_IDX = -1;
     public static final String PARAM_NAME = "*NULL*";
-    private static final Map<Procedure, NullProcParameter> SINGLETONS = new HashMap<Procedure, NullProcParameter>();
+    private static final Map<Procedure, NullProcParameter> SINGLETONS = new ConcurrentHashMap<Procedure, NullProcParameter>();
 
     private final Procedure parent;
 
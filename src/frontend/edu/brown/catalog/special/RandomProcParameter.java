@@ -1,8 +1,8 @@
 package edu.brown.catalog.special;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.voltdb.catalog.Catalog;
 import org.voltdb.catalog.CatalogType;
@@ -17,7 +17,7 @@ import org.voltdb.catalog.Procedure;
 public class RandomProcParameter extends SpecialProcParameter {
     public static final int PARAM_IDX = -2;
     public static final String PARAM_NAME = "*RANDOM*";
-    private static final Map<Procedure, RandomProcParameter> SINGLETONS = new HashMap<Procedure, RandomProcParameter>();
+    private static final Map<Procedure, RandomProcParameter> SINGLETONS = new ConcurrentHashMap<Procedure, RandomProcParameter>();
 
     // HACK
     public static final Random rand = new Random();
@@ -1,7 +1,7 @@
 package edu.brown.catalog.special;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.voltdb.catalog.Catalog;
 import org.voltdb.catalog.CatalogType;
@@ -16,7 +16,7 @@ import org.voltdb.catalog.Table;
  */
 public class ReplicatedColumn extends Column {
     public static final String COLUMN_NAME = "*REPLICATED*";
-    private static final Map<Table, ReplicatedColumn> SINGLETONS = new HashMap<Table, ReplicatedColumn>();
+    private static final Map<Table, ReplicatedColumn> SINGLETONS = new ConcurrentHashMap<Table, ReplicatedColumn>();
 
     private final Table parent;
 
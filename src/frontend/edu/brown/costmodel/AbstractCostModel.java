@@ -47,6 +47,7 @@ import edu.brown.designer.DesignerHints;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.statistics.Histogram;
+import edu.brown.utils.ClassUtil;
 import edu.brown.utils.PartitionEstimator;
 import edu.brown.utils.StringUtil;
 import edu.brown.workload.TransactionTrace;
@@ -80,6 +81,13 @@ public abstract class AbstractCostModel {
     /** Caching Parameter */
     protected boolean use_caching = true;
 
+    /**
+     * Incremental Re-Costing Parameter
+     * If caching is enabled, then an unfiltered estimate will only re-evaluate
+     * the txns that were touched by invalidateCache() since the last full pass
+     */
+    protected boolean use_incremental = true;
+
     /** Enable Execution Calculation (if supported) */
     protected boolean use_execution = true;
 
@@ -240,8 +248,21 @@ public abstract class AbstractCostModel {
     // BASE METHODS
     // ----------------------------------------------------------------------------
 
+    /**
+     * Create a new cost model of the same type that works against the given
+     * catalog. Nothing is shared between the two instances, so each search
+     * thread can have its own copy.
+     * 
+     * @param catalog_db
+     * @return
+     */
+    public AbstractCostModel newInstance(Database catalog_db) {
+        return (ClassUtil.newInstance(this.child_class, new Object[] { catalog_db }, new Class<?>[] { Database.class }));
+    }
+
     public void applyDesignerHints(DesignerHints hints) {
         this.setCachingEnabled(hints.enable_costmodel_caching);
+        this.setIncrementalEnabled(hints.enable_costmodel_incremental);
 
         this.setEntropyEnabled(hints.enable_costmodel_skew);
         this.setEntropyWeight(hints.weight_costmodel_skew);
@@ -317,6 +338,19 @@ public abstract class AbstractCostModel {
         this.use_caching = caching;
     }
 
+    public boolean isIncrementalEnabled() {
+        return use_incremental;
+    }
+
+    /**
+     * @param incremental
+     */
+    public void setIncrementalEnabled(boolean incremental) {
+        if (debug.get())
+            LOG.debug("Cost Model Incremental Estimates: " + (incremental ? "ENABLED" : "DISABLED"));
+        this.use_incremental = incremental;
+    }
+
     public void enableTransactionWeights(boolean val) {
         if (debug.get())
             LOG.debug("Transaction Weight Support: " + (val ? "ENABLED" : "DISABLED"));
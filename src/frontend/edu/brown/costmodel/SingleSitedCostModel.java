@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -115,6 +116,22 @@ public class SingleSitedCostModel extends AbstractCostModel {
 
     private final Set<Long> last_invalidateTxns = new HashSet<Long>();
 
+    /**
+     * TransactionTrace Ids whose TransactionCacheEntry was modified by
+     * invalidateCache() since they were last costed. The xref maps above are
+     * the inverted index from catalog items to txns, so this is exactly the
+     * set of txns affected by the design changes since the last estimate.
+     */
+    private final Set<Long> dirty_txns = new HashSet<Long>();
+
+    /**
+     * TransactionTrace Id -> The cost that the txn added to incremental_total
+     * This is only valid for incremental_workload
+     */
+    private final Map<Long, Double> incremental_costs = new HashMap<Long, Double>();
+    private Workload incremental_workload = null;
+    private double incremental_total = 0.0d;
+
     /**
      * Cost Estimate Explanation
      */
@@ -459,6 +476,7 @@ public class SingleSitedCostModel extends AbstractCostModel {
 
         this.txn_entries.clear();
         this.last_invalidateTxns.clear();
+        this.resetIncremental();
 
         for (Collection<QueryCacheEntry> c : this.cache_tableXref.values()) {
             c.clear();
@@ -476,6 +494,20 @@ public class SingleSitedCostModel extends AbstractCostModel {
         assert (this.histogram_query_partitions.getValueCount() == 0);
     }
 
+    @Override
+    public void setCachingEnabled(boolean caching) {
+        super.setCachingEnabled(caching);
+        if (caching == false)
+            this.resetIncremental();
+    }
+
+    @Override
+    public void setIncrementalEnabled(boolean incremental) {
+        super.setIncrementalEnabled(incremental);
+        if (incremental == false)
+            this.resetIncremental();
+    }
+
     public int getWeightedTransactionCount() {
         int ctr = 0;
         for (TransactionCacheEntry txn_entry : this.txn_entries.values()) {
@@ -550,6 +582,25 @@ public class SingleSitedCostModel extends AbstractCostModel {
         return (this.last_invalidateTxns);
     }
 
+    /**
+     * Return the ids of the txns that were modified by invalidateCache() since
+     * the last time that they were re-costed
+     */
+    protected Collection<Long> getDirtyTransactionIds() {
+        return (this.dirty_txns);
+    }
+
+    /**
+     * Drop all of our incremental estimate state. The next call to
+     * estimateWorkloadCost() will make a full pass over the workload.
+     */
+    private void resetIncremental() {
+        this.dirty_txns.clear();
+        this.incremental_costs.clear();
+        this.incremental_workload = null;
+        this.incremental_total = 0.0d;
+    }
+
     /**
      * Invalidate a single QueryCacheEntry Returns true if the query's
      * TransactionCacheEntry parent needs to be invalidated as well
@@ -786,6 +837,7 @@ public class SingleSitedCostModel extends AbstractCostModel {
             // Then disable zero entries from the histogram so that our counts
             // don't get screwed up
             txn_entry.touched_partitions.setKeepZeroEntries(false);
+            this.dirty_txns.add(txn_entry.getTransactionId());
 
             // Then check whether we're still considered multi-partition
             boolean new_singlesited = (txn_entry.multisite_queries == 0);
@@ -841,6 +893,59 @@ public class SingleSitedCostModel extends AbstractCostModel {
     // ESTIMATION METHODS
     // --------------------------------------------------------------------------------------------
 
+    /**
+     * If the last full pass was over the same workload without a filter, then
+     * we only need to re-cost the txns that were invalidated since then. The
+     * cost of every other txn can't have changed, so we just swap out the old
+     * costs of the dirty txns from the running total. Otherwise we fall back
+     * to a full pass and remember each txn's cost for the next round.
+     */
+    @Override
+    protected double estimateWorkloadCostImpl(Database catalog_db, Workload workload, Filter filter, Double upper_bound) throws Exception {
+        if (this.use_caching && this.use_incremental && filter == null && this.incremental_workload == workload &&
+            this.incremental_costs.size() == workload.getTransactionCount()) {
+            if (debug.get())
+                LOG.debug(String.format("Incrementally re-costing %d / %d txns", this.dirty_txns.size(), this.incremental_costs.size()));
+            for (Long txn_id : this.dirty_txns) {
+                Double orig_cost = this.incremental_costs.get(txn_id);
+                if (orig_cost == null)
+                    continue;
+                TransactionTrace txn_trace = workload.getTransaction(txn_id);
+                assert (txn_trace != null) : "Missing TransactionTrace #" + txn_id;
+                double cost = this.estimateTransactionCost(catalog_db, workload, filter, txn_trace);
+                this.incremental_total += (cost - orig_cost.doubleValue());
+                this.incremental_costs.put(txn_id, cost);
+            } // FOR
+            this.dirty_txns.clear();
+            return (this.incremental_total);
+        }
+
+        this.resetIncremental();
+        boolean complete = true;
+        double cost = 0.0d;
+        Iterator<TransactionTrace> it = workload.iterator(filter);
+        while (it.hasNext()) {
+            TransactionTrace txn_trace = it.next();
+            double txn_cost = this.estimateTransactionCost(catalog_db, workload, filter, txn_trace);
+            this.incremental_costs.put(txn_trace.getTransactionId(), txn_cost);
+            cost += txn_cost;
+            if (upper_bound != null && cost > upper_bound.doubleValue()) {
+                if (debug.get())
+                    LOG.debug("Exceeded upper bound. Halting estimation early!");
+                complete = false;
+                break;
+            }
+        } // WHILE
+        this.dirty_txns.clear();
+        if (complete && filter == null && this.use_caching && this.use_incremental) {
+            this.incremental_workload = workload;
+            this.incremental_total = cost;
+        } else {
+            this.incremental_costs.clear();
+        }
+        return (cost);
+    }
+
     private final Map<String, Set<Integer>> temp_stmtPartitions = new HashMap<String, Set<Integer>>();
     private final Set<Integer> temp_txnOrigPartitions = new HashSet<Integer>();
     private final Set<Integer> temp_txnNewPartitions = new HashSet<Integer>();
@@ -10,8 +10,10 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.collections15.map.ListOrderedMap;
@@ -125,6 +127,21 @@ public class TimeIntervalCostModel<T extends AbstractCostModel> extends Abstract
     final ArrayList<Double> tmp_penalties = new ArrayList<Double>();
     final ArrayList<Long> tmp_potential = new ArrayList<Long>();
 
+    /**
+     * TransactionTrace Id -> What that txn added to the interval counters
+     * during the last estimate. If the last full pass was over the whole
+     * workload, then we can back out the contributions of just the txns that
+     * the inner cost models invalidated and re-cost them instead of making
+     * another pass over everything.
+     */
+    final Map<Long, TxnContribution> incremental_txns = new ConcurrentHashMap<Long, TxnContribution>();
+    private Workload incremental_workload = null;
+
+    /** The procedure histograms that match incremental_txns */
+    final Histogram<String> incremental_procs = new Histogram<String>();
+    final Histogram<String> incremental_sp_procs = new Histogram<String>();
+    final Histogram<String> incremental_mp_procs = new Histogram<String>();
+
     /** Temporary mapping from intervals to Consumers */
     final Map<Integer, Consumer<Pair<TransactionTrace, Integer>>> tmp_consumers = new HashMap<Integer, Consumer<Pair<TransactionTrace, Integer>>>();
 
@@ -211,6 +228,7 @@ public class TimeIntervalCostModel<T extends AbstractCostModel> extends Abstract
             for (int i = 0; i < this.num_intervals; i++) {
                 this.cost_models[i].clear(force);
             } // FOR
+            this.resetIncremental();
         }
         tmp_penalties.clear();
         tmp_potential.clear();
@@ -225,6 +243,27 @@ public class TimeIntervalCostModel<T extends AbstractCostModel> extends Abstract
             this.cost_models[i].setCachingEnabled(useCaching);
         } // FOR
         assert (this.use_caching == useCaching);
+        if (useCaching == false)
+            this.resetIncremental();
+    }
+
+    @Override
+    public void setIncrementalEnabled(boolean incremental) {
+        super.setIncrementalEnabled(incremental);
+        if (incremental == false)
+            this.resetIncremental();
+    }
+
+    private void resetIncremental() {
+        this.incremental_txns.clear();
+        this.incremental_workload = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public AbstractCostModel newInstance(Database catalog_db) {
+        Class<? extends T> inner_class = (Class<? extends T>) this.cost_models[0].getClass();
+        return (new TimeIntervalCostModel<T>(catalog_db, inner_class, this.num_intervals));
     }
 
     /**
@@ -292,73 +331,24 @@ public class TimeIntervalCostModel<T extends AbstractCostModel> extends Abstract
         // (1) Grab the costs at the different time intervals
         // Also create the ratios that we will use to weight the interval costs
         final AtomicLong total_txns = new AtomicLong(0);
+        final boolean incremental = (this.use_caching && this.use_incremental && filter == null && this.incremental_workload == workload &&
+                                     this.incremental_txns.size() == workload.getTransactionCount());
 
-        // final HashSet<Long> trace_ids[] = new HashSet[num_intervals];
-        for (int i = 0; i < num_intervals; i++) {
-            total_interval_txns[i] = 0;
-            total_interval_queries[i] = 0;
-            singlepartition_ctrs[i] = 0;
-            singlepartition_with_partitions_ctrs[i] = 0;
-            multipartition_ctrs[i] = 0;
-            partitions_touched[i] = 0;
-            incomplete_txn_ctrs[i] = 0;
-            exec_mismatch_ctrs[i] = 0;
-            incomplete_txn_histogram[i].clear();
-            missing_txn_histogram[i].clear();
-            exec_histogram[i].clear();
-        } // FOR
-
-        // (2) Now go through the workload and estimate the partitions that each
-        // txn will touch
-        // for the given catalog setups
-        if (trace.get()) {
-            LOG.trace("Total # of Txns in Workload: " + workload.getTransactionCount());
-            if (filter != null)
-                LOG.trace("Workload Filter Chain:       " + StringUtil.join("   ", "\n", filter.getFilters()));
-        }
-
-        // QUEUING THREAD
-        tmp_consumers.clear();
-        Producer<TransactionTrace, Pair<TransactionTrace, Integer>> producer = new Producer<TransactionTrace, Pair<TransactionTrace, Integer>>(CollectionUtil.iterable(workload.iterator(filter))) {
-            @Override
-            public Pair<Consumer<Pair<TransactionTrace, Integer>>, Pair<TransactionTrace, Integer>> transform(TransactionTrace txn_trace) {
-                int i = workload.getTimeInterval(txn_trace, num_intervals);
-                assert (i >= 0) : "Invalid time interval '" + i + "'\n" + txn_trace.debug(catalog_db);
-                assert (i < num_intervals) : "Invalid interval: " + i + "\n" + txn_trace.debug(catalog_db);
-                total_txns.incrementAndGet();
-                Pair<TransactionTrace, Integer> p = Pair.of(txn_trace, i);
-                return (Pair.of(tmp_consumers.get(i), p));
-            }
-        };
-
-        // PROCESSING THREADS
-        final int num_threads = ThreadUtil.getMaxGlobalThreads();
-        int interval_ctr = 0;
-        for (int thread = 0; thread < num_threads; thread++) {
-            // First create a new IntervalProcessor/Consumer
-            IntervalProcessor ip = new IntervalProcessor(catalog_db, workload, filter);
-
-            // Then assign it to some number of intervals
-            for (int i = 0, cnt = (int) Math.ceil(num_intervals / (double) num_threads); i < cnt; i++) {
-                if (interval_ctr > num_intervals)
-                    break;
-                tmp_consumers.put(interval_ctr++, ip);
-                if (trace.get())
-                    LOG.trace(String.format("Interval #%02d => IntervalProcessor #%02d", interval_ctr - 1, thread));
-            } // FOR
-
-            // And make sure that we queue it up too
-            producer.addConsumer(ip);
-        } // FOR (threads)
-
-        ThreadUtil.runGlobalPool(producer.getRunnablesList()); // BLOCKING
-        if (debug.get()) {
-            int processed = 0;
-            for (Consumer<?> c : producer.getConsumers()) {
-                processed += c.getProcessedCounter();
+        if (incremental) {
+            // The missing txn histograms are rebuilt from scratch down below, so
+            // we need to back them out of the exec histograms that we are keeping
+            for (int i = 0; i < num_intervals; i++) {
+                exec_histogram[i].removeHistogram(missing_txn_histogram[i]);
+                missing_txn_histogram[i].clear();
             } // FOR
-            assert (total_txns.get() == processed) : String.format("Expected[%d] != Processed[%d]", total_txns.get(), processed);
+            this.estimateIncremental(catalog_db, workload);
+            total_txns.set(this.incremental_txns.size());
+        } else {
+            this.estimateFullPass(catalog_db, workload, filter, total_txns);
         }
+        this.histogram_procs.putHistogram(this.incremental_procs);
+        this.histogram_sp_procs.putHistogram(this.incremental_sp_procs);
+        this.histogram_mp_procs.putHistogram(this.incremental_mp_procs);
 
         // We have to convert all of the costs into the range of [0.0, 1.0]
         // For each interval, divide the number of partitions touched by the
@@ -613,12 +603,287 @@ public class TimeIntervalCostModel<T extends AbstractCostModel> extends Abstract
         return (MathUtil.roundToDecimals(this.last_final_cost, 5));
     }
 
+    /**
+     * Re-cost only the txns that the inner cost models invalidated since the
+     * last estimate. We back out what each of them added to the interval
+     * counters and then add in their new contributions.
+     */
+    private void estimateIncremental(final Database catalog_db, final Workload workload) throws Exception {
+        int ctr = 0;
+        for (int i = 0; i < num_intervals; i++) {
+            SingleSitedCostModel singlesited_cost_model = (SingleSitedCostModel) cost_models[i];
+            Collection<Long> dirty = singlesited_cost_model.getDirtyTransactionIds();
+            if (dirty.isEmpty())
+                continue;
+            List<Long> txn_ids = new ArrayList<Long>(dirty);
+            dirty.clear();
+            for (Long txn_id : txn_ids) {
+                TxnContribution orig = this.incremental_txns.get(txn_id);
+                if (orig == null)
+                    continue;
+                this.applyContribution(orig, -1);
+                TransactionTrace txn_trace = workload.getTransaction(txn_id);
+                assert (txn_trace != null) : "Missing TransactionTrace #" + txn_id;
+                TxnContribution c = this.estimateContribution(catalog_db, workload, null, txn_trace, orig.interval);
+                this.applyContribution(c, 1);
+                this.incremental_txns.put(txn_id, c);
+                ctr++;
+            } // FOR
+        } // FOR
+        if (debug.get())
+            LOG.debug(String.format("Incrementally re-costed %d / %d txns", ctr, this.incremental_txns.size()));
+    }
+
+    /**
+     * Reset the interval counters and then estimate the partitions that each
+     * txn in the workload will touch for the given catalog setup
+     */
+    private void estimateFullPass(final Database catalog_db, final Workload workload, final Filter filter, final AtomicLong total_txns) throws Exception {
+        // final HashSet<Long> trace_ids[] = new HashSet[num_intervals];
+        for (int i = 0; i < num_intervals; i++) {
+            total_interval_txns[i] = 0;
+            total_interval_queries[i] = 0;
+            singlepartition_ctrs[i] = 0;
+            singlepartition_with_partitions_ctrs[i] = 0;
+            multipartition_ctrs[i] = 0;
+            partitions_touched[i] = 0;
+            incomplete_txn_ctrs[i] = 0;
+            exec_mismatch_ctrs[i] = 0;
+            incomplete_txn_histogram[i].clear();
+            missing_txn_histogram[i].clear();
+            exec_histogram[i].clear();
+            if (this.use_caching)
+                ((SingleSitedCostModel) cost_models[i]).getDirtyTransactionIds().clear();
+        } // FOR
+        this.incremental_txns.clear();
+        this.incremental_workload = null;
+        this.incremental_procs.clear();
+        this.incremental_sp_procs.clear();
+        this.incremental_mp_procs.clear();
+
+        // (2) Now go through the workload and estimate the partitions that each
+        // txn will touch
+        // for the given catalog setups
+        if (trace.get()) {
+            LOG.trace("Total # of Txns in Workload: " + workload.getTransactionCount());
+            if (filter != null)
+                LOG.trace("Workload Filter Chain:       " + StringUtil.join("   ", "\n", filter.getFilters()));
+        }
+
+        // QUEUING THREAD
+        tmp_consumers.clear();
+        Producer<TransactionTrace, Pair<TransactionTrace, Integer>> producer = new Producer<TransactionTrace, Pair<TransactionTrace, Integer>>(CollectionUtil.iterable(workload.iterator(filter))) {
+            @Override
+            public Pair<Consumer<Pair<TransactionTrace, Integer>>, Pair<TransactionTrace, Integer>> transform(TransactionTrace txn_trace) {
+                int i = workload.getTimeInterval(txn_trace, num_intervals);
+                assert (i >= 0) : "Invalid time interval '" + i + "'\n" + txn_trace.debug(catalog_db);
+                assert (i < num_intervals) : "Invalid interval: " + i + "\n" + txn_trace.debug(catalog_db);
+                total_txns.incrementAndGet();
+                Pair<TransactionTrace, Integer> p = Pair.of(txn_trace, i);
+                return (Pair.of(tmp_consumers.get(i), p));
+            }
+        };
+
+        // PROCESSING THREADS
+        final int num_threads = ThreadUtil.getMaxGlobalThreads();
+        int interval_ctr = 0;
+        for (int thread = 0; thread < num_threads; thread++) {
+            // First create a new IntervalProcessor/Consumer
+            IntervalProcessor ip = new IntervalProcessor(catalog_db, workload, filter);
+
+            // Then assign it to some number of intervals
+            for (int i = 0, cnt = (int) Math.ceil(num_intervals / (double) num_threads); i < cnt; i++) {
+                if (interval_ctr > num_intervals)
+                    break;
+                tmp_consumers.put(interval_ctr++, ip);
+                if (trace.get())
+                    LOG.trace(String.format("Interval #%02d => IntervalProcessor #%02d", interval_ctr - 1, thread));
+            } // FOR
+
+            // And make sure that we queue it up too
+            producer.addConsumer(ip);
+        } // FOR (threads)
+
+        ThreadUtil.runGlobalPool(producer.getRunnablesList()); // BLOCKING
+        if (debug.get()) {
+            int processed = 0;
+            for (Consumer<?> c : producer.getConsumers()) {
+                processed += c.getProcessedCounter();
+            } // FOR
+            assert (total_txns.get() == processed) : String.format("Expected[%d] != Processed[%d]", total_txns.get(), processed);
+        }
+
+        // We can only re-cost incrementally next time if we saw every txn
+        if (filter == null && this.use_caching && this.use_incremental) {
+            this.incremental_workload = workload;
+        } else {
+            this.incremental_txns.clear();
+        }
+    }
+
+    /**
+     * What a single txn added to the counters of its time interval
+     */
+    private static class TxnContribution {
+        final int interval;
+        final int weight;
+        final int queries;
+        final String proc_key;
+        boolean singlepartition;
+        boolean with_partitions;
+        boolean exec_mismatch;
+        int partitions_touched;
+        Integer base_partition;
+        Collection<Integer> missing_partitions;
+
+        TxnContribution(int interval, int weight, int queries, String proc_key) {
+            this.interval = interval;
+            this.weight = weight;
+            this.queries = queries;
+            this.proc_key = proc_key;
+        }
+    }
+
+    /**
+     * Add (sign=1) or remove (sign=-1) a txn's contribution to the counters of
+     * its time interval. Each interval is only ever updated by one thread.
+     */
+    private void applyContribution(TxnContribution c, int sign) {
+        final int i = c.interval;
+        final int w = sign * c.weight;
+
+        total_interval_txns[i] += w;
+        total_interval_queries[i] += (c.queries * w);
+        this.incremental_procs.put(c.proc_key, w);
+        if (c.singlepartition) {
+            singlepartition_ctrs[i] += w;
+            if (c.with_partitions)
+                singlepartition_with_partitions_ctrs[i] += w;
+            this.incremental_sp_procs.put(c.proc_key, w);
+        } else {
+            if (c.exec_mismatch)
+                exec_mismatch_ctrs[i] += w;
+            partitions_touched[i] += (c.partitions_touched * w);
+            multipartition_ctrs[i] += w;
+            this.incremental_mp_procs.put(c.proc_key, w);
+        }
+        if (c.base_partition != null) {
+            exec_histogram[i].put(c.base_partition, w);
+        } else {
+            exec_histogram[i].putAll(all_partitions, w);
+        }
+        if (c.missing_partitions != null) {
+            incomplete_txn_ctrs[i] += w;
+            incomplete_txn_histogram[i].putAll(c.missing_partitions, w);
+        }
+    }
+
+    /**
+     * Estimate the cost of the txn using the interval's inner cost model and
+     * then figure out what it adds to that interval's counters
+     */
+    private TxnContribution estimateContribution(final Database catalog_db, final Workload workload, final Filter filter, final TransactionTrace txn_trace, final int i) {
+        final int txn_weight = (use_txn_weights ? txn_trace.getWeight() : 1);
+        final String proc_key = CatalogKey.createKey(CatalogUtil.DEFAULT_DATABASE_NAME, txn_trace.getCatalogItemName());
+        final TxnContribution c = new TxnContribution(i, txn_weight, txn_trace.getQueryCount(), proc_key);
+
+        // Terrible Hack: Assume that we are using the SingleSitedCostModel
+        // and that
+        // it will return fixed values based on whether the txn is
+        // single-partitioned or not
+        SingleSitedCostModel singlesited_cost_model = (SingleSitedCostModel) cost_models[i];
+
+        try {
+            singlesited_cost_model.estimateTransactionCost(catalog_db, workload, filter, txn_trace);
+            TransactionCacheEntry txn_entry = singlesited_cost_model.getTransactionCacheEntry(txn_trace);
+            assert (txn_entry != null) : "No txn entry for " + txn_trace;
+            Collection<Integer> partitions = txn_entry.getTouchedPartitions();
+
+            // If the txn runs on only one partition, then the cost is
+            // nothing
+            if (txn_entry.isSinglePartitioned()) {
+                c.singlepartition = true;
+                if (!partitions.isEmpty()) {
+                    assert (txn_entry.getAllTouchedPartitionsHistogram().getValueCount() == 1) : txn_entry + " says it was single-partitioned but the partition count says otherwise:\n"
+                            + txn_entry.debug();
+                    c.with_partitions = true;
+                }
+
+                // If the txn runs on multiple partitions, then the cost
+                // is...
+                // XXX 2010-06-28: The number of partitions that the txn
+                // touches divided by the total number of partitions
+                // XXX 2010-07-02: The histogram for the total number of
+                // partitions touched by all of the queries
+                // in the transaction. This ensures that txns with just one
+                // multi-partition query
+                // isn't weighted the same as a txn with many
+                // multi-partition queries
+            } else {
+                assert (!partitions.isEmpty()) : "No touched partitions for " + txn_trace;
+                if (partitions.size() == 1 && txn_entry.getExecutionPartition() != null) {
+                    assert (CollectionUtil.first(partitions) != txn_entry.getExecutionPartition()) : txn_entry.debug();
+                    c.exec_mismatch = true;
+                    c.partitions_touched += 1;
+                } else {
+                    assert (partitions.size() > 1) : String.format("%s is not marked as single-partition but it only touches one partition\n%s", txn_trace, txn_entry.debug());
+                }
+                c.partitions_touched += partitions.size(); // Txns
+            }
+            c.base_partition = txn_entry.getExecutionPartition();
+            if (debug.get()) { // &&
+                               // txn_trace.getCatalogItemName().equalsIgnoreCase("DeleteCallForwarding"))
+                               // {
+                Procedure catalog_proc = txn_trace.getCatalogItem(catalog_db);
+                Map<String, Object> inner = new ListOrderedMap<String, Object>();
+                for (Statement catalog_stmt : catalog_proc.getStatements()) {
+                    inner.put(catalog_stmt.fullName(), CatalogUtil.getReferencedTables(catalog_stmt));
+                }
+
+                Map<String, Object> m = new ListOrderedMap<String, Object>();
+                m.put(txn_trace.toString(), null);
+                m.put("Interval", i);
+                m.put("Single-Partition", txn_entry.isSinglePartitioned());
+                m.put("Base Partition", c.base_partition);
+                m.put("Touched Partitions", partitions);
+                m.put(catalog_proc.fullName(), inner);
+                LOG.debug(StringUtil.formatMaps(m));
+            }
+
+            // We need to keep a count of the number txns that didn't have
+            // all of its queries estimated
+            // completely so that we can update the access histograms down
+            // below for entropy calculations
+            // Note that this is at the txn level, not the query level.
+            if (!txn_entry.isComplete()) {
+                Set<Integer> missing = new HashSet<Integer>(all_partitions);
+                missing.removeAll(txn_entry.getTouchedPartitions());
+                // Update the histogram for this interval to keep track of
+                // how many times we need to
+                // increase the partition access histogram
+                c.missing_partitions = missing;
+                if (trace.get()) {
+                    Map<String, Object> m = new ListOrderedMap<String, Object>();
+                    m.put(String.format("Marking %s as incomplete in interval #%d", txn_trace, i), null);
+                    m.put("Examined Queries", txn_entry.getExaminedQueryCount());
+                    m.put("Total Queries", txn_entry.getTotalQueryCount());
+                    m.put("Touched Partitions", txn_entry.getTouchedPartitions());
+                    m.put("Missing Partitions", missing);
+                    LOG.trace(StringUtil.formatMaps(m));
+                }
+            }
+        } catch (Exception ex) {
+            CatalogUtil.saveCatalog(catalog_db.getCatalog(), CatalogUtil.CATALOG_FILENAME);
+            throw new RuntimeException("Failed to estimate cost for " + txn_trace.getCatalogItemName() + " at interval " + i, ex);
+        }
+        return (c);
+    }
+
     /**
      * 
      */
     private class IntervalProcessor extends Consumer<Pair<TransactionTrace, Integer>> {
 
-        final Set<Integer> tmp_missingPartitions = new HashSet<Integer>();
         final Database catalog_db;
         final Workload workload;
         final Filter filter;
@@ -634,112 +899,9 @@ public class TimeIntervalCostModel<T extends AbstractCostModel> extends Abstract
             assert (p != null);
             final TransactionTrace txn_trace = p.getFirst();
             final int i = p.getSecond(); // Interval
-            final int txn_weight = (use_txn_weights ? txn_trace.getWeight() : 1);
-            final String proc_key = CatalogKey.createKey(CatalogUtil.DEFAULT_DATABASE_NAME, txn_trace.getCatalogItemName());
-
-            // Terrible Hack: Assume that we are using the SingleSitedCostModel
-            // and that
-            // it will return fixed values based on whether the txn is
-            // single-partitioned or not
-            SingleSitedCostModel singlesited_cost_model = (SingleSitedCostModel) cost_models[i];
-
-            total_interval_txns[i] += txn_weight;
-            total_interval_queries[i] += (txn_trace.getQueryCount() * txn_weight);
-            histogram_procs.put(proc_key, txn_weight);
-
-            try {
-                singlesited_cost_model.estimateTransactionCost(catalog_db, workload, filter, txn_trace);
-                TransactionCacheEntry txn_entry = singlesited_cost_model.getTransactionCacheEntry(txn_trace);
-                assert (txn_entry != null) : "No txn entry for " + txn_trace;
-                Collection<Integer> partitions = txn_entry.getTouchedPartitions();
-
-                // If the txn runs on only one partition, then the cost is
-                // nothing
-                if (txn_entry.isSinglePartitioned()) {
-                    singlepartition_ctrs[i] += txn_weight;
-                    if (!partitions.isEmpty()) {
-                        assert (txn_entry.getAllTouchedPartitionsHistogram().getValueCount() == 1) : txn_entry + " says it was single-partitioned but the partition count says otherwise:\n"
-                                + txn_entry.debug();
-                        singlepartition_with_partitions_ctrs[i] += txn_weight;
-                    }
-                    histogram_sp_procs.put(proc_key, txn_weight);
-
-                    // If the txn runs on multiple partitions, then the cost
-                    // is...
-                    // XXX 2010-06-28: The number of partitions that the txn
-                    // touches divided by the total number of partitions
-                    // XXX 2010-07-02: The histogram for the total number of
-                    // partitions touched by all of the queries
-                    // in the transaction. This ensures that txns with just one
-                    // multi-partition query
-                    // isn't weighted the same as a txn with many
-                    // multi-partition queries
-                } else {
-                    assert (!partitions.isEmpty()) : "No touched partitions for " + txn_trace;
-                    if (partitions.size() == 1 && txn_entry.getExecutionPartition() != null) {
-                        assert (CollectionUtil.first(partitions) != txn_entry.getExecutionPartition()) : txn_entry.debug();
-                        exec_mismatch_ctrs[i] += txn_weight;
-                        partitions_touched[i] += txn_weight;
-                    } else {
-                        assert (partitions.size() > 1) : String.format("%s is not marked as single-partition but it only touches one partition\n%s", txn_trace, txn_entry.debug());
-                    }
-                    partitions_touched[i] += (partitions.size() * txn_weight); // Txns
-                    multipartition_ctrs[i] += txn_weight;
-                    histogram_mp_procs.put(proc_key, txn_weight);
-                }
-                Integer base_partition = txn_entry.getExecutionPartition();
-                if (base_partition != null) {
-                    exec_histogram[i].put(base_partition, txn_weight);
-                } else {
-                    exec_histogram[i].putAll(all_partitions, txn_weight);
-                }
-                if (debug.get()) { // &&
-                                   // txn_trace.getCatalogItemName().equalsIgnoreCase("DeleteCallForwarding"))
-                                   // {
-                    Procedure catalog_proc = txn_trace.getCatalogItem(catalog_db);
-                    Map<String, Object> inner = new ListOrderedMap<String, Object>();
-                    for (Statement catalog_stmt : catalog_proc.getStatements()) {
-                        inner.put(catalog_stmt.fullName(), CatalogUtil.getReferencedTables(catalog_stmt));
-                    }
-
-                    Map<String, Object> m = new ListOrderedMap<String, Object>();
-                    m.put(txn_trace.toString(), null);
-                    m.put("Interval", i);
-                    m.put("Single-Partition", txn_entry.isSinglePartitioned());
-                    m.put("Base Partition", base_partition);
-                    m.put("Touched Partitions", partitions);
-                    m.put(catalog_proc.fullName(), inner);
-                    LOG.debug(StringUtil.formatMaps(m));
-                }
-
-                // We need to keep a count of the number txns that didn't have
-                // all of its queries estimated
-                // completely so that we can update the access histograms down
-                // below for entropy calculations
-                // Note that this is at the txn level, not the query level.
-                if (!txn_entry.isComplete()) {
-                    incomplete_txn_ctrs[i] += txn_weight;
-                    tmp_missingPartitions.clear();
-                    tmp_missingPartitions.addAll(all_partitions);
-                    tmp_missingPartitions.removeAll(txn_entry.getTouchedPartitions());
-                    // Update the histogram for this interval to keep track of
-                    // how many times we need to
-                    // increase the partition access histogram
-                    incomplete_txn_histogram[i].putAll(tmp_missingPartitions, txn_weight);
-                    if (trace.get()) {
-                        Map<String, Object> m = new ListOrderedMap<String, Object>();
-                        m.put(String.format("Marking %s as incomplete in interval #%d", txn_trace, i), null);
-                        m.put("Examined Queries", txn_entry.getExaminedQueryCount());
-                        m.put("Total Queries", txn_entry.getTotalQueryCount());
-                        m.put("Touched Partitions", txn_entry.getTouchedPartitions());
-                        m.put("Missing Partitions", tmp_missingPartitions);
-                        LOG.trace(StringUtil.formatMaps(m));
-                    }
-                }
-            } catch (Exception ex) {
-                CatalogUtil.saveCatalog(catalog_db.getCatalog(), CatalogUtil.CATALOG_FILENAME);
-                throw new RuntimeException("Failed to estimate cost for " + txn_trace.getCatalogItemName() + " at interval " + i, ex);
-            }
+            TxnContribution c = estimateContribution(this.catalog_db, this.workload, this.filter, txn_trace, i);
+            applyContribution(c, 1);
+            incremental_txns.put(txn_trace.getTransactionId(), c);
         }
     }
 
@@ -150,6 +150,12 @@ public class DesignerHints implements Cloneable, JSONSerializable {
     /** Enable caching in cost models */
     public boolean enable_costmodel_caching = false;
 
+    /**
+     * Only re-cost the txns whose cache entries were invalidated since the
+     * last full pass over the workload (requires caching)
+     */
+    public boolean enable_costmodel_incremental = true;
+
     /** Enable skew calculations in cost models */
     public boolean enable_costmodel_skew = true;
 
@@ -222,6 +228,23 @@ public class DesignerHints implements Cloneable, JSONSerializable {
     public double relaxation_factor_max = 0.5;
     public int relaxation_min_size = 5;
 
+    /**
+     * The number of threads to use for the local searches. Each thread gets
+     * its own copy of the catalog and cost model, so the search can explore
+     * several relaxation neighborhoods (or branch-and-bound subtrees) at once.
+     */
+    public int search_threads = 1;
+
+    /**
+     * Random seed for the search. When this is set, the LNS relaxations are
+     * chosen from a seeded generator, the relaxation size only grows with the
+     * number of rounds (not the elapsed time), and the parallel workers only
+     * exchange their best costs at the end of each round. The solution for
+     * each round is then the same for a given seed and thread count as long
+     * as the local searches are bounded by back tracks instead of time.
+     */
+    public Long search_seed = null;
+
     /**
      * If we were given a target PartitionPlan, then we will check whether every
      * new solution equals this plan. If it does, then we will halt. This is
@@ -309,7 +332,7 @@ public class DesignerHints implements Cloneable, JSONSerializable {
      * 
      * @param cost
      */
-    public void logSolutionCost(double cost, double singlep_txns) {
+    public synchronized void logSolutionCost(double cost, double singlep_txns) {
         assert (this.log_solutions_costs != null);
         try {
             if (this.log_solutions_costs_writer == null) {
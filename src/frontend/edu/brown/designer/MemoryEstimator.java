@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.collections15.map.ListOrderedMap;
 import org.apache.log4j.Logger;
@@ -40,12 +41,12 @@ public class MemoryEstimator {
         LoggerUtil.attachObserver(LOG, debug, trace);
     }
 
-    private static final Map<String, Long> CACHE_TABLE_ESTIMATE = new HashMap<String, Long>();
+    private static final Map<String, Long> CACHE_TABLE_ESTIMATE = new ConcurrentHashMap<String, Long>();
 
     /**
      * Table -> Tuple Size (bytes)
      */
-    public static final Map<Table, Long> TABLE_TUPLE_SIZE = new HashMap<Table, Long>();
+    public static final Map<Table, Long> TABLE_TUPLE_SIZE = new ConcurrentHashMap<Table, Long>();
 
     private final WorkloadStatistics stats;
     private final AbstractHasher hasher;
@@ -11,6 +11,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.collections15.CollectionUtils;
 import org.apache.commons.collections15.map.ListOrderedMap;
@@ -79,6 +80,44 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
     // INTERNAL STATE
     // --------------------------------------------------------------------------------------------
 
+    /**
+     * The lowest cost of any complete solution found by a group of searches
+     * that run at the same time. Each search only traverses a path while its
+     * cost is not greater than this bound.
+     */
+    public static class SearchBound {
+        private final AtomicLong bound;
+
+        public SearchBound(double cost) {
+            this.bound = new AtomicLong(Double.doubleToLongBits(cost));
+        }
+
+        public double get() {
+            return (Double.longBitsToDouble(this.bound.get()));
+        }
+
+        /**
+         * Lower the bound to the given cost if it is less than the current one
+         * 
+         * @param cost
+         * @return true if the bound was lowered
+         */
+        public boolean offer(double cost) {
+            while (true) {
+                long current = this.bound.get();
+                if (cost >= Double.longBitsToDouble(current))
+                    return (false);
+                if (this.bound.compareAndSet(current, Double.doubleToLongBits(cost)))
+                    return (true);
+            } // WHILE
+        }
+
+        @Override
+        public String toString() {
+            return (String.format("SearchBound[%.05f]", this.get()));
+        }
+    } // END CLASS
+
     /**
      * 
      */
@@ -254,6 +293,15 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
     protected List<Procedure> proc_visit_order = new ArrayList<Procedure>();
     protected AccessGraph agraph = null;
 
+    /**
+     * If this search is one of several that split up the first level of the
+     * search tree, then it will only examine every root_stride'th candidate
+     * starting at root_offset
+     */
+    protected int root_offset = 0;
+    protected int root_stride = 1;
+    protected SearchBound shared_bound = null;
+
     // --------------------------------------------------------------------------------------------
     // CONSTRUCTORS
     // --------------------------------------------------------------------------------------------
@@ -299,6 +347,39 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
         return (this.upper_bounds_vertex);
     }
 
+    /**
+     * Only search the subtrees for every stride'th candidate attribute of the
+     * first element in the visit order, starting at the given offset
+     * 
+     * @param offset
+     * @param stride
+     */
+    public void setRootSubtree(int offset, int stride) {
+        assert (stride > 0) : "Invalid stride " + stride;
+        assert (offset >= 0 && offset < stride) : "Invalid offset " + offset;
+        this.root_offset = offset;
+        this.root_stride = stride;
+    }
+
+    /**
+     * Prune against the given bound in addition to our own best solution. The
+     * bound is lowered whenever we find a new best solution.
+     * 
+     * @param bound
+     */
+    public void setSharedBound(SearchBound bound) {
+        this.shared_bound = bound;
+    }
+
+    /**
+     * Returns true if the given cost is not greater than the shared bound (if
+     * there is one). We allow ties so that every search still finds the same
+     * solutions with the lowest cost no matter when the others find theirs.
+     */
+    protected boolean withinSharedBound(double cost) {
+        return (this.shared_bound == null || cost <= this.shared_bound.get());
+    }
+
     // public void setTraversalAttributes(Map<String, List<String>> attributes,
     // int num_tables) {
     // this.base_traversal_attributes.clear();
@@ -851,8 +932,17 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
             } catch (IllegalArgumentException ex) {
                 throw new RuntimeException("Failed to get candidate attributes for " + current, ex);
             }
-            final int num_attributes = current_attributes.size();
             assert (current_attributes != null);
+            if (idx == 0 && root_stride > 1) {
+                List<CatalogType> subtree_attributes = new ArrayList<CatalogType>();
+                int ctr = 0;
+                for (CatalogType attribute : current_attributes) {
+                    if (ctr++ % root_stride == root_offset)
+                        subtree_attributes.add(attribute);
+                } // FOR
+                current_attributes = subtree_attributes;
+            }
+            final int num_attributes = current_attributes.size();
             if (trace.get()) {
                 Map<String, Object> m = new ListOrderedMap<String, Object>();
                 m.put("Traversal Level", traverse_ctr);
@@ -1100,6 +1190,8 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
                         LOG.debug("Old Solution:\n" + StringUtil.box(best_vertex.toString()));
                     }
                     BranchAndBoundPartitioner.this.best_vertex = state;
+                    if (shared_bound != null)
+                        shared_bound.offer(state.cost);
                     if (debug.get()) {
                         LOG.debug("New Best Solution:\n" + StringUtil.box(best_vertex.toString()));
                         if (this.cost_model.hasDebugMessages())
@@ -1159,7 +1251,7 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
                 // exhaustive flag is enabled
                 if (this.halt_search == false
                         && ((last_attribute && is_table && this.hints.greedy_search) || (this.hints.exhaustive_search == true) || (complete_solution == false && is_table
-                                && cost < BranchAndBoundPartitioner.this.best_vertex.cost && cost < BranchAndBoundPartitioner.this.upper_bounds_vertex.cost))) {
+                                && cost < BranchAndBoundPartitioner.this.best_vertex.cost && cost < BranchAndBoundPartitioner.this.upper_bounds_vertex.cost && withinSharedBound(cost)))) {
 
                     // IMPORTANT: If this is the last table in our traversal,
                     // then we need to switch over
@@ -1226,7 +1318,7 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
                 // past our best cost
                 // our upper bounds, then keep going...
                 if (complete_solution == false && hints.enable_procparameter_search && (this.hints.greedy_search == true)
-                        || (local_best_vertex.cost < best_vertex.cost && local_best_vertex.cost < upper_bounds_vertex.cost)) {
+                        || (local_best_vertex.cost < best_vertex.cost && local_best_vertex.cost < upper_bounds_vertex.cost && withinSharedBound(local_best_vertex.cost))) {
                     this.cp.update(current_proc);
                     this.traverse(local_best_vertex, idx + 1);
                     this.cp.reset(current_proc);
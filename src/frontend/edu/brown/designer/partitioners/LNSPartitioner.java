@@ -32,6 +32,7 @@ import org.voltdb.catalog.Table;
 import org.voltdb.types.TimestampType;
 import org.voltdb.utils.Pair;
 
+import edu.brown.catalog.CatalogCloner;
 import edu.brown.catalog.CatalogKey;
 import edu.brown.catalog.CatalogUtil;
 import edu.brown.catalog.special.MultiColumn;
@@ -59,6 +60,7 @@ import edu.brown.utils.JSONUtil;
 import edu.brown.utils.MathUtil;
 import edu.brown.utils.ProfileMeasurement;
 import edu.brown.utils.StringUtil;
+import edu.brown.utils.ThreadUtil;
 
 /**
  * Large-Neighborhood Search Partitioner
@@ -149,6 +151,12 @@ public class LNSPartitioner extends AbstractPartitioner implements JSONSerializa
     private final Set<Table> ignore_tables = new HashSet<Table>();
     private final Set<Procedure> ignore_procs = new HashSet<Procedure>();
 
+    /**
+     * Each thread in a parallel local search has its own SearchWorker with its
+     * own copy of the catalog and the cost model
+     */
+    protected final transient List<SearchWorker> workers = new ArrayList<SearchWorker>();
+
     /**
      * @param designer
      * @param info
@@ -380,6 +388,12 @@ public class LNSPartitioner extends AbstractPartitioner implements JSONSerializa
 
         // Initialize a bunch of stuff we need
         this.init(hints);
+        if (hints.search_seed != null)
+            this.rng.setSeed(hints.search_seed);
+        if (hints.search_threads > 1 && hints.enable_vertical_partitioning) {
+            LOG.warn("Parallel local search does not support vertical partitioning. Using a single thread");
+            hints.search_threads = 1;
+        }
 
         hints.startGlobalSearchTimer();
         LOG.info("Starting Large-Neighborhood Search\n" + this.debugHeader(hints));
@@ -436,18 +450,26 @@ public class LNSPartitioner extends AbstractPartitioner implements JSONSerializa
             }
 
             this.total_search_time.start();
-            // IMPORTANT: Make sure that we are always start comparing swaps
-            // using the solution
-            // at the beginning of a restart (or the start of the search). We do
-            // *not* want to
-            // compare swaps using the global best cost
-            if (!this.relaxCurrentSolution(hints, this.restart_ctr++, table_attributes, proc_attributes)) {
-                LOG.debug("Halting LNS!");
-                break;
-            }
+            if (hints.search_threads > 1) {
+                // Parallel Local Search!
+                if (!this.parallelLocalSearch(hints)) {
+                    LOG.debug("Halting LNS!");
+                    break;
+                }
+            } else {
+                // IMPORTANT: Make sure that we are always start comparing swaps
+                // using the solution
+                // at the beginning of a restart (or the start of the search). We do
+                // *not* want to
+                // compare swaps using the global best cost
+                if (!this.relaxCurrentSolution(hints, this.restart_ctr++, table_attributes, proc_attributes)) {
+                    LOG.debug("Halting LNS!");
+                    break;
+                }
 
-            // Local Search!
-            this.localSearch(hints, table_attributes.asList(), proc_attributes.asList());
+                // Local Search!
+                this.localSearch(hints, table_attributes.asList(), proc_attributes.asList());
+            }
 
             // Sanity Check!
             if (this.restart_ctr % 3 == 0) {
@@ -583,7 +605,9 @@ public class LNSPartitioner extends AbstractPartitioner implements JSONSerializa
         // just be random
         // int relax_size = (int)Math.round(RELAXATION_FACTOR_MIN * num_tables)
         // + (restart_ctr / 2);
-        double elapsed_ratio = hints.getElapsedGlobalPercent();
+        // If we were given a seed, then the relaxation size can't depend on
+        // how much time has gone by
+        double elapsed_ratio = (hints.search_seed != null ? 0.0d : hints.getElapsedGlobalPercent());
         int relax_size = Math.max(hints.relaxation_min_size, (int) Math.max(this.last_relax_size, (int) Math.round(((relax_max - relax_min) * elapsed_ratio) + relax_min)));
 
         if (relax_size > num_tables)
@@ -730,19 +754,7 @@ public class LNSPartitioner extends AbstractPartitioner implements JSONSerializa
         // Calculate the number of backtracks and the local search time
         // we want to allow in this round.
         // -------------------------------
-        if (hints.enable_local_search_increase) {
-            if (this.last_halt_reason == HaltReason.BACKTRACK_LIMIT && this.last_backtrack_limit != null) {
-                // Give them more backtracks
-                this.last_backtrack_limit = this.last_backtrack_limit * hints.back_tracks_multiplier;
-                LOG.info(String.format("Increasing BackTrack limit from %d to %.02f", hints.limit_back_tracks, this.last_backtrack_limit));
-                hints.limit_back_tracks = (int) Math.round(this.last_backtrack_limit);
-            } else if (this.last_halt_reason == HaltReason.LOCAL_TIME_LIMIT && this.last_localtime_limit != null) {
-                // Give them more time
-                this.last_localtime_limit = this.last_localtime_limit * hints.local_time_multiplier;
-                LOG.info(String.format("Increasing LocalTime limit from %d to %.02f", hints.limit_local_time, this.last_localtime_limit));
-                hints.limit_local_time = (int) Math.round(this.last_localtime_limit);
-            }
-        }
+        this.increaseLocalSearchLimits(hints);
 
         // -------------------------------
         // GO GO LOCAL SEARCH!!
@@ -788,6 +800,127 @@ public class LNSPartitioner extends AbstractPartitioner implements JSONSerializa
         return;
     }
 
+    /**
+     * If the last local search was halted because it ran out of back tracks or
+     * time, then give the next one a little bit more
+     * 
+     * @param hints
+     */
+    protected void increaseLocalSearchLimits(final DesignerHints hints) {
+        if (hints.enable_local_search_increase) {
+            if (this.last_halt_reason == HaltReason.BACKTRACK_LIMIT && this.last_backtrack_limit != null) {
+                // Give them more backtracks
+                this.last_backtrack_limit = this.last_backtrack_limit * hints.back_tracks_multiplier;
+                LOG.info(String.format("Increasing BackTrack limit from %d to %.02f", hints.limit_back_tracks, this.last_backtrack_limit));
+                hints.limit_back_tracks = (int) Math.round(this.last_backtrack_limit);
+            } else if (this.last_halt_reason == HaltReason.LOCAL_TIME_LIMIT && this.last_localtime_limit != null) {
+                // Give them more time
+                this.last_localtime_limit = this.last_localtime_limit * hints.local_time_multiplier;
+                LOG.info(String.format("Increasing LocalTime limit from %d to %.02f", hints.limit_local_time, this.last_localtime_limit));
+                hints.limit_local_time = (int) Math.round(this.last_localtime_limit);
+            }
+        }
+    }
+
+    /**
+     * Parallel Local Search
+     * Relax the current best solution into one neighborhood per thread and
+     * search all of them at the same time, each with its own
+     * BranchAndBoundPartitioner. If there are not enough neighborhoods left to
+     * keep every thread busy, then the first level of each neighborhood's
+     * search tree is split up among the threads. The results are combined in
+     * the order that the neighborhoods were picked so that ties are always
+     * broken the same way.
+     * 
+     * @param hints
+     * @return false if there are no more neighborhoods to search
+     * @throws Exception
+     */
+    protected boolean parallelLocalSearch(final DesignerHints hints) throws Exception {
+        final int num_threads = hints.search_threads;
+        assert (num_threads > 1);
+
+        // -------------------------------
+        // Pick the neighborhoods for this round
+        // -------------------------------
+        final List<List<Table>> round_tables = new ArrayList<List<Table>>();
+        final List<List<Procedure>> round_procs = new ArrayList<List<Procedure>>();
+        final ListOrderedSet<Table> table_attributes = new ListOrderedSet<Table>();
+        final ListOrderedSet<Procedure> proc_attributes = new ListOrderedSet<Procedure>();
+        for (int i = 0; i < num_threads; i++) {
+            if (!this.relaxCurrentSolution(hints, this.restart_ctr++, table_attributes, proc_attributes))
+                break;
+            round_tables.add(new ArrayList<Table>(table_attributes.asList()));
+            round_procs.add(new ArrayList<Procedure>(proc_attributes.asList()));
+        } // FOR
+        if (round_tables.isEmpty())
+            return (false);
+
+        final int num_neighborhoods = round_tables.size();
+        final int stride = Math.max(1, num_threads / num_neighborhoods);
+        final int num_tasks = num_neighborhoods * stride;
+        while (this.workers.size() < num_tasks) {
+            this.workers.add(new SearchWorker(this.workers.size()));
+        } // WHILE
+        this.increaseLocalSearchLimits(hints);
+
+        // If we're trying to be deterministic, then the workers can only use
+        // the best cost from the previous round
+        final BranchAndBoundPartitioner.SearchBound bound = (hints.search_seed == null ? new BranchAndBoundPartitioner.SearchBound(this.best_cost) : null);
+        final long upper_bounds_memory = (long) (this.best_memory * hints.max_memory_per_partition);
+        if (debug.get())
+            LOG.debug(String.format("Starting parallel local search [neighborhoods=%d, subtrees=%d, threads=%d]", num_neighborhoods, stride, num_tasks));
+
+        // -------------------------------
+        // GO GO PARALLEL LOCAL SEARCH!!
+        // -------------------------------
+        List<SearchWorker> tasks = new ArrayList<SearchWorker>();
+        for (int i = 0; i < num_tasks; i++) {
+            SearchWorker worker = this.workers.get(i);
+            worker.setTask(hints, this.best_solution, this.best_cost, upper_bounds_memory, round_tables.get(i / stride), round_procs.get(i / stride), i % stride, stride, bound);
+            tasks.add(worker);
+        } // FOR
+        long start = System.currentTimeMillis();
+        ThreadUtil.runNewPool(tasks, num_tasks);
+        this.last_elapsed_time = Math.round((System.currentTimeMillis() - start) / 1000);
+
+        // -------------------------------
+        // Comparison with current best solution
+        // -------------------------------
+        // The round only counts as exhaustive if every worker exhausted its
+        // part of the search space
+        SearchWorker best_worker = null;
+        HaltReason halt_reason = HaltReason.EXHAUSTED_SEARCH;
+        long backtracks = 0;
+        for (SearchWorker worker : tasks) {
+            if (worker.result_halt_reason == HaltReason.FOUND_TARGET) {
+                halt_reason = HaltReason.FOUND_TARGET;
+            } else if (halt_reason == HaltReason.EXHAUSTED_SEARCH) {
+                halt_reason = worker.result_halt_reason;
+            }
+            if (worker.result_backtracks != null)
+                backtracks += worker.result_backtracks;
+            if (worker.result_cost < this.best_cost && (best_worker == null || worker.result_cost < best_worker.result_cost)) {
+                best_worker = worker;
+            }
+        } // FOR
+        this.last_halt_reason = halt_reason;
+        this.last_backtrack_count = backtracks;
+
+        if (best_worker != null) {
+            LOG.info(String.format("New Best Solution Found from Parallel Local Search! [neighborhood=%d, subtree=%d]", best_worker.id / stride, best_worker.id % stride));
+            this.best_solution = best_worker.getResult(info.catalog_db);
+            this.best_cost = best_worker.result_cost;
+            this.best_memory = best_worker.result_memory / (double) hints.max_memory_per_partition;
+            LOG.info("Best Solution Cost: " + String.format(DEBUG_COST_FORMAT, this.best_cost));
+            LOG.info("Best Solution Memory: " + String.format(DEBUG_COST_FORMAT, this.best_memory));
+            LOG.info("Best Solution:\n" + this.best_solution);
+        }
+        this.best_solution.apply(info.catalog_db);
+        this.costmodel.clear(true);
+        return (true);
+    }
+
     /**
      * @param hints
      * @param table_attributes
@@ -1070,6 +1203,136 @@ public class LNSPartitioner extends AbstractPartitioner implements JSONSerializa
         return (StringUtil.box(StringUtil.formatMaps(m), "+"));
     }
 
+    // ----------------------------------------------------------------------------
+    // PARALLEL SEARCH WORKER
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Copy a PartitionPlan into another catalog. The entries are matched up by
+     * their catalog keys
+     * 
+     * @param pplan
+     * @param catalog_db
+     * @return
+     */
+    protected static PartitionPlan copyPartitionPlan(PartitionPlan pplan, Database catalog_db) throws JSONException {
+        PartitionPlan copy = new PartitionPlan();
+        copy.fromJSON(new JSONObject(pplan.toJSONString()), catalog_db);
+        return (copy);
+    }
+
+    /**
+     * A SearchWorker runs local searches for one thread in the parallel LNS.
+     * It has its own copy of the catalog, cost model, and AccessGraph so that
+     * it can change the partitioning attributes without stepping on any of the
+     * other workers.
+     */
+    protected class SearchWorker implements Runnable {
+        private final int id;
+        private final DesignerInfo worker_info;
+        private final AccessGraph worker_agraph;
+
+        // Current Task
+        private DesignerHints hints;
+        private PartitionPlan upper_bounds_pplan;
+        private double upper_bounds_cost;
+        private long upper_bounds_memory;
+        private final List<Table> table_visit_order = new ArrayList<Table>();
+        private final List<Procedure> proc_visit_order = new ArrayList<Procedure>();
+        private int root_offset;
+        private int root_stride;
+        private BranchAndBoundPartitioner.SearchBound bound;
+
+        // Last Result
+        private PartitionPlan result;
+        private double result_cost;
+        private long result_memory;
+        private HaltReason result_halt_reason;
+        private Long result_backtracks;
+
+        public SearchWorker(int id) throws Exception {
+            this.id = id;
+            Database clone_db = CatalogCloner.cloneDatabase(info.catalog_db);
+            this.worker_info = new DesignerInfo(clone_db, info.workload, info.stats);
+            this.worker_info.setCostModelClass(info.getCostModelClass());
+            this.worker_info.setCostModel(costmodel.newInstance(clone_db));
+            this.worker_info.setNumIntervals(info.getNumIntervals());
+
+            // Build the same AccessGraph that we have, but using our catalog
+            AccessGraph first = new AccessGraph(clone_db);
+            for (Procedure catalog_proc : info.catalog_db.getProcedures()) {
+                if (info.workload.getTraces(catalog_proc).isEmpty() || designer.getGraphs(catalog_proc) == null)
+                    continue;
+                Procedure clone_proc = clone_db.getProcedures().get(catalog_proc.getName());
+                new AccessGraphGenerator(this.worker_info, clone_proc).generate(first);
+            } // FOR
+            this.worker_agraph = AccessGraphGenerator.convertToSingleColumnEdges(clone_db, first);
+            if (debug.get())
+                LOG.debug(String.format("Created SearchWorker #%02d", this.id));
+        }
+
+        /**
+         * Set up the next local search for this worker. The catalog items are
+         * from the LNSPartitioner's catalog and will be converted to our own.
+         */
+        public void setTask(DesignerHints hints, PartitionPlan upper_bounds_pplan, double upper_bounds_cost, long upper_bounds_memory, List<Table> tables, List<Procedure> procs,
+                int root_offset, int root_stride, BranchAndBoundPartitioner.SearchBound bound) throws Exception {
+            final Database clone_db = this.worker_info.catalog_db;
+            this.hints = hints;
+            this.upper_bounds_pplan = copyPartitionPlan(upper_bounds_pplan, clone_db);
+            this.upper_bounds_cost = upper_bounds_cost;
+            this.upper_bounds_memory = upper_bounds_memory;
+            this.table_visit_order.clear();
+            for (Table catalog_tbl : tables) {
+                this.table_visit_order.add(clone_db.getTables().get(catalog_tbl.getName()));
+            } // FOR
+            this.proc_visit_order.clear();
+            for (Procedure catalog_proc : procs) {
+                this.proc_visit_order.add(clone_db.getProcedures().get(catalog_proc.getName()));
+            } // FOR
+            this.root_offset = root_offset;
+            this.root_stride = root_stride;
+            this.bound = bound;
+
+            this.result = null;
+            this.result_cost = Double.MAX_VALUE;
+            this.result_memory = 0;
+            this.result_halt_reason = null;
+            this.result_backtracks = null;
+        }
+
+        /**
+         * Return the last result of this worker's search using the given
+         * catalog
+         */
+        public PartitionPlan getResult(Database catalog_db) throws JSONException {
+            assert (this.result != null) : "No result for SearchWorker #" + this.id;
+            return (copyPartitionPlan(this.result, catalog_db));
+        }
+
+        @Override
+        public void run() {
+            // The best solution may have changed since the last time we ran, so
+            // we can't trust anything that is in our cost model's cache
+            this.upper_bounds_pplan.apply(this.worker_info.catalog_db);
+            this.worker_info.getCostModel().clear(true);
+
+            BranchAndBoundPartitioner local_search = new BranchAndBoundPartitioner(designer, this.worker_info, this.worker_agraph, this.table_visit_order, this.proc_visit_order);
+            local_search.setRootSubtree(this.root_offset, this.root_stride);
+            local_search.setSharedBound(this.bound);
+            try {
+                local_search.setUpperBounds(this.hints, this.upper_bounds_pplan, this.upper_bounds_cost, this.upper_bounds_memory);
+                this.result = local_search.generate(this.hints);
+            } catch (Exception ex) {
+                throw new RuntimeException("SearchWorker #" + this.id + " failed to execute local search", ex);
+            }
+            this.result_cost = local_search.getBestVertex().getCost();
+            this.result_memory = local_search.getBestVertex().getMemory();
+            this.result_halt_reason = local_search.halt_reason;
+            this.result_backtracks = local_search.getLastBackTrackCount();
+        }
+    } // END CLASS
+
     // ----------------------------------------------------------------------------
     // SERIALIZATION METHODS
     // ----------------------------------------------------------------------------
@@ -5,7 +5,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import org.apache.commons.pool.impl.StackObjectPool;
+import org.apache.commons.pool.ObjectPool;
 import org.voltdb.catalog.Procedure;
 
 import edu.brown.hstore.callbacks.TransactionInitQueueCallback;
@@ -18,7 +18,7 @@ import edu.brown.hstore.dtxn.LocalTransaction;
 import edu.brown.hstore.dtxn.MapReduceTransaction;
 import edu.brown.hstore.dtxn.PrefetchState;
 import edu.brown.hstore.dtxn.RemoteTransaction;
-import edu.brown.utils.TypedStackObjectPool;
+import edu.brown.utils.TypedThreadLocalObjectPool;
 
 public abstract class HStoreObjectPools {
 
@@ -29,17 +29,17 @@ public abstract class HStoreObjectPools {
     /**
      * TransactionInitQueueCallback Pool
      */
-    public static TypedStackObjectPool<TransactionInitQueueCallback> CALLBACKS_TXN_INITQUEUE;
+    public static TypedThreadLocalObjectPool<TransactionInitQueueCallback> CALLBACKS_TXN_INITQUEUE;
     
     /**
      * ForwardTxnRequestCallback Pool
      */
-    public static TypedStackObjectPool<TransactionRedirectCallback> CALLBACKS_TXN_REDIRECT_REQUEST;
+    public static TypedThreadLocalObjectPool<TransactionRedirectCallback> CALLBACKS_TXN_REDIRECT_REQUEST;
     
     /**
      * ForwardTxnResponseCallback Pool
      */
-    public static TypedStackObjectPool<TransactionRedirectResponseCallback> CALLBACKS_TXN_REDIRECTRESPONSE;
+    public static TypedThreadLocalObjectPool<TransactionRedirectResponseCallback> CALLBACKS_TXN_REDIRECTRESPONSE;
     
     // ----------------------------------------------------------------------------
     // INTERNAL STATE OBJECTS
@@ -48,32 +48,32 @@ public abstract class HStoreObjectPools {
     /**
      * LocalTransaction State ObjectPool
      */
-    public static TypedStackObjectPool<LocalTransaction> STATES_TXN_LOCAL;
+    public static TypedThreadLocalObjectPool<LocalTransaction> STATES_TXN_LOCAL;
     
     /**
      * MapReduceTransaction State ObjectPool
      */
-    public static TypedStackObjectPool<MapReduceTransaction> STATES_TXN_MAPREDUCE;
+    public static TypedThreadLocalObjectPool<MapReduceTransaction> STATES_TXN_MAPREDUCE;
     
     /**
      * RemoteTransaction State ObjectPool
      */
-    public static TypedStackObjectPool<RemoteTransaction> STATES_TXN_REMOTE;
+    public static TypedThreadLocalObjectPool<RemoteTransaction> STATES_TXN_REMOTE;
     
     /**
      * DependencyInfo ObjectPool
      */
-    public static TypedStackObjectPool<DependencyInfo> STATES_DEPENDENCYINFO;
+    public static TypedThreadLocalObjectPool<DependencyInfo> STATES_DEPENDENCYINFO;
 
     /**
      * PrefetchState ObjectPool
      */
-    public static TypedStackObjectPool<PrefetchState> STATES_PREFETCH;
+    public static TypedThreadLocalObjectPool<PrefetchState> STATES_PREFETCH;
     
     /**
      * DistributedState ObjectPool
      */
-    public static TypedStackObjectPool<DistributedState> STATES_DISTRIBUTED;
+    public static TypedThreadLocalObjectPool<DistributedState> STATES_DISTRIBUTED;
     
     
     // ----------------------------------------------------------------------------
@@ -87,29 +87,30 @@ public abstract class HStoreObjectPools {
     public synchronized static void initialize(HStoreSite hstore_site) {
         assert(hstore_site != null);
         HStoreConf hstore_conf = hstore_site.getHStoreConf();
+        int local_idle = hstore_conf.site.pool_threadlocal_idle;
         
-        CALLBACKS_TXN_INITQUEUE = TypedStackObjectPool.factory(TransactionInitQueueCallback.class,
-                (int)(hstore_conf.site.pool_txninitqueue_idle * hstore_conf.site.pool_scale_factor),
+        CALLBACKS_TXN_INITQUEUE = TypedThreadLocalObjectPool.factory(TransactionInitQueueCallback.class,
+                (int)(hstore_conf.site.pool_txninitqueue_idle * hstore_conf.site.pool_scale_factor), local_idle,
                 hstore_conf.site.pool_profiling, hstore_site);
         
-        CALLBACKS_TXN_REDIRECT_REQUEST = TypedStackObjectPool.factory(TransactionRedirectCallback.class,
-                (int)(hstore_conf.site.pool_txnredirect_idle * hstore_conf.site.pool_scale_factor),
+        CALLBACKS_TXN_REDIRECT_REQUEST = TypedThreadLocalObjectPool.factory(TransactionRedirectCallback.class,
+                (int)(hstore_conf.site.pool_txnredirect_idle * hstore_conf.site.pool_scale_factor), local_idle,
                 hstore_conf.site.pool_profiling);
-        CALLBACKS_TXN_REDIRECTRESPONSE = TypedStackObjectPool.factory(TransactionRedirectResponseCallback.class,
-                (int)(hstore_conf.site.pool_txnredirectresponses_idle * hstore_conf.site.pool_scale_factor),
+        CALLBACKS_TXN_REDIRECTRESPONSE = TypedThreadLocalObjectPool.factory(TransactionRedirectResponseCallback.class,
+                (int)(hstore_conf.site.pool_txnredirectresponses_idle * hstore_conf.site.pool_scale_factor), local_idle,
                 hstore_conf.site.pool_profiling);
 
-        STATES_TXN_LOCAL = TypedStackObjectPool.factory(LocalTransaction.class,
-                (int)(hstore_conf.site.pool_localtxnstate_idle * hstore_conf.site.pool_scale_factor),
+        STATES_TXN_LOCAL = TypedThreadLocalObjectPool.factory(LocalTransaction.class,
+                (int)(hstore_conf.site.pool_localtxnstate_idle * hstore_conf.site.pool_scale_factor), local_idle,
                 hstore_conf.site.pool_profiling, hstore_site);
-        STATES_TXN_REMOTE = TypedStackObjectPool.factory(RemoteTransaction.class,
-                (int)(hstore_conf.site.pool_remotetxnstate_idle * hstore_conf.site.pool_scale_factor),
+        STATES_TXN_REMOTE = TypedThreadLocalObjectPool.factory(RemoteTransaction.class,
+                (int)(hstore_conf.site.pool_remotetxnstate_idle * hstore_conf.site.pool_scale_factor), local_idle,
                 hstore_conf.site.pool_profiling, hstore_site);
-        STATES_DEPENDENCYINFO = TypedStackObjectPool.factory(DependencyInfo.class,
-                (int)(hstore_conf.site.pool_dependencyinfos_idle * hstore_conf.site.pool_scale_factor),
+        STATES_DEPENDENCYINFO = TypedThreadLocalObjectPool.factory(DependencyInfo.class,
+                (int)(hstore_conf.site.pool_dependencyinfos_idle * hstore_conf.site.pool_scale_factor), local_idle,
                 hstore_conf.site.pool_profiling);
-        STATES_DISTRIBUTED = TypedStackObjectPool.factory(DistributedState.class,
-                (int)(hstore_conf.site.pool_dtxnstates_idle * hstore_conf.site.pool_scale_factor),
+        STATES_DISTRIBUTED = TypedThreadLocalObjectPool.factory(DistributedState.class,
+                (int)(hstore_conf.site.pool_dtxnstates_idle * hstore_conf.site.pool_scale_factor), local_idle,
                 hstore_conf.site.pool_profiling, hstore_site);
         
         // If there are no prefetchable queries or MapReduce procedures in the catalog, then we will not
@@ -118,34 +119,34 @@ public abstract class HStoreObjectPools {
         STATES_TXN_MAPREDUCE = null;
         for (Procedure catalog_proc : hstore_site.getDatabase().getProcedures()) {
             if (STATES_PREFETCH == null && catalog_proc.getPrefetchable() && hstore_conf.site.exec_prefetch_queries) {
-                STATES_PREFETCH = TypedStackObjectPool.factory(PrefetchState.class,
-                        (int)(hstore_conf.site.pool_prefetchstates_idle * hstore_conf.site.pool_scale_factor),
+                STATES_PREFETCH = TypedThreadLocalObjectPool.factory(PrefetchState.class,
+                        (int)(hstore_conf.site.pool_prefetchstates_idle * hstore_conf.site.pool_scale_factor), local_idle,
                         hstore_conf.site.pool_profiling, hstore_site);
             }
             if (STATES_TXN_MAPREDUCE == null && catalog_proc.getMapreduce()) {
-                STATES_TXN_MAPREDUCE = TypedStackObjectPool.factory(MapReduceTransaction.class,
-                        (int)(hstore_conf.site.pool_mapreducetxnstate_idle * hstore_conf.site.pool_scale_factor),
+                STATES_TXN_MAPREDUCE = TypedThreadLocalObjectPool.factory(MapReduceTransaction.class,
+                        (int)(hstore_conf.site.pool_mapreducetxnstate_idle * hstore_conf.site.pool_scale_factor), local_idle,
                         hstore_conf.site.pool_profiling, hstore_site);
             }
         } // FOR
         
         // Sanity Check: Make sure that we allocated an object pool for all of the 
         // fields that we have defined except for STATES_PREFETCH_STATE
-        for (Entry<String, StackObjectPool> e : getAllPools().entrySet()) {
+        for (Entry<String, ObjectPool> e : getAllPools().entrySet()) {
             String poolName = e.getKey();
             if (poolName.equals("STATES_PREFETCH") || poolName.equals("STATES_TXN_MAPREDUCE")) continue;
             assert(e.getValue() != null) : poolName + " is null!";
         } // FOR
     }
     
-    public static Map<String, StackObjectPool> getAllPools() {
-        Map<String, StackObjectPool> m = new LinkedHashMap<String, StackObjectPool>();
+    public static Map<String, ObjectPool> getAllPools() {
+        Map<String, ObjectPool> m = new LinkedHashMap<String, ObjectPool>();
         Object val = null;
         for (Field f : HStoreObjectPools.class.getFields()) {
             try {
                 val = f.get(null);
-                if (val instanceof TypedStackObjectPool<?>) {
-                    m.put(f.getName(), (StackObjectPool)val);
+                if (val instanceof TypedThreadLocalObjectPool<?>) {
+                    m.put(f.getName(), (ObjectPool)val);
                 }
             } catch (Exception ex) {
                 throw new RuntimeException(ex);
@@ -85,14 +85,19 @@ import edu.brown.hstore.dtxn.MapReduceTransaction;
 import edu.brown.hstore.dtxn.RemoteTransaction;
 import edu.brown.hstore.dtxn.TransactionQueueManager;
 import edu.brown.hstore.estimators.AbstractEstimator;
+import edu.brown.hstore.estimators.MappingsEstimator;
 import edu.brown.hstore.estimators.SEATSEstimator;
 import edu.brown.hstore.estimators.TM1Estimator;
 import edu.brown.hstore.estimators.TPCCEstimator;
 import edu.brown.hstore.interfaces.Loggable;
 import edu.brown.hstore.interfaces.Shutdownable;
 import edu.brown.hstore.util.MapReduceHelperThread;
+import edu.brown.hstore.util.MarkovUpdater;
 import edu.brown.hstore.util.PartitionExecutorPostProcessor;
+import edu.brown.hstore.util.PartitionExecutorSerializer;
+import edu.brown.hstore.util.ProcedureLatencies;
 import edu.brown.hstore.util.TxnCounter;
+import edu.brown.hstore.util.WorkloadSampler;
 import edu.brown.hstore.wal.CommandLogWriter;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
@@ -105,6 +110,7 @@ import edu.brown.markov.MarkovVertex;
 import edu.brown.markov.TransactionEstimator;
 import edu.brown.plannodes.PlanNodeUtil;
 import edu.brown.protorpc.NIOEventLoop;
+import edu.brown.statistics.ConcurrentHistogram;
 import edu.brown.statistics.Histogram;
 import edu.brown.utils.ClassUtil;
 import edu.brown.utils.CollectionUtil;
@@ -176,6 +182,16 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
      */
     private VoltProcedureListener voltListener;
     private final NIOEventLoop procEventLoop = new NIOEventLoop();
+    
+    /**
+     * Thread-per-core Stuff
+     * Each local partition (by offset) has its own EventLoop for client connections,
+     * along with the thread that runs it and the deserializer for its incoming requests.
+     * These are null if ${site.exec_thread_per_core} is disabled.
+     */
+    private final NIOEventLoop partitionEventLoops[];
+    private final Thread partitionEventLoopThreads[];
+    private final FastDeserializer partitionDeserializers[];
 
     /**
      * 
@@ -226,11 +242,27 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     private final List<PartitionExecutorPostProcessor> processors = new ArrayList<PartitionExecutorPostProcessor>();
     private final LinkedBlockingDeque<Pair<LocalTransaction, ClientResponseImpl>> ready_responses = new LinkedBlockingDeque<Pair<LocalTransaction, ClientResponseImpl>>();
     
+    /**
+     * WorkResult Serialization Threads
+     */
+    private final List<PartitionExecutorSerializer> serializers = new ArrayList<PartitionExecutorSerializer>();
+    private final LinkedBlockingDeque<PartitionExecutorSerializer.Task> ready_results = new LinkedBlockingDeque<PartitionExecutorSerializer.Task>();
+    
     /**
      * TODO(xin): MapReduceHelperThread
      */
     private final MapReduceHelperThread mr_helper;
     
+    /**
+     * Always-on sampling workload capture
+     */
+    private final WorkloadSampler workload_sampler;
+    
+    /**
+     * Background maintenance of the Markov models
+     */
+    private final MarkovUpdater markov_updater;
+    
     private final CommandLogWriter commandLogger;
 
     /**
@@ -300,6 +332,12 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
      */
     private final AbstractEstimator fixed_estimator;
     
+    /**
+     * Rule-based Estimator generated from the ParameterMappingsSet
+     * This is created when the HStoreSite is started
+     */
+    private MappingsEstimator mappings_estimator = null;
+    
     // ----------------------------------------------------------------------------
     // STATUS + PROFILING MEMBERS
     // ----------------------------------------------------------------------------
@@ -312,7 +350,13 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     /**
      * The number of incoming transaction requests per partition 
      */
-    private final Histogram<Integer> incoming_partitions = new Histogram<Integer>();
+    private final ConcurrentHistogram incoming_partitions;
+    
+    /**
+     * Per-procedure latency histograms for each transaction phase
+     * Only available if txn_profiling is enabled
+     */
+    private final ProcedureLatencies txn_latencies;
     
     /**
      * How long the HStoreSite had no inflight txns
@@ -349,6 +393,7 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         
         this.all_partitions = CatalogUtil.getAllPartitionIds(this.catalog_db);
         final int num_partitions = this.all_partitions.size();
+        this.incoming_partitions = new ConcurrentHistogram(num_partitions);
         this.local_partitions.addAll(CatalogUtil.getLocalPartitionIds(catalog_site));
         int num_local_partitions = this.local_partitions.size();
         
@@ -401,6 +446,21 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
             this.single_partition_sets[partition] = Collections.singleton(partition);
             offset++;
         } // FOR
+        
+        // Thread-per-core EventLoops
+        if (hstore_conf.site.exec_thread_per_core) {
+            this.partitionEventLoops = new NIOEventLoop[num_local_partitions];
+            this.partitionEventLoopThreads = new Thread[num_local_partitions];
+            this.partitionDeserializers = new FastDeserializer[num_local_partitions];
+            for (int i = 0; i < num_local_partitions; i++) {
+                this.partitionEventLoops[i] = new NIOEventLoop();
+                this.partitionDeserializers[i] = new FastDeserializer(new byte[0]);
+            } // FOR
+        } else {
+            this.partitionEventLoops = null;
+            this.partitionEventLoopThreads = null;
+            this.partitionDeserializers = null;
+        }
         this.partition_site_xref = new int[num_partitions];
         for (Partition catalog_part : CatalogUtil.getAllPartitions(catalog_site)) {
             this.partition_site_xref[catalog_part.getId()] = ((Site)catalog_part.getParent()).getId();
@@ -420,6 +480,27 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
             this.mr_helper = null;
         }
         
+        // Sampling Workload Capture
+        if (hstore_conf.site.trace_sampling) {
+            this.workload_sampler = new WorkloadSampler(this);
+        } else {
+            this.workload_sampler = null;
+        }
+        
+        // Transaction Latency Histograms
+        if (hstore_conf.site.txn_profiling) {
+            this.txn_latencies = new ProcedureLatencies(this.catalog_db);
+        } else {
+            this.txn_latencies = null;
+        }
+        
+        // Online Markov Model Maintenance
+        if (hstore_conf.site.markov_online_updates) {
+            this.markov_updater = new MarkovUpdater(this);
+        } else {
+            this.markov_updater = null;
+        }
+        
         // Distributed Transaction Queue Manager
         this.txnQueueManager = new TransactionQueueManager(this);
         
@@ -469,6 +550,9 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         this.voltListener = new VoltProcedureListener(this.host_id,
                                                       this.procEventLoop,
                                                       this);
+        if (this.partitionEventLoops != null) {
+            this.voltListener.setConnectionEventLoops(this.partitionEventLoops);
+        }
         
         if (hstore_conf.site.status_show_executor_info) {
             this.idle_time.resetOnEvent(this.startWorkload_observable);
@@ -483,6 +567,15 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
                 this.processors.add(processor);
             } // FOR
         }
+        if (hstore_conf.site.exec_serialization_thread) {
+            assert(hstore_conf.site.exec_serialization_thread_count > 0);
+            if (d)
+                LOG.debug(String.format("Starting %d WorkResult serialization threads", hstore_conf.site.exec_serialization_thread_count));
+            for (int i = 0; i < hstore_conf.site.exec_serialization_thread_count; i++) {
+                PartitionExecutorSerializer serializer = new PartitionExecutorSerializer(this, this.ready_results); 
+                this.serializers.add(serializer);
+            } // FOR
+        }
         
         // Create all of our parameter manglers
         for (Procedure catalog_proc : this.catalog_db.getProcedures()) {
@@ -564,6 +657,9 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     public Collection<PartitionExecutorPostProcessor> getExecutionSitePostProcessors() {
         return (this.processors);
     }
+    public Collection<PartitionExecutorSerializer> getExecutionSiteSerializers() {
+        return (this.serializers);
+    }
     /**
      * Return a new HStoreCoordinator for this HStoreSite. Note that this
      * should only be called by HStoreSite.init(), otherwise the 
@@ -695,6 +791,34 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     public MapReduceHelperThread getMapReduceHelper() {
         return mr_helper;
     }
+    /**
+     * Get the WorkloadSampler for this site. Returns null if
+     * sampling workload capture is not enabled.
+     */
+    public WorkloadSampler getWorkloadSampler() {
+        return (this.workload_sampler);
+    }
+    /**
+     * Get the MarkovUpdater for this site. Returns null if
+     * online Markov model maintenance is not enabled.
+     */
+    public MarkovUpdater getMarkovUpdater() {
+        return (this.markov_updater);
+    }
+    /**
+     * Get the per-procedure latency histograms for this site. Returns null if
+     * transaction profiling is not enabled.
+     */
+    public ProcedureLatencies getProcedureLatencies() {
+        return (this.txn_latencies);
+    }
+    /**
+     * Get the rule-based MappingsEstimator for this site. Returns null if
+     * it is not enabled or the HStoreSite has not been started yet.
+     */
+    public MappingsEstimator getMappingsEstimator() {
+        return (this.mappings_estimator);
+    }
     
     /**
      * Get the total number of transactions inflight for all partitions 
@@ -842,6 +966,14 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
             } // FOR
         }
         
+        // Start the WorkResult serialization threads
+        for (PartitionExecutorSerializer serializer : this.serializers) {
+            t = new Thread(serializer);
+            t.setDaemon(true);
+            t.setUncaughtExceptionHandler(handler);
+            t.start();    
+        } // FOR
+        
         // Start the MapReduceHelperThread
         if (this.mr_helper != null) {
             t = new Thread(this.mr_helper);
@@ -850,6 +982,42 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
             t.start();
         }
         
+        // Start the WorkloadSampler
+        if (this.workload_sampler != null) {
+            t = new Thread(this.workload_sampler);
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            t.setUncaughtExceptionHandler(handler);
+            t.start();
+        }
+        
+        // Generate the rule-based estimator from the ParameterMappingsSet
+        // We have to wait until now because that's where the PartitionExecutors are
+        if (hstore_conf.site.exec_mappings_estimator) {
+            Collection<String> procedures = null;
+            if (hstore_conf.site.exec_mappings_estimator_procs != null) {
+                procedures = new HashSet<String>();
+                for (String procName : hstore_conf.site.exec_mappings_estimator_procs.split(",")) {
+                    procName = procName.trim();
+                    if (procName.isEmpty() == false) procedures.add(procName);
+                } // FOR
+            }
+            TransactionEstimator t_estimator = this.getPartitionExecutor(this.local_partitions_arr[0]).getTransactionEstimator();
+            this.mappings_estimator = new MappingsEstimator(this, t_estimator.getCorrelations(), procedures);
+        }
+        
+        // Start the MarkovUpdater
+        if (this.markov_updater != null) {
+            for (int partition : this.local_partitions_arr) {
+                this.markov_updater.register(this.getPartitionExecutor(partition).getTransactionEstimator());
+            } // FOR
+            t = new Thread(this.markov_updater);
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            t.setUncaughtExceptionHandler(handler);
+            t.start();
+        }
+        
         // Then we need to start all of the PartitionExecutor in threads
         if (d) LOG.debug("Starting PartitionExecutor threads for " + this.local_partitions_arr.length + " partitions on " + this.getSiteName());
         for (int partition : this.local_partitions_arr) {
@@ -946,9 +1114,16 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         for (PartitionExecutorPostProcessor espp : this.processors) {
             espp.prepareShutdown(false);
         } // FOR
+        for (PartitionExecutorSerializer serializer : this.serializers) {
+            serializer.prepareShutdown(false);
+        } // FOR
         
         if (this.mr_helper != null)
             this.mr_helper.prepareShutdown(error);
+        if (this.workload_sampler != null)
+            this.workload_sampler.prepareShutdown(error);
+        if (this.markov_updater != null)
+            this.markov_updater.prepareShutdown(error);
         if (this.commandLogger != null)
             this.commandLogger.prepareShutdown(error);
         if (this.asyncCompilerWork_thread != null)
@@ -993,8 +1168,13 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         for (PartitionExecutorPostProcessor p : this.processors) {
             p.shutdown();
         }
+        for (PartitionExecutorSerializer s : this.serializers) {
+            s.shutdown();
+        }
         // Tell the MapReduceHelperThread to shutdown too
         if (this.mr_helper != null) this.mr_helper.shutdown();
+        if (this.workload_sampler != null) this.workload_sampler.shutdown();
+        if (this.markov_updater != null) this.markov_updater.shutdown();
         if (this.commandLogger != null) this.commandLogger.shutdown();
         
         for (int p : this.local_partitions_arr) {
@@ -1009,6 +1189,11 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         // Tell all of our event loops to stop
         if (t) LOG.trace("Telling Procedure Listener event loops to exit");
         this.procEventLoop.exitLoop();
+        if (this.partitionEventLoops != null) {
+            for (NIOEventLoop eventLoop : this.partitionEventLoops) {
+                eventLoop.exitLoop();
+            } // FOR
+        }
         if (this.voltListener != null) this.voltListener.close();
         
         if (this.hstore_coordinator != null)
@@ -1030,6 +1215,48 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     // EXECUTION METHODS
     // ----------------------------------------------------------------------------
     
+    /**
+     * Returns the local partition offset of the thread-per-core EventLoop that the
+     * current thread is running. Returns -1 if the current thread is not one of them.
+     * @return
+     */
+    protected int getEventLoopOffset() {
+        if (this.partitionEventLoopThreads == null) return (-1);
+        Thread self = Thread.currentThread();
+        for (int i = 0; i < this.partitionEventLoopThreads.length; i++) {
+            if (this.partitionEventLoopThreads[i] == self) return (i);
+        } // FOR
+        return (-1);
+    }
+    
+    /**
+     * Mark the given thread as the one that runs the thread-per-core EventLoop
+     * for the local partition at the given offset
+     * @param offset
+     * @param thread
+     */
+    protected void setEventLoopThread(int offset, Thread thread) {
+        assert(this.partitionEventLoopThreads != null) : "Thread-per-core EventLoops are not enabled";
+        this.partitionEventLoopThreads[offset] = thread;
+    }
+    
+    /**
+     * Pick the local partition for a new request that does not have a base partition.
+     * In thread-per-core mode, we will use the partition that is on the same core
+     * as the EventLoop that we are running in. Otherwise we just pick one of our
+     * partitions based on the request's client handle.
+     * @param loop_offset - the result of getEventLoopOffset()
+     * @param client_handle
+     * @return
+     */
+    protected int getLocalBasePartition(int loop_offset, long client_handle) {
+        if (loop_offset != -1) {
+            return (this.local_partitions_arr[loop_offset].intValue());
+        }
+        int idx = (int)(Math.abs(client_handle) % this.local_partitions_arr.length);
+        return (this.local_partitions_arr[idx].intValue());
+    }
+    
     @Override
     public void procedureInvocation(byte[] serializedRequest, RpcCallback<byte[]> done) {
         EstTimeUpdater.update(System.currentTimeMillis());
@@ -1037,14 +1264,28 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
 
         StoredProcedureInvocation request = null;
         ByteBuffer buffer = ByteBuffer.wrap(serializedRequest);
-        synchronized (this) {
-            this.incomingDeserializer.setBuffer(buffer);
+        
+        // In thread-per-core mode, each partition's EventLoop has its own deserializer
+        // so that they don't have to fight over the lock
+        int loop_offset = this.getEventLoopOffset();
+        if (loop_offset != -1) {
+            FastDeserializer fds = this.partitionDeserializers[loop_offset];
+            fds.setBuffer(buffer);
             try {
-                request = this.incomingDeserializer.readObject(StoredProcedureInvocation.class);
+                request = fds.readObject(StoredProcedureInvocation.class);
             } catch (Exception ex) {
                 throw new RuntimeException(ex);
             }
-        } // SYNCH
+        } else {
+            synchronized (this) {
+                this.incomingDeserializer.setBuffer(buffer);
+                try {
+                    request = this.incomingDeserializer.readObject(StoredProcedureInvocation.class);
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            } // SYNCH
+        }
         
         // Extract the stuff we need to figure out whether this guy belongs at our site
         request.buildParameterSet();
@@ -1061,7 +1302,7 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         if (d) LOG.debug(String.format("Received new stored procedure invocation request for %s [handle=%d]", catalog_proc.getName(), request.getClientHandle()));
 
         // Profiling Updates
-        if (hstore_conf.site.status_show_txn_info) TxnCounter.RECEIVED.inc(request.getProcName());
+        if (hstore_conf.site.status_show_txn_info) TxnCounter.RECEIVED.inc(catalog_proc);
         if (hstore_conf.site.exec_profiling && base_partition != -1) {
             this.incoming_partitions.put(base_partition);
         }
@@ -1098,10 +1339,9 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         // one our partitions at random. This can happen if we're forcing txns to execute locally
         // or if there are no input parameters <-- this should be in the paper!!!
         if (base_partition == -1) {
-            if (t) LOG.trace(String.format("Selecting a random local partition to execute %s request [force_local=%s]",
-                                           request.getProcName(), hstore_conf.site.exec_force_localexecution));
-            int idx = (int)(Math.abs(request.getClientHandle()) % this.local_partitions_arr.length);
-            base_partition = this.local_partitions_arr[idx].intValue();
+            if (t) LOG.trace(String.format("Selecting a local partition to execute %s request [force_local=%s, event_loop=%d]",
+                                           request.getProcName(), hstore_conf.site.exec_force_localexecution, loop_offset));
+            base_partition = this.getLocalBasePartition(loop_offset, request.getClientHandle());
         }
         
         if (d) LOG.debug(String.format("Incoming %s transaction request [handle=%d, partition=%d]",
@@ -1190,6 +1430,14 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
             if (predict_touchedPartitions == null)
                 predict_touchedPartitions = this.single_partition_sets[base_partition];
         }    
+        // Use the rules generated from the ParameterMappingsSet for the procedures that have them 
+        else if (this.mappings_estimator != null && this.mappings_estimator.canEstimate(catalog_proc)) {
+            if (t) LOG.trace(String.format("Using rule-based transaction estimator [clientHandle=%d]", request.getClientHandle()));
+            Object cast_args[] = this.param_manglers.get(catalog_proc).convert(args);
+            if (hstore_conf.site.txn_profiling) ts.profiler.startInitEstimation();
+            predict_touchedPartitions = this.mappings_estimator.initializeTransaction(catalog_proc, cast_args, base_partition);
+            if (hstore_conf.site.txn_profiling) ts.profiler.stopInitEstimation();
+        }
         // Otherwise, we'll try to estimate what the transaction will do (if we can)
         else {
             if (d) LOG.debug(String.format("Using TransactionEstimator to check whether new %s request is single-partitioned [clientHandle=%d]",
@@ -2016,7 +2264,13 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         
         boolean sendResponse = true;
         if (this.commandLogger != null && status == Status.OK && ts.isSysProc() == false) {
+            // With group commit, the CommandLogWriter records the WAL latency
+            // when the txn's entry is actually flushed to disk
+            boolean profileWAL = (hstore_conf.site.txn_profiling &&
+                                  hstore_conf.site.exec_command_logging_group_commit <= 0);
+            if (profileWAL) ts.profiler.startPostWAL();
             sendResponse = this.commandLogger.appendToLog(ts, cresponse);
+            if (profileWAL) ts.profiler.stopPostWAL();
         }
 
         if (sendResponse) {
@@ -2106,6 +2360,24 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         this.ready_responses.add(Pair.of(ts,cr));
     }
 
+    /**
+     * Queue up the result of a WorkFragment that was executed for a remote
+     * transaction so that one of our serialization threads sends it back
+     * @param task
+     */
+    public void queueWorkResult(PartitionExecutorSerializer.Task task) {
+        assert(hstore_conf.site.exec_serialization_thread);
+        this.ready_results.add(task);
+    }
+    
+    /**
+     * Returns the number of WorkResults that are waiting to be serialized
+     * @return
+     */
+    public int getQueuedWorkResultCount() {
+        return (this.ready_results.size());
+    }
+
     /**
      * Perform final cleanup and book keeping for a completed txn
      * If you call this, you can never access anything in this txn's AbstractTransaction again
@@ -2148,10 +2420,11 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         // Update Transaction profiles
         // We have to calculate the profile information *before* we call PartitionExecutor.cleanup!
         // XXX: Should we include totals for mispredicted txns?
-        if (hstore_conf.site.txn_profiling && this.status_monitor != null &&
+        if (hstore_conf.site.txn_profiling &&
             ts.profiler.isDisabled() == false && status != Status.ABORT_MISPREDICT) {
             ts.profiler.stopTransaction();
-            this.status_monitor.addTxnProfile(catalog_proc, ts.profiler);
+            this.txn_latencies.record(catalog_proc, ts.profiler);
+            if (this.status_monitor != null) this.status_monitor.addTxnProfile(catalog_proc, ts.profiler);
         }
         
         // Clean-up any extra information that we may have for the txn
@@ -2284,6 +2557,42 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
             };
         });
         
+        // ----------------------------------------------------------------------------
+        // (2) Thread-per-core EventLoops (one per local partition)
+        // ----------------------------------------------------------------------------
+        if (this.partitionEventLoops != null) {
+            for (int i = 0; i < this.partitionEventLoops.length; i++) {
+                final int offset = i;
+                final int partition = this.local_partitions_arr[offset].intValue();
+                runnables.add(new Runnable() {
+                    public void run() {
+                        final Thread self = Thread.currentThread();
+                        self.setName(HStoreThreadManager.getThreadName(hstore_site, partition, "net"));
+                        if (hstore_site.getHStoreConf().site.cpu_affinity) {
+                            Partition catalog_part = CatalogUtil.getPartitionById(catalog_site, partition);
+                            hstore_site.getThreadManager().registerNetworkThread(catalog_part);
+                        }
+                        hstore_site.setEventLoopThread(offset, self);
+                        
+                        Throwable error = null;
+                        try {
+                            hstore_site.ready_latch.countDown();
+                            hstore_site.partitionEventLoops[offset].run();
+                        } catch (Throwable ex) {
+                            if (ex != null && ex.getMessage() != null && ex.getMessage().contains("Connection closed") == false) {
+                                error = ex;
+                            }
+                        }
+                        if (error != null && hstore_site.isShuttingDown() == false) {
+                            LOG.warn(String.format("EventLoop for partition %d is stopping! [error=%s, hstore_shutdown=%s]",
+                                                   partition, error.getMessage(), hstore_site.shutdown_state), error);
+                            hstore_site.hstore_coordinator.shutdownCluster(error);
+                        }
+                    };
+                });
+            } // FOR
+        }
+        
         // ----------------------------------------------------------------------------
         // (5) HStoreSite Setup Thread
         // ----------------------------------------------------------------------------
@@ -18,6 +18,7 @@ import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.collections15.map.ListOrderedMap;
+import org.apache.commons.pool.ObjectPool;
 import org.apache.commons.pool.impl.StackObjectPool;
 import org.apache.log4j.Logger;
 import org.voltdb.catalog.Database;
@@ -32,6 +33,8 @@ import edu.brown.hstore.dtxn.TransactionProfile;
 import edu.brown.hstore.dtxn.TransactionQueueManager;
 import edu.brown.hstore.interfaces.Shutdownable;
 import edu.brown.hstore.util.PartitionExecutorPostProcessor;
+import edu.brown.hstore.util.PartitionExecutorSerializer;
+import edu.brown.hstore.util.ProcedureLatencies;
 import edu.brown.hstore.util.ThrottlingQueue;
 import edu.brown.hstore.util.TxnCounter;
 import edu.brown.logging.LoggerUtil;
@@ -39,6 +42,7 @@ import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.logging.RingBufferAppender;
 import edu.brown.markov.TransactionEstimator;
 import edu.brown.statistics.Histogram;
+import edu.brown.statistics.LatencyHistogram;
 import edu.brown.utils.CollectionUtil;
 import edu.brown.utils.EventObservable;
 import edu.brown.utils.EventObserver;
@@ -46,6 +50,7 @@ import edu.brown.utils.ProfileMeasurement;
 import edu.brown.utils.StringUtil;
 import edu.brown.utils.TableUtil;
 import edu.brown.utils.TypedPoolableObjectFactory;
+import edu.brown.utils.TypedThreadLocalObjectPool;
 
 /**
  * 
@@ -362,6 +367,19 @@ public class HStoreSiteStatus implements Runnable, Shutdownable {
             
             m_exec.put("Post-Processing Txns", val);
         }
+        if (hstore_conf.site.exec_serialization_thread) {
+            String val = String.format("%-5d", hstore_site.getQueuedWorkResultCount());
+            int i = 0;
+            for (PartitionExecutorSerializer serializer : hstore_site.getExecutionSiteSerializers()) {
+                pm = serializer.getExecTime();
+                val += String.format("\n[%02d] %d total / %.2fms total / %.2fms avg",
+                                     i++,
+                                     pm.getInvocations(),
+                                     pm.getTotalThinkTimeMS(),
+                                     pm.getAverageThinkTimeMS());
+            } // FOR
+            m_exec.put("Serializing Results", val);
+        }
         m_exec.put(" ", null);
 
         // EXECUTION ENGINES
@@ -422,6 +440,12 @@ public class HStoreSiteStatus implements Runnable, Shutdownable {
             // TransactionQueueManager - Requeued Txns
             m.put("Waiting Requeues", queueManagerDebug.getRestartQueueSize());
             
+            // TransactionEstimator - Cached Path Estimates
+            TransactionEstimator t_estimator = es.getTransactionEstimator();
+            if (t_estimator != null && t_estimator.getEstimationCache() != null) {
+                m.put("Estimation Cache", t_estimator.getEstimationCache().toString());
+            }
+            
 //            if (is_throttled && queue_size < queue_release && hstore_site.isShuttingDown() == false) {
 //                LOG.warn(String.format("Partition %d is throttled when it should not be! [inflight=%d, release=%d]",
 //                                        partition, queue_size, queue_release));
@@ -497,6 +521,11 @@ public class HStoreSiteStatus implements Runnable, Shutdownable {
             if (TXNINFO_ALWAYS_SHOW.contains(tc) || (tc.get() > 0 && TXNINFO_EXCLUDES.contains(tc) == false)) cnts_to_include.add(tc);
         } // FOR
         
+        Map<TxnCounter, Histogram<String>> cnts_histograms = new HashMap<TxnCounter, Histogram<String>>();
+        for (TxnCounter tc : cnts_to_include) {
+            cnts_histograms.put(tc, tc.getHistogram());
+        } // FOR
+        
         boolean first = true;
         int num_cols = cnts_to_include.size() + 1;
         String header[] = new String[num_cols];
@@ -512,7 +541,7 @@ public class HStoreSiteStatus implements Runnable, Shutdownable {
             if (first) header[0] = "";
             for (TxnCounter tc : cnts_to_include) {
                 if (first) header[j] = tc.toString().replace("partition", "P");
-                Long cnt = tc.getHistogram().get(proc_name);
+                Long cnt = cnts_histograms.get(tc).get(proc_name);
                 rows[i][j++] = (cnt != null ? cnt.toString() : "-");
             } // FOR
             first = false;
@@ -818,24 +847,79 @@ public class HStoreSiteStatus implements Runnable, Shutdownable {
         return (TableUtil.table(f, this.txn_profiler_header, rows));
     }
     
+    /**
+     * Tail latencies for each Procedure. The first columns are for the total
+     * time of the txns, and the rest are the p99 latencies of each phase.
+     * All values are in milliseconds
+     * @return
+     */
+    public Map<String, String> txnLatencyInfo() {
+        ProcedureLatencies latencies = hstore_site.getProcedureLatencies();
+        if (latencies == null) return (null);
+        
+        ProcedureLatencies.Phase phases[] = ProcedureLatencies.Phase.values();
+        String header[] = new String[phases.length + 5];
+        int idx = 0;
+        header[idx++] = "";
+        header[idx++] = "txns";
+        header[idx++] = "p50";
+        header[idx++] = "p99";
+        header[idx++] = "p999";
+        header[idx++] = "max";
+        for (int i = 1; i < phases.length; i++) {
+            header[idx++] = phases[i].name().toLowerCase() + "_p99";
+        } // FOR
+        
+        List<Object[]> rows = new ArrayList<Object[]>(); 
+        for (Entry<Procedure, LatencyHistogram[]> e : latencies.getHistograms().entrySet()) {
+            LatencyHistogram h[] = e.getValue();
+            LatencyHistogram total = h[ProcedureLatencies.Phase.TOTAL.ordinal()];
+            if (total.isEmpty()) continue;
+            
+            idx = 0;
+            Object row[] = new String[header.length];
+            row[idx++] = e.getKey().getName();
+            row[idx++] = Long.toString(total.getCount());
+            row[idx++] = String.format("%.02f", total.getValueAtPercentile(50) / 1000000d);
+            row[idx++] = String.format("%.02f", total.getValueAtPercentile(99) / 1000000d);
+            row[idx++] = String.format("%.02f", total.getValueAtPercentile(99.9) / 1000000d);
+            row[idx++] = String.format("%.02f", total.getMax() / 1000000d);
+            for (int i = 1; i < phases.length; i++) {
+                row[idx++] = (h[i].isEmpty() ? null : String.format("%.02f", h[i].getValueAtPercentile(99) / 1000000d));
+            } // FOR
+            rows.add(row);
+        } // FOR
+        if (rows.isEmpty()) return (null);
+        
+        Object rows_arr[][] = rows.toArray(new String[rows.size()][header.length]);
+        TableUtil.Format f = new TableUtil.Format("   ", null, null, true, false, true, false, false, false, true, true, "-");
+        return (TableUtil.tableMap(f, header, rows_arr));
+    }
+    
     // ----------------------------------------------------------------------------
     // OBJECT POOL PROFILING
     // ----------------------------------------------------------------------------
     private Map<String, Object> poolInfo() {
         
         // HStoreObjectPools
-        Map<String, StackObjectPool> pools = HStoreObjectPools.getAllPools(); 
+        Map<String, ObjectPool> pools = HStoreObjectPools.getAllPools(); 
         
         // MarkovPathEstimators
-        pools.put("Estimators", (StackObjectPool)TransactionEstimator.POOL_ESTIMATORS); 
+        pools.put("Estimators", TransactionEstimator.POOL_ESTIMATORS); 
 
         // TransactionEstimator.States
-        pools.put("EstimationStates", (StackObjectPool)TransactionEstimator.POOL_STATES);
+        pools.put("EstimationStates", TransactionEstimator.POOL_STATES);
         
         final Map<String, Object> m_pool = new ListOrderedMap<String, Object>();
         for (String key : pools.keySet()) {
-            StackObjectPool pool = pools.get(key);
-            TypedPoolableObjectFactory<?> factory = (TypedPoolableObjectFactory<?>)pool.getFactory();
+            ObjectPool pool = pools.get(key);
+            if (pool == null) continue;
+            TypedPoolableObjectFactory<?> factory = null;
+            if (pool instanceof TypedThreadLocalObjectPool<?>) {
+                factory = ((TypedThreadLocalObjectPool<?>)pool).getFactory();
+            } else {
+                factory = (TypedPoolableObjectFactory<?>)((StackObjectPool)pool).getFactory();
+            }
             if (factory.getCreatedCount() > 0) m_pool.put(key, this.formatPoolCounts(pool, factory));
         } // FOR
 
@@ -911,6 +995,7 @@ public class HStoreSiteStatus implements Runnable, Shutdownable {
         // Transaction Profiling
         // ----------------------------------------------------------------------------
         Map<String, String> txnProfiles = (hstore_conf.site.txn_profiling ? this.txnProfileInfo() : null);
+        Map<String, String> txnLatencies = (hstore_conf.site.txn_profiling ? this.txnLatencyInfo() : null);
         
         // ----------------------------------------------------------------------------
         // Object Pool Information
@@ -918,7 +1003,7 @@ public class HStoreSiteStatus implements Runnable, Shutdownable {
         Map<String, Object> poolInfo = null;
         if (show_poolinfo) poolInfo = this.poolInfo();
         
-        String top = StringUtil.formatMaps(header, m_exec, m_txn, threadInfo, cpuThreads, txnProfiles, plannerInfo, poolInfo);
+        String top = StringUtil.formatMaps(header, m_exec, m_txn, threadInfo, cpuThreads, txnProfiles, txnLatencies, plannerInfo, poolInfo);
         String bot = "";
         Histogram<Integer> blockedDtxns = hstore_site.getTransactionQueueManager().getDebugContext().getBlockedDtxnHistogram(); 
         if (hstore_conf.site.status_show_txn_info && blockedDtxns != null && blockedDtxns.isEmpty() == false) {
@@ -929,7 +1014,7 @@ public class HStoreSiteStatus implements Runnable, Shutdownable {
         return (top + bot);
     }
     
-    private String formatPoolCounts(StackObjectPool pool, TypedPoolableObjectFactory<?> factory) {
+    private String formatPoolCounts(ObjectPool pool, TypedPoolableObjectFactory<?> factory) {
         return (String.format(POOL_FORMAT, pool.getNumActive(),
                                            pool.getNumIdle(),
                                            factory.getCreatedCount(),
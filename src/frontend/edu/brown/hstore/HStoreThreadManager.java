@@ -62,39 +62,67 @@ public class HStoreThreadManager {
      */
     public void registerEEThread(Partition partition) {
         if (this.disable) return;
+        boolean affinity[] = this.getPartitionAffinity(partition);
+        if (affinity == null) return;
+        if (debug.get())
+            LOG.debug("Registering EE Thread for " + partition + " to execute on CPUs " + getCPUIds(affinity));
+        org.voltdb.utils.ThreadUtils.setThreadAffinity(affinity);
+        this.registerThread(affinity);
+        
+        final boolean endingAffinity[] = org.voltdb.utils.ThreadUtils.getThreadAffinity();
+        for (int ii = 0; ii < endingAffinity.length; ii++) {
+            if (trace.get() && endingAffinity[ii]) LOG.trace(String.format("NEW AFFINITY %s -> CPU[%d]", partition, ii));
+            affinity[ii] = false;
+        } // FOR
+    }
+    
+    /**
+     * Set the CPU affinity for the network event loop thread that belongs to the given partition
+     * in thread-per-core mode. The thread will be allowed to execute on the same cores as
+     * that partition's EE thread, so that a txn request never has to be moved to another core
+     * @param partition
+     */
+    public void registerNetworkThread(Partition partition) {
+        if (this.disable) return;
+        boolean affinity[] = this.getPartitionAffinity(partition);
+        if (affinity == null) return;
+        if (debug.get())
+            LOG.debug("Registering Network Thread for " + partition + " to execute on CPUs " + getCPUIds(affinity));
+        org.voltdb.utils.ThreadUtils.setThreadAffinity(affinity);
+        this.registerThread(affinity);
+    }
+    
+    /**
+     * Returns the CPU affinity for the threads that execute on behalf of the given partition
+     * @param partition
+     * @return
+     */
+    private boolean[] getPartitionAffinity(Partition partition) {
         boolean affinity[] = null;
         try {
             affinity = org.voltdb.utils.ThreadUtils.getThreadAffinity();
         } catch (UnsatisfiedLinkError ex) {
             LOG.warn("Unable to set CPU affinity for " + partition + ". Disabling feature in ExecutionEngine", ex);
             this.disable = true;
-            return;
+            return (null);
         }
         assert(affinity != null);
         for (int ii = 0; ii < affinity.length; ii++) {
             affinity[ii] = false;
         } // FOR
 
-        // Only allow this EE to execute on a single core
-        if (hstore_site.getHStoreConf().site.cpu_affinity_one_partition_per_core) {
+        // Only allow this partition to execute on a single core
+        if (hstore_site.getHStoreConf().site.cpu_affinity_one_partition_per_core ||
+            hstore_site.getHStoreConf().site.exec_thread_per_core) {
             affinity[partition.getRelativeIndex()-1 % affinity.length] = true;
         }
-        // Allow this EE to run on any of the lower cores
+        // Allow this partition to run on any of the lower cores
         else {
             for (int i = 0; i < this.num_partitions; i++) {
                 affinity[i] = true;
             } // FOR
         }
-        if (debug.get())
-            LOG.debug("Registering EE Thread for " + partition + " to execute on CPUs " + getCPUIds(affinity));
-        org.voltdb.utils.ThreadUtils.setThreadAffinity(affinity);
-        this.registerThread(affinity);
-        
-        final boolean endingAffinity[] = org.voltdb.utils.ThreadUtils.getThreadAffinity();
-        for (int ii = 0; ii < endingAffinity.length; ii++) {
-            if (trace.get() && endingAffinity[ii]) LOG.trace(String.format("NEW AFFINITY %s -> CPU[%d]", partition, ii));
-            affinity[ii] = false;
-        } // FOR
+        return (affinity);
     }
     
     /**
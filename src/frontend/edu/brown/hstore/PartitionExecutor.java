@@ -42,6 +42,7 @@
 package edu.brown.hstore;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
@@ -51,6 +52,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.Semaphore;
@@ -128,6 +130,7 @@ import edu.brown.hstore.interfaces.Shutdownable;
 import edu.brown.hstore.util.ArrayCache.IntArrayCache;
 import edu.brown.hstore.util.ArrayCache.LongArrayCache;
 import edu.brown.hstore.util.ParameterSetArrayCache;
+import edu.brown.hstore.util.PartitionExecutorSerializer;
 import edu.brown.hstore.util.QueryCache;
 import edu.brown.hstore.util.ThrottlingQueue;
 import edu.brown.hstore.util.TransactionWorkRequestBuilder;
@@ -137,6 +140,7 @@ import edu.brown.markov.EstimationThresholds;
 import edu.brown.markov.MarkovEstimate;
 import edu.brown.markov.MarkovGraph;
 import edu.brown.markov.TransactionEstimator;
+import edu.brown.statistics.Histogram;
 import edu.brown.utils.CollectionUtil;
 import edu.brown.utils.EventObservable;
 import edu.brown.utils.PartitionEstimator;
@@ -451,6 +455,24 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
      * Reusable int array for input dependency ids
      */
     private final IntArrayCache tmp_inputDepIds = new IntArrayCache(10);
+    /**
+     * InitiateTaskMessages that we pulled out of the work queue when grouping straight-line
+     * txns together. These have to be processed before anything else in the work queue.
+     */
+    private final Queue<InitiateTaskMessage> straightline_queue = new ArrayDeque<InitiateTaskMessage>();
+    /**
+     * Reusable arrays for executing multiple txns' batches at once
+     */
+    private final List<LocalTransaction> tmp_batchTxns = new ArrayList<LocalTransaction>();
+    private final BitSet tmp_batchReadOnly = new BitSet();
+    private final Histogram<Integer> tmp_batchTouchedPartitions = new Histogram<Integer>();
+    private int tmp_batchSizes[] = new int[10];
+    private int tmp_batchStmtCounts[] = new int[10];
+    private long tmp_batchFragmentIds[] = new long[10];
+    private int tmp_batchOutputDepIds[] = new int[10];
+    private int tmp_batchInputDepIds[] = new int[10];
+    private ParameterSet tmp_batchParams[] = new ParameterSet[10];
+    private int tmp_batchFragmentCount = 0;
     
     // ----------------------------------------------------------------------------
     // PROFILING OBJECTS
@@ -789,7 +811,10 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
                 // Poll Work Queue
                 // -------------------------------
                 try {
-                    work = this.work_queue.poll();
+                    // The txns that we pulled out of the work queue to execute together
+                    // as a straight-line group always have to go first
+                    work = this.straightline_queue.poll();
+                    if (work == null) work = this.work_queue.poll();
                     if (work == null) {
                         // See if there is anything that we can do while we wait
                         // XXX this.utilityWork(null);
@@ -820,7 +845,11 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
                     }
                     // If this transaction has already been aborted and they are trying to give us
                     // something that isn't a FinishTaskMessage, then we won't bother processing it
-                    else if (current_txn.isAborted() && (work instanceof FinishTaskMessage) == false) {
+                    // We can't skip a straight-line txn whose batch was already executed, because
+                    // then its changes would get committed along with the rest of its group
+                    else if (current_txn.isAborted() && (work instanceof FinishTaskMessage) == false &&
+                             (current_txn instanceof LocalTransaction == false ||
+                              ((LocalTransaction)current_txn).hasStraightLineResults() == false)) {
                         if (d) LOG.debug(String.format("%s - Was marked as aborted. Will not process %s on partition %d",
                                                        current_txn, work.getClass().getSimpleName(), this.partitionId));
                         continue;
@@ -902,6 +931,11 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
                         }
     
                         try {
+                            // Check whether we can execute this txn's batch together with
+                            // the straight-line txns that are waiting behind it
+                            if (hstore_conf.site.exec_straightline_group_size > 1 && this.straightline_queue.isEmpty()) {
+                                this.executeStraightLineGroup((LocalTransaction)current_txn, itask);
+                            }
                             this.processInitiateTaskMessage((LocalTransaction)current_txn, itask);
                         } catch (Throwable ex) {
                             LOG.error(String.format("Unexpected error when executing %s\n%s", current_txn, current_txn.debug()));
@@ -1839,9 +1873,16 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
                 LOG.fatal(ts.toString());
                 throw new ServerFaultException("No RPC callback to HStoreSite for " + ts, ts.getTransactionId());
             }
-            WorkResult response = this.buildWorkResult((RemoteTransaction)ts, result, status, error);
-            assert(response != null);
-            callback.run(response);
+            // Let one of the HStoreSite's serialization threads take care of
+            // serializing the results so that we can go back to executing work
+            if (hstore_conf.site.exec_serialization_thread) {
+                hstore_site.queueWorkResult(new PartitionExecutorSerializer.Task(this.partitionId, ts, result,
+                                                                                 status, error, callback));
+            } else {
+                WorkResult response = this.buildWorkResult((RemoteTransaction)ts, result, status, error);
+                assert(response != null);
+                callback.run(response);
+            }
             
         }
     }
@@ -2021,6 +2062,187 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
         return (result != null ? result.dependencies : null);
     }
     
+    /**
+     * Returns true if the given txn is a single-partition straight-line txn whose
+     * batch we can execute in a group before its procedure is invoked
+     * @param ts
+     * @param itask
+     * @return
+     */
+    private boolean canGroupStraightLine(AbstractTransaction ts, InitiateTaskMessage itask) {
+        if ((ts instanceof LocalTransaction) == false || ts.isAborted() || itask.isSysProc()) {
+            return (false);
+        }
+        LocalTransaction local_ts = (LocalTransaction)ts;
+        if (local_ts.isPredictSinglePartition() == false || local_ts.isMapReduce() || local_ts.hasStraightLineResults()) {
+            return (false);
+        }
+        VoltProcedure volt_proc = this.procedures.get(itask.getStoredProcedureName());
+        return (volt_proc != null && volt_proc.isStraightLine());
+    }
+    
+    /**
+     * Plan the straight-line batch for the given txn and add it to the group that
+     * we are building. Returns false if the txn's batch is not single-partitioned
+     * and local, in which case it has to be executed on its own.
+     * @param ts
+     * @param itask
+     * @return
+     */
+    private boolean addStraightLineBatch(LocalTransaction ts, InitiateTaskMessage itask) {
+        VoltProcedure volt_proc = this.procedures.get(itask.getStoredProcedureName());
+        ParameterSet params[] = volt_proc.getStraightLineParameterSets(itask.getParameters());
+        if (params == null) return (false);
+        
+        // We plan the batch with a separate Histogram because the txn will plan the
+        // batch again when it gets invoked, and that's what will update its state
+        SQLStmt batchStmts[] = volt_proc.getStraightLineStatements();
+        BatchPlanner planner = this.getBatchPlanner(ts, batchStmts.length, batchStmts, false);
+        this.tmp_batchTouchedPartitions.clear();
+        BatchPlanner.BatchPlan plan = planner.plan(ts.getTransactionId(),
+                                                   ts.getClientHandle(),
+                                                   this.partitionIdObj, 
+                                                   ts.getPredictTouchedPartitions(),
+                                                   ts.isPredictSinglePartition(),
+                                                   this.tmp_batchTouchedPartitions,
+                                                   params);
+        if (plan.getMisprediction() != null || plan.isSingledPartitionedAndLocal() == false) {
+            return (false);
+        }
+        
+        // The BatchPlan gets reused by the BatchPlanner, so we have to copy 
+        // everything out of it now
+        int numTxns = this.tmp_batchTxns.size();
+        int fragmentCount = plan.getFragmentCount();
+        int offset = this.tmp_batchFragmentCount;
+        if (numTxns == this.tmp_batchSizes.length) {
+            this.tmp_batchSizes = Arrays.copyOf(this.tmp_batchSizes, numTxns * 2);
+            this.tmp_batchStmtCounts = Arrays.copyOf(this.tmp_batchStmtCounts, numTxns * 2);
+        }
+        if (offset + fragmentCount > this.tmp_batchFragmentIds.length) {
+            int size = (offset + fragmentCount) * 2;
+            this.tmp_batchFragmentIds = Arrays.copyOf(this.tmp_batchFragmentIds, size);
+            this.tmp_batchOutputDepIds = Arrays.copyOf(this.tmp_batchOutputDepIds, size);
+            this.tmp_batchInputDepIds = Arrays.copyOf(this.tmp_batchInputDepIds, size);
+            this.tmp_batchParams = Arrays.copyOf(this.tmp_batchParams, size);
+        }
+        System.arraycopy(plan.getFragmentIds(), 0, this.tmp_batchFragmentIds, offset, fragmentCount);
+        System.arraycopy(plan.getOutputDependencyIds(), 0, this.tmp_batchOutputDepIds, offset, fragmentCount);
+        System.arraycopy(plan.getInputDependencyIds(), 0, this.tmp_batchInputDepIds, offset, fragmentCount);
+        System.arraycopy(params, 0, this.tmp_batchParams, offset, fragmentCount);
+        this.tmp_batchFragmentCount += fragmentCount;
+        this.tmp_batchSizes[numTxns] = fragmentCount;
+        this.tmp_batchStmtCounts[numTxns] = plan.getBatchSize();
+        this.tmp_batchReadOnly.set(numTxns, plan.isReadOnly());
+        this.tmp_batchTxns.add(ts);
+        return (true);
+    }
+    
+    /**
+     * Pull the straight-line txns that are waiting right behind the given txn out of the
+     * work queue and execute all of their batches with a single call into the EE.
+     * Each txn gets its own undo token so that it can still be committed or aborted
+     * on its own later on. The output for each txn is stored in its LocalTransaction
+     * handle so that executeSQLStmtBatch() can hand it back when the txn is invoked.
+     * The txns that we pulled out of the work queue are put into the straightline_queue
+     * so that they get invoked in order before anything else.
+     * If the EE throws an error, then the work for all of the txns is rolled back and
+     * each txn will be executed on its own as if it was never grouped.
+     * @param ts
+     * @param itask
+     */
+    private void executeStraightLineGroup(LocalTransaction ts, InitiateTaskMessage itask) {
+        assert(this.straightline_queue.isEmpty());
+        if (this.canGroupStraightLine(ts, itask) == false) return;
+        exec_lock.lock();
+        try {
+            if (this.currentDtxn != null || this.currentExecMode != ExecutionMode.COMMIT_ALL) return;
+        } finally {
+            exec_lock.unlock();
+        } // SYNCH
+        
+        this.tmp_batchTxns.clear();
+        this.tmp_batchFragmentCount = 0;
+        if (this.addStraightLineBatch(ts, itask) == false) return;
+        
+        while (this.tmp_batchTxns.size() < hstore_conf.site.exec_straightline_group_size) {
+            VoltMessage next = this.work_queue.peek();
+            if (next == null || PartitionExecutorQueue.Lane.get(next) != PartitionExecutorQueue.Lane.INIT) break;
+            InitiateTaskMessage next_itask = (InitiateTaskMessage)this.work_queue.poll(PartitionExecutorQueue.Lane.INIT);
+            if (next_itask == null) break;
+            
+            // Once it's out of the work queue, it has to be invoked next even if 
+            // it can't be part of the group
+            this.straightline_queue.add(next_itask);
+            AbstractTransaction next_ts = hstore_site.getTransaction(next_itask.getTxnId());
+            if (this.canGroupStraightLine(next_ts, next_itask) == false ||
+                this.addStraightLineBatch((LocalTransaction)next_ts, next_itask) == false) {
+                break;
+            }
+        } // WHILE
+        int numTxns = this.tmp_batchTxns.size();
+        if (numTxns < 2) return;
+        
+        long txnIds[] = new long[numTxns];
+        long undoTokens[] = new long[numTxns];
+        for (int i = 0; i < numTxns; i++) {
+            txnIds[i] = this.tmp_batchTxns.get(i).getTransactionId().longValue();
+            undoTokens[i] = this.getNextUndoToken();
+        } // FOR
+        if (d) LOG.debug(String.format("Executing %d fragments for %d straight-line txns at partition %d in one batch %s",
+                                       this.tmp_batchFragmentCount, numTxns, this.partitionId, Arrays.toString(txnIds)));
+        
+        DependencySet results[] = null;
+        try {
+            results = this.ee.executeQueryPlanFragmentBatches(numTxns,
+                                                              this.tmp_batchSizes,
+                                                              this.tmp_batchFragmentIds,
+                                                              this.tmp_batchInputDepIds,
+                                                              this.tmp_batchOutputDepIds,
+                                                              this.tmp_batchParams,
+                                                              txnIds,
+                                                              this.lastCommittedTxnId,
+                                                              undoTokens);
+        } catch (SerializableException ex) {
+            if (d) LOG.debug(String.format("Failed to execute %d straight-line txns at partition %d in one batch. " +
+                                           "Executing them one at a time", numTxns, this.partitionId), ex);
+            // This will roll back all of the txns in the group, since their
+            // undo tokens are greater than the first one
+            this.ee.undoUndoToken(undoTokens[0]);
+            return;
+        } finally {
+            Arrays.fill(this.tmp_batchParams, 0, this.tmp_batchFragmentCount, null);
+        }
+        
+        for (int i = 0; i < numTxns; i++) {
+            LocalTransaction batch_ts = this.tmp_batchTxns.get(i);
+            this.execState.clear();
+            batch_ts.setExecutionState(this.execState);
+            batch_ts.fastInitRound(this.partitionId, undoTokens[i]);
+            batch_ts.setBatchSize(this.tmp_batchStmtCounts[i]);
+            if (this.tmp_batchReadOnly.get(i) == false) batch_ts.markExecNotReadOnly(this.partitionId);
+            batch_ts.setSubmittedEE(this.partitionId);
+            batch_ts.fastFinishRound(this.partitionId);
+            batch_ts.resetExecutionState();
+            batch_ts.setStraightLineResults(results[i].dependencies);
+        } // FOR
+        this.tmp_batchTxns.clear();
+    }
+    
+    /**
+     * Rolling back a txn's undo token also rolls back the work of all of the straight-line
+     * txns that were executed in a group after it. Any of them that have not been invoked yet
+     * will need to execute their batch again.
+     */
+    private void resetStraightLineGroup() {
+        for (InitiateTaskMessage itask : this.straightline_queue) {
+            AbstractTransaction ts = hstore_site.getTransaction(itask.getTxnId());
+            if (ts instanceof LocalTransaction && ((LocalTransaction)ts).removeStraightLineResults() != null) {
+                if (d) LOG.debug(String.format("%s - Discarding straight-line results at partition %d", ts, this.partitionId));
+            }
+        } // FOR
+    }
+    
     /**
      * Execute the given fragment tasks on this site's underlying EE
      * @param ts
@@ -2170,6 +2392,49 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
                      allowELT != 0);
     }
 
+    /**
+     * Append the tuples in the given VoltTable to a table without undo logging.
+     * The EE adds the new tuples to each of the table's indexes in sorted order
+     * after they have all been copied in. Nothing that is loaded here will be
+     * rolled back if the txn aborts.
+     * @param ts
+     * @param catalog_tbl
+     * @param data
+     */
+    public void bulkLoadTable(AbstractTransaction ts, Table catalog_tbl, VoltTable data) {
+        ts.setSubmittedEE(this.partitionId);
+        ee.loadTable(catalog_tbl.getRelativeIndex(), data,
+                     ts.getTransactionId(),
+                     lastCommittedTxnId,
+                     HStoreConstants.DISABLE_UNDO_LOGGING_TOKEN,
+                     false);
+    }
+
+    /**
+     * Returns the BatchPlanner for the given SQLStmt batch, creating it the first
+     * time that we see this batch
+     * @param ts
+     * @param batchSize
+     * @param batchStmts
+     * @param forceSinglePartition
+     * @return
+     */
+    private BatchPlanner getBatchPlanner(LocalTransaction ts, int batchSize, SQLStmt batchStmts[], boolean forceSinglePartition) {
+        // Calculate the hash code for this batch to see whether we already have a planner
+        final Integer batchHashCode = VoltProcedure.getBatchHashCode(batchStmts, batchSize);
+        BatchPlanner planner = this.batchPlanners.get(batchHashCode);
+        if (planner == null) { // Assume fast case
+            planner = new BatchPlanner(batchStmts,
+                                       batchSize,
+                                       ts.getProcedure(),
+                                       this.p_estimator,
+                                       forceSinglePartition);
+            this.batchPlanners.put(batchHashCode, planner);
+        }
+        assert(planner != null);
+        return (planner);
+    }
+
     /**
      * Execute a SQLStmt batch at this partition.
      * @param ts The txn handle that is executing this query batch
@@ -2195,18 +2460,7 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
             // EXAMPLE: batchStmts[0].getStatement().getDeferrable()    
         }
         
-        // Calculate the hash code for this batch to see whether we already have a planner
-        final Integer batchHashCode = VoltProcedure.getBatchHashCode(batchStmts, batchSize);
-        BatchPlanner planner = this.batchPlanners.get(batchHashCode);
-        if (planner == null) { // Assume fast case
-            planner = new BatchPlanner(batchStmts,
-                                       batchSize,
-                                       ts.getProcedure(),
-                                       this.p_estimator,
-                                       forceSinglePartition);
-            this.batchPlanners.put(batchHashCode, planner);
-        }
-        assert(planner != null);
+        BatchPlanner planner = this.getBatchPlanner(ts, batchSize, batchStmts, forceSinglePartition);
         
         // At this point we have to calculate exactly what we need to do on each partition
         // for this batch. So somehow right now we need to fire this off to either our
@@ -2238,9 +2492,9 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
             ts.setPendingError(ex, false);
 
             MarkovGraph markov = (t_state != null ? t_state.getMarkovGraph() : null); 
-            if (hstore_conf.site.markov_mispredict_recompute && markov != null) {
+            if (hstore_conf.site.markov_mispredict_recompute && markov != null && hstore_site.getMarkovUpdater() != null) {
                 if (d) LOG.debug("Recomputing MarkovGraph probabilities because " + ts + " mispredicted");
-                // FIXME this.executor.helper.queueMarkovToRecompute(markov);
+                hstore_site.getMarkovUpdater().queueRecompute(markov);
             }
             
             // Print Misprediction Debug
@@ -2264,12 +2518,18 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
         // If the BatchPlan only has WorkFragments that are for this partition, then
         // we can use the fast-path executeLocalPlan() method
         if (plan.isSingledPartitionedAndLocal()) {
-            if  (d) LOG.debug("Executing BatchPlan directly with ExecutionSite");
-            results = this.executeLocalPlan(ts, plan, batchParams);
+            // We may have already executed this batch in a group of straight-line txns
+            results = ts.removeStraightLineResults();
+            if (results == null) {
+                if  (d) LOG.debug("Executing BatchPlan directly with ExecutionSite");
+                results = this.executeLocalPlan(ts, plan, batchParams);
+            }
         }
         // Otherwise, we need to generate WorkFragments and then send the messages out 
         // to our remote partitions using the HStoreCoordinator
         else {
+            assert(ts.hasStraightLineResults() == false) :
+                "Distributed BatchPlan for pre-executed straight-line " + ts;
             this.partitionFragments.clear();
             plan.getWorkFragments(ts.getTransactionId(), this.partitionFragments);
             if (t) LOG.trace("Got back a set of tasks for " + this.partitionFragments.size() + " partitions for " + ts);
@@ -2290,43 +2550,7 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
      * @param fresponse
      */
     protected WorkResult buildWorkResult(AbstractTransaction ts, DependencySet result, Status status, SerializableException error) {
-        WorkResult.Builder builder = WorkResult.newBuilder();
-        
-        // Partition Id
-        builder.setPartitionId(this.partitionId);
-        
-        // Status
-        builder.setStatus(status);
-        
-        // SerializableException 
-        if (error != null) {
-            int size = error.getSerializedSize();
-            BBContainer bc = this.buffer_pool.acquire(size);
-            error.serializeToBuffer(bc.b);
-            bc.b.rewind();
-            builder.setError(ByteString.copyFrom(bc.b));
-            bc.discard();
-        }
-        
-        // Push dependencies back to the remote partition that needs it
-        if (status == Status.OK) {
-            for (int i = 0, cnt = result.size(); i < cnt; i++) {
-                builder.addDepId(result.depIds[i]);
-                this.fs.clear();
-                try {
-                    result.dependencies[i].writeExternal(this.fs);
-                    ByteString bs = ByteString.copyFrom(this.fs.getBBContainer().b);
-                    builder.addDepData(bs);
-                } catch (Exception ex) {
-                    throw new ServerFaultException(String.format("Failed to serialize output dependency %d for %s", result.depIds[i], ts), ex);
-                }
-                if (t) LOG.trace(String.format("%s - Serialized Output Dependency %d\n%s",
-                                               ts, result.depIds[i], result.dependencies[i]));  
-            } // FOR
-            this.fs.getBBContainer().discard();
-        }
-        
-        return (builder.build());
+        return (PartitionExecutorSerializer.buildWorkResult(this.partitionId, ts, result, status, error, this.fs));
     }
     
     /**
@@ -3002,6 +3226,7 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
                     if (d) LOG.debug(String.format("%s - Aborting on partition=%d [lastTxnId=%d, undoToken=%d, submittedEE=%s]",
                                                    ts, this.partitionId, this.lastCommittedTxnId, undoToken, ts.hasSubmittedEE(this.partitionId)));
                     this.ee.undoUndoToken(undoToken);
+                    if (this.straightline_queue.isEmpty() == false) this.resetStraightLineGroup();
                 }
                 if (needs_profiling) ((LocalTransaction)ts).profiler.stopPostEE();
             }
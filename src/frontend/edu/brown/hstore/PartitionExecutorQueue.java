@@ -1,10 +1,16 @@
 package edu.brown.hstore;
 
+import java.util.AbstractQueue;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 import org.voltdb.messaging.FinishTaskMessage;
 import org.voltdb.messaging.FragmentTaskMessage;
@@ -12,79 +18,319 @@ import org.voltdb.messaging.InitiateTaskMessage;
 import org.voltdb.messaging.TransactionInfoBaseMessage;
 import org.voltdb.messaging.VoltMessage;
 
-public class PartitionExecutorQueue extends PriorityBlockingQueue<VoltMessage> {
-    
-    private static final long serialVersionUID = 1L;
-    private final List<VoltMessage> swap = new ArrayList<VoltMessage>();
-    
+/**
+ * The work queue for a PartitionExecutor. Instead of sorting every message with a
+ * comparator, each type of message gets put into its own lane and the lanes are
+ * always polled in a fixed priority order (see Lane). Each lane is a bounded lock-free
+ * ring buffer, so messages within a lane come out in the order that they were added,
+ * which is the order of their txnIds unless something was requeued.
+ * If a lane's ring buffer is full, then the message will go into that lane's
+ * overflow queue until the ring buffer has been drained.
+ * <B>NOTE:</B> Only one thread can block in take() at a time.
+ */
+public class PartitionExecutorQueue extends AbstractQueue<VoltMessage> {
+
+    /**
+     * The default number of messages that can be stored in each lane's
+     * ring buffer before it starts using its overflow queue.
+     */
+    public static final int DEFAULT_LANE_SIZE = 1024;
+
+    /**
+     * The lanes of the queue in the order that they will be polled.
+     */
+    public enum Lane {
+        /** Non-transactional messages (e.g., PotentialSnapshotWorkMessage) */
+        UTILITY,
+        /** FinishTaskMessages */
+        FINISH,
+        /** FragmentTaskMessages for sysprocs */
+        SYSPROC_WORK,
+        /** InitiateTaskMessages for sysprocs */
+        SYSPROC_INIT,
+        /** FragmentTaskMessages */
+        WORK,
+        /** InitiateTaskMessages for new transactions */
+        INIT;
+
+        private static final Lane values[] = Lane.values();
+
+        public static Lane get(VoltMessage msg) {
+            if ((msg instanceof TransactionInfoBaseMessage) == false) {
+                return (UTILITY);
+            } else if (msg instanceof FinishTaskMessage) {
+                return (FINISH);
+            }
+            boolean sysproc = ((TransactionInfoBaseMessage)msg).isSysProc();
+            if (msg instanceof FragmentTaskMessage) {
+                return (sysproc ? SYSPROC_WORK : WORK);
+            }
+            assert(msg instanceof InitiateTaskMessage) : "Unexpected " + msg.getClass().getSimpleName();
+            return (sysproc ? SYSPROC_INIT : INIT);
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+    // RING BUFFER
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Bounded ring buffer that any number of threads can add to and poll from
+     * without acquiring a lock. Each slot has a sequence number that tells
+     * the producers and consumers whether it has been filled or emptied
+     * for the current lap around the ring.
+     */
+    private static final class Ring {
+        private final int mask;
+        private final AtomicReferenceArray<VoltMessage> buffer;
+        private final AtomicLongArray sequences;
+        private final AtomicLong head = new AtomicLong(0);
+        private final AtomicLong tail = new AtomicLong(0);
+        private final ConcurrentLinkedQueue<VoltMessage> overflow = new ConcurrentLinkedQueue<VoltMessage>();
+
+        private Ring(int size) {
+            int capacity = Integer.highestOneBit(Math.max(2, size) - 1) << 1;
+            this.mask = capacity - 1;
+            this.buffer = new AtomicReferenceArray<VoltMessage>(capacity);
+            this.sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                this.sequences.set(i, i);
+            } // FOR
+        }
+
+        private void offer(VoltMessage msg) {
+            // Once something is in the overflow queue, everything has to go there
+            // until it's empty so that we don't jump ahead of it
+            if (this.overflow.isEmpty() == false || this.offerRing(msg) == false) {
+                this.overflow.offer(msg);
+            }
+        }
+
+        private boolean offerRing(VoltMessage msg) {
+            long pos = this.tail.get();
+            while (true) {
+                int idx = (int)pos & this.mask;
+                long diff = this.sequences.get(idx) - pos;
+                if (diff == 0) {
+                    if (this.tail.compareAndSet(pos, pos + 1)) {
+                        this.buffer.set(idx, msg);
+                        this.sequences.set(idx, pos + 1);
+                        return (true);
+                    }
+                    pos = this.tail.get();
+                } else if (diff < 0) {
+                    return (false);
+                } else {
+                    pos = this.tail.get();
+                }
+            } // WHILE
+        }
+
+        private VoltMessage poll() {
+            VoltMessage msg = this.pollRing();
+            if (msg == null) msg = this.overflow.poll();
+            return (msg);
+        }
+
+        private VoltMessage pollRing() {
+            long pos = this.head.get();
+            while (true) {
+                int idx = (int)pos & this.mask;
+                long diff = this.sequences.get(idx) - (pos + 1);
+                if (diff == 0) {
+                    if (this.head.compareAndSet(pos, pos + 1)) {
+                        VoltMessage msg = this.buffer.get(idx);
+                        this.buffer.set(idx, null);
+                        this.sequences.set(idx, pos + this.mask + 1);
+                        return (msg);
+                    }
+                    pos = this.head.get();
+                } else if (diff < 0) {
+                    return (null);
+                } else {
+                    pos = this.head.get();
+                }
+            } // WHILE
+        }
+
+        private VoltMessage peek() {
+            int idx = (int)this.head.get() & this.mask;
+            VoltMessage msg = this.buffer.get(idx);
+            if (msg == null) msg = this.overflow.peek();
+            return (msg);
+        }
+
+        private void snapshot(List<VoltMessage> snapshot) {
+            for (long pos = this.head.get(), end = this.tail.get(); pos < end; pos++) {
+                VoltMessage msg = this.buffer.get((int)pos & this.mask);
+                if (msg != null) snapshot.add(msg);
+            } // FOR
+            snapshot.addAll(this.overflow);
+        }
+
+        private int size() {
+            long size = this.tail.get() - this.head.get();
+            return ((int)Math.max(0, size) + this.overflow.size());
+        }
+
+        private boolean isEmpty() {
+            return (this.tail.get() == this.head.get() && this.overflow.isEmpty());
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+    // QUEUE
+    // ----------------------------------------------------------------------------
+
+    private final Ring lanes[];
+
+    /**
+     * The thread that is blocked in take()
+     */
+    private volatile Thread waiter = null;
+
     public PartitionExecutorQueue() {
-        super(10000, WORK_COMPARATOR); // FIXME
+        this(DEFAULT_LANE_SIZE);
+    }
+
+    public PartitionExecutorQueue(int lane_size) {
+        this.lanes = new Ring[Lane.values.length];
+        for (int i = 0; i < this.lanes.length; i++) {
+            this.lanes[i] = new Ring(lane_size);
+        } // FOR
     }
-    
+
+    @Override
+    public boolean offer(VoltMessage msg) {
+        assert(msg != null);
+        this.lanes[Lane.get(msg).ordinal()].offer(msg);
+        Thread t = this.waiter;
+        if (t != null) LockSupport.unpark(t);
+        return (true);
+    }
+
+    @Override
+    public VoltMessage poll() {
+        VoltMessage msg = null;
+        for (int i = 0; i < this.lanes.length; i++) {
+            msg = this.lanes[i].poll();
+            if (msg != null) break;
+        } // FOR
+        return (msg);
+    }
+
+    /**
+     * Retrieves and removes the next message in the queue, waiting
+     * if necessary until a message becomes available.
+     * @return
+     * @throws InterruptedException
+     */
+    public VoltMessage take() throws InterruptedException {
+        VoltMessage msg = this.poll();
+        if (msg != null) return (msg);
+
+        assert(this.waiter == null) : "Multiple threads are waiting on " + this.getClass().getSimpleName();
+        this.waiter = Thread.currentThread();
+        try {
+            while (true) {
+                // We have to check again after we set ourselves as the waiter
+                // in case somebody added a message before they could see us
+                msg = this.poll();
+                if (msg != null) break;
+                LockSupport.park(this);
+                if (Thread.interrupted()) throw new InterruptedException();
+            } // WHILE
+        } finally {
+            this.waiter = null;
+        }
+        return (msg);
+    }
+
     @Override
+    public VoltMessage peek() {
+        VoltMessage msg = null;
+        for (int i = 0; i < this.lanes.length; i++) {
+            msg = this.lanes[i].peek();
+            if (msg != null) break;
+        } // FOR
+        return (msg);
+    }
+
+    /**
+     * Retrieves and removes the next message in the given lane,
+     * or returns null if that lane is empty.
+     * @param lane
+     * @return
+     */
+    public VoltMessage poll(Lane lane) {
+        return (this.lanes[lane.ordinal()].poll());
+    }
+
+    /**
+     * Move all of the new transaction requests (i.e., InitiateTaskMessages)
+     * into the given collection. Everything else stays in the queue.
+     * @param c
+     * @return The number of messages that were moved
+     */
     public int drainTo(Collection<? super VoltMessage> c) {
         assert(c != null);
-        VoltMessage msg = null;
         int ctr = 0;
-        this.swap.clear();
-        while ((msg = this.poll()) != null) {
-            // All new transaction requests must be put in the new collection
-            if (msg instanceof InitiateTaskMessage) {
+        Ring lane = null;
+        VoltMessage msg = null;
+        for (Lane l : new Lane[]{ Lane.SYSPROC_INIT, Lane.INIT }) {
+            lane = this.lanes[l.ordinal()];
+            while ((msg = lane.poll()) != null) {
                 c.add(msg);
                 ctr++;
-            // Everything else will get added back in afterwards 
-            } else {
-                this.swap.add(msg);
-            }
-        } // WHILE
-        if (this.swap.isEmpty() == false) this.addAll(this.swap);
+            } // WHILE
+        } // FOR
         return (ctr);
     }
-    
-    private static final Comparator<VoltMessage> WORK_COMPARATOR = new Comparator<VoltMessage>() {
-        @Override
-        public int compare(VoltMessage msg0, VoltMessage msg1) {
-            assert(msg0 != null);
-            assert(msg1 != null);
-
-            // Non-Transactional Messages go first
-            boolean isTxn0 = (msg0 instanceof TransactionInfoBaseMessage);
-            boolean isTxn1 = (msg1 instanceof TransactionInfoBaseMessage);
-            if (!isTxn0 && isTxn1) return (-1);
-            else if (isTxn0 && isTxn1) return (1);
-
-            Class<? extends VoltMessage> class0 = msg0.getClass();
-            Class<? extends VoltMessage> class1 = msg1.getClass();
-            
-            // (3) Otherwise, always let the FinishTaskMessage go first
-            boolean isFinish0 = class0.equals(FinishTaskMessage.class);
-            boolean isFinish1 = class1.equals(FinishTaskMessage.class);
-            if (isFinish0 && !isFinish1) return (-1);
-            else if (!isFinish0 && isFinish1) return (1);
-            
-            TransactionInfoBaseMessage txn0 = (TransactionInfoBaseMessage)msg0;
-            TransactionInfoBaseMessage txn1 = (TransactionInfoBaseMessage)msg1;
-            
-            // (1) SysProcs always go first
-            if (txn0.isSysProc() != txn1.isSysProc()) {
-                if (txn0.isSysProc()) return (-1);
-                else return (1);
-            }
-            
-            // (2) If they're the same message type, go by their txnIds
-            if (class0.equals(class1)) return (txn0.getTxnId().compareTo(txn1.getTxnId()));
-            
-            // (4) Then let a FragmentTaskMessage go before anything else
-            boolean isWork0 = class0.equals(FragmentTaskMessage.class);
-            boolean isWork1 = class1.equals(FragmentTaskMessage.class);
-            if (isWork0 && !isWork1) return (-1);
-            else if (!isWork0 && isWork1) return (1);
-            
-            // (5) They must be the same!
-            assert(false) : String.format("%s <-> %s", class0, class1);
-            return 0;
-        }
-    };
 
+    @Override
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < this.lanes.length; i++) {
+            size += this.lanes[i].size();
+        } // FOR
+        return (size);
+    }
+
+    /**
+     * Returns the number of messages in the given lane
+     * @param lane
+     * @return
+     */
+    public int size(Lane lane) {
+        return (this.lanes[lane.ordinal()].size());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (int i = 0; i < this.lanes.length; i++) {
+            if (this.lanes[i].isEmpty() == false) return (false);
+        } // FOR
+        return (true);
+    }
 
+    @Override
+    public void clear() {
+        while (this.poll() != null) {
+            // Nothing
+        } // WHILE
+    }
+
+    /**
+     * Returns a read-only iterator over a snapshot of the messages in the queue.
+     * This is only meant to be used for debugging, since the snapshot may
+     * miss messages that are added or removed while it is being created.
+     */
+    @Override
+    public Iterator<VoltMessage> iterator() {
+        List<VoltMessage> snapshot = new ArrayList<VoltMessage>();
+        for (int i = 0; i < this.lanes.length; i++) {
+            this.lanes[i].snapshot(snapshot);
+        } // FOR
+        return (Collections.unmodifiableList(snapshot).iterator());
+    }
 }
@@ -36,6 +36,13 @@ public class VoltProcedureListener extends AbstractEventHandler {
     private final AtomicInteger connectionId = new AtomicInteger(0);
     private ServerSocketChannel serverSocket;
     
+    /**
+     * If this is set, then new client connections will be handed off to these
+     * EventLoops in a round-robin fashion instead of being handled by our EventLoop 
+     */
+    private EventLoop connectionEventLoops[] = null;
+    private int nextConnectionEventLoop = 0;
+    
     
 //    private final HStoreSite hstore_site;
 
@@ -46,6 +53,16 @@ public class VoltProcedureListener extends AbstractEventHandler {
         assert this.eventLoop != null;
         assert this.handler != null;
     }
+    
+    /**
+     * Spread new client connections across the given EventLoops. Each connection
+     * will be read from and written to only by the EventLoop that it is assigned to.
+     * @param eventLoops
+     */
+    public void setConnectionEventLoops(EventLoop eventLoops[]) {
+        assert(eventLoops != null && eventLoops.length > 0);
+        this.connectionEventLoops = eventLoops;
+    }
 
     public void acceptCallback(SelectableChannel channel) {
         // accept the connection
@@ -62,13 +79,33 @@ public class VoltProcedureListener extends AbstractEventHandler {
         NIOMessageConnection connection = new NIOMessageConnection(client);
         connection.setBigEndian();
 
-        eventLoop.registerRead(client, new ClientConnectionHandler(connection));
+        if (this.connectionEventLoops == null) {
+            eventLoop.registerRead(client, new ClientConnectionHandler(connection));
+            return;
+        }
+        
+        // Hand the connection off to the next EventLoop. We have to register it from
+        // within that EventLoop's thread, since it may be blocked on its selector
+        final EventLoop connectionLoop = this.connectionEventLoops[this.nextConnectionEventLoop++ % this.connectionEventLoops.length];
+        final SocketChannel connectionChannel = client;
+        final ClientConnectionHandler connectionHandler = new ClientConnectionHandler(connection, connectionLoop);
+        connectionLoop.runInEventThread(new Runnable() {
+            @Override
+            public void run() {
+                connectionLoop.registerRead(connectionChannel, connectionHandler);
+            }
+        });
     }
 
     // Not private so it can be used in a JUnit test. Gross, but it makes the test a bit easier
     class ClientConnectionHandler extends AbstractEventHandler implements RpcCallback<byte[]> {
         public ClientConnectionHandler(MessageConnection connection) {
+            this(connection, eventLoop);
+        }
+        
+        public ClientConnectionHandler(MessageConnection connection, EventLoop connectionEventLoop) {
             this.connection = connection;
+            this.connectionEventLoop = connectionEventLoop;
         }
 
         @Override
@@ -142,12 +179,13 @@ public class VoltProcedureListener extends AbstractEventHandler {
             // the event loop. In this case, blocked will be false, but connectionBlocked will be
             // true. This will lead to a "useless" pass around the event loop, but that is safe.
             if (blocked && !connectionBlocked) {
-                eventLoop.registerWrite(connection.getChannel(), this);
+                connectionEventLoop.registerWrite(connection.getChannel(), this);
                 connectionBlocked = true;
             }
         }
 
         private final MessageConnection connection;
+        private final EventLoop connectionEventLoop;
         boolean connectionBlocked = false;
 
         public String user = null;
@@ -269,6 +269,66 @@ public final class HStoreConf {
         )
         public int exec_postprocessing_thread_count;
         
+        @ConfigProperty(
+            description="If this enabled, HStoreSite will use separate threads to serialize the results of WorkFragments " +
+                        "that the PartitionExecutors execute on behalf of remote transactions and send them back to the " +
+                        "transaction's base partition. This means that the PartitionExecutor's thread only has to execute " +
+                        "work in the EE.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean exec_serialization_thread;
+        
+        @ConfigProperty(
+            description="The number of WorkResult serialization threads to use per HStoreSite. " +
+                        "The ${site.exec_serialization_thread} parameter must be set to true.",
+            defaultInt=1,
+            experimental=true
+        )
+        public int exec_serialization_thread_count;
+        
+        @ConfigProperty(
+            description="If this enabled, then stored procedures that the VoltCompiler marked as straight-line " +
+                        "(i.e., they only execute one fixed batch of queries whose parameters come directly " +
+                        "from the procedure's input parameters) will have that batch planned and executed " +
+                        "directly without invoking the procedure's run() method.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean exec_straightline_procedures;
+
+        @ConfigProperty(
+            description="The max number of queued single-partition straight-line transactions that the " +
+                        "PartitionExecutor will execute with a single call into the ExecutionEngine. " +
+                        "Grouping is disabled if this is less than two. " +
+                        "The ${site.exec_straightline_procedures} parameter must be set to true.",
+            defaultInt=1,
+            experimental=true
+        )
+        public int exec_straightline_group_size;
+
+        @ConfigProperty(
+            description="If this enabled, then each stored procedure's run() method will be invoked through a " +
+                        "class that is generated when the procedure is loaded instead of through reflection. " +
+                        "The generated class unboxes the procedure's parameters and calls run() directly.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean exec_procedure_invokers;
+        
+        @ConfigProperty(
+            description="If this enabled, then the HStoreSite will run in thread-per-core mode. Each local partition " +
+                        "gets its own network event loop thread that owns a slice of the client connections. New " +
+                        "connections are spread across these event loops in a round-robin fashion. " +
+                        "When used in conjunction with ${site.cpu_affinity}, each event loop thread is pinned to the " +
+                        "same core as its partition's PartitionExecutor, so a single-partition transaction that arrives " +
+                        "on the right connection is decoded, executed, and answered without leaving that core. " +
+                        "Requests that do not have a base partition are sent to the event loop's partition.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean exec_thread_per_core;
+        
         @ConfigProperty(
             description="If this enabled with speculative execution, then HStoreSite only invoke the commit operation in the " +
                         "EE for the last transaction in the queued responses. This will cascade to all other queued responses " +
@@ -347,6 +407,26 @@ public final class HStoreConf {
         )
         public boolean exec_deferrable_queries;
         
+        // ----------------------------------------------------------------------------
+        // Snapshot Options
+        // ----------------------------------------------------------------------------
+        
+        @ConfigProperty(
+            description="The max number of megabytes per second that snapshots are allowed to write out to disk " +
+                        "for all of the partitions at this HStoreSite. If set to zero, then there is no limit.",
+            defaultInt=0,
+            experimental=true
+        )
+        public int snapshot_io_rate;
+        
+        @ConfigProperty(
+            description="If set to true, then snapshots will sync each chunk to disk as soon as it is written " +
+                        "instead of letting dirty pages build up in the page cache until the next periodic sync.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean snapshot_write_through;
+        
         // ----------------------------------------------------------------------------
         // MapReduce Options
         // ----------------------------------------------------------------------------
@@ -526,12 +606,49 @@ public final class HStoreConf {
 
         @ConfigProperty(
             description="Recompute a Markov model's execution state probabilities every time a transaction " +
-                        "is aborted due to a misprediction. The Markov model is queued in the PartitionExecutorHelper " +
-                        "for processing rather than being executed directly within the PartitionExecutor's thread.",
+                        "is aborted due to a misprediction. The Markov model is queued in the MarkovUpdater " +
+                        "for processing rather than being executed directly within the PartitionExecutor's thread. " +
+                        "This requires ${site.markov_online_updates} to be enabled.",
             defaultBoolean=true,
             experimental=false
         )
         public boolean markov_mispredict_recompute;
+        
+        @ConfigProperty(
+            description="Enable online maintenance of the Markov models. The TransactionEstimators will batch up " +
+                        "the execution paths of completed transactions and hand them off to a background thread " +
+                        "that updates the models' counters and recomputes their probabilities. The new " +
+                        "probabilities are published once they are computed, so transactions never wait on a recompute.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean markov_online_updates;
+        
+        @ConfigProperty(
+            description="How often (in milliseconds) the MarkovUpdater thread will apply the batched hits from " +
+                        "completed transactions and recompute any Markov models that need it. " +
+                        "Only used if ${site.markov_online_updates} is enabled.",
+            defaultInt=1000,
+            experimental=true
+        )
+        public int markov_online_interval;
+        
+        @ConfigProperty(
+            description="The number of completed transactions that each partition will batch up before handing " +
+                        "them off to the MarkovUpdater. Only used if ${site.markov_online_updates} is enabled.",
+            defaultInt=4096,
+            experimental=true
+        )
+        public int markov_online_buffer;
+        
+        @ConfigProperty(
+            description="The minimum number of new transactions that a Markov model must see before the " +
+                        "MarkovUpdater will recompute its probabilities. " +
+                        "Only used if ${site.markov_online_updates} is enabled.",
+            defaultInt=100,
+            experimental=true
+        )
+        public int markov_online_min_txns;
 
         @ConfigProperty(
             description="", // TODO
@@ -547,6 +664,32 @@ public final class HStoreConf {
             experimental=true
         )
         public boolean markov_path_caching;
+        
+        @ConfigProperty(
+            description="If this is set to true, TransactionEstimator will flatten each MarkovGraph into a " +
+                        "CompiledMarkovGraph and estimate the initial path of transactions over that instead of " +
+                        "walking the graph itself. The compiled graph is rebuilt whenever the MarkovGraph changes.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean markov_path_compiled;
+        
+        @ConfigProperty(
+            description="If this is set to true, TransactionEstimator will cache the initial path estimates " +
+                        "for each procedure keyed by the base partition and the partitions that its mapped " +
+                        "parameters hash to. A cached estimate is thrown out when its MarkovGraph changes.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean markov_estimate_cache;
+        
+        @ConfigProperty(
+            description="The maximum number of initial path estimates that each partition's TransactionEstimator " +
+                        "will keep in its cache. Only used if ${site.markov_estimate_cache} is enabled.",
+            defaultInt=1000,
+            experimental=true
+        )
+        public int markov_estimate_cache_size;
     
         @ConfigProperty(
             description="This threshold defines how accurate our cached MarkovPathEstimators have to be in order " +
@@ -575,6 +718,26 @@ public final class HStoreConf {
         )
         public boolean exec_neworder_cheat;
 
+        @ConfigProperty(
+            description="Use a rule-based estimator generated from the ParameterMappingsSet in ${site.mappings_path} " +
+                        "to predict what partitions new transactions will touch. This only needs to hash the input " +
+                        "parameters that are mapped to the partitioning columns of each Procedure's queries, and " +
+                        "does not require any Markov models. Procedures that we cannot generate a rule for will " +
+                        "fall back to the TransactionEstimator. See edu.brown.hstore.estimators.MappingsEstimator",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean exec_mappings_estimator;
+
+        @ConfigProperty(
+            description="A comma-separated list of the Procedure names that should use the rule-based estimator " +
+                        "when ${site.exec_mappings_estimator} is enabled. If this is not set, then all Procedures " +
+                        "that have a complete rule will use it.",
+            defaultNull=true,
+            experimental=true
+        )
+        public String exec_mappings_estimator_procs;
+
         // ----------------------------------------------------------------------------
         // BatchPlanner
         // ----------------------------------------------------------------------------
@@ -709,6 +872,52 @@ public final class HStoreConf {
         )
         public boolean trace_query_output;
         
+        @ConfigProperty(
+            description="Enable always-on sampling workload capture at each HStoreSite. A random sample of the " +
+                        "txns executed at each partition are recorded into a lock-free ring buffer and then " +
+                        "written out by a background thread to binary workload trace files in ${site.trace_sampling_dir}.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean trace_sampling;
+        
+        @ConfigProperty(
+            description="The fraction of txns that will be recorded when ${site.trace_sampling} is enabled. " +
+                        "This can be changed at runtime with the @WorkloadSampling sysproc.",
+            defaultDouble=0.01,
+            experimental=true
+        )
+        public double trace_sampling_rate;
+        
+        @ConfigProperty(
+            description="Directory where the sampled workload trace files will be written.",
+            defaultString="${global.temp_dir}/traces",
+            experimental=true
+        )
+        public String trace_sampling_dir;
+        
+        @ConfigProperty(
+            description="The size in bytes of the ring buffer for each partition that sampled txns are written into. " +
+                        "Records are dropped when the buffer is full.",
+            defaultInt=4194304,
+            experimental=true
+        )
+        public int trace_sampling_buffer;
+        
+        @ConfigProperty(
+            description="How often in milliseconds the sampling thread will drain the partition ring buffers.",
+            defaultInt=1000,
+            experimental=true
+        )
+        public int trace_sampling_interval;
+        
+        @ConfigProperty(
+            description="The number of txns written to a sampled workload trace file before we start a new one.",
+            defaultInt=100000,
+            experimental=true
+        )
+        public int trace_sampling_rotate;
+        
         // ----------------------------------------------------------------------------
         // HSTORESITE STATUS UPDATES
         // ----------------------------------------------------------------------------
@@ -788,6 +997,15 @@ public final class HStoreConf {
         )
         public boolean pool_profiling;
         
+        @ConfigProperty(
+            description="The max number of idle objects that each thread will keep for itself in each object pool. " +
+                        "Threads hand any extra objects that they return off to the pool's shared stack, which is " +
+                        "bounded by that pool's idle limit (e.g., ${site.pool_localtxnstate_idle}).",
+            defaultInt=64,
+            experimental=false
+        )
+        public int pool_threadlocal_idle;
+        
         @ConfigProperty(
             description="The max number of LocalTransactionStates to keep in the pool",
             defaultInt=5000,
@@ -202,6 +202,12 @@ public class LocalTransaction extends AbstractTransaction {
      */
     private RpcCallback<byte[]> client_callback;
     
+    /**
+     * The output of this straight-line transaction's batch if the PartitionExecutor
+     * already executed it in a group with other transactions
+     */
+    private VoltTable straightline_results[];
+    
     // ----------------------------------------------------------------------------
     // INITIALIZATION
     // ----------------------------------------------------------------------------
@@ -346,6 +352,7 @@ public class LocalTransaction extends AbstractTransaction {
         
         this.executed = false;
         this.exec_speculative = false;
+        this.straightline_results = null;
         this.exec_touchedPartitions.clear();
         this.predict_touchedPartitions = null;
         this.done_partitions.clear();
@@ -389,6 +396,34 @@ public class LocalTransaction extends AbstractTransaction {
         this.state = null;
     }
     
+    /**
+     * Store the output of this transaction's straight-line batch that was
+     * executed before its procedure was invoked
+     * @param results
+     */
+    public void setStraightLineResults(VoltTable results[]) {
+        assert(this.straightline_results == null) : "Duplicate straight-line results for " + this;
+        this.straightline_results = results;
+    }
+    
+    /**
+     * Returns true if this transaction's straight-line batch was already executed
+     */
+    public boolean hasStraightLineResults() {
+        return (this.straightline_results != null);
+    }
+    
+    /**
+     * Remove and return the output of this transaction's straight-line batch.
+     * Returns null if it was not executed ahead of time
+     * @return
+     */
+    public VoltTable[] removeStraightLineResults() {
+        VoltTable results[] = this.straightline_results;
+        this.straightline_results = null;
+        return (results);
+    }
+    
     /**
      * Marks that this transaction's control code was executed at its base partition 
      */
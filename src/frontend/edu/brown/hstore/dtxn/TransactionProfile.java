@@ -335,6 +335,11 @@ public class TransactionProfile implements Poolable {
      * The amount of time spent commiting or aborting a txn in the EE
      */
     private final ProfileMeasurement pm_post_ee = new ProfileMeasurement("POST_EE");
+    /**
+     * The amount of time spent writing the txn to the command log
+     * This is not used with group commit (see CommandLogWriter)
+     */
+    private final ProfileMeasurement pm_post_wal = new ProfileMeasurement("POST_WAL");
 
     /**
      * 
@@ -389,6 +394,41 @@ public class TransactionProfile implements Poolable {
     }
     
 
+    public void startPostWAL() {
+        if (this.disabled) return;
+        this.pm_post_wal.start();
+    }
+    public void stopPostWAL() {
+        if (this.disabled) return;
+        this.pm_post_wal.stop();
+    }
+    
+    // ---------------------------------------------------------------
+    // PHASE MEASUREMENTS
+    // ---------------------------------------------------------------
+    
+    public ProfileMeasurement getTotal() {
+        return (this.pm_total);
+    }
+    public ProfileMeasurement getInitTotal() {
+        return (this.pm_init_total);
+    }
+    public ProfileMeasurement getQueue() {
+        return (this.pm_queue);
+    }
+    public ProfileMeasurement getExecTotal() {
+        return (this.pm_exec_total);
+    }
+    public ProfileMeasurement getPostPrepare() {
+        return (this.pm_post_prepare);
+    }
+    public ProfileMeasurement getPostFinish() {
+        return (this.pm_post_finish);
+    }
+    public ProfileMeasurement getPostWAL() {
+        return (this.pm_post_wal);
+    }
+
     // ---------------------------------------------------------------
     // UTILITY METHODS
     // ---------------------------------------------------------------
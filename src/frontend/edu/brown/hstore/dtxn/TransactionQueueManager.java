@@ -26,6 +26,7 @@ import edu.brown.hstore.interfaces.Shutdownable;
 import edu.brown.hstore.util.TxnCounter;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.statistics.ConcurrentHistogram;
 import edu.brown.statistics.Histogram;
 import edu.brown.utils.CollectionUtil;
 import edu.brown.utils.StringUtil;
@@ -116,7 +117,7 @@ public class TransactionQueueManager implements Runnable, Loggable, Shutdownable
     /**
      * This Histogram keeps track of what sites have blocked the most transactions from us
      */
-    private final Histogram<Integer> blockedQueueHistogram = new Histogram<Integer>();
+    private final ConcurrentHistogram blockedQueueHistogram;
     
     // ----------------------------------------------------------------------------
     // TRANSACTIONS THAT NEED TO INIT
@@ -156,6 +157,7 @@ public class TransactionQueueManager implements Runnable, Loggable, Shutdownable
         this.lockQueuesLastTxn = new Long[this.lockQueues.length];
         this.localPartitionsArray = CollectionUtil.toIntArray(hstore_site.getLocalPartitionIds());
         this.wait_time = hstore_conf.site.txn_incoming_delay;
+        this.blockedQueueHistogram = new ConcurrentHistogram(num_ids);
         
         // Allocate transaction queues
         for (int partition : allPartitions) {
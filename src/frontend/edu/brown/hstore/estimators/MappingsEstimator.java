@@ -0,0 +1,312 @@
+/***************************************************************************
+ *  Copyright (C) 2012 by H-Store Project                                  *
+ *  Brown University                                                       *
+ *  Massachusetts Institute of Technology                                  *
+ *  Yale University                                                        *
+ *                                                                         *
+ *  http://hstore.cs.brown.edu/                                            *
+ *                                                                         *
+ *  Permission is hereby granted, free of charge, to any person obtaining  *
+ *  a copy of this software and associated documentation files (the        *
+ *  "Software"), to deal in the Software without restriction, including    *
+ *  without limitation the rights to use, copy, modify, merge, publish,    *
+ *  distribute, sublicense, and/or sell copies of the Software, and to     *
+ *  permit persons to whom the Software is furnished to do so, subject to  *
+ *  the following conditions:                                              *
+ *                                                                         *
+ *  The above copyright notice and this permission notice shall be         *
+ *  included in all copies or substantial portions of the Software.        *
+ *                                                                         *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,        *
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF     *
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. *
+ *  IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR      *
+ *  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,  *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR  *
+ *  OTHER DEALINGS IN THE SOFTWARE.                                        *
+ ***************************************************************************/
+package edu.brown.hstore.estimators;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedSet;
+
+import org.apache.log4j.Logger;
+import org.voltdb.catalog.Column;
+import org.voltdb.catalog.ProcParameter;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.StmtParameter;
+
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.HStoreSite;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.mappings.ParameterMapping;
+import edu.brown.mappings.ParameterMappingsSet;
+import edu.brown.utils.PartitionEstimator;
+import edu.brown.utils.StringUtil;
+
+/**
+ * Rule-based estimator that is generated automatically from the ProcParameter->StmtParameter
+ * mappings in a ParameterMappingsSet. For each Procedure we figure out which of its input
+ * parameters end up in the partitioning column predicates of its Statements. At runtime we
+ * only need to hash those input parameters to get the set of partitions that the transaction
+ * could touch. The estimate is conservative: we assume that every Statement in the Procedure
+ * will be executed, and we use every mapping for every invocation of each Statement.
+ * <B>NOTE:</B> Procedures that have a Statement whose partitioning parameters are not mapped
+ * do not get a rule, and therefore must be handled by the TransactionEstimator instead. 
+ */
+public class MappingsEstimator extends AbstractEstimator {
+    private static final Logger LOG = Logger.getLogger(MappingsEstimator.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+    
+    /**
+     * The generated partitioning rule for a single Procedure
+     */
+    protected static class ProcedureRule {
+        protected final Procedure catalog_proc;
+        
+        /**
+         * If true, then this Procedure contains a Statement that always has to
+         * be broadcast to all partitions 
+         */
+        protected final boolean broadcast;
+        
+        /**
+         * The partitioning column and the ProcParameter offset that gets hashed
+         * for each entry in the rule. 
+         */
+        protected final Column columns[];
+        protected final int proc_params[];
+        protected final boolean proc_param_arrays[];
+        
+        private ProcedureRule(Procedure catalog_proc, boolean broadcast, List<Column> columns, List<ProcParameter> proc_params) {
+            this.catalog_proc = catalog_proc;
+            this.broadcast = broadcast;
+            this.columns = columns.toArray(new Column[columns.size()]);
+            this.proc_params = new int[proc_params.size()];
+            this.proc_param_arrays = new boolean[this.proc_params.length];
+            for (int i = 0; i < this.proc_params.length; i++) {
+                this.proc_params[i] = proc_params.get(i).getIndex();
+                this.proc_param_arrays[i] = proc_params.get(i).getIsarray();
+            } // FOR
+        }
+        
+        public Procedure getProcedure() {
+            return (this.catalog_proc);
+        }
+        public boolean isBroadcast() {
+            return (this.broadcast);
+        }
+        public int size() {
+            return (this.columns.length);
+        }
+        
+        @Override
+        public String toString() {
+            Map<String, Object> m = new LinkedHashMap<String, Object>();
+            m.put("Procedure", this.catalog_proc.getName());
+            m.put("Broadcast", this.broadcast);
+            for (int i = 0; i < this.columns.length; i++) {
+                ProcParameter catalog_param = this.catalog_proc.getParameters().get(this.proc_params[i]);
+                m.put(CatalogUtil.getDisplayName(this.columns[i]), CatalogUtil.getDisplayName(catalog_param));
+            } // FOR
+            return (StringUtil.formatMaps(m));
+        }
+    } // CLASS
+    
+    private final ParameterMappingsSet mappings;
+    
+    /**
+     * Procedure -> ProcedureRule
+     * Only Procedures that are enabled and that have a complete rule are included 
+     */
+    private final Map<Procedure, ProcedureRule> rules = new HashMap<Procedure, ProcedureRule>();
+    
+    private final Collection<Integer> all_partitions;
+    
+    // ----------------------------------------------------------------------------
+    // INITIALIZATION
+    // ----------------------------------------------------------------------------
+    
+    /**
+     * Constructor
+     * @param hstore_site
+     * @param mappings
+     * @param procedures - the names of the Procedures that should use this estimator.
+     *                     If null, then every Procedure that we can generate a rule for is used 
+     */
+    public MappingsEstimator(HStoreSite hstore_site, ParameterMappingsSet mappings, Collection<String> procedures) {
+        super(hstore_site);
+        this.mappings = mappings;
+        this.all_partitions = hstore_site.getAllPartitionIds();
+        
+        PartitionEstimator p_estimator = hstore_site.getPartitionEstimator();
+        for (Procedure catalog_proc : hstore_site.getDatabase().getProcedures()) {
+            if (catalog_proc.getSystemproc() || catalog_proc.getMapreduce()) continue;
+            if (procedures != null && procedures.contains(catalog_proc.getName()) == false) continue;
+            
+            ProcedureRule rule = this.generateRule(p_estimator, catalog_proc);
+            if (rule != null) {
+                this.rules.put(catalog_proc, rule);
+                if (trace.get()) LOG.trace("Generated rule for " + catalog_proc.getName() + "\n" + rule);
+            } else if (procedures != null) {
+                LOG.warn(String.format("Unable to generate a rule for %s from the ParameterMappingsSet. " +
+                                       "Will use the TransactionEstimator instead", catalog_proc.getName()));
+            }
+        } // FOR
+        if (debug.get()) LOG.debug(String.format("Generated rules for %d procedures: %s", this.rules.size(), this.rules.keySet()));
+    }
+    
+    /**
+     * Generate the ProcedureRule for the given Procedure. Returns null if there is a
+     * Statement with a partitioning StmtParameter that is not mapped to a ProcParameter.
+     * @param p_estimator
+     * @param catalog_proc
+     * @return
+     */
+    protected ProcedureRule generateRule(PartitionEstimator p_estimator, Procedure catalog_proc) {
+        boolean broadcast = false;
+        List<Column> columns = new ArrayList<Column>();
+        List<ProcParameter> proc_params = new ArrayList<ProcParameter>();
+        
+        for (Statement catalog_stmt : catalog_proc.getStatements()) {
+            Map<Integer, Column> param_cols = p_estimator.getStatementEstimationColumns(catalog_stmt);
+            
+            // This Statement can never be single-partitioned, so the whole txn
+            // will always need to touch all of the partitions
+            if (param_cols == null) {
+                if (debug.get()) LOG.debug(String.format("%s cannot be estimated. Marking %s as broadcast",
+                                                         catalog_stmt.fullName(), catalog_proc.getName()));
+                broadcast = true;
+                break;
+            }
+            
+            for (Entry<Integer, Column> e : param_cols.entrySet()) {
+                StmtParameter catalog_stmt_param = catalog_stmt.getParameters().get(e.getKey().intValue());
+                Column catalog_col = e.getValue();
+                
+                // The same Statement can be invoked multiple times in a txn, and each invocation
+                // may get its value from a different ProcParameter. Since we don't know which
+                // invocations will actually happen, we have to include all of them
+                SortedSet<ParameterMapping> stmt_mappings = this.mappings.get(catalog_stmt, catalog_stmt_param);
+                if (stmt_mappings == null || stmt_mappings.isEmpty()) {
+                    if (debug.get()) LOG.debug(String.format("Missing mapping for %s in %s. Unable to generate rule for %s",
+                                                             catalog_stmt_param.fullName(), catalog_stmt.fullName(), catalog_proc.getName()));
+                    return (null);
+                }
+                for (ParameterMapping pm : stmt_mappings) {
+                    ProcParameter catalog_proc_param = pm.procedure_parameter;
+                    
+                    // Skip duplicates so that we only hash each parameter once per column
+                    boolean found = false;
+                    for (int i = 0, cnt = columns.size(); i < cnt; i++) {
+                        if (columns.get(i).equals(catalog_col) && proc_params.get(i).equals(catalog_proc_param)) {
+                            found = true;
+                            break;
+                        }
+                    } // FOR
+                    if (found == false) {
+                        columns.add(catalog_col);
+                        proc_params.add(catalog_proc_param);
+                    }
+                } // FOR
+            } // FOR
+        } // FOR
+        return (new ProcedureRule(catalog_proc, broadcast, columns, proc_params));
+    }
+    
+    // ----------------------------------------------------------------------------
+    // ESTIMATION
+    // ----------------------------------------------------------------------------
+    
+    /**
+     * Returns true if this estimator has a rule for the given Procedure
+     * @param catalog_proc
+     * @return
+     */
+    public boolean canEstimate(Procedure catalog_proc) {
+        return (this.rules.containsKey(catalog_proc));
+    }
+    
+    public ProcedureRule getRule(Procedure catalog_proc) {
+        return (this.rules.get(catalog_proc));
+    }
+    
+    /**
+     * Estimate the partitions that a new transaction will touch. The returned set
+     * always includes the base partition.
+     * @param catalog_proc
+     * @param args
+     * @param base_partition
+     * @return the set of partitions, or null if there is no rule for this Procedure
+     */
+    public Collection<Integer> initializeTransaction(Procedure catalog_proc, Object args[], int base_partition) {
+        ProcedureRule rule = this.rules.get(catalog_proc);
+        if (rule == null) return (null);
+        Collection<Integer> partitions = this.estimate(rule, args, base_partition);
+        if (debug.get()) LOG.debug(String.format("%s - Partitions=%s, BasePartition=%d",
+                                                 catalog_proc.getName(), partitions, base_partition));
+        return (partitions);
+    }
+    
+    @Override
+    protected Collection<Integer> initializeTransactionImpl(Procedure catalog_proc, Object[] args, Object[] mangled) {
+        ProcedureRule rule = this.rules.get(catalog_proc);
+        if (rule == null) return (null);
+        
+        Integer base_partition = null;
+        try {
+            base_partition = this.hstore_site.getPartitionEstimator().getBasePartition(catalog_proc, args, true);
+        } catch (Exception ex) {
+            throw new RuntimeException("Failed to calculate base partition for " + catalog_proc.getName(), ex);
+        }
+        return (this.estimate(rule, mangled, base_partition.intValue()));
+    }
+    
+    private Collection<Integer> estimate(ProcedureRule rule, Object args[], int base_partition) {
+        if (rule.broadcast) return (this.all_partitions);
+        
+        Collection<Integer> partitions = this.singlePartitionSets.get(base_partition);
+        for (int i = 0; i < rule.columns.length; i++) {
+            Object value = args[rule.proc_params[i]];
+            if (rule.proc_param_arrays[i]) {
+                if (value == null) continue;
+                for (int j = 0, cnt = Array.getLength(value); j < cnt; j++) {
+                    partitions = this.addPartition(partitions, this.hasher.hash(Array.get(value, j), rule.columns[i]), base_partition);
+                } // FOR
+            } else {
+                partitions = this.addPartition(partitions, this.hasher.hash(value, rule.columns[i]), base_partition);
+            }
+        } // FOR
+        return (partitions);
+    }
+    
+    private Collection<Integer> addPartition(Collection<Integer> partitions, int partition, int base_partition) {
+        if (partitions == null) {
+            // The base partition is not local to this site, so we don't have 
+            // a cached singleton set for it 
+            partitions = new HashSet<Integer>();
+            partitions.add(base_partition);
+        }
+        if (partitions.contains(partition) == false) {
+            if (partitions.size() == 1) {
+                partitions = new HashSet<Integer>(partitions);
+            }
+            partitions.add(partition);
+        }
+        return (partitions);
+    }
+}
@@ -0,0 +1,233 @@
+/***************************************************************************
+ *  Copyright (C) 2012 by H-Store Project                                  *
+ *  Brown University                                                       *
+ *  Massachusetts Institute of Technology                                  *
+ *  Yale University                                                        *
+ *                                                                         *
+ *  http://hstore.cs.brown.edu/                                            *
+ *                                                                         *
+ *  Permission is hereby granted, free of charge, to any person obtaining  *
+ *  a copy of this software and associated documentation files (the        *
+ *  "Software"), to deal in the Software without restriction, including    *
+ *  without limitation the rights to use, copy, modify, merge, publish,    *
+ *  distribute, sublicense, and/or sell copies of the Software, and to     *
+ *  permit persons to whom the Software is furnished to do so, subject to  *
+ *  the following conditions:                                              *
+ *                                                                         *
+ *  The above copyright notice and this permission notice shall be         *
+ *  included in all copies or substantial portions of the Software.        *
+ *                                                                         *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,        *
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF     *
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. *
+ *  IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR      *
+ *  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,  *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR  *
+ *  OTHER DEALINGS IN THE SOFTWARE.                                        *
+ ***************************************************************************/
+package edu.brown.hstore.util;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.log4j.Logger;
+
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.HStoreThreadManager;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.hstore.interfaces.Shutdownable;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.markov.MarkovGraph;
+import edu.brown.markov.MarkovHitBuffer;
+import edu.brown.markov.TransactionEstimator;
+
+/**
+ * Background maintenance of the MarkovGraphs used by the TransactionEstimators at an HStoreSite.
+ * <p>
+ * The TransactionEstimator for each partition records the paths of completed txns into
+ * its own MarkovHitBuffer and hands it to this thread once it is full. Every interval this thread
+ * applies those hits to the graphs and recomputes the probabilities of any graph that has
+ * seen enough new txns or that caused a misprediction. The new probabilities are published
+ * when the recompute finishes, so the txns being estimated never wait on a recompute
+ * in their own thread.
+ */
+public class MarkovUpdater implements Runnable, Shutdownable {
+    private static final Logger LOG = Logger.getLogger(MarkovUpdater.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+    
+    private final HStoreSite hstore_site;
+    private final HStoreConf hstore_conf;
+    
+    private final List<TransactionEstimator> estimators = new CopyOnWriteArrayList<TransactionEstimator>();
+    private final ConcurrentLinkedQueue<MarkovHitBuffer> full_buffers = new ConcurrentLinkedQueue<MarkovHitBuffer>();
+    private final ConcurrentLinkedQueue<MarkovHitBuffer> free_buffers = new ConcurrentLinkedQueue<MarkovHitBuffer>();
+    private final ConcurrentLinkedQueue<MarkovGraph> recompute_queue = new ConcurrentLinkedQueue<MarkovGraph>();
+    
+    /**
+     * The number of txns that have been applied to each MarkovGraph since it was last recomputed
+     * Only accessed by this thread
+     */
+    private final Map<MarkovGraph, int[]> pending = new IdentityHashMap<MarkovGraph, int[]>();
+    
+    private volatile long applied_txns = 0;
+    private volatile long recomputes = 0;
+    
+    private Thread self;
+    private volatile ShutdownState shutdown_state = ShutdownState.INITIALIZED;
+    
+    public MarkovUpdater(HStoreSite hstore_site) {
+        this.hstore_site = hstore_site;
+        this.hstore_conf = hstore_site.getHStoreConf();
+    }
+    
+    /**
+     * Start maintaining the MarkovGraphs used by the given TransactionEstimator
+     * @param t_estimator
+     */
+    public void register(TransactionEstimator t_estimator) {
+        this.estimators.add(t_estimator);
+        t_estimator.enableOnlineUpdates(this);
+    }
+    
+    /**
+     * Return a new empty MarkovHitBuffer
+     */
+    public MarkovHitBuffer getBuffer() {
+        MarkovHitBuffer buffer = this.free_buffers.poll();
+        if (buffer == null) buffer = new MarkovHitBuffer(hstore_conf.site.markov_online_buffer);
+        return (buffer);
+    }
+    
+    /**
+     * Hand off a buffer of hits to be applied to the MarkovGraphs and get back
+     * an empty one to use in its place
+     * @param buffer
+     * @return
+     */
+    public MarkovHitBuffer exchange(MarkovHitBuffer buffer) {
+        this.full_buffers.offer(buffer);
+        return (this.getBuffer());
+    }
+    
+    /**
+     * Queue the given MarkovGraph to have its probabilities recomputed
+     * the next time this thread wakes up
+     * @param markov
+     */
+    public void queueRecompute(MarkovGraph markov) {
+        this.recompute_queue.offer(markov);
+    }
+    
+    /**
+     * Return the total number of txns whose hits have been applied to the MarkovGraphs
+     */
+    public long getAppliedTransactionCount() {
+        return (this.applied_txns);
+    }
+    
+    /**
+     * Return the total number of times that a MarkovGraph was recomputed
+     */
+    public long getRecomputeCount() {
+        return (this.recomputes);
+    }
+    
+    // ----------------------------------------------------------------------------
+    // UPDATE THREAD
+    // ----------------------------------------------------------------------------
+    
+    @Override
+    public void run() {
+        this.self = Thread.currentThread();
+        this.self.setName(HStoreThreadManager.getThreadName(this.hstore_site, "markov"));
+        if (this.shutdown_state == ShutdownState.INITIALIZED) {
+            this.shutdown_state = ShutdownState.STARTED;
+        }
+        if (debug.get()) LOG.debug("Starting Markov model update thread");
+        
+        while (this.shutdown_state == ShutdownState.STARTED) {
+            try {
+                Thread.sleep(hstore_conf.site.markov_online_interval);
+            } catch (InterruptedException ex) {
+                break;
+            }
+            this.update();
+        } // WHILE
+    }
+    
+    /**
+     * Apply all of the outstanding hits and recompute the MarkovGraphs that need it
+     */
+    protected void update() {
+        // Make sure that we get the hits from partitions that haven't filled up their buffer
+        for (TransactionEstimator t_estimator : this.estimators) {
+            t_estimator.flushMarkovHits();
+        } // FOR
+        
+        MarkovHitBuffer buffer = null;
+        while ((buffer = this.full_buffers.poll()) != null) {
+            this.applied_txns += buffer.getTransactionCount();
+            buffer.apply(this.pending);
+            buffer.clear();
+            this.free_buffers.offer(buffer);
+        } // WHILE
+        
+        List<MarkovGraph> to_recompute = new ArrayList<MarkovGraph>();
+        MarkovGraph markov = null;
+        while ((markov = this.recompute_queue.poll()) != null) {
+            if (to_recompute.contains(markov) == false) to_recompute.add(markov);
+        } // WHILE
+        Iterator<Entry<MarkovGraph, int[]>> it = this.pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry<MarkovGraph, int[]> e = it.next();
+            if (to_recompute.contains(e.getKey())) {
+                it.remove();
+            } else if (e.getValue()[0] >= hstore_conf.site.markov_online_min_txns) {
+                to_recompute.add(e.getKey());
+                it.remove();
+            }
+        } // WHILE
+        
+        for (MarkovGraph m : to_recompute) {
+            if (trace.get()) LOG.trace("Recomputing probabilities for " + m);
+            try {
+                m.calculateProbabilities();
+            } catch (Throwable ex) {
+                LOG.warn("Failed to recompute probabilities for " + m, ex);
+                continue;
+            }
+            this.recomputes++;
+        } // FOR
+        if (debug.get() && to_recompute.isEmpty() == false)
+            LOG.debug(String.format("Recomputed %d MarkovGraphs [appliedTxns=%d, totalRecomputes=%d]",
+                                    to_recompute.size(), this.applied_txns, this.recomputes));
+    }
+    
+    @Override
+    public void prepareShutdown(boolean error) {
+        this.shutdown_state = ShutdownState.PREPARE_SHUTDOWN;
+    }
+
+    @Override
+    public void shutdown() {
+        this.shutdown_state = ShutdownState.SHUTDOWN;
+        if (this.self != null) this.self.interrupt();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return (this.shutdown_state == ShutdownState.PREPARE_SHUTDOWN ||
+                this.shutdown_state == ShutdownState.SHUTDOWN);
+    }
+}
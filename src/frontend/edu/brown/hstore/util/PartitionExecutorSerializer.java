@@ -0,0 +1,235 @@
+/***************************************************************************
+ *  Copyright (C) 2012 by H-Store Project                                  *
+ *  Brown University                                                       *
+ *  Massachusetts Institute of Technology                                  *
+ *  Yale University                                                        *
+ *                                                                         *
+ *  http://hstore.cs.brown.edu/                                            *
+ *                                                                         *
+ *  Permission is hereby granted, free of charge, to any person obtaining  *
+ *  a copy of this software and associated documentation files (the        *
+ *  "Software"), to deal in the Software without restriction, including    *
+ *  without limitation the rights to use, copy, modify, merge, publish,    *
+ *  distribute, sublicense, and/or sell copies of the Software, and to     *
+ *  permit persons to whom the Software is furnished to do so, subject to  *
+ *  the following conditions:                                              *
+ *                                                                         *
+ *  The above copyright notice and this permission notice shall be         *
+ *  included in all copies or substantial portions of the Software.        *
+ *                                                                         *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,        *
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF     *
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. *
+ *  IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR      *
+ *  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,  *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR  *
+ *  OTHER DEALINGS IN THE SOFTWARE.                                        *
+ ***************************************************************************/
+package edu.brown.hstore.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.LinkedBlockingDeque;
+
+import org.apache.log4j.Logger;
+import org.voltdb.DependencySet;
+import org.voltdb.exceptions.SerializableException;
+import org.voltdb.exceptions.ServerFaultException;
+import org.voltdb.messaging.FastSerializer;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.RpcCallback;
+
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.HStoreThreadManager;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.hstore.Hstoreservice.WorkResult;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.hstore.dtxn.AbstractTransaction;
+import edu.brown.hstore.interfaces.Shutdownable;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.utils.ProfileMeasurement;
+
+/**
+ * Serializes the output dependencies of WorkFragments that were executed on behalf
+ * of remote transactions and sends them back to the base partition. This takes the
+ * serialization work off of the PartitionExecutor's thread so that it only has to
+ * execute work in the EE. The DependencySets handed to us must not be modified
+ * by the PartitionExecutor afterwards.
+ */
+public final class PartitionExecutorSerializer implements Runnable, Shutdownable {
+    private static final Logger LOG = Logger.getLogger(PartitionExecutorSerializer.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    /**
+     * The result of a WorkFragment that still needs to be serialized
+     */
+    public static final class Task {
+        private final int partitionId;
+        private final AbstractTransaction ts;
+        private final DependencySet result;
+        private final Status status;
+        private final SerializableException error;
+        private final RpcCallback<WorkResult> callback;
+
+        public Task(int partitionId, AbstractTransaction ts, DependencySet result,
+                    Status status, SerializableException error, RpcCallback<WorkResult> callback) {
+            this.partitionId = partitionId;
+            this.ts = ts;
+            this.result = result;
+            this.status = status;
+            this.error = error;
+            this.callback = callback;
+        }
+    }
+
+    private final HStoreSite hstore_site;
+
+    private final ProfileMeasurement idleTime = new ProfileMeasurement("IDLE");
+    private final ProfileMeasurement execTime = new ProfileMeasurement("EXEC");
+
+    /**
+     * Whether we should stop processing our queue
+     */
+    private boolean stop = false;
+
+    /**
+     * WorkResults that need to be serialized and sent back
+     */
+    private final LinkedBlockingDeque<Task> queue;
+
+    /**
+     * Each thread gets its own serializer
+     */
+    private final FastSerializer fs = new FastSerializer();
+
+    /**
+     * Handle to ourselves
+     */
+    private Thread self = null;
+
+    /**
+     * 
+     * @param hstore_site
+     * @param queue
+     */
+    public PartitionExecutorSerializer(HStoreSite hstore_site, LinkedBlockingDeque<Task> queue) {
+        this.hstore_site = hstore_site;
+        this.queue = queue;
+    }
+
+    @Override
+    public void run() {
+        this.self = Thread.currentThread();
+        this.self.setName(HStoreThreadManager.getThreadName(hstore_site, "serializer"));
+        if (hstore_site.getHStoreConf().site.cpu_affinity) {
+            hstore_site.getThreadManager().registerProcessingThread();
+        }
+        if (debug.get())
+            LOG.debug("Starting WorkResult serialization thread");
+
+        HStoreConf hstore_conf = hstore_site.getHStoreConf();
+        Task task = null;
+        while (this.stop == false) {
+            try {
+                if (hstore_conf.site.status_show_executor_info) idleTime.start();
+                task = this.queue.takeFirst();
+                if (hstore_conf.site.status_show_executor_info) idleTime.stop();
+            } catch (InterruptedException ex) {
+                this.stop = true;
+                break;
+            }
+
+            if (hstore_conf.site.status_show_executor_info) execTime.start();
+            try {
+                WorkResult response = buildWorkResult(task.partitionId, task.ts, task.result,
+                                                      task.status, task.error, this.fs);
+                task.callback.run(response);
+            } catch (Throwable ex) {
+                LOG.error(String.format("Failed to send WorkResult for %s from partition %d",
+                                        task.ts, task.partitionId), ex);
+                if (this.isShuttingDown() == false) throw new RuntimeException(ex);
+                break;
+            }
+            if (hstore_conf.site.status_show_executor_info) execTime.stop();
+        } // WHILE
+    }
+
+    /**
+     * Construct a WorkResult for the given DependencySet using the given FastSerializer
+     * @param partitionId The partition that executed the WorkFragment
+     * @param ts
+     * @param result
+     * @param status
+     * @param error
+     * @param fs
+     * @return
+     */
+    public static WorkResult buildWorkResult(int partitionId, AbstractTransaction ts, DependencySet result,
+                                             Status status, SerializableException error, FastSerializer fs) {
+        WorkResult.Builder builder = WorkResult.newBuilder();
+
+        // Partition Id
+        builder.setPartitionId(partitionId);
+
+        // Status
+        builder.setStatus(status);
+
+        // SerializableException 
+        if (error != null) {
+            ByteBuffer buffer = ByteBuffer.allocate(error.getSerializedSize());
+            error.serializeToBuffer(buffer);
+            buffer.rewind();
+            builder.setError(ByteString.copyFrom(buffer));
+        }
+
+        // Push dependencies back to the remote partition that needs it
+        if (status == Status.OK) {
+            for (int i = 0, cnt = result.size(); i < cnt; i++) {
+                builder.addDepId(result.depIds[i]);
+                fs.clear();
+                try {
+                    result.dependencies[i].writeExternal(fs);
+                    ByteString bs = ByteString.copyFrom(fs.getBBContainer().b);
+                    builder.addDepData(bs);
+                } catch (Exception ex) {
+                    throw new ServerFaultException(String.format("Failed to serialize output dependency %d for %s", result.depIds[i], ts), ex);
+                }
+                if (trace.get()) LOG.trace(String.format("%s - Serialized Output Dependency %d\n%s",
+                                                         ts, result.depIds[i], result.dependencies[i]));  
+            } // FOR
+            fs.getBBContainer().discard();
+        }
+
+        return (builder.build());
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return (this.stop);
+    }
+
+    @Override
+    public void prepareShutdown(boolean error) {
+        this.queue.clear();
+    }
+
+    @Override
+    public void shutdown() {
+        if (debug.get())
+            LOG.debug(String.format("WorkResult Serialization Thread Idle Time: %.2fms", idleTime.getTotalThinkTimeMS()));
+        this.stop = true;
+        if (this.self != null) this.self.interrupt();
+    }
+
+    public ProfileMeasurement getIdleTime() {
+        return (this.idleTime);
+    }
+    public ProfileMeasurement getExecTime() {
+        return (this.execTime);
+    }
+}
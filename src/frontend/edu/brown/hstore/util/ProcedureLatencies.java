@@ -0,0 +1,155 @@
+/***************************************************************************
+ *  Copyright (C) 2012 by H-Store Project                                  *
+ *  Brown University                                                       *
+ *  Massachusetts Institute of Technology                                  *
+ *  Yale University                                                        *
+ *                                                                         *
+ *  http://hstore.cs.brown.edu/                                            *
+ *                                                                         *
+ *  Permission is hereby granted, free of charge, to any person obtaining  *
+ *  a copy of this software and associated documentation files (the        *
+ *  "Software"), to deal in the Software without restriction, including    *
+ *  without limitation the rights to use, copy, modify, merge, publish,    *
+ *  distribute, sublicense, and/or sell copies of the Software, and to     *
+ *  permit persons to whom the Software is furnished to do so, subject to  *
+ *  the following conditions:                                              *
+ *                                                                         *
+ *  The above copyright notice and this permission notice shall be         *
+ *  included in all copies or substantial portions of the Software.        *
+ *                                                                         *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,        *
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF     *
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. *
+ *  IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR      *
+ *  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,  *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR  *
+ *  OTHER DEALINGS IN THE SOFTWARE.                                        *
+ ***************************************************************************/
+package edu.brown.hstore.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Procedure;
+
+import edu.brown.hstore.dtxn.TransactionProfile;
+import edu.brown.statistics.LatencyHistogram;
+import edu.brown.utils.ProfileMeasurement;
+
+/**
+ * Latency histograms for each Procedure and each phase of a transaction's lifetime.
+ * These are updated from the TransactionProfile of every txn that completes at the site,
+ * so they only have data if ${site.txn_profiling} is enabled.
+ */
+public class ProcedureLatencies {
+
+    public enum Phase {
+        /** From when the txn arrives at the HStoreSite until it is deleted */
+        TOTAL,
+        /** Initialization before the txn is queued */
+        INIT,
+        /** Time spent waiting in the PartitionExecutor's queue */
+        QUEUE,
+        /** Execution at the base partition */
+        EXEC,
+        /** 2PC prepare */
+        PREPARE,
+        /** 2PC finish */
+        FINISH,
+        /**
+         * Writing the txn to the command log until it is on disk. With group commit,
+         * this is recorded by the CommandLogWriter when the txn's group is flushed
+         */
+        WAL,
+        ;
+        
+        private ProfileMeasurement getMeasurement(TransactionProfile tp) {
+            switch (this) {
+                case TOTAL:
+                    return (tp.getTotal());
+                case INIT:
+                    return (tp.getInitTotal());
+                case QUEUE:
+                    return (tp.getQueue());
+                case EXEC:
+                    return (tp.getExecTotal());
+                case PREPARE:
+                    return (tp.getPostPrepare());
+                case FINISH:
+                    return (tp.getPostFinish());
+                case WAL:
+                    return (tp.getPostWAL());
+                default:
+                    assert(false) : "Unexpected Phase " + this;
+            } // SWITCH
+            return (null);
+        }
+    }
+    private static final Phase PHASES[] = Phase.values();
+    
+    /**
+     * Procedure -> Phase -> LatencyHistogram
+     * This is populated in the constructor and never modified afterwards
+     */
+    private final Map<Procedure, LatencyHistogram[]> histograms;
+    
+    public ProcedureLatencies(Database catalog_db) {
+        Map<Procedure, LatencyHistogram[]> m = new HashMap<Procedure, LatencyHistogram[]>();
+        for (Procedure catalog_proc : catalog_db.getProcedures()) {
+            if (catalog_proc.getSystemproc()) continue;
+            LatencyHistogram h[] = new LatencyHistogram[PHASES.length];
+            for (int i = 0; i < h.length; i++) {
+                h[i] = new LatencyHistogram();
+            } // FOR
+            m.put(catalog_proc, h);
+        } // FOR
+        this.histograms = Collections.unmodifiableMap(m);
+    }
+    
+    /**
+     * Record the phase latencies in the given TransactionProfile. The profile must be stopped.
+     * Phases that the txn never entered are not recorded.
+     * @param catalog_proc
+     * @param tp
+     */
+    public void record(Procedure catalog_proc, TransactionProfile tp) {
+        LatencyHistogram h[] = this.histograms.get(catalog_proc);
+        if (h == null) return;
+        for (int i = 0; i < PHASES.length; i++) {
+            ProfileMeasurement pm = PHASES[i].getMeasurement(tp);
+            if (pm.getInvocations() > 0) h[i].record(pm.getTotalThinkTime());
+        } // FOR
+    }
+    
+    public Map<Procedure, LatencyHistogram[]> getHistograms() {
+        return (this.histograms);
+    }
+    
+    public LatencyHistogram get(Procedure catalog_proc, Phase phase) {
+        LatencyHistogram h[] = this.histograms.get(catalog_proc);
+        return (h != null ? h[phase.ordinal()] : null);
+    }
+    
+    /**
+     * Return a new histogram with the merged measurements of all the Procedures for the given Phase
+     * @param phase
+     * @return
+     */
+    public LatencyHistogram getTotal(Phase phase) {
+        LatencyHistogram total = new LatencyHistogram();
+        for (LatencyHistogram h[] : this.histograms.values()) {
+            total.add(h[phase.ordinal()]);
+        } // FOR
+        return (total);
+    }
+    
+    public void reset() {
+        for (LatencyHistogram h[] : this.histograms.values()) {
+            for (LatencyHistogram lh : h) {
+                lh.reset();
+            } // FOR
+        } // FOR
+    }
+}
@@ -3,11 +3,14 @@
  */
 package edu.brown.hstore.util;
 
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.voltdb.catalog.Procedure;
 
+import edu.brown.statistics.ConcurrentHistogram;
 import edu.brown.statistics.Histogram;
 import edu.brown.utils.StringUtil;
 
@@ -46,7 +49,18 @@ public enum TxnCounter {
     BLOCKED_REMOTE,
     ;
     
-    private final Histogram<String> h = new Histogram<String>();
+    /**
+     * The number of procedure ids that we can count without locking
+     * Procedures with larger ids still work but they go through the slow path
+     */
+    private static final int NUM_PROCEDURE_IDS = 256;
+    
+    /**
+     * Procedure Id -> Procedure Name
+     */
+    private static final Map<Integer, String> PROC_NAMES = new ConcurrentHashMap<Integer, String>();
+    
+    private final ConcurrentHistogram h = new ConcurrentHistogram(NUM_PROCEDURE_IDS);
     private final String name;
     private TxnCounter() {
         this.name = StringUtil.title(this.name().replace("_", "-"));
@@ -55,29 +69,36 @@ public enum TxnCounter {
     public String toString() {
         return (this.name);
     }
+    /**
+     * Return a snapshot of the counts for this counter keyed by Procedure name
+     * @return
+     */
     public Histogram<String> getHistogram() {
-        return (this.h);
+        Histogram<Integer> snapshot = this.h.snapshot();
+        Histogram<String> ret = new Histogram<String>();
+        for (Integer proc_id : snapshot.values()) {
+            ret.put(PROC_NAMES.get(proc_id), snapshot.get(proc_id));
+        } // FOR
+        return (ret);
     }
     public int get() {
         return ((int)this.h.getSampleCount());
     }
-    public int inc(String procName) {
-        this.h.put(procName);
-        return (this.get());
+    public void inc(Procedure catalog_proc) {
+        int proc_id = catalog_proc.getId();
+        if (PROC_NAMES.containsKey(proc_id) == false) PROC_NAMES.put(proc_id, catalog_proc.getName());
+        this.h.put(proc_id);
     }
-    public int inc(Procedure catalog_proc) {
-        this.h.put(catalog_proc.getName());
-        return (this.get());
-    }
-    public int dec(Procedure catalog_proc) {
-        this.h.remove(catalog_proc.getName());
-        return (this.get());
+    public void dec(Procedure catalog_proc) {
+        this.h.remove(catalog_proc.getId());
     }
     public static Set<String> getAllProcedures() {
         Set<String> ret = new TreeSet<String>();
         for (TxnCounter tc : TxnCounter.values()) {
-            ret.addAll(tc.h.values());
-        }
+            for (Integer proc_id : tc.h.values()) {
+                ret.add(PROC_NAMES.get(proc_id));
+            } // FOR
+        } // FOR
         return (ret);
     }
     public Double ratio() {
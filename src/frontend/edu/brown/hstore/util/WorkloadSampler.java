@@ -0,0 +1,614 @@
+/***************************************************************************
+ *  Copyright (C) 2012 by H-Store Project                                  *
+ *  Brown University                                                       *
+ *  Massachusetts Institute of Technology                                  *
+ *  Yale University                                                        *
+ *                                                                         *
+ *  http://hstore.cs.brown.edu/                                            *
+ *                                                                         *
+ *  Permission is hereby granted, free of charge, to any person obtaining  *
+ *  a copy of this software and associated documentation files (the        *
+ *  "Software"), to deal in the Software without restriction, including    *
+ *  without limitation the rights to use, copy, modify, merge, publish,    *
+ *  distribute, sublicense, and/or sell copies of the Software, and to     *
+ *  permit persons to whom the Software is furnished to do so, subject to  *
+ *  the following conditions:                                              *
+ *                                                                         *
+ *  The above copyright notice and this permission notice shall be         *
+ *  included in all copies or substantial portions of the Software.        *
+ *                                                                         *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,        *
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF     *
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. *
+ *  IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR      *
+ *  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,  *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR  *
+ *  OTHER DEALINGS IN THE SOFTWARE.                                        *
+ ***************************************************************************/
+package edu.brown.hstore.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.voltdb.SQLStmt;
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.types.TimestampType;
+
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.HStoreThreadManager;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.hstore.interfaces.Shutdownable;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.utils.FileUtil;
+import edu.brown.workload.BinaryWorkloadFormat;
+import edu.brown.workload.BinaryWorkloadWriter;
+import edu.brown.workload.QueryTrace;
+import edu.brown.workload.TransactionTrace;
+
+/**
+ * Always-on sampling workload capture for an HStoreSite.
+ * <p>
+ * Each local partition gets a {@link PartitionBuffer} that its PartitionExecutor thread
+ * writes compact records into for a random sample of the txns that it executes. The buffer is
+ * a single-producer/single-consumer ring, so the execution thread never blocks on a lock;
+ * if the ring is full, the record is dropped. This thread periodically drains the rings,
+ * rebuilds the TransactionTraces, and appends them to rotating binary workload files
+ * that can be loaded directly by Workload.load().
+ * <p>
+ * The sampling rate can be changed at runtime with the @WorkloadSampling sysproc.
+ */
+public class WorkloadSampler implements Runnable, Shutdownable {
+    private static final Logger LOG = Logger.getLogger(WorkloadSampler.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+    
+    /** Sampling decisions are made against this many random bits */
+    private static final int SAMPLE_BITS = 24;
+    
+    // Fixed offsets of the fields that get filled in when a txn finishes
+    private static final int OFFSET_STOP = 8 + 4 + 8;
+    private static final int OFFSET_FLAGS = OFFSET_STOP + 8;
+    private static final int OFFSET_NUM_QUERIES = OFFSET_FLAGS + 1;
+    
+    private final HStoreSite hstore_site;
+    private final HStoreConf hstore_conf;
+    private final PartitionBuffer buffers[];
+    private final Procedure procedures[];
+    private final Statement statements[];
+    
+    /** Sampling threshold out of 2^SAMPLE_BITS. Zero means that sampling is off */
+    private volatile int threshold;
+    private volatile double rate;
+    
+    private final File output_dir;
+    private BinaryWorkloadWriter writer;
+    private int file_ctr = 0;
+    private long txn_ctr = 0;
+    
+    private Thread self;
+    private volatile ShutdownState shutdown_state = ShutdownState.INITIALIZED;
+    
+    public WorkloadSampler(HStoreSite hstore_site) {
+        this.hstore_site = hstore_site;
+        this.hstore_conf = hstore_site.getHStoreConf();
+        
+        // Records only store catalog ids, so we need to be able to map them back
+        Database catalog_db = hstore_site.getDatabase();
+        int max_proc_id = 0;
+        int max_stmt_id = 0;
+        for (Procedure catalog_proc : catalog_db.getProcedures()) {
+            max_proc_id = Math.max(max_proc_id, catalog_proc.getId());
+            for (Statement catalog_stmt : catalog_proc.getStatements()) {
+                max_stmt_id = Math.max(max_stmt_id, catalog_stmt.getId());
+            } // FOR
+        } // FOR
+        this.procedures = new Procedure[max_proc_id + 1];
+        this.statements = new Statement[max_stmt_id + 1];
+        for (Procedure catalog_proc : catalog_db.getProcedures()) {
+            this.procedures[catalog_proc.getId()] = catalog_proc;
+            for (Statement catalog_stmt : catalog_proc.getStatements()) {
+                this.statements[catalog_stmt.getId()] = catalog_stmt;
+            } // FOR
+        } // FOR
+        
+        int capacity = Integer.highestOneBit(Math.max(1024, hstore_conf.site.trace_sampling_buffer));
+        int num_partitions = hstore_site.getAllPartitionIds().size();
+        this.buffers = new PartitionBuffer[num_partitions];
+        for (int partition : hstore_site.getLocalPartitionIds()) {
+            this.buffers[partition] = new PartitionBuffer(partition, capacity);
+        } // FOR
+        
+        this.output_dir = new File(hstore_conf.site.trace_sampling_dir);
+        this.setSamplingRate(hstore_conf.site.trace_sampling_rate);
+    }
+    
+    /**
+     * Return the PartitionBuffer for the given local partition
+     * @param partition
+     * @return
+     */
+    public PartitionBuffer getPartitionBuffer(int partition) {
+        return (this.buffers[partition]);
+    }
+    
+    /**
+     * Change the fraction of txns that are sampled at this site.
+     * A rate of zero disables sampling.
+     * @param rate
+     */
+    public void setSamplingRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Invalid workload sampling rate " + rate);
+        }
+        this.rate = rate;
+        this.threshold = (int)Math.round(rate * (1 << SAMPLE_BITS));
+        if (debug.get()) LOG.debug(String.format("Workload sampling rate at %s is now %.4f",
+                                                 this.hstore_site.getSiteName(), rate));
+    }
+    
+    public double getSamplingRate() {
+        return (this.rate);
+    }
+    
+    /**
+     * Return the total number of txns that have been sampled at this site
+     */
+    public long getSampledCount() {
+        long total = 0;
+        for (PartitionBuffer buffer : this.buffers) {
+            if (buffer != null) total += buffer.sampled;
+        } // FOR
+        return (total);
+    }
+    
+    /**
+     * Return the total number of sampled txns that were thrown away because
+     * their partition's ring buffer was full
+     */
+    public long getDroppedCount() {
+        long total = 0;
+        for (PartitionBuffer buffer : this.buffers) {
+            if (buffer != null) total += buffer.dropped;
+        } // FOR
+        return (total);
+    }
+    
+    // ----------------------------------------------------------------------------
+    // DRAIN THREAD
+    // ----------------------------------------------------------------------------
+    
+    @Override
+    public void run() {
+        this.self = Thread.currentThread();
+        this.self.setName(HStoreThreadManager.getThreadName(this.hstore_site, "sampler"));
+        if (this.shutdown_state == ShutdownState.INITIALIZED) {
+            this.shutdown_state = ShutdownState.STARTED;
+        }
+        FileUtil.makeDirIfNotExists(this.output_dir.getAbsolutePath());
+        if (debug.get()) LOG.debug("Starting workload sampler thread [dir=" + this.output_dir + "]");
+        
+        try {
+            while (this.shutdown_state == ShutdownState.STARTED) {
+                try {
+                    Thread.sleep(hstore_conf.site.trace_sampling_interval);
+                } catch (InterruptedException ex) {
+                    break;
+                }
+                this.drain();
+            } // WHILE
+            this.drain();
+        } catch (IOException ex) {
+            LOG.error("Failed to write sampled workload traces to " + this.output_dir, ex);
+        } finally {
+            this.closeWriter();
+        }
+    }
+    
+    private void drain() throws IOException {
+        for (PartitionBuffer buffer : this.buffers) {
+            if (buffer == null) continue;
+            TransactionTrace txn_trace = null;
+            while ((txn_trace = buffer.poll()) != null) {
+                if (this.writer == null) {
+                    File path = new File(this.output_dir, String.format("%s-%04d.trace",
+                                         this.hstore_site.getSiteName(), this.file_ctr++));
+                    this.writer = new BinaryWorkloadWriter(path);
+                    if (debug.get()) LOG.debug("Writing sampled workload traces to " + path);
+                }
+                this.writer.write(txn_trace);
+                this.txn_ctr++;
+                if (this.writer.getTransactionCount() >= hstore_conf.site.trace_sampling_rotate) {
+                    this.closeWriter();
+                }
+            } // WHILE
+        } // FOR
+    }
+    
+    private void closeWriter() {
+        if (this.writer == null) return;
+        try {
+            this.writer.close();
+        } catch (IOException ex) {
+            LOG.warn("Failed to close workload sample file", ex);
+        }
+        this.writer = null;
+    }
+    
+    @Override
+    public void prepareShutdown(boolean error) {
+        this.shutdown_state = ShutdownState.PREPARE_SHUTDOWN;
+    }
+
+    @Override
+    public void shutdown() {
+        this.shutdown_state = ShutdownState.SHUTDOWN;
+        if (this.self != null) this.self.interrupt();
+        if (debug.get()) LOG.debug(String.format("Wrote %d sampled txns to %d files [dropped=%d]",
+                                                 this.txn_ctr, this.file_ctr, this.getDroppedCount()));
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return (this.shutdown_state == ShutdownState.PREPARE_SHUTDOWN ||
+                this.shutdown_state == ShutdownState.SHUTDOWN);
+    }
+    
+    // ----------------------------------------------------------------------------
+    // PARTITION BUFFER
+    // ----------------------------------------------------------------------------
+    
+    /**
+     * Single-producer/single-consumer ring buffer for one partition. Only the
+     * PartitionExecutor thread for the partition may call the recording methods,
+     * and only the WorkloadSampler thread may call poll().
+     */
+    public class PartitionBuffer {
+        private final int partition;
+        private final byte ring[];
+        private final int mask;
+        private final AtomicLong head = new AtomicLong(0);
+        private final AtomicLong tail = new AtomicLong(0);
+        
+        // Producer state
+        private ByteBuffer record = ByteBuffer.allocate(1024);
+        private boolean active = false;
+        private boolean overflow = false;
+        private int num_queries;
+        private int batch_id;
+        private long seed;
+        private volatile long sampled = 0;
+        private volatile long dropped = 0;
+        
+        // Consumer state
+        private ByteBuffer input = ByteBuffer.allocate(1024);
+        
+        private PartitionBuffer(int partition, int capacity) {
+            this.partition = partition;
+            this.ring = new byte[capacity];
+            this.mask = capacity - 1;
+            this.seed = System.nanoTime() ^ (partition + 1) * 0x9E3779B97F4A7C15l;
+        }
+        
+        /**
+         * Returns true if the current txn at this partition is being sampled
+         */
+        public boolean isActive() {
+            return (this.active);
+        }
+        
+        /**
+         * Decide whether to sample the txn that is about to start at this partition.
+         * If it is, then its id and parameters are encoded immediately.
+         * @param txn_id
+         * @param catalog_proc
+         * @param params
+         * @return true if this txn is being sampled
+         */
+        public boolean startTransaction(long txn_id, Procedure catalog_proc, Object params[]) {
+            this.active = false;
+            int t = WorkloadSampler.this.threshold;
+            if (t == 0) return (false);
+            
+            // XorShift
+            long x = this.seed;
+            x ^= (x << 21);
+            x ^= (x >>> 35);
+            x ^= (x << 4);
+            this.seed = x;
+            if ((x & ((1 << SAMPLE_BITS) - 1)) >= t) return (false);
+            
+            this.active = true;
+            this.overflow = false;
+            this.num_queries = 0;
+            this.batch_id = 0;
+            this.record.clear();
+            try {
+                this.record.putLong(txn_id);
+                this.record.putInt(catalog_proc.getId());
+                this.record.putLong(System.nanoTime());
+                this.record.putLong(BinaryWorkloadFormat.NULL_TIMESTAMP); // STOP
+                this.record.put((byte)0);                                 // FLAGS
+                this.record.putInt(0);                                    // NUM QUERIES
+                this.putParams(params);
+            } catch (BufferOverflowException ex) {
+                this.overflow = true;
+            }
+            return (true);
+        }
+        
+        /**
+         * Record a batch of queries that was just executed by the current txn
+         * @param stmts
+         * @param args
+         * @param count
+         * @param start
+         */
+        public void recordBatch(SQLStmt stmts[], Object args[][], int count, long start) {
+            if (this.active == false || this.overflow) return;
+            long stop = System.nanoTime();
+            try {
+                for (int i = 0; i < count; i++) {
+                    Statement catalog_stmt = stmts[i].getStatement();
+                    this.record.putInt(catalog_stmt.getId());
+                    this.record.putInt(this.batch_id);
+                    this.record.putLong(start);
+                    this.record.putLong(stop);
+                    this.putParams(args[i]);
+                    this.num_queries++;
+                } // FOR
+            } catch (BufferOverflowException ex) {
+                this.overflow = true;
+            }
+            this.batch_id++;
+        }
+        
+        /**
+         * Finish the current txn and publish its record to the ring buffer
+         * @param aborted
+         */
+        public void stopTransaction(boolean aborted) {
+            if (this.active == false) return;
+            this.active = false;
+            
+            // If the record didn't fit in our scratch space, then grow it
+            // for the next time and just drop this one
+            if (this.overflow) {
+                if (this.record.capacity() < this.ring.length / 2) {
+                    this.record = ByteBuffer.allocate(this.record.capacity() * 2);
+                }
+                this.dropped++;
+                return;
+            }
+            this.record.putLong(OFFSET_STOP, System.nanoTime());
+            this.record.put(OFFSET_FLAGS, aborted ? BinaryWorkloadFormat.FLAG_ABORTED : 0);
+            this.record.putInt(OFFSET_NUM_QUERIES, this.num_queries);
+            
+            int length = this.record.position();
+            long h = this.head.get();
+            if (this.ring.length - (h - this.tail.get()) < length + 4) {
+                this.dropped++;
+                return;
+            }
+            this.write(h, length);
+            this.write(h + 4, this.record.array(), length);
+            this.head.lazySet(h + 4 + length);
+            this.sampled++;
+        }
+        
+        /**
+         * Throw away whatever we have recorded for the current txn
+         */
+        public void discardTransaction() {
+            this.active = false;
+        }
+        
+        private void write(long pos, int value) {
+            for (int i = 0; i < 4; i++) {
+                this.ring[(int)((pos + i) & this.mask)] = (byte)(value >>> (24 - 8 * i));
+            } // FOR
+        }
+        
+        private void write(long pos, byte src[], int length) {
+            int idx = (int)(pos & this.mask);
+            int first = Math.min(length, this.ring.length - idx);
+            System.arraycopy(src, 0, this.ring, idx, first);
+            if (first < length) {
+                System.arraycopy(src, first, this.ring, 0, length - first);
+            }
+        }
+        
+        private void putParams(Object params[]) {
+            if (params == null) {
+                this.record.putInt(0);
+                return;
+            }
+            this.record.putInt(params.length);
+            for (Object param : params) {
+                this.putParam(param);
+            } // FOR
+        }
+        
+        private void putParam(Object param) {
+            ByteBuffer buffer = this.record;
+            if (param == null) {
+                buffer.put(BinaryWorkloadFormat.PARAM_NULL);
+            } else if (param instanceof Long) {
+                buffer.put(BinaryWorkloadFormat.PARAM_LONG).putLong((Long)param);
+            } else if (param instanceof Integer) {
+                buffer.put(BinaryWorkloadFormat.PARAM_INT).putInt((Integer)param);
+            } else if (param instanceof Short) {
+                buffer.put(BinaryWorkloadFormat.PARAM_SHORT).putShort((Short)param);
+            } else if (param instanceof Byte) {
+                buffer.put(BinaryWorkloadFormat.PARAM_BYTE).put((Byte)param);
+            } else if (param instanceof Double) {
+                buffer.put(BinaryWorkloadFormat.PARAM_DOUBLE).putDouble((Double)param);
+            } else if (param instanceof Float) {
+                buffer.put(BinaryWorkloadFormat.PARAM_FLOAT).putFloat((Float)param);
+            } else if (param instanceof Boolean) {
+                buffer.put(BinaryWorkloadFormat.PARAM_BOOLEAN).put((byte)((Boolean)param ? 1 : 0));
+            } else if (param instanceof TimestampType) {
+                buffer.put(BinaryWorkloadFormat.PARAM_TIMESTAMP).putLong(((TimestampType)param).getTime());
+            } else if (param instanceof Date) {
+                buffer.put(BinaryWorkloadFormat.PARAM_TIMESTAMP).putLong(((Date)param).getTime() * 1000l);
+            } else if (param instanceof BigDecimal) {
+                buffer.put(BinaryWorkloadFormat.PARAM_DECIMAL);
+                this.putString(param.toString());
+            } else if (param instanceof long[]) {
+                long arr[] = (long[])param;
+                buffer.put(BinaryWorkloadFormat.PARAM_ARRAY).putInt(arr.length);
+                for (long val : arr) buffer.put(BinaryWorkloadFormat.PARAM_LONG).putLong(val);
+            } else if (param instanceof int[]) {
+                int arr[] = (int[])param;
+                buffer.put(BinaryWorkloadFormat.PARAM_ARRAY).putInt(arr.length);
+                for (int val : arr) buffer.put(BinaryWorkloadFormat.PARAM_INT).putInt(val);
+            } else if (param instanceof short[]) {
+                short arr[] = (short[])param;
+                buffer.put(BinaryWorkloadFormat.PARAM_ARRAY).putInt(arr.length);
+                for (short val : arr) buffer.put(BinaryWorkloadFormat.PARAM_SHORT).putShort(val);
+            } else if (param instanceof byte[]) {
+                byte arr[] = (byte[])param;
+                buffer.put(BinaryWorkloadFormat.PARAM_ARRAY).putInt(arr.length);
+                for (byte val : arr) buffer.put(BinaryWorkloadFormat.PARAM_BYTE).put(val);
+            } else if (param instanceof double[]) {
+                double arr[] = (double[])param;
+                buffer.put(BinaryWorkloadFormat.PARAM_ARRAY).putInt(arr.length);
+                for (double val : arr) buffer.put(BinaryWorkloadFormat.PARAM_DOUBLE).putDouble(val);
+            } else if (param instanceof Object[]) {
+                Object arr[] = (Object[])param;
+                buffer.put(BinaryWorkloadFormat.PARAM_ARRAY).putInt(arr.length);
+                for (Object val : arr) this.putParam(val);
+            } else {
+                buffer.put(BinaryWorkloadFormat.PARAM_STRING);
+                this.putString(param.toString());
+            }
+        }
+        
+        private void putString(String str) {
+            int length = str.length();
+            this.record.putInt(length);
+            for (int i = 0; i < length; i++) {
+                this.record.putChar(str.charAt(i));
+            } // FOR
+        }
+        
+        // ----------------------------------------------------------------------------
+        // CONSUMER METHODS
+        // ----------------------------------------------------------------------------
+        
+        /**
+         * Remove the next record from the ring buffer and convert it into
+         * a TransactionTrace. Returns null if the buffer is empty.
+         */
+        private TransactionTrace poll() {
+            long t = this.tail.get();
+            if (t == this.head.get()) return (null);
+            
+            int length = 0;
+            for (int i = 0; i < 4; i++) {
+                length = (length << 8) | (this.ring[(int)((t + i) & this.mask)] & 0xFF);
+            } // FOR
+            if (this.input.capacity() < length) {
+                this.input = ByteBuffer.allocate(Integer.highestOneBit(length) << 1);
+            }
+            this.input.clear();
+            int idx = (int)((t + 4) & this.mask);
+            int first = Math.min(length, this.ring.length - idx);
+            this.input.put(this.ring, idx, first);
+            if (first < length) {
+                this.input.put(this.ring, 0, length - first);
+            }
+            this.input.flip();
+            this.tail.lazySet(t + 4 + length);
+            
+            ByteBuffer buffer = this.input;
+            long txn_id = buffer.getLong();
+            Procedure catalog_proc = WorkloadSampler.this.procedures[buffer.getInt()];
+            long start = buffer.getLong();
+            long stop = buffer.getLong();
+            boolean aborted = ((buffer.get() & BinaryWorkloadFormat.FLAG_ABORTED) != 0);
+            int num_queries = buffer.getInt();
+            
+            TransactionTrace txn_trace = new TransactionTrace(txn_id, catalog_proc, this.getParams());
+            for (int i = 0; i < num_queries; i++) {
+                Statement catalog_stmt = WorkloadSampler.this.statements[buffer.getInt()];
+                int batch_id = buffer.getInt();
+                long q_start = buffer.getLong();
+                long q_stop = buffer.getLong();
+                QueryTrace query_trace = new QueryTrace(catalog_stmt, this.getParams(), batch_id);
+                query_trace.setTimestamps(q_start, q_stop);
+                txn_trace.addQuery(query_trace);
+            } // FOR
+            if (aborted) txn_trace.abort();
+            txn_trace.setTimestamps(start, stop);
+            if (trace.get()) LOG.trace(String.format("Polled %s from partition %d [bytes=%d]",
+                                                     txn_trace, this.partition, length));
+            return (txn_trace);
+        }
+        
+        private Object[] getParams() {
+            Object params[] = new Object[this.input.getInt()];
+            for (int i = 0; i < params.length; i++) {
+                params[i] = this.getParam();
+            } // FOR
+            return (params);
+        }
+        
+        private Object getParam() {
+            ByteBuffer buffer = this.input;
+            byte type = buffer.get();
+            switch (type) {
+                case BinaryWorkloadFormat.PARAM_NULL:
+                    return (null);
+                case BinaryWorkloadFormat.PARAM_BYTE:
+                    return (buffer.get());
+                case BinaryWorkloadFormat.PARAM_SHORT:
+                    return (buffer.getShort());
+                case BinaryWorkloadFormat.PARAM_INT:
+                    return (buffer.getInt());
+                case BinaryWorkloadFormat.PARAM_LONG:
+                    return (buffer.getLong());
+                case BinaryWorkloadFormat.PARAM_FLOAT:
+                    return (buffer.getFloat());
+                case BinaryWorkloadFormat.PARAM_DOUBLE:
+                    return (buffer.getDouble());
+                case BinaryWorkloadFormat.PARAM_BOOLEAN:
+                    return (buffer.get() != 0);
+                case BinaryWorkloadFormat.PARAM_TIMESTAMP:
+                    return (new TimestampType(buffer.getLong()));
+                case BinaryWorkloadFormat.PARAM_DECIMAL:
+                    return (new BigDecimal(this.getString()));
+                case BinaryWorkloadFormat.PARAM_STRING:
+                    return (this.getString());
+                case BinaryWorkloadFormat.PARAM_ARRAY: {
+                    Object inner[] = new Object[buffer.getInt()];
+                    for (int i = 0; i < inner.length; i++) {
+                        inner[i] = this.getParam();
+                    } // FOR
+                    return (inner);
+                }
+                default:
+                    throw new RuntimeException("Unexpected parameter type " + type + " in partition " + this.partition);
+            } // SWITCH
+        }
+        
+        private String getString() {
+            char chars[] = new char[this.input.getInt()];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = this.input.getChar();
+            } // FOR
+            return (new String(chars));
+        }
+    } // CLASS
+}
@@ -55,8 +55,11 @@ import edu.brown.hstore.HStoreThreadManager;
 import edu.brown.hstore.conf.HStoreConf;
 import edu.brown.hstore.dtxn.LocalTransaction;
 import edu.brown.hstore.interfaces.Shutdownable;
+import edu.brown.hstore.util.ProcedureLatencies;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.statistics.LatencyHistogram;
+import edu.brown.utils.ProfileMeasurement;
 
 /**
  * Transaction Command Log Writer
@@ -81,12 +84,22 @@ public class CommandLogWriter implements Shutdownable {
         protected RpcCallback<byte[]> clientCallback;
         protected long initiateTime;
         protected int restartCounter;
+        /** The Procedure and start time of the WAL phase for the txn's latency profile */
+        protected Procedure catalog_proc;
+        protected long walStart;
         
         public LogEntry init(LocalTransaction ts, ClientResponseImpl cresponse) {
             this.cresponse = cresponse;
             this.clientCallback = ts.getClientCallback();
             this.initiateTime = ts.getInitiateTime();
             this.restartCounter = ts.getRestartCounter();
+            if (hstore_conf.site.txn_profiling && ts.profiler.isDisabled() == false) {
+                this.catalog_proc = ts.getProcedure();
+                this.walStart = ProfileMeasurement.getTime();
+            } else {
+                this.catalog_proc = null;
+                this.walStart = -1;
+            }
             return super.init(ts);
         }
         
@@ -97,6 +110,8 @@ public class CommandLogWriter implements Shutdownable {
             this.clientCallback = null;
             this.initiateTime = -1;
             this.restartCounter = -1;
+            this.catalog_proc = null;
+            this.walStart = -1;
         }
     }
     
@@ -366,11 +381,18 @@ public class CommandLogWriter implements Shutdownable {
         }
         
         //Send responses
+        //The txns' WAL phase ends here now that their entries are on disk
+        ProcedureLatencies latencies = hstore_site.getProcedureLatencies();
+        long walStop = ProfileMeasurement.getTime();
         for (int i = 0; i < eb.length; i++) {
             EntryBuffer buffer = eb[i];
             int start = buffer.getStart();
             for (int j = 0; j < buffer.getSize(); j++) {
                 WriterLogEntry entry = buffer.buffer[(start + j) % buffer.buffer.length];
+                if (latencies != null && entry.catalog_proc != null) {
+                    LatencyHistogram h = latencies.get(entry.catalog_proc, ProcedureLatencies.Phase.WAL);
+                    if (h != null) h.record(walStop - entry.walStart);
+                }
                 hstore_site.sendClientResponse(entry.cresponse,
                                                entry.clientCallback,
                                                entry.initiateTime,
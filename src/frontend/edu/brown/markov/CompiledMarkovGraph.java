@@ -0,0 +1,359 @@
+/***************************************************************************
+ *  Copyright (C) 2012 by H-Store Project                                  *
+ *  Brown University                                                       *
+ *  Massachusetts Institute of Technology                                  *
+ *  Yale University                                                        *
+ *                                                                         *
+ *  http://hstore.cs.brown.edu/                                            *
+ *                                                                         *
+ *  Permission is hereby granted, free of charge, to any person obtaining  *
+ *  a copy of this software and associated documentation files (the        *
+ *  "Software"), to deal in the Software without restriction, including    *
+ *  without limitation the rights to use, copy, modify, merge, publish,    *
+ *  distribute, sublicense, and/or sell copies of the Software, and to     *
+ *  permit persons to whom the Software is furnished to do so, subject to  *
+ *  the following conditions:                                              *
+ *                                                                         *
+ *  The above copyright notice and this permission notice shall be         *
+ *  included in all copies or substantial portions of the Software.        *
+ *                                                                         *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,        *
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF     *
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. *
+ *  IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR      *
+ *  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,  *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR  *
+ *  OTHER DEALINGS IN THE SOFTWARE.                                        *
+ ***************************************************************************/
+package edu.brown.markov;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import org.voltdb.catalog.ProcParameter;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.StmtParameter;
+import org.voltdb.types.QueryType;
+import org.voltdb.utils.Pair;
+
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.mappings.ParameterMapping;
+import edu.brown.mappings.ParameterMappingsSet;
+
+/**
+ * A frozen, flattened copy of a MarkovGraph that MarkovPathEstimator can walk
+ * without touching the JUNG graph, the catalog maps, or any locks.
+ * <p>
+ * Vertices are identified by their offset in the arrays below. The out-edges of each vertex
+ * are stored CSR-style in one array sorted by probability (highest first), and every set of
+ * partitions is stored as a bitmask of <code>words</code> longs. The ParameterMappings that
+ * MarkovPathEstimator needs to figure out where the next queries will go are resolved once
+ * here for every Statement instance that could be executed next.
+ * <p>
+ * Instances are immutable and are built by MarkovGraph.getCompiledGraph().
+ */
+public class CompiledMarkovGraph {
+
+    /**
+     * Same order that MarkovPathEstimator uses for its candidate edges 
+     */
+    private static final Comparator<MarkovEdge> EDGE_COMPARATOR = new Comparator<MarkovEdge>() {
+        @Override
+        public int compare(MarkovEdge e0, MarkovEdge e1) {
+            int cmp = Float.compare(e1.getProbability(), e0.getProbability());
+            if (cmp == 0) cmp = (e0.hashCode() < e1.hashCode() ? -1 : (e0.hashCode() == e1.hashCode() ? 0 : 1));
+            return (cmp);
+        }
+    };
+    
+    /**
+     * A Statement+StatementInstanceIndex that could be executed next, along with where
+     * each of its StmtParameters gets its value from in the ProcParameters
+     */
+    protected static final class NextStatement {
+        protected final Statement catalog_stmt;
+        protected final int stmt_index;
+        protected final int num_params;
+        
+        /** False if there are no ParameterMappings at all for this Statement instance */
+        protected final boolean mapped;
+        
+        /**
+         * For StmtParameter i, the candidate mappings are in the range
+         * [param_offsets[i], param_offsets[i+1]) of the arrays below
+         */
+        protected final int param_offsets[];
+        protected final int proc_params[];
+        protected final boolean proc_param_arrays[];
+        protected final int proc_param_indexes[];
+        
+        private NextStatement(Statement catalog_stmt, int stmt_index, ParameterMappingsSet mappings) {
+            this.catalog_stmt = catalog_stmt;
+            this.stmt_index = stmt_index;
+            this.num_params = catalog_stmt.getParameters().size();
+            this.param_offsets = new int[this.num_params + 1];
+            
+            SortedMap<StmtParameter, SortedSet<ParameterMapping>> param_mappings = mappings.get(catalog_stmt, stmt_index);
+            this.mapped = (param_mappings != null);
+            
+            List<ParameterMapping> flat = new ArrayList<ParameterMapping>();
+            StmtParameter stmt_params[] = new StmtParameter[this.num_params];
+            for (StmtParameter catalog_param : catalog_stmt.getParameters()) {
+                stmt_params[catalog_param.getIndex()] = catalog_param;
+            } // FOR
+            for (int i = 0; i < this.num_params; i++) {
+                this.param_offsets[i] = flat.size();
+                if (param_mappings == null) continue;
+                SortedSet<ParameterMapping> c = param_mappings.get(stmt_params[i]);
+                if (c != null) flat.addAll(c);
+            } // FOR
+            this.param_offsets[this.num_params] = flat.size();
+            
+            this.proc_params = new int[flat.size()];
+            this.proc_param_arrays = new boolean[flat.size()];
+            this.proc_param_indexes = new int[flat.size()];
+            for (int i = 0; i < this.proc_params.length; i++) {
+                ParameterMapping c = flat.get(i);
+                ProcParameter catalog_proc_param = c.getProcParameter();
+                this.proc_params[i] = catalog_proc_param.getIndex();
+                this.proc_param_arrays[i] = catalog_proc_param.getIsarray();
+                Integer idx = c.getProcParameterIndex();
+                this.proc_param_indexes[i] = (idx != null ? idx.intValue() : -1);
+            } // FOR
+        }
+    }
+    
+    // ----------------------------------------------------------------------------
+    // DATA MEMBERS
+    // ----------------------------------------------------------------------------
+    
+    private final MarkovGraph markov;
+    private final ParameterMappingsSet mappings;
+    private final int version;
+    
+    protected final int num_partitions;
+    protected final int words;
+    
+    // Vertices
+    protected final MarkovVertex vertices[];
+    protected final int start;
+    protected final int commit;
+    protected final int abort;
+    protected final boolean query[];
+    protected final Statement stmts[];
+    protected final int stmt_indexes[];
+    protected final boolean select[];
+    protected final float abort_probs[];
+    protected final long partitions[];
+    protected final long past_partitions[];
+    protected final int partition_lists[][];
+    
+    // Edges
+    protected final int edge_offsets[];
+    protected final int edge_targets[];
+    protected final float edge_probs[];
+    
+    // Next Statements
+    protected final int next_offsets[];
+    protected final NextStatement next_stmts[];
+    
+    // START Vertex Probabilities
+    protected final float start_read[];
+    protected final float start_write[];
+    protected final float start_done[];
+    protected final long start_hits;
+    
+    // ----------------------------------------------------------------------------
+    // CONSTRUCTOR
+    // ----------------------------------------------------------------------------
+    
+    /**
+     * Constructor
+     * The caller must make sure that nobody else is modifying the graph
+     * @param markov
+     * @param mappings
+     */
+    protected CompiledMarkovGraph(MarkovGraph markov, ParameterMappingsSet mappings) {
+        this.markov = markov;
+        this.mappings = mappings;
+        this.version = markov.getVersion();
+        this.num_partitions = CatalogUtil.getNumberOfPartitions(markov.getDatabase());
+        this.words = (this.num_partitions + 63) >>> 6;
+        
+        Collection<MarkovVertex> all_vertices = markov.getVertices();
+        int num_vertices = all_vertices.size();
+        this.vertices = all_vertices.toArray(new MarkovVertex[num_vertices]);
+        Map<MarkovVertex, Integer> ids = new IdentityHashMap<MarkovVertex, Integer>();
+        for (int i = 0; i < num_vertices; i++) {
+            ids.put(this.vertices[i], i);
+        } // FOR
+        this.start = ids.get(markov.getStartVertex());
+        this.commit = ids.get(markov.getCommitVertex());
+        this.abort = ids.get(markov.getAbortVertex());
+        
+        this.query = new boolean[num_vertices];
+        this.stmts = new Statement[num_vertices];
+        this.stmt_indexes = new int[num_vertices];
+        this.select = new boolean[num_vertices];
+        this.abort_probs = new float[num_vertices];
+        this.partitions = new long[num_vertices * this.words];
+        this.past_partitions = new long[num_vertices * this.words];
+        this.partition_lists = new int[num_vertices][];
+        this.edge_offsets = new int[num_vertices + 1];
+        this.next_offsets = new int[num_vertices + 1];
+        
+        List<MarkovEdge> out_edges = new ArrayList<MarkovEdge>();
+        List<Integer> edge_targets = new ArrayList<Integer>();
+        List<Float> edge_probs = new ArrayList<Float>();
+        List<NextStatement> next_stmts = new ArrayList<NextStatement>();
+        Map<Pair<Statement, Integer>, NextStatement> next_cache = new HashMap<Pair<Statement, Integer>, NextStatement>();
+        List<Pair<Statement, Integer>> next_pairs = new ArrayList<Pair<Statement, Integer>>();
+        
+        for (int i = 0; i < num_vertices; i++) {
+            MarkovVertex v = this.vertices[i];
+            Statement catalog_stmt = v.getCatalogItem();
+            this.query[i] = v.isQueryVertex();
+            this.stmts[i] = catalog_stmt;
+            this.stmt_indexes[i] = v.getQueryInstanceIndex();
+            this.select[i] = (catalog_stmt.getQuerytype() == QueryType.SELECT.getValue());
+            this.abort_probs[i] = v.getAbortProbability();
+            this.setMask(this.partitions, i, v.getPartitions());
+            this.setMask(this.past_partitions, i, v.getPastPartitions());
+            int j = 0;
+            this.partition_lists[i] = new int[v.getPartitions().size()];
+            for (Integer p : v.getPartitions()) {
+                this.partition_lists[i][j++] = p.intValue();
+            } // FOR
+            
+            // Out-Edges
+            out_edges.clear();
+            Collection<MarkovEdge> edges = markov.getOutEdges(v);
+            if (edges != null) out_edges.addAll(edges);
+            Collections.sort(out_edges, EDGE_COMPARATOR);
+            this.edge_offsets[i] = edge_targets.size();
+            next_pairs.clear();
+            for (MarkovEdge e : out_edges) {
+                MarkovVertex dest = markov.getDest(e);
+                edge_targets.add(ids.get(dest));
+                edge_probs.add(e.getProbability());
+                
+                if (dest.isQueryVertex()) {
+                    Pair<Statement, Integer> pair = Pair.of((Statement)dest.getCatalogItem(), dest.getQueryInstanceIndex());
+                    if (next_pairs.contains(pair) == false) next_pairs.add(pair);
+                }
+            } // FOR
+            
+            // Next Statements
+            this.next_offsets[i] = next_stmts.size();
+            for (Pair<Statement, Integer> pair : next_pairs) {
+                NextStatement next = next_cache.get(pair);
+                if (next == null) {
+                    next = new NextStatement(pair.getFirst(), pair.getSecond(), mappings);
+                    next_cache.put(pair, next);
+                }
+                next_stmts.add(next);
+            } // FOR
+        } // FOR
+        this.edge_offsets[num_vertices] = edge_targets.size();
+        this.next_offsets[num_vertices] = next_stmts.size();
+        
+        this.edge_targets = new int[edge_targets.size()];
+        this.edge_probs = new float[edge_probs.size()];
+        for (int i = 0; i < this.edge_targets.length; i++) {
+            this.edge_targets[i] = edge_targets.get(i);
+            this.edge_probs[i] = edge_probs.get(i);
+        } // FOR
+        this.next_stmts = next_stmts.toArray(new NextStatement[next_stmts.size()]);
+        
+        MarkovVertex start_v = markov.getStartVertex();
+        this.start_read = new float[this.num_partitions];
+        this.start_write = new float[this.num_partitions];
+        this.start_done = new float[this.num_partitions];
+        for (int p = 0; p < this.num_partitions; p++) {
+            this.start_read[p] = start_v.getReadOnlyProbability(p);
+            this.start_write[p] = start_v.getWriteProbability(p);
+            this.start_done[p] = start_v.getDoneProbability(p);
+        } // FOR
+        this.start_hits = start_v.getTotalHits();
+    }
+    
+    private void setMask(long masks[], int vertex, Collection<Integer> partitions) {
+        int base = vertex * this.words;
+        Arrays.fill(masks, base, base + this.words, 0l);
+        if (partitions == null) return;
+        for (Integer p : partitions) {
+            masks[base + (p >>> 6)] |= (1l << (p & 63));
+        } // FOR
+    }
+    
+    // ----------------------------------------------------------------------------
+    // ACCESS METHODS
+    // ----------------------------------------------------------------------------
+    
+    public MarkovGraph getMarkovGraph() {
+        return (this.markov);
+    }
+    public ParameterMappingsSet getMappings() {
+        return (this.mappings);
+    }
+    /**
+     * The version of the MarkovGraph that this was compiled from
+     */
+    public int getVersion() {
+        return (this.version);
+    }
+    public int getVertexCount() {
+        return (this.vertices.length);
+    }
+    public int getEdgeCount() {
+        return (this.edge_targets.length);
+    }
+    
+    /**
+     * Returns true if the partitions of the given vertex match the given mask
+     */
+    protected boolean matchPartitions(int vertex, long mask[]) {
+        return (this.matchMask(this.partitions, vertex, mask));
+    }
+    
+    /**
+     * Returns true if the past partitions of the given vertex match the given mask
+     */
+    protected boolean matchPastPartitions(int vertex, long mask[]) {
+        return (this.matchMask(this.past_partitions, vertex, mask));
+    }
+    
+    private boolean matchMask(long masks[], int vertex, long mask[]) {
+        int base = vertex * this.words;
+        for (int i = 0; i < this.words; i++) {
+            if (masks[base + i] != mask[i]) return (false);
+        } // FOR
+        return (true);
+    }
+    
+    /**
+     * OR the partitions of the given vertex into the given mask
+     */
+    protected void addPartitions(int vertex, long mask[]) {
+        int base = vertex * this.words;
+        for (int i = 0; i < this.words; i++) {
+            mask[i] |= this.partitions[base + i];
+        } // FOR
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s{%s,version=%d,vertices=%d,edges=%d}",
+                             this.getClass().getSimpleName(), this.markov, this.version,
+                             this.vertices.length, this.edge_targets.length);
+    }
+}
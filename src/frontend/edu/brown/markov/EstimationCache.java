@@ -0,0 +1,280 @@
+/***************************************************************************
+ *  Copyright (C) 2012 by H-Store Project                                  *
+ *  Brown University                                                       *
+ *  Massachusetts Institute of Technology                                  *
+ *  Yale University                                                        *
+ *                                                                         *
+ *  http://hstore.cs.brown.edu/                                            *
+ *                                                                         *
+ *  Permission is hereby granted, free of charge, to any person obtaining  *
+ *  a copy of this software and associated documentation files (the        *
+ *  "Software"), to deal in the Software without restriction, including    *
+ *  without limitation the rights to use, copy, modify, merge, publish,    *
+ *  distribute, sublicense, and/or sell copies of the Software, and to     *
+ *  permit persons to whom the Software is furnished to do so, subject to  *
+ *  the following conditions:                                              *
+ *                                                                         *
+ *  The above copyright notice and this permission notice shall be         *
+ *  included in all copies or substantial portions of the Software.        *
+ *                                                                         *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,        *
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF     *
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. *
+ *  IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR      *
+ *  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,  *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR  *
+ *  OTHER DEALINGS IN THE SOFTWARE.                                        *
+ ***************************************************************************/
+package edu.brown.markov;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.voltdb.catalog.ProcParameter;
+import org.voltdb.catalog.Procedure;
+
+import edu.brown.hashing.AbstractHasher;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.mappings.ParameterMappingsSet;
+
+/**
+ * Bounded cache of initial path estimates for a TransactionEstimator.
+ * <p>
+ * MarkovPathEstimator only ever looks at the ProcParameters that are mapped to StmtParameters,
+ * and only to figure out which partitions the queries will go to. So two invocations of the same
+ * procedure at the same base partition whose mapped parameters hash to the same partitions will
+ * get the same path through the same MarkovGraph. Each entry is tied to the version of the
+ * MarkovGraph that it was computed from and is thrown out once the graph changes.
+ */
+public class EstimationCache {
+    private static final Logger LOG = Logger.getLogger(EstimationCache.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+    
+    /**
+     * Cache Key
+     */
+    public static final class Key {
+        private final MarkovGraph markov;
+        private final int base_partition;
+        private final int partitions[];
+        private final int hash;
+        
+        private Key(MarkovGraph markov, int base_partition, int partitions[]) {
+            this.markov = markov;
+            this.base_partition = base_partition;
+            this.partitions = partitions;
+            this.hash = (System.identityHashCode(markov) * 31 + base_partition) * 31 + Arrays.hashCode(partitions);
+        }
+        @Override
+        public int hashCode() {
+            return (this.hash);
+        }
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return (true);
+            if ((obj instanceof Key) == false) return (false);
+            Key other = (Key)obj;
+            return (this.markov == other.markov &&
+                    this.base_partition == other.base_partition &&
+                    Arrays.equals(this.partitions, other.partitions));
+        }
+        @Override
+        public String toString() {
+            return String.format("<%s, %d, %s>", this.markov, this.base_partition, Arrays.toString(this.partitions));
+        }
+    }
+    
+    private static final class CacheEntry {
+        private final int version;
+        private final MarkovPathEstimator estimator;
+        private CacheEntry(int version, MarkovPathEstimator estimator) {
+            this.version = version;
+            this.estimator = estimator;
+        }
+    }
+    
+    // ----------------------------------------------------------------------------
+    // DATA MEMBERS
+    // ----------------------------------------------------------------------------
+    
+    private final AbstractHasher hasher;
+    private final ParameterMappingsSet mappings;
+    private final int capacity;
+    
+    /**
+     * The offsets of the ProcParameters for each Procedure that are mapped to StmtParameters
+     */
+    private final Map<Procedure, int[]> proc_params = new IdentityHashMap<Procedure, int[]>();
+    
+    private final LinkedHashMap<Key, CacheEntry> entries;
+    
+    private long hits = 0;
+    private long misses = 0;
+    private long invalidations = 0;
+    private long evictions = 0;
+    
+    /**
+     * Constructor
+     * @param hasher
+     * @param mappings
+     * @param capacity - the maximum number of estimates to keep
+     */
+    public EstimationCache(AbstractHasher hasher, ParameterMappingsSet mappings, int capacity) {
+        this.hasher = hasher;
+        this.mappings = mappings;
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Key, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CacheEntry> eldest) {
+                if (this.size() > EstimationCache.this.capacity) {
+                    EstimationCache.this.evictions++;
+                    return (true);
+                }
+                return (false);
+            }
+        };
+    }
+    
+    // ----------------------------------------------------------------------------
+    // CACHE METHODS
+    // ----------------------------------------------------------------------------
+    
+    /**
+     * Create the cache key for an invocation of the given MarkovGraph's procedure
+     * @param markov
+     * @param base_partition
+     * @param args
+     * @return
+     */
+    public Key createKey(MarkovGraph markov, int base_partition, Object args[]) {
+        int offsets[] = this.getMappedParameters(markov.getProcedure());
+        int num_values = 0;
+        for (int offset : offsets) {
+            Object val = args[offset];
+            num_values += (val instanceof Object[] ? ((Object[])val).length + 1 : 1);
+        } // FOR
+        
+        int partitions[] = new int[num_values];
+        int i = 0;
+        for (int offset : offsets) {
+            Object val = args[offset];
+            if (val instanceof Object[]) {
+                Object inner[] = (Object[])val;
+                partitions[i++] = inner.length;
+                for (Object inner_val : inner) {
+                    partitions[i++] = this.hash(inner_val);
+                } // FOR
+            } else {
+                partitions[i++] = this.hash(val);
+            }
+        } // FOR
+        return (new Key(markov, base_partition, partitions));
+    }
+    
+    private int hash(Object val) {
+        return (val == null ? -1 : this.hasher.hash(val));
+    }
+    
+    private int[] getMappedParameters(Procedure catalog_proc) {
+        synchronized (this.proc_params) {
+            int offsets[] = this.proc_params.get(catalog_proc);
+            if (offsets == null) {
+                int num_mapped = 0;
+                int temp[] = new int[catalog_proc.getParameters().size()];
+                for (ProcParameter catalog_param : catalog_proc.getParameters()) {
+                    if (this.mappings.get(catalog_param).isEmpty() == false) {
+                        temp[num_mapped++] = catalog_param.getIndex();
+                    }
+                } // FOR
+                offsets = Arrays.copyOf(temp, num_mapped);
+                Arrays.sort(offsets);
+                this.proc_params.put(catalog_proc, offsets);
+                if (debug.get()) LOG.debug(String.format("Mapped ProcParameters for %s: %s",
+                                                         catalog_proc.getName(), Arrays.toString(offsets)));
+            }
+            return (offsets);
+        } // SYNCH
+    }
+    
+    /**
+     * Return the cached MarkovPathEstimator for the given key, or null if there isn't one
+     * for the current version of the key's MarkovGraph
+     * @param key
+     * @return
+     */
+    public synchronized MarkovPathEstimator get(Key key) {
+        CacheEntry entry = this.entries.get(key);
+        if (entry != null && entry.version != key.markov.getVersion()) {
+            this.entries.remove(key);
+            this.invalidations++;
+            entry = null;
+        }
+        if (entry == null) {
+            this.misses++;
+            return (null);
+        }
+        this.hits++;
+        if (trace.get()) LOG.trace("Cache hit for " + key);
+        return (entry.estimator);
+    }
+    
+    /**
+     * Store the MarkovPathEstimator computed for the given key.
+     * The estimator is marked as cached so that it does not go back to its object pool.
+     * @param key
+     * @param version - the version of the MarkovGraph that the estimator walked
+     * @param estimator
+     */
+    public synchronized void put(Key key, int version, MarkovPathEstimator estimator) {
+        estimator.setCached(true);
+        this.entries.put(key, new CacheEntry(version, estimator));
+    }
+    
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+    
+    // ----------------------------------------------------------------------------
+    // STATISTICS
+    // ----------------------------------------------------------------------------
+    
+    public synchronized int size() {
+        return (this.entries.size());
+    }
+    public synchronized long getHitCount() {
+        return (this.hits);
+    }
+    public synchronized long getMissCount() {
+        return (this.misses);
+    }
+    public synchronized long getInvalidationCount() {
+        return (this.invalidations);
+    }
+    public synchronized long getEvictionCount() {
+        return (this.evictions);
+    }
+    
+    /**
+     * Return the fraction of look-ups that found a valid estimate
+     */
+    public synchronized double getHitRate() {
+        long total = this.hits + this.misses;
+        return (total == 0 ? 0.0 : this.hits / (double)total);
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return String.format("%d hits / %d misses / %.1f%% hit rate [entries=%d, invalidated=%d, evicted=%d]",
+                             this.hits, this.misses, this.getHitRate() * 100d,
+                             this.entries.size(), this.invalidations, this.evictions);
+    }
+}
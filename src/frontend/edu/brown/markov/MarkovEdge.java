@@ -31,7 +31,13 @@ public class MarkovEdge extends AbstractEdge implements MarkovHitTrackable {
     /**
      * This is the probability that the source of the edge will transition to the destination vertex
      */
-    public float probability;
+    public volatile float probability;
+    
+    /**
+     * The new probability that MarkovGraph.calculateProbabilities() computed for this edge
+     * but has not published yet
+     */
+    private transient float staged_probability;
 
     /**
      * This is the total number of times that we have traversed over this edge
@@ -85,15 +91,46 @@ public class MarkovEdge extends AbstractEdge implements MarkovHitTrackable {
      * @param allHits number of hits of the vertex that is the source of this edge
      */
     public void calculateProbability(long allHits) {
+        this.probability = this.computeProbability(allHits);
+    }
+    
+    private float computeProbability(long allHits) {
         assert(this.totalhits <= allHits) : String.format("Edge hits is greater than new allHits: " + this.totalhits + " > " + allHits);
-        if (allHits == 0) {
-            this.probability = 0f;
-        } else {
-            this.probability = (float) (this.totalhits / (double)allHits);
+        float new_probability = 0f;
+        if (allHits != 0) {
+            new_probability = (float) (this.totalhits / (double)allHits);
         }
-        assert(MathUtil.greaterThanEquals(this.probability, 0.0f, MarkovGraph.PROBABILITY_EPSILON) &&
-               MathUtil.lessThanEquals(this.probability, 1.0f, MarkovGraph.PROBABILITY_EPSILON)) :
-           String.format("Invalid new edge probability: %d / %d = %f", this.totalhits, allHits, this.probability);
+        assert(MathUtil.greaterThanEquals(new_probability, 0.0f, MarkovGraph.PROBABILITY_EPSILON) &&
+               MathUtil.lessThanEquals(new_probability, 1.0f, MarkovGraph.PROBABILITY_EPSILON)) :
+           String.format("Invalid new edge probability: %d / %d = %f", this.totalhits, allHits, new_probability);
+        return (new_probability);
+    }
+    
+    /**
+     * Start a new staged probability for this edge. It begins as the current probability
+     * in case we never get to calculate a new one.
+     */
+    protected void stageProbability() {
+        this.staged_probability = this.probability;
+    }
+    
+    /**
+     * Calculate the probability for this edge but do not publish it yet
+     * @param allHits number of hits of the vertex that is the source of this edge
+     */
+    protected void calculateStagedProbability(long allHits) {
+        this.staged_probability = this.computeProbability(allHits);
+    }
+    
+    protected float getStagedProbability() {
+        return (this.staged_probability);
+    }
+    
+    /**
+     * Make the staged probability the one that everyone sees
+     */
+    protected void publishStagedProbability() {
+        this.probability = this.staged_probability;
     }
 
     // ----------------------------------------------------------------------------
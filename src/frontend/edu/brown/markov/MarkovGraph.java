@@ -28,6 +28,7 @@ import edu.brown.graphs.GraphUtil;
 import edu.brown.graphs.exceptions.InvalidGraphElementException;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.mappings.ParameterMappingsSet;
 import edu.brown.markov.containers.AuctionMarkMarkovGraphsContainer;
 import edu.brown.markov.containers.GlobalMarkovGraphsContainer;
 import edu.brown.markov.containers.MarkovGraphContainersUtil;
@@ -85,6 +86,11 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
     private transient double xact_accuracy = 1.0;
     /** How many times have we recomputed the probabilities for this graph */
     private transient int recompute_count = 0;
+    
+    /** Incremented whenever the structure or the probabilities of this graph change */
+    private transient volatile int version = 0;
+    /** The last flattened copy of this graph that we made for MarkovPathEstimator */
+    private transient volatile CompiledMarkovGraph compiled = null;
 
     // ----------------------------------------------------------------------------
     // CONSTRUCTORS
@@ -254,6 +260,7 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
             if (e == null) {
                 e = new MarkovEdge(this);
                 this.addEdge(e, source, dest);
+                this.version++;
             }
         } // SYNCH
         return (e);
@@ -268,6 +275,7 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
         synchronized (v) {
             ret = super.addVertex(v);
             if (ret) {
+                this.version++;
                 if (v.isQueryVertex()) {
                     Set<MarkovVertex> stmt_vertices = this.cache_stmtVertices.get(v.getCatalogItem());
                     if (stmt_vertices == null) {
@@ -390,12 +398,17 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
     /**
      * Calculate the probabilities for this graph.
      * First we will reset all of the existing probabilities and then apply the instancehits to 
-     * the totalhits for each graph element
+     * the totalhits for each graph element. The new probabilities are computed off to the side
+     * and then published element by element, so estimators that are reading the graph
+     * at the same time never see a partially computed probability table.
      */
     public synchronized void calculateProbabilities() {
-        // Reset all probabilities
+        // Stage new probabilities for every element
         for (MarkovVertex v : this.getVertices()) {
-            v.resetAllProbabilities();
+            v.stageProbabilities();
+        } // FOR
+        for (MarkovEdge e : this.getEdges()) {
+            e.stageProbability();
         } // FOR
         
         this.normalizeTimes();
@@ -413,7 +426,16 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
         // Then traverse the graph and calculate the vertex probability tables
         this.calculateVertexProbabilities();
         
+        // Now make them visible
+        for (MarkovEdge e : this.getEdges()) {
+            e.publishStagedProbability();
+        } // FOR
+        for (MarkovVertex v : this.getVertices()) {
+            v.publishStagedProbabilities();
+        } // FOR
+        
         this.recompute_count++;
+        this.version++;
     }
 
     /**
@@ -421,7 +443,7 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
      */
     private void calculateVertexProbabilities() {
         if (trace.get()) LOG.trace("Calculating Vertex probabilities for " + this);
-        new MarkovProbabilityCalculator(this).calculate();
+        new MarkovProbabilityCalculator(this, true).calculate();
     }
 
     /**
@@ -433,7 +455,7 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
             if (v.isQueryVertex() && v.getTotalHits() == 0) continue;
             for (MarkovEdge e : this.getOutEdges(v)) {
                 try {
-                    e.calculateProbability(v.getTotalHits());
+                    e.calculateStagedProbability(v.getTotalHits());
                 } catch (Throwable ex) {
                     throw new RuntimeException(String.format("Failed to calculate probabilities for edge %s -> %s", v, this.getDest(e)), ex);  
                 }
@@ -714,6 +736,35 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
         return (this.recompute_count);
     }
     
+    /**
+     * Returns a number that changes whenever a vertex or edge is added to this graph
+     * or its probabilities are recomputed
+     */
+    public int getVersion() {
+        return (this.version);
+    }
+    
+    /**
+     * Return a CompiledMarkovGraph for the current version of this graph. The compiled
+     * graph is cached and only rebuilt after this graph changes.
+     * @param mappings - the ParameterMappingsSet used to map ProcParameters to StmtParameters
+     * @return
+     */
+    public CompiledMarkovGraph getCompiledGraph(ParameterMappingsSet mappings) {
+        CompiledMarkovGraph c = this.compiled;
+        if (c == null || c.getVersion() != this.version || c.getMappings() != mappings) {
+            synchronized (this) {
+                c = this.compiled;
+                if (c == null || c.getVersion() != this.version || c.getMappings() != mappings) {
+                    if (debug.get()) LOG.debug(String.format("Compiling %s [version=%d]", this, this.version));
+                    c = new CompiledMarkovGraph(this, mappings);
+                    this.compiled = c;
+                }
+            } // SYNCH
+        }
+        return (c);
+    }
+    
     // ----------------------------------------------------------------------------
     // SERIALIZATION METHODS
     // ----------------------------------------------------------------------------
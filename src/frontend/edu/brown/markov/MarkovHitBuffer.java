@@ -0,0 +1,136 @@
+/***************************************************************************
+ *  Copyright (C) 2012 by H-Store Project                                  *
+ *  Brown University                                                       *
+ *  Massachusetts Institute of Technology                                  *
+ *  Yale University                                                        *
+ *                                                                         *
+ *  http://hstore.cs.brown.edu/                                            *
+ *                                                                         *
+ *  Permission is hereby granted, free of charge, to any person obtaining  *
+ *  a copy of this software and associated documentation files (the        *
+ *  "Software"), to deal in the Software without restriction, including    *
+ *  without limitation the rights to use, copy, modify, merge, publish,    *
+ *  distribute, sublicense, and/or sell copies of the Software, and to     *
+ *  permit persons to whom the Software is furnished to do so, subject to  *
+ *  the following conditions:                                              *
+ *                                                                         *
+ *  The above copyright notice and this permission notice shall be         *
+ *  included in all copies or substantial portions of the Software.        *
+ *                                                                         *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,        *
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF     *
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. *
+ *  IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR      *
+ *  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,  *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR  *
+ *  OTHER DEALINGS IN THE SOFTWARE.                                        *
+ ***************************************************************************/
+package edu.brown.markov;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Batch of MarkovGraph hit counts from completed transactions that have not been
+ * applied to the graphs yet. A TransactionEstimator records into one of these on the
+ * execution path instead of touching the vertex and edge counters directly, and then
+ * hands it off to the MarkovUpdater once it is full.
+ * <p>
+ * This class is not thread-safe. Only one thread may be recording into it at a time
+ * and it must be handed off before anybody else calls apply().
+ */
+public class MarkovHitBuffer {
+
+    private MarkovHitTrackable elements[];
+    private int size = 0;
+    private final int capacity;
+    
+    /**
+     * The number of txns recorded per MarkovGraph
+     */
+    private final Map<MarkovGraph, int[]> txn_counts = new IdentityHashMap<MarkovGraph, int[]>();
+    private int num_txns = 0;
+    
+    /**
+     * Constructor
+     * @param capacity - the number of txns to record before the buffer is full
+     */
+    public MarkovHitBuffer(int capacity) {
+        this.capacity = capacity;
+        this.elements = new MarkovHitTrackable[capacity * 4];
+    }
+    
+    /**
+     * Record the vertices and edges that a txn traversed in the given graph
+     * @param markov
+     * @param path
+     * @param path_edges
+     */
+    public void add(MarkovGraph markov, List<MarkovVertex> path, List<MarkovEdge> path_edges) {
+        int needed = this.size + path.size() + path_edges.size();
+        if (needed > this.elements.length) {
+            MarkovHitTrackable resized[] = new MarkovHitTrackable[Math.max(needed, this.elements.length * 2)];
+            System.arraycopy(this.elements, 0, resized, 0, this.size);
+            this.elements = resized;
+        }
+        for (int i = 0, cnt = path.size(); i < cnt; i++) {
+            this.elements[this.size++] = path.get(i);
+        } // FOR
+        for (int i = 0, cnt = path_edges.size(); i < cnt; i++) {
+            this.elements[this.size++] = path_edges.get(i);
+        } // FOR
+        
+        int cnt[] = this.txn_counts.get(markov);
+        if (cnt == null) {
+            cnt = new int[1];
+            this.txn_counts.put(markov, cnt);
+        }
+        cnt[0]++;
+        this.num_txns++;
+    }
+    
+    /**
+     * Increment the instance hits for all of the vertices and edges in this buffer
+     * and add the number of txns recorded for each MarkovGraph into the given map
+     * @param pending
+     */
+    public void apply(Map<MarkovGraph, int[]> pending) {
+        for (int i = 0; i < this.size; i++) {
+            this.elements[i].incrementInstanceHits();
+        } // FOR
+        for (Entry<MarkovGraph, int[]> e : this.txn_counts.entrySet()) {
+            int cnt[] = pending.get(e.getKey());
+            if (cnt == null) {
+                cnt = new int[1];
+                pending.put(e.getKey(), cnt);
+            }
+            cnt[0] += e.getValue()[0];
+        } // FOR
+    }
+    
+    public void clear() {
+        for (int i = 0; i < this.size; i++) {
+            this.elements[i] = null;
+        } // FOR
+        this.size = 0;
+        this.num_txns = 0;
+        this.txn_counts.clear();
+    }
+    
+    public boolean isEmpty() {
+        return (this.num_txns == 0);
+    }
+    
+    public boolean isFull() {
+        return (this.num_txns >= this.capacity);
+    }
+    
+    /**
+     * Return the number of txns recorded in this buffer
+     */
+    public int getTransactionCount() {
+        return (this.num_txns);
+    }
+}
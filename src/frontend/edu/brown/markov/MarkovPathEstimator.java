@@ -135,6 +135,22 @@ public class MarkovPathEstimator extends VertexTreeWalker<MarkovVertex, MarkovEd
     
     private final transient Map<Statement, Object[]> stmt_param_arrays = new HashMap<Statement, Object[]>();
     
+    // ----------------------------------------------------------------------------
+    // TEMPORARY COMPILED TRAVERSAL MEMBERS
+    // ----------------------------------------------------------------------------
+    
+    private transient long compiled_past[] = new long[1];
+    private transient long compiled_touched[] = new long[1];
+    private transient long compiled_read[] = new long[1];
+    private transient long compiled_write[] = new long[1];
+    private transient long compiled_stmt[] = new long[1];
+    private transient int compiled_candidates[] = new int[8];
+    
+    /**
+     * StmtParameter arrays, indexed by the number of parameters
+     */
+    private transient Object compiled_args[][] = new Object[8][];
+    
     // ----------------------------------------------------------------------------
     // CONSTRUCTORS
     // ----------------------------------------------------------------------------
@@ -299,6 +315,264 @@ public class MarkovPathEstimator extends VertexTreeWalker<MarkovVertex, MarkovEd
 //        return (arr);
 //    }
     
+    // ----------------------------------------------------------------------------
+    // COMPILED TRAVERSAL
+    // ----------------------------------------------------------------------------
+    
+    /**
+     * Estimate the path of the transaction using a CompiledMarkovGraph instead of walking
+     * the MarkovGraph itself. This makes the same decisions as traverse() but does not need
+     * to hold the MarkovGraph's lock and does not allocate anything once this
+     * MarkovPathEstimator has been used a few times. 
+     * @param compiled - must have been compiled from the graph this estimator was initialized with
+     */
+    public void traverse(CompiledMarkovGraph compiled) {
+        assert(compiled.getMarkovGraph() == this.getGraph());
+        final int words = compiled.words;
+        if (this.compiled_past.length < words) {
+            this.compiled_past = new long[words];
+            this.compiled_touched = new long[words];
+            this.compiled_read = new long[words];
+            this.compiled_write = new long[words];
+            this.compiled_stmt = new long[words];
+        }
+        for (int i = 0; i < words; i++) {
+            this.compiled_past[i] = 0;
+            this.compiled_touched[i] = 0;
+            this.compiled_read[i] = 0;
+            this.compiled_write[i] = 0;
+        } // FOR
+        int num_touched = 0;
+        
+        int current = compiled.start;
+        while (true) {
+            if (t) LOG.trace("Current Vertex: " + compiled.vertices[current]);
+            compiled.addPartitions(current, this.compiled_past);
+            final int edge_start = compiled.edge_offsets[current];
+            final int edge_end = compiled.edge_offsets[current+1];
+            int num_candidates = 0;
+            
+            // Step #1
+            // Always include the edges to COMMIT/ABORT
+            for (int e = edge_start; e < edge_end; e++) {
+                int next = compiled.edge_targets[e];
+                if (compiled.query[next] == false) {
+                    num_candidates = this.addCompiledCandidate(num_candidates, e);
+                }
+            } // FOR
+            
+            // Step #2
+            // For each Statement that could be executed next, map its parameters from
+            // the ProcParameters and figure out what partitions it will touch
+            boolean error = false;
+            for (int n = compiled.next_offsets[current], n_end = compiled.next_offsets[current+1]; n < n_end; n++) {
+                CompiledMarkovGraph.NextStatement next_stmt = compiled.next_stmts[n];
+                if (next_stmt.mapped == false) continue;
+                
+                Object stmt_args[] = this.getCompiledArgs(next_stmt.num_params);
+                boolean stmt_args_set = false;
+                for (int i = 0; i < next_stmt.num_params; i++) {
+                    for (int c = next_stmt.param_offsets[i], c_end = next_stmt.param_offsets[i+1]; c < c_end; c++) {
+                        Object val = this.args[next_stmt.proc_params[c]];
+                        if (next_stmt.proc_param_arrays[c]) {
+                            Object proc_inner_args[] = (Object[])val;
+                            if (proc_inner_args.length <= next_stmt.proc_param_indexes[c]) continue;
+                            val = proc_inner_args[next_stmt.proc_param_indexes[c]];
+                        }
+                        stmt_args[i] = val;
+                        stmt_args_set = true;
+                        break;
+                    } // FOR (ParameterMapping)
+                } // FOR (StmtParameter)
+                if (stmt_args_set == false) continue;
+                
+                this.stmt_partitions.clear();
+                try {
+                    this.p_estimator.getAllPartitions(this.stmt_partitions, next_stmt.catalog_stmt, stmt_args, this.base_partition);
+                } catch (Exception ex) {
+                    String msg = "Failed to calculate partitions for " + next_stmt.catalog_stmt + " using parameters " + Arrays.toString(stmt_args);
+                    LOG.error(msg, ex);
+                    error = true;
+                    break;
+                }
+                if (this.stmt_partitions.isEmpty()) continue;
+                for (int i = 0; i < words; i++) {
+                    this.compiled_stmt[i] = 0;
+                } // FOR
+                for (Integer p : this.stmt_partitions) {
+                    this.compiled_stmt[p >>> 6] |= (1l << (p & 63));
+                } // FOR
+                
+                // Now find the vertex in our next set that has the same partitions
+                for (int e = edge_start; e < edge_end; e++) {
+                    int next = compiled.edge_targets[e];
+                    if (compiled.query[next] &&
+                        compiled.stmt_indexes[next] == next_stmt.stmt_index &&
+                        compiled.stmts[next] == next_stmt.catalog_stmt &&
+                        compiled.matchPartitions(next, this.compiled_stmt) &&
+                        (MarkovGraph.USE_PAST_PARTITIONS == false || compiled.matchPastPartitions(next, this.compiled_past))) {
+                        num_candidates = this.addCompiledCandidate(num_candidates, e);
+                        break;
+                    }
+                } // FOR
+            } // FOR
+            if (error) {
+                this.finishCompiled(compiled, num_touched);
+                return;
+            }
+            this.markAsVisited(compiled.vertices[current]);
+            if (current == compiled.commit || current == compiled.abort) {
+                if (t) LOG.trace("Reached " + compiled.vertices[current] + ". Stopping...");
+                this.finishCompiled(compiled, num_touched);
+                return;
+            }
+            
+            // If we don't have any candidate edges and the FORCE TRAVERSAL flag is set, then
+            // we'll just grab all of the edges from our current vertex
+            boolean was_forced = false;
+            if (num_candidates == 0 && this.force_traversal) {
+                for (int e = edge_start; e < edge_end; e++) {
+                    num_candidates = this.addCompiledCandidate(num_candidates, e);
+                } // FOR
+                was_forced = true;
+            }
+            if (num_candidates == 0) {
+                if (t) LOG.trace("No matching children found. We have to stop...");
+                return;
+            }
+            
+            // The edges are sorted by their probability, so the best candidate
+            // is the one with the lowest offset
+            int next_edge = Integer.MAX_VALUE;
+            double total_probability = 0.0;
+            for (int i = 0; i < num_candidates; i++) {
+                int e = this.compiled_candidates[i];
+                if (e < next_edge) next_edge = e;
+                total_probability += compiled.edge_probs[e];
+            } // FOR
+            int next = compiled.edge_targets[next_edge];
+            if (was_forced) this.forced_vertices.add(compiled.vertices[next]);
+            this.confidence *= compiled.edge_probs[next_edge] / total_probability;
+            
+            // Update our list of partitions touched by this transaction
+            float inverse_prob = 1.0f - this.confidence;
+            int next_partitions[] = compiled.partition_lists[next];
+            for (int p : next_partitions) {
+                int w = p >>> 6;
+                long bit = 1l << (p & 63);
+                boolean touched = (this.compiled_touched[w] & bit) != 0;
+                // READ
+                if (compiled.select[next]) {
+                    if ((this.compiled_read[w] & bit) == 0) {
+                        this.estimate.setReadOnlyProbability(p, this.confidence);
+                        if (touched == false) this.estimate.setDoneProbability(p, inverse_prob);
+                        this.compiled_read[w] |= bit;
+                    }
+                // WRITE
+                } else if ((this.compiled_write[w] & bit) == 0) {
+                    this.estimate.setReadOnlyProbability(p, inverse_prob);
+                    this.estimate.setWriteProbability(p, this.confidence);
+                    if (touched == false) this.estimate.setDoneProbability(p, inverse_prob);
+                    this.compiled_write[w] |= bit;
+                }
+                this.estimate.incrementTouchedCounter(p);
+            } // FOR
+            for (int p : next_partitions) {
+                int w = p >>> 6;
+                long bit = 1l << (p & 63);
+                if ((this.compiled_touched[w] & bit) == 0) {
+                    this.compiled_touched[w] |= bit;
+                    num_touched++;
+                }
+            } // FOR
+            
+            // If this is the first time that the path touched more than one partition, then we need
+            // to set the single-partition probability to be the confidence coefficient thus far
+            if (num_touched > 1 && this.estimate.isSingleSitedProbabilitySet() == false) {
+                this.estimate.setSingleSitedProbability(inverse_prob);
+            }
+            
+            // Keep track of the highest abort probability that we've seen thus far
+            if (compiled.query[next] && compiled.abort_probs[next] > this.greatest_abort) {
+                this.greatest_abort = compiled.abort_probs[next];
+            }
+            current = next;
+        } // WHILE
+    }
+    
+    private int addCompiledCandidate(int num_candidates, int edge) {
+        for (int i = 0; i < num_candidates; i++) {
+            if (this.compiled_candidates[i] == edge) return (num_candidates);
+        } // FOR
+        if (num_candidates == this.compiled_candidates.length) {
+            this.compiled_candidates = Arrays.copyOf(this.compiled_candidates, num_candidates * 2);
+        }
+        this.compiled_candidates[num_candidates] = edge;
+        return (num_candidates + 1);
+    }
+    
+    private Object[] getCompiledArgs(int num_params) {
+        if (num_params >= this.compiled_args.length) {
+            this.compiled_args = Arrays.copyOf(this.compiled_args, num_params + 1);
+        }
+        Object arr[] = this.compiled_args[num_params];
+        if (arr == null) {
+            arr = new Object[num_params];
+            this.compiled_args[num_params] = arr;
+        } else {
+            Arrays.fill(arr, null);
+        }
+        return (arr);
+    }
+    
+    /**
+     * Same as callback_stop() but using the CompiledMarkovGraph
+     */
+    private void finishCompiled(CompiledMarkovGraph compiled, int num_touched) {
+        for (int p = 0; p < compiled.num_partitions; p++) {
+            long bit = 1l << (p & 63);
+            if ((this.compiled_touched[p >>> 6] & bit) != 0) this.touched_partitions.add(p);
+            if ((this.compiled_read[p >>> 6] & bit) != 0) this.read_partitions.add(p);
+            if ((this.compiled_write[p >>> 6] & bit) != 0) this.write_partitions.add(p);
+        } // FOR
+        
+        // Confidence
+        this.estimate.setConfidenceProbability(this.confidence);
+        float inverse_prob = 1.0f - this.confidence;
+        
+        // Partition Probabilities
+        boolean is_singlepartition = (num_touched == 1);
+        float untouched_finish = 1.0f;
+        for (int p = 0; p < compiled.num_partitions; p++) {
+            if ((this.compiled_touched[p >>> 6] & (1l << (p & 63))) == 0) {
+                this.estimate.setReadOnlyProbability(p, compiled.start_read[p]);
+                this.estimate.setWriteProbability(p, compiled.start_write[p]);
+                float finished_prob = compiled.start_done[p];
+                this.estimate.setDoneProbability(p, finished_prob);
+                if (is_singlepartition) untouched_finish = Math.min(untouched_finish, finished_prob);
+            } else if (this.estimate.isWriteProbabilitySet(p) == false) {
+                this.estimate.setWriteProbability(p, inverse_prob);
+            }
+        } // FOR
+        
+        // Single-Partition Probability
+        if (is_singlepartition) {
+            this.estimate.setSingleSitedProbability(untouched_finish);
+        }
+        
+        // Abort Probability
+        // Only use the abort probability if we have seen at least ABORT_MIN_TXNS
+        if (compiled.start_hits >= MarkovGraph.MIN_HITS_FOR_NO_ABORT) {
+            this.estimate.setAbortProbability(this.greatest_abort);
+        } else {
+            this.estimate.setAbortProbability(1.0f);
+        }
+    }
+    
+    // ----------------------------------------------------------------------------
+    // TREE WALKER TRAVERSAL
+    // ----------------------------------------------------------------------------
+    
     /**
      * This is the main part of where we figure out the path that this transaction will take
      */
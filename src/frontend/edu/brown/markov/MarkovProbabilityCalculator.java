@@ -26,10 +26,21 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
     private final Collection<Integer> all_partitions;
     private MarkovEstimate markov_est;
     
+    /**
+     * If true, then we read and write the staged probabilities of the graph's elements
+     * instead of the ones that have been published
+     */
+    private final boolean staged;
+    
     public MarkovProbabilityCalculator(MarkovGraph markov) {
+        this(markov, false);
+    }
+    
+    public MarkovProbabilityCalculator(MarkovGraph markov, boolean staged) {
         super(markov, TraverseOrder.LONGEST_PATH, Direction.REVERSE);
         
         this.all_partitions = markov.getAllPartitions();
+        this.staged = staged;
         
         // This is tricky. We need to sort of multiplex the traversal from either the commit
         // or abort vertices. We'll always start from the commit but then force the abort 
@@ -50,7 +61,7 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
     protected void callback(MarkovVertex element) {
         MarkovGraph markov = (MarkovGraph)this.getGraph();
         // HACK
-        Estimation est = (this.markov_est != null ? this.markov_est : element);
+        Estimation est = (this.markov_est != null ? this.markov_est : this.getEstimation(element));
         
         if (trace.get()) LOG.trace("BEFORE: " + element + " => " + est.getSingleSitedProbability());
 //            if (element.isSingleSitedProbablitySet() == false) element.setSingleSitedProbability(0.0);
@@ -98,32 +109,34 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
                 if (visited_edges.contains(e)) continue;
                 MarkovVertex successor = markov.getDest(e);
                 assert(successor != null);
-                assert(successor.isSingleSitedProbabilitySet()) : "Setting " + element + " BEFORE " + successor;
+                Estimation succ = this.getEstimation(successor);
+                float e_prob = this.getProbability(e);
+                assert(succ.isSingleSitedProbabilitySet()) : "Setting " + element + " BEFORE " + successor;
 
                 // Single-Partition Probability
                 // If our vertex only touches the base partition, then we need to calculate the 
                 // single-partition probability as the sum of the the edge weights times our
                 // successors' single-partition probability
                 if (element_islocalonly) {
-                    float prob = e.getProbability() * successor.getSingleSitedProbability();
+                    float prob = e_prob * succ.getSingleSitedProbability();
                     est.addSingleSitedProbability(prob);
-                    if (trace.get()) LOG.trace(element + " --" + e + "--> " + successor + String.format(" [%f * %f = %f]", e.getProbability(), successor.getSingleSitedProbability(), prob) + "\nprob = " + prob);
+                    if (trace.get()) LOG.trace(element + " --" + e + "--> " + successor + String.format(" [%f * %f = %f]", e_prob, succ.getSingleSitedProbability(), prob) + "\nprob = " + prob);
                 }
                 
                 // Abort Probability
                 // We need to have seen at least this number of hits before we will use a 
                 // different probability that a transaction could abort
                 if (element.getTotalHits() >= MarkovGraph.MIN_HITS_FOR_NO_ABORT) {
-                    est.addAbortProbability(e.getProbability() * successor.getAbortProbability());
+                    est.addAbortProbability(e_prob * succ.getAbortProbability());
                 } else {
                     est.setAbortProbability(1.0f);
                 }
                 
                 // Done/Read/Write At Partition Probability
                 for (Integer partition : all_partitions) {
-                    assert(successor.isDoneProbabilitySet(partition)) : "Setting " + element + " BEFORE " + successor;
-                    assert(successor.isReadOnlyProbabilitySet(partition)) : "Setting " + element + " BEFORE " + successor;
-                    assert(successor.isWriteProbabilitySet(partition)) : "Setting " + element + " BEFORE " + successor;
+                    assert(succ.isDoneProbabilitySet(partition)) : "Setting " + element + " BEFORE " + successor;
+                    assert(succ.isReadOnlyProbabilitySet(partition)) : "Setting " + element + " BEFORE " + successor;
+                    assert(succ.isWriteProbabilitySet(partition)) : "Setting " + element + " BEFORE " + successor;
                     
                     // This vertex accesses this partition
                     if (element.getPartitions().contains(partition)) {
@@ -132,8 +145,8 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
                         // Figure out whether it is a read or a write
                         if (catalog_stmt.getReadonly()) {
                             if (trace.get()) LOG.trace(String.format("%s does not modify partition %d. Setting writing probability based on children [%s]", element, partition, qtype));
-                            est.addWriteProbability(partition, (e.getProbability() * successor.getWriteProbability(partition)));
-                            est.addReadOnlyProbability(partition, (e.getProbability() * successor.getReadOnlyProbability(partition)));
+                            est.addWriteProbability(partition, (e_prob * succ.getWriteProbability(partition)));
+                            est.addReadOnlyProbability(partition, (e_prob * succ.getReadOnlyProbability(partition)));
                         } else {
                             if (trace.get()) LOG.trace(String.format("%s modifies partition %d. Setting writing probability to 1.0 [%s]", element, partition, qtype));
                             est.setWriteProbability(partition, 1.0f);
@@ -143,9 +156,9 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
                     // This vertex doesn't access the partition, but successor vertices might so
                     // the probability is based on the edge probabilities 
                     } else {
-                        est.addDoneProbability(partition, (e.getProbability() * successor.getDoneProbability(partition)));
-                        est.addWriteProbability(partition, (e.getProbability() * successor.getWriteProbability(partition)));
-                        est.addReadOnlyProbability(partition, (e.getProbability() * successor.getReadOnlyProbability(partition)));
+                        est.addDoneProbability(partition, (e_prob * succ.getDoneProbability(partition)));
+                        est.addWriteProbability(partition, (e_prob * succ.getWriteProbability(partition)));
+                        est.addReadOnlyProbability(partition, (e_prob * succ.getReadOnlyProbability(partition)));
                     }
                 } // FOR (PartitionId)
             } // FOR (Edge)
@@ -154,6 +167,14 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
         if (trace.get()) LOG.trace(StringUtil.repeat("-", 40));
     }
     
+    private Estimation getEstimation(MarkovVertex v) {
+        return (this.staged ? v.getStagedProbabilities() : v);
+    }
+    
+    private float getProbability(MarkovEdge e) {
+        return (this.staged ? e.getStagedProbability() : e.getProbability());
+    }
+    
     @Override
     public void finish() {
         super.finish();
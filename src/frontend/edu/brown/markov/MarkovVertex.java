@@ -154,8 +154,10 @@ public class MarkovVertex extends AbstractVertex implements MarkovHitTrackable,
 
     /**
      * Mapping from Probability type to another map from partition id
+     * When the MarkovGraph is recomputed, a new table is filled in off to the side and
+     * then swapped in here, so readers always see a complete table without locking
      */
-    public float probabilities[][];
+    public volatile float probabilities[][];
     
     // ----------------------------------------------------------------------------
     // TRANSIENT DATA MEMBERS
@@ -180,6 +182,12 @@ public class MarkovVertex extends AbstractVertex implements MarkovHitTrackable,
     
     private transient String to_string = null;
     
+    /**
+     * The probability table that MarkovGraph.calculateProbabilities() is filling in
+     * This is only set while the graph is being recomputed
+     */
+    private transient StagedProbabilities staged = null;
+    
 
     // ----------------------------------------------------------------------------
     // CONSTRUCTORS
@@ -534,7 +542,10 @@ public class MarkovVertex extends AbstractVertex implements MarkovHitTrackable,
      * @return
      */
     private float getSpecificProbability(MarkovVertex.Probability ptype, int partition) {
-        float value = this.probabilities[ptype.ordinal()][partition];
+        return (this.getSpecificProbability(this.probabilities, ptype, partition));
+    }
+    private float getSpecificProbability(float table[][], MarkovVertex.Probability ptype, int partition) {
+        float value = table[ptype.ordinal()][partition];
         if (value == MarkovUtil.NULL_MARKER) value = ptype.default_value;
         
         // Handle funky rounding error that I think is due to casting
@@ -550,11 +561,14 @@ public class MarkovVertex extends AbstractVertex implements MarkovHitTrackable,
      * @param probability
      */
     private void addToProbability(MarkovVertex.Probability ptype, int partition, float probability) {
+        this.addToProbability(this.probabilities, ptype, partition, probability);
+    }
+    private void addToProbability(float table[][], MarkovVertex.Probability ptype, int partition, float probability) {
         // Important: If the probability is unset, then we need to set its initial value
         // to zero and to the default value
-        float previous = this.probabilities[ptype.ordinal()][partition];
+        float previous = table[ptype.ordinal()][partition];
         if (previous == MarkovUtil.NULL_MARKER) previous = 0.0f;
-        this.setProbability(ptype, partition, previous + probability);
+        this.setProbability(table, ptype, partition, previous + probability);
     }
 
     /**
@@ -564,13 +578,52 @@ public class MarkovVertex extends AbstractVertex implements MarkovHitTrackable,
      * @param probability
      */
     private void setProbability(MarkovVertex.Probability ptype, int partition, float probability) {
+        this.setProbability(this.probabilities, ptype, partition, probability);
+    }
+    private void setProbability(float table[][], MarkovVertex.Probability ptype, int partition, float probability) {
         if (trace.get()) LOG.trace("(" + ptype + ", " + partition + ") => " + probability);
         assert(MathUtil.greaterThanEquals(probability, 0.0f, MarkovGraph.PROBABILITY_EPSILON) &&
                MathUtil.lessThanEquals(probability, 1.0f, MarkovGraph.PROBABILITY_EPSILON)) :
             String.format("%s - Invalid %s probability at partition #%d: %f", this, ptype, partition, probability);
-        this.probabilities[ptype.ordinal()][partition] = probability;
+        table[ptype.ordinal()][partition] = probability;
     }
 
+    /**
+     * Start building a new probability table for this vertex. Every probability in
+     * the new table is unset. The current table is still what everyone else sees
+     * until publishStagedProbabilities() is called.
+     * @return
+     */
+    protected Estimation stageProbabilities() {
+        float current[][] = this.probabilities;
+        float table[][] = new float[current.length][];
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == null) continue;
+            table[i] = new float[current[i].length];
+            Arrays.fill(table[i], MarkovUtil.NULL_MARKER);
+        } // FOR
+        this.staged = new StagedProbabilities(table);
+        return (this.staged);
+    }
+    
+    /**
+     * Return the probability table that is being built for this vertex
+     * or null if the graph is not being recomputed.
+     */
+    protected Estimation getStagedProbabilities() {
+        return (this.staged);
+    }
+    
+    /**
+     * Make the staged probability table the one that everyone sees
+     */
+    protected void publishStagedProbabilities() {
+        if (this.staged != null) {
+            this.probabilities = this.staged.table;
+            this.staged = null;
+        }
+    }
+    
     /**
      * Reset all probabilities. Keeps partitions in maps
      */
@@ -669,6 +722,83 @@ public class MarkovVertex extends AbstractVertex implements MarkovHitTrackable,
         return (this.getSpecificProbability(Probability.DONE, DEFAULT_PARTITION_ID) != MarkovUtil.NULL_MARKER);
     }
 
+    /**
+     * A probability table for this vertex that is not visible to anybody else
+     * until it is published
+     */
+    private class StagedProbabilities implements Estimation {
+        private final float table[][];
+        
+        private StagedProbabilities(float table[][]) {
+            this.table = table;
+        }
+        
+        public void addSingleSitedProbability(float probability) {
+            addToProbability(this.table, Probability.SINGLE_SITED, DEFAULT_PARTITION_ID, probability);
+        }
+        public void setSingleSitedProbability(float probability) {
+            setProbability(this.table, Probability.SINGLE_SITED, DEFAULT_PARTITION_ID, probability);
+        }
+        public float getSingleSitedProbability() {
+            return (getSpecificProbability(this.table, Probability.SINGLE_SITED, DEFAULT_PARTITION_ID));
+        }
+        public boolean isSingleSitedProbabilitySet() {
+            return (getSpecificProbability(this.table, Probability.SINGLE_SITED, DEFAULT_PARTITION_ID) != MarkovUtil.NULL_MARKER);
+        }
+        
+        public void addReadOnlyProbability(int partition, float probability) {
+            addToProbability(this.table, Probability.READ_ONLY, partition, probability);
+        }
+        public void setReadOnlyProbability(int partition, float probability) {
+            setProbability(this.table, Probability.READ_ONLY, partition, probability);
+        }
+        public float getReadOnlyProbability(int partition) {
+            return (getSpecificProbability(this.table, Probability.READ_ONLY, partition));
+        }
+        public boolean isReadOnlyProbabilitySet(int partition) {
+            return (getSpecificProbability(this.table, Probability.READ_ONLY, partition) != MarkovUtil.NULL_MARKER);
+        }
+        
+        public void addWriteProbability(int partition, float probability) {
+            addToProbability(this.table, Probability.WRITE, partition, probability);
+        }
+        public void setWriteProbability(int partition, float probability) {
+            setProbability(this.table, Probability.WRITE, partition, probability);
+        }
+        public float getWriteProbability(int partition) {
+            return (getSpecificProbability(this.table, Probability.WRITE, partition));
+        }
+        public boolean isWriteProbabilitySet(int partition) {
+            return (getSpecificProbability(this.table, Probability.WRITE, partition) != MarkovUtil.NULL_MARKER);
+        }
+        
+        public void addDoneProbability(int partition, float probability) {
+            addToProbability(this.table, Probability.DONE, partition, probability);
+        }
+        public void setDoneProbability(int partition, float probability) {
+            setProbability(this.table, Probability.DONE, partition, probability);
+        }
+        public float getDoneProbability(int partition) {
+            return (getSpecificProbability(this.table, Probability.DONE, partition));
+        }
+        public boolean isDoneProbabilitySet(int partition) {
+            return (getSpecificProbability(this.table, Probability.DONE, partition) != MarkovUtil.NULL_MARKER);
+        }
+        
+        public void addAbortProbability(float probability) {
+            addToProbability(this.table, Probability.ABORT, DEFAULT_PARTITION_ID, probability);
+        }
+        public void setAbortProbability(float probability) {
+            setProbability(this.table, Probability.ABORT, DEFAULT_PARTITION_ID, probability);
+        }
+        public float getAbortProbability() {
+            return (getSpecificProbability(this.table, Probability.ABORT, DEFAULT_PARTITION_ID));
+        }
+        public boolean isAbortProbabilitySet() {
+            return (getSpecificProbability(this.table, Probability.DONE, DEFAULT_PARTITION_ID) != MarkovUtil.NULL_MARKER);
+        }
+    } // CLASS
+
     /**
      * The 'score' of a vertex is a measure of how often it has been hit in the current workload.
      * When this value differs enough from getOriginalScore() shoudlRecompute() will return true
@@ -26,6 +26,7 @@ import edu.brown.graphs.GraphvizExport;
 import edu.brown.hstore.conf.HStoreConf;
 import edu.brown.hstore.dtxn.AbstractTransaction;
 import edu.brown.hstore.interfaces.Loggable;
+import edu.brown.hstore.util.MarkovUpdater;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.mappings.ParameterMappingsSet;
@@ -86,8 +87,20 @@ public class TransactionEstimator implements Loggable {
      */
     private final Map<MarkovGraph, MarkovPathEstimator> cached_estimators = new HashMap<MarkovGraph, MarkovPathEstimator>();
     
+    /**
+     * Cache of initial path estimates keyed by the partitions of the mapped parameters 
+     */
+    private final EstimationCache estimation_cache;
+    
     private transient boolean enable_recomputes = false;
     
+    /**
+     * If this is set, then the hits for completed txns are batched up in hit_buffer
+     * and the MarkovUpdater takes care of applying them and recomputing the graphs
+     */
+    private MarkovUpdater markov_updater;
+    private MarkovHitBuffer hit_buffer;
+    
     // ----------------------------------------------------------------------------
     // TRANSACTION STATE
     // ----------------------------------------------------------------------------
@@ -337,6 +350,12 @@ public class TransactionEstimator implements Loggable {
         this.correlations = (correlations == null ? new ParameterMappingsSet() : correlations);
         this.hstore_conf = HStoreConf.singleton();
         if (this.markovs != null && this.markovs.getHasher() == null) this.markovs.setHasher(this.p_estimator.getHasher());
+        if (hstore_conf.site.markov_estimate_cache) {
+            this.estimation_cache = new EstimationCache(this.p_estimator.getHasher(), this.correlations,
+                                                        hstore_conf.site.markov_estimate_cache_size);
+        } else {
+            this.estimation_cache = null;
+        }
         
         // HACK: Initialize the STATE_POOL
         synchronized (LOG) {
@@ -378,6 +397,33 @@ public class TransactionEstimator implements Loggable {
        this.enable_recomputes = true;
     }
     
+    /**
+     * Hand off the hit counts for completed txns to the given MarkovUpdater instead of
+     * updating the MarkovGraphs in the txn's thread. This also disables synchronous
+     * graph recomputes, since the MarkovUpdater will do them in the background.
+     * @param markov_updater
+     */
+    public synchronized void enableOnlineUpdates(MarkovUpdater markov_updater) {
+        this.markov_updater = markov_updater;
+        this.hit_buffer = markov_updater.getBuffer();
+    }
+    
+    /**
+     * Hand off any hits that have been recorded but not yet given to the MarkovUpdater
+     */
+    public synchronized void flushMarkovHits() {
+        if (this.hit_buffer != null && this.hit_buffer.isEmpty() == false) {
+            this.hit_buffer = this.markov_updater.exchange(this.hit_buffer);
+        }
+    }
+    
+    private synchronized void recordMarkovHits(State s) {
+        this.hit_buffer.add(s.markov, s.actual_path, s.actual_path_edges);
+        if (this.hit_buffer.isFull()) {
+            this.hit_buffer = this.markov_updater.exchange(this.hit_buffer);
+        }
+    }
+    
     public ParameterMappingsSet getCorrelations() {
         return this.correlations;
     }
@@ -390,6 +436,14 @@ public class TransactionEstimator implements Loggable {
         return (this.markovs);
     }
     
+    /**
+     * Return the cache of initial path estimates for this TransactionEstimator.
+     * Returns null if ${site.markov_estimate_cache} is not enabled.
+     */
+    public EstimationCache getEstimationCache() {
+        return (this.estimation_cache);
+    }
+    
     public void addMarkovGraphs(MarkovGraphsContainer markovs) {
         this.markovs.copy(markovs);
     }
@@ -485,6 +539,16 @@ public class TransactionEstimator implements Loggable {
         if (hstore_conf.site.markov_path_caching && markov.getAccuracyRatio() >= hstore_conf.site.markov_path_caching_threshold) {
             estimator = this.cached_estimators.get(markov);
         }
+        
+        // Then check whether we have already estimated the path for another invocation
+        // whose parameters go to the same partitions
+        EstimationCache.Key cache_key = null;
+        int cache_version = -1;
+        if (estimator == null && this.estimation_cache != null) {
+            cache_key = this.estimation_cache.createKey(markov, base_partition, args);
+            estimator = this.estimation_cache.get(cache_key);
+            if (estimator == null) cache_version = markov.getVersion();
+        }
             
         // Otherwise we have to recalculate everything from scatch again
         if (estimator == null) {
@@ -501,20 +565,32 @@ public class TransactionEstimator implements Loggable {
             // Calculate initial path estimate
             if (t) LOG.trace("Estimating initial execution path for " + AbstractTransaction.formatTxnName(catalog_proc, txn_id));
             start.addInstanceTime(txn_id, start_time);
-            synchronized (markov) {
+            if (hstore_conf.site.markov_path_compiled) {
+                CompiledMarkovGraph compiled = markov.getCompiledGraph(this.correlations);
                 try {
-                    estimator.traverse(start);
-                    // if (catalog_proc.getName().equalsIgnoreCase("NewBid")) throw new Exception ("Fake!");
+                    estimator.traverse(compiled);
                 } catch (Throwable e) {
+                    throw new RuntimeException("Failed to estimate path for " + AbstractTransaction.formatTxnName(catalog_proc, txn_id) + " using " + compiled, e);
+                }
+            } else {
+                synchronized (markov) {
                     try {
-                        GraphvizExport<MarkovVertex, MarkovEdge> gv = MarkovUtil.exportGraphviz(markov, true, markov.getPath(estimator.getVisitPath()));
-                        LOG.error("GRAPH #" + markov.getGraphId() + " DUMP: " + gv.writeToTempFile(catalog_proc));
-                    } catch (Exception ex) {
-                        throw new RuntimeException(ex);
+                        estimator.traverse(start);
+                        // if (catalog_proc.getName().equalsIgnoreCase("NewBid")) throw new Exception ("Fake!");
+                    } catch (Throwable e) {
+                        try {
+                            GraphvizExport<MarkovVertex, MarkovEdge> gv = MarkovUtil.exportGraphviz(markov, true, markov.getPath(estimator.getVisitPath()));
+                            LOG.error("GRAPH #" + markov.getGraphId() + " DUMP: " + gv.writeToTempFile(catalog_proc));
+                        } catch (Exception ex) {
+                            throw new RuntimeException(ex);
+                        }
+                        throw new RuntimeException("Failed to estimate path for " + AbstractTransaction.formatTxnName(catalog_proc, txn_id), e);
                     }
-                    throw new RuntimeException("Failed to estimate path for " + AbstractTransaction.formatTxnName(catalog_proc, txn_id), e);
-                }
-            } // SYNCH
+                } // SYNCH
+            }
+            if (cache_key != null && estimator.getEstimate().isValid()) {
+                this.estimation_cache.put(cache_key, cache_version, estimator);
+            }
         } else {
             if (d) LOG.info(String.format("Using cached MarkovPathEstimator for %s [hashCode=%d, ratio=%.02f]",
                                           AbstractTransaction.formatTxnName(catalog_proc, txn_id), estimator.getEstimate().hashCode(), markov.getAccuracyRatio()));
@@ -640,7 +716,7 @@ public class TransactionEstimator implements Loggable {
         
         // Once the workload shifts we detect it and trigger this method. Recomputes
         // the graph with the data we collected with the current workload method.
-        if (this.enable_recomputes && markov.shouldRecompute(this.txn_count.get(), RECOMPUTE_TOLERANCE)) {
+        if (this.enable_recomputes && this.markov_updater == null && markov.shouldRecompute(this.txn_count.get(), RECOMPUTE_TOLERANCE)) {
             markov.calculateProbabilities();
         }
         return (estimate);
@@ -708,11 +784,16 @@ public class TransactionEstimator implements Loggable {
             // Update counters
             // We want to update the counters for the entire path right here so that
             // nobody gets incomplete numbers if they recompute probabilities
-            for (MarkovVertex v : s.actual_path) v.incrementInstanceHits();
-            for (MarkovEdge e : s.actual_path_edges) e.incrementInstanceHits();
+            if (this.markov_updater == null) {
+                for (MarkovVertex v : s.actual_path) v.incrementInstanceHits();
+                for (MarkovEdge e : s.actual_path_edges) e.incrementInstanceHits();
+            }
             next_v.addInstanceTime(txn_id, s.getExecutionTimeOffset(timestamp));
         } // SYNCH
         
+        // Otherwise the MarkovUpdater will apply the whole path for us later on 
+        if (this.markov_updater != null) this.recordMarkovHits(s);
+        
         // Store this as the last accurate MarkovPathEstimator for this graph
         if (hstore_conf.site.markov_path_caching && this.cached_estimators.containsKey(s.markov) == false && s.initial_estimate.isValid()) {
             synchronized (this.cached_estimators) {
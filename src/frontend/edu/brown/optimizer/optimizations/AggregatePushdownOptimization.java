@@ -127,6 +127,13 @@ public class AggregatePushdownOptimization extends AbstractOptimization {
         send_node.addIntermediary(clone_node);
         state.markDirty(send_node);
 
+        // The original aggregate only has to combine the partial aggregates
+        // that come back from each partition, so it can consume them one
+        // dependency at a time
+        if ((clone_node instanceof DistinctPlanNode) == false && node.getChild(0) == recv_node) {
+            recv_node.setCombineAggregates(true);
+        }
+
         // 2011-12-08: We now need to correct the aggregate columns for the
         // original plan node
         if ((clone_node instanceof DistinctPlanNode) == false) {
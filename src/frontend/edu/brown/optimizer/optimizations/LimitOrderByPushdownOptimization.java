@@ -87,6 +87,14 @@ public class LimitOrderByPushdownOptimization extends AbstractOptimization {
 
         // Need to make sure that the LIMIT has the proper output columns
         limit_node.setOutputColumns(orderby_node.getOutputColumnGUIDs());
+
+        // Every partition now sends back its tuples already sorted, so the
+        // RECEIVE under the original ORDER BY can be merged instead of sorted
+        AbstractPlanNode orig_orderby_child = CollectionUtil.first(orderby_nodes).getChild(0);
+        if (orig_orderby_child instanceof ReceivePlanNode) {
+            ((ReceivePlanNode) orig_orderby_child).setMergeSorted(true);
+            state.markDirty(orig_orderby_child);
+        }
         state.markDirty(orderby_node);
         state.markDirty(limit_node);
 
@@ -0,0 +1,416 @@
+/***************************************************************************
+ *  Copyright (C) 2012 by H-Store Project                                  *
+ *  Brown University                                                       *
+ *  Massachusetts Institute of Technology                                  *
+ *  Yale University                                                        *
+ *                                                                         *
+ *  http://hstore.cs.brown.edu/                                            *
+ *                                                                         *
+ *  Permission is hereby granted, free of charge, to any person obtaining  *
+ *  a copy of this software and associated documentation files (the        *
+ *  "Software"), to deal in the Software without restriction, including    *
+ *  without limitation the rights to use, copy, modify, merge, publish,    *
+ *  distribute, sublicense, and/or sell copies of the Software, and to     *
+ *  permit persons to whom the Software is furnished to do so, subject to  *
+ *  the following conditions:                                              *
+ *                                                                         *
+ *  The above copyright notice and this permission notice shall be         *
+ *  included in all copies or substantial portions of the Software.        *
+ *                                                                         *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,        *
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF     *
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. *
+ *  IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR      *
+ *  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,  *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR  *
+ *  OTHER DEALINGS IN THE SOFTWARE.                                        *
+ ***************************************************************************/
+package edu.brown.statistics;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONStringer;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Database;
+
+/**
+ * A Histogram for small non-negative integer keys (e.g., partition ids, site ids, procedure ids)
+ * that can be updated by many threads on a runtime path without any locking.
+ * Each thread adds its counts to its own stripe of primitive counters using atomic operations.
+ * The stripes are only folded into the regular Histogram map when somebody reads the histogram,
+ * so all of the existing Histogram methods (including the JSON serialization) still work.
+ * Keys that are outside of the range given in the constructor are stored in the regular
+ * synchronized Histogram map.
+ */
+public class ConcurrentHistogram extends Histogram<Integer> {
+
+    /**
+     * The default number of stripes is the number of cores rounded up to the next power of two
+     */
+    public static final int DEFAULT_NUM_STRIPES;
+    static {
+        int cnt = 1;
+        while (cnt < Runtime.getRuntime().availableProcessors()) cnt <<= 1;
+        DEFAULT_NUM_STRIPES = cnt;
+    }
+    
+    private final int num_keys;
+    private final AtomicLongArray stripes[];
+    private final int stripe_mask;
+    
+    /**
+     * Constructor
+     * @param num_keys - the keys in the range [0, num_keys) are updated without locking
+     */
+    public ConcurrentHistogram(int num_keys) {
+        this(num_keys, DEFAULT_NUM_STRIPES);
+    }
+    
+    /**
+     * Constructor
+     * @param num_keys - the keys in the range [0, num_keys) are updated without locking
+     * @param num_stripes - the number of stripes. This will be rounded up to the next power of two
+     */
+    public ConcurrentHistogram(int num_keys, int num_stripes) {
+        super();
+        assert(num_keys >= 0) : "Invalid number of keys " + num_keys;
+        int cnt = 1;
+        while (cnt < num_stripes) cnt <<= 1;
+        
+        this.num_keys = num_keys;
+        this.stripe_mask = cnt - 1;
+        this.stripes = new AtomicLongArray[cnt];
+        for (int i = 0; i < cnt; i++) {
+            this.stripes[i] = new AtomicLongArray(num_keys);
+        } // FOR
+    }
+    
+    public int getNumKeys() {
+        return (this.num_keys);
+    }
+    
+    public int getNumStripes() {
+        return (this.stripes.length);
+    }
+    
+    // ----------------------------------------------------------------------------
+    // FAST PATH
+    // ----------------------------------------------------------------------------
+    
+    /**
+     * Increment the count for the given value by one without locking
+     * @param value
+     */
+    public void put(int value) {
+        this.put(value, 1);
+    }
+    
+    /**
+     * Increment the count for the given value by delta without locking.
+     * A negative delta has to take the slow path, because otherwise a stripe could
+     * get folded into the histogram before the stripe that has the matching increment.
+     * @param value
+     * @param delta
+     */
+    public void put(int value, long delta) {
+        if (delta >= 0 && value >= 0 && value < this.num_keys) {
+            this.stripes[(int)(Thread.currentThread().getId() & this.stripe_mask)].addAndGet(value, delta);
+        } else {
+            synchronized (this) {
+                this.flush();
+                super.put(Integer.valueOf(value), delta);
+            } // SYNCH
+        }
+    }
+    
+    @Override
+    public void put(Integer value) {
+        if (value != null) this.put(value.intValue(), 1);
+    }
+    
+    @Override
+    public void put(Integer value, long i) {
+        if (value != null) this.put(value.intValue(), i);
+    }
+    
+    @Override
+    public void putAll(Collection<Integer> values) {
+        this.putAll(values, 1);
+    }
+    
+    @Override
+    public void putAll(Collection<Integer> values, long count) {
+        for (Integer v : values) {
+            this.put(v, count);
+        } // FOR
+    }
+    
+    @Override
+    public synchronized void putAll() {
+        this.flush();
+        super.putAll();
+    }
+    
+    @Override
+    public void putHistogram(Histogram<Integer> other) {
+        if (other == this) return;
+        other.flush();
+        synchronized (other) {
+            for (Integer value : other.histogram.keySet()) {
+                long count = other.histogram.get(value).longValue();
+                if (count > 0) this.put(value.intValue(), count);
+            } // FOR
+        } // SYNCH
+    }
+    
+    // ----------------------------------------------------------------------------
+    // SNAPSHOT + MERGE
+    // ----------------------------------------------------------------------------
+    
+    /**
+     * Fold all of the counts in the stripes into the regular Histogram map.
+     * Updates that happen while this is running will be picked up by the next call.
+     */
+    @Override
+    protected synchronized void flush() {
+        for (AtomicLongArray stripe : this.stripes) {
+            for (int i = 0; i < this.num_keys; i++) {
+                if (stripe.get(i) == 0) continue;
+                long delta = stripe.getAndSet(i, 0);
+                if (delta != 0) super.put(Integer.valueOf(i), delta);
+            } // FOR
+        } // FOR
+    }
+    
+    /**
+     * Return a copy of this histogram's current counts
+     * @return
+     */
+    public Histogram<Integer> snapshot() {
+        Histogram<Integer> copy = new Histogram<Integer>(this.isZeroEntriesEnabled());
+        copy.putHistogram(this);
+        return (copy);
+    }
+    
+    /**
+     * Add all of the counts from the other ConcurrentHistogram into this one
+     * This is the same as putHistogram()
+     * @param other
+     */
+    public void merge(ConcurrentHistogram other) {
+        this.putHistogram(other);
+    }
+    
+    // ----------------------------------------------------------------------------
+    // SLOW PATH
+    // ----------------------------------------------------------------------------
+    
+    @Override
+    public synchronized void clear() {
+        for (AtomicLongArray stripe : this.stripes) {
+            for (int i = 0; i < this.num_keys; i++) {
+                stripe.set(i, 0);
+            } // FOR
+        } // FOR
+        super.clear();
+    }
+    @Override
+    public synchronized void clearValues() {
+        for (AtomicLongArray stripe : this.stripes) {
+            for (int i = 0; i < this.num_keys; i++) {
+                stripe.set(i, 0);
+            } // FOR
+        } // FOR
+        super.clearValues();
+    }
+    @Override
+    public synchronized void set(Integer value, long i) {
+        this.flush();
+        super.set(value, i);
+    }
+    @Override
+    public synchronized void remove(Integer value, long count) {
+        this.flush();
+        super.remove(value, count);
+    }
+    @Override
+    public synchronized void remove(Integer value) {
+        this.flush();
+        super.remove(value);
+    }
+    @Override
+    public synchronized void removeAll(Integer value) {
+        this.flush();
+        super.removeAll(value);
+    }
+    @Override
+    public synchronized void removeValues(Collection<Integer> values, long delta) {
+        this.flush();
+        super.removeValues(values, delta);
+    }
+    @Override
+    public synchronized void removeHistogram(Histogram<Integer> other) {
+        this.flush();
+        super.removeHistogram(other);
+    }
+    
+    // ----------------------------------------------------------------------------
+    // READ METHODS
+    // ----------------------------------------------------------------------------
+    
+    @Override
+    public int getSampleCount() {
+        this.flush();
+        return super.getSampleCount();
+    }
+    @Override
+    public int getValueCount() {
+        this.flush();
+        return super.getValueCount();
+    }
+    @Override
+    public Integer getMinValue() {
+        this.flush();
+        return super.getMinValue();
+    }
+    @Override
+    public Integer getMaxValue() {
+        this.flush();
+        return super.getMaxValue();
+    }
+    @Override
+    public long getMinCount() {
+        this.flush();
+        return super.getMinCount();
+    }
+    @Override
+    public Collection<Integer> getMinCountValues() {
+        this.flush();
+        return super.getMinCountValues();
+    }
+    @Override
+    @Deprecated
+    public <T> T getMinCountValue() {
+        this.flush();
+        return super.<T>getMinCountValue();
+    }
+    @Override
+    public long getMaxCount() {
+        this.flush();
+        return super.getMaxCount();
+    }
+    @Override
+    public Collection<Integer> getMaxCountValues() {
+        this.flush();
+        return super.getMaxCountValues();
+    }
+    @Override
+    @Deprecated
+    public <T> T getMaxCountValue() {
+        this.flush();
+        return super.<T>getMaxCountValue();
+    }
+    @Override
+    public VoltType getEstimatedType() {
+        this.flush();
+        return super.getEstimatedType();
+    }
+    @Override
+    public Collection<Integer> values() {
+        this.flush();
+        return super.values();
+    }
+    @Override
+    public SortedSet<Integer> sortedValues() {
+        this.flush();
+        return super.sortedValues();
+    }
+    @Override
+    public Set<Integer> getValuesForCount(long count) {
+        this.flush();
+        return super.getValuesForCount(count);
+    }
+    @Override
+    public boolean isEmpty() {
+        this.flush();
+        return super.isEmpty();
+    }
+    @Override
+    public boolean isSkewed(double skewindication) {
+        this.flush();
+        return super.isSkewed(skewindication);
+    }
+    @Override
+    public Long get(Integer value) {
+        this.flush();
+        return super.get(value);
+    }
+    @Override
+    public long get(Integer value, long value_if_null) {
+        this.flush();
+        return super.get(value, value_if_null);
+    }
+    @Override
+    public boolean contains(Integer value) {
+        this.flush();
+        return super.contains(value);
+    }
+    @Override
+    public double getStandardDeviation() {
+        this.flush();
+        return super.getStandardDeviation();
+    }
+    @Override
+    public <T> SortedMap<T, Double> normalize() {
+        this.flush();
+        return super.<T>normalize();
+    }
+    @Override
+    public boolean equals(Object obj) {
+        this.flush();
+        return super.equals(obj);
+    }
+    @Override
+    public String toString(Integer max_chars, Integer max_length) {
+        this.flush();
+        return super.toString(max_chars, max_length);
+    }
+    
+    // ----------------------------------------------------------------------------
+    // SERIALIZATION METHODS
+    // ----------------------------------------------------------------------------
+    
+    @Override
+    public void toJSON(JSONStringer stringer) throws JSONException {
+        this.flush();
+        super.toJSON(stringer);
+    }
+    
+    @Override
+    public void fromJSON(JSONObject object, Database catalog_db) throws JSONException {
+        this.clear();
+        super.fromJSON(object, catalog_db);
+        
+        // The deserialized keys are not necessarily Integers (e.g., VoltType.INTEGER
+        // is read back as a Long), so we need to put them back in as ints
+        Map<Object, Long> loaded = new HashMap<Object, Long>();
+        synchronized (this) {
+            for (Entry<Integer, Long> e : this.histogram.entrySet()) {
+                loaded.put(e.getKey(), e.getValue());
+            } // FOR
+            super.clear();
+        } // SYNCH
+        for (Entry<Object, Long> e : loaded.entrySet()) {
+            this.put(((Number)e.getKey()).intValue(), e.getValue().longValue());
+        } // FOR
+    }
+}
@@ -142,6 +142,8 @@ public class Histogram<X> implements JSONSerializable {
     public boolean equals(Object obj) {
         if (obj instanceof Histogram<?>) {
             Histogram<?> other = (Histogram<?>)obj;
+            this.flush();
+            other.flush();
             return (this.histogram.equals(other.histogram));
         }
         return (false);
@@ -235,6 +237,15 @@ public class Histogram<X> implements JSONSerializable {
         this.dirty = true;
     }
 
+    /**
+     * Fold any updates that a subclass has buffered outside of the internal map
+     * into the histogram. This is called on the other histogram before we read
+     * its internal map directly.
+     */
+    protected void flush() {
+        // Nothing to do
+    }
+
     /**
      * Recalculate the min/max count value sets
      * Since this is expensive, this should only be done whenever that information is needed 
@@ -547,6 +558,7 @@ public class Histogram<X> implements JSONSerializable {
      */
     public synchronized void putHistogram(Histogram<X> other) {
         if (other == this) return;
+        other.flush();
         for (Entry<X, Long> e : other.histogram.entrySet()) {
             if (e.getValue().longValue() > 0)
                 this._put(e.getKey(), e.getValue());
@@ -610,6 +622,7 @@ public class Histogram<X> implements JSONSerializable {
      * @param values
      */
     public synchronized void removeHistogram(Histogram<X> other) {
+        other.flush();
         for (Entry<X, Long> e : other.histogram.entrySet()) {
             if (e.getValue().longValue() > 0) {
                 this._put(e.getKey(), -1 * e.getValue().longValue());
@@ -0,0 +1,214 @@
+/***************************************************************************
+ *  Copyright (C) 2012 by H-Store Project                                  *
+ *  Brown University                                                       *
+ *  Massachusetts Institute of Technology                                  *
+ *  Yale University                                                        *
+ *                                                                         *
+ *  http://hstore.cs.brown.edu/                                            *
+ *                                                                         *
+ *  Permission is hereby granted, free of charge, to any person obtaining  *
+ *  a copy of this software and associated documentation files (the        *
+ *  "Software"), to deal in the Software without restriction, including    *
+ *  without limitation the rights to use, copy, modify, merge, publish,    *
+ *  distribute, sublicense, and/or sell copies of the Software, and to     *
+ *  permit persons to whom the Software is furnished to do so, subject to  *
+ *  the following conditions:                                              *
+ *                                                                         *
+ *  The above copyright notice and this permission notice shall be         *
+ *  included in all copies or substantial portions of the Software.        *
+ *                                                                         *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,        *
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF     *
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. *
+ *  IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR      *
+ *  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,  *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR  *
+ *  OTHER DEALINGS IN THE SOFTWARE.                                        *
+ ***************************************************************************/
+package edu.brown.statistics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size log-bucketed histogram for recording latencies (in nanoseconds).
+ * Every power of two is split into SUB_BUCKET_COUNT linear sub-buckets, so the
+ * value reported for a percentile is always within 1/SUB_BUCKET_COUNT of the actual
+ * value that was recorded. Recording a value does not allocate any memory and
+ * does not acquire any locks, so it can be used from any number of threads.
+ * Two histograms can be merged together without losing any precision.
+ */
+public class LatencyHistogram {
+
+    /**
+     * The number of linear sub-buckets per power of two (as a power of two)
+     */
+    public static final int SUB_BUCKET_BITS = 5;
+    public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    
+    /**
+     * Values larger than 2^MAX_EXPONENT nanoseconds (~18 minutes) are counted
+     * in the last bucket
+     */
+    public static final int MAX_EXPONENT = 40;
+    public static final int NUM_BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong total_count = new AtomicLong(0);
+    private final AtomicLong total_sum = new AtomicLong(0);
+    private final AtomicLong max_value = new AtomicLong(0);
+    
+    // ----------------------------------------------------------------------------
+    // BUCKET METHODS
+    // ----------------------------------------------------------------------------
+    
+    /**
+     * Return the offset of the bucket that the given value belongs to
+     * @param value
+     * @return
+     */
+    protected static int getBucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (value < 0 ? 0 : (int)value);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) return (NUM_BUCKETS - 1);
+        int sub_bucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+        return ((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + sub_bucket);
+    }
+    
+    /**
+     * Return the largest value that would be counted in the given bucket
+     * @param idx
+     * @return
+     */
+    protected static long getBucketValue(int idx) {
+        if (idx < SUB_BUCKET_COUNT) return (idx);
+        int exponent = (idx / SUB_BUCKET_COUNT) + SUB_BUCKET_BITS - 1;
+        long sub_bucket = (idx % SUB_BUCKET_COUNT) + SUB_BUCKET_COUNT;
+        return (((sub_bucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1);
+    }
+    
+    // ----------------------------------------------------------------------------
+    // RECORDING METHODS
+    // ----------------------------------------------------------------------------
+    
+    /**
+     * Record a new latency measurement
+     * @param value - the latency in nanoseconds
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        this.counts.incrementAndGet(getBucketIndex(value));
+        this.total_count.incrementAndGet();
+        this.total_sum.addAndGet(value);
+        long max = this.max_value.get();
+        while (value > max) {
+            if (this.max_value.compareAndSet(max, value)) break;
+            max = this.max_value.get();
+        } // WHILE
+    }
+    
+    /**
+     * Add all of the measurements in the other histogram into this one
+     * @param other
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            long cnt = other.counts.get(i);
+            if (cnt != 0) this.counts.addAndGet(i, cnt);
+        } // FOR
+        this.total_count.addAndGet(other.total_count.get());
+        this.total_sum.addAndGet(other.total_sum.get());
+        long value = other.max_value.get();
+        long max = this.max_value.get();
+        while (value > max) {
+            if (this.max_value.compareAndSet(max, value)) break;
+            max = this.max_value.get();
+        } // WHILE
+    }
+    
+    /**
+     * Return a copy of this histogram's current measurements
+     * @return
+     */
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.add(this);
+        return (copy);
+    }
+    
+    /**
+     * Remove all of the measurements from this histogram
+     * Measurements that are recorded concurrently may or may not be lost
+     */
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            this.counts.set(i, 0);
+        } // FOR
+        this.total_count.set(0);
+        this.total_sum.set(0);
+        this.max_value.set(0);
+    }
+    
+    // ----------------------------------------------------------------------------
+    // QUERY METHODS
+    // ----------------------------------------------------------------------------
+    
+    public long getCount() {
+        return (this.total_count.get());
+    }
+    
+    public boolean isEmpty() {
+        return (this.total_count.get() == 0);
+    }
+    
+    /**
+     * Return the average latency in nanoseconds
+     * @return
+     */
+    public double getMean() {
+        long cnt = this.total_count.get();
+        return (cnt == 0 ? 0d : this.total_sum.get() / (double)cnt);
+    }
+    
+    /**
+     * Return the largest latency that was recorded in nanoseconds 
+     * @return
+     */
+    public long getMax() {
+        return (this.max_value.get());
+    }
+    
+    /**
+     * Return the latency (in nanoseconds) at the given percentile.
+     * @param percentile - the percentile in the range [0.0, 100.0]
+     * @return
+     */
+    public long getValueAtPercentile(double percentile) {
+        long cnt = this.total_count.get();
+        if (cnt == 0) return (0);
+        long target = (long)Math.ceil((Math.min(percentile, 100d) / 100d) * cnt);
+        if (target < 1) target = 1;
+        
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += this.counts.get(i);
+            if (seen >= target) {
+                return (Math.min(getBucketValue(i), this.max_value.get()));
+            }
+        } // FOR
+        return (this.max_value.get());
+    }
+    
+    @Override
+    public String toString() {
+        return (String.format("count=%d, mean=%.3fms, p50=%.3fms, p99=%.3fms, p999=%.3fms, max=%.3fms",
+                              this.getCount(),
+                              this.getMean() / 1000000d,
+                              this.getValueAtPercentile(50) / 1000000d,
+                              this.getValueAtPercentile(99) / 1000000d,
+                              this.getValueAtPercentile(99.9) / 1000000d,
+                              this.getMax() / 1000000d));
+    }
+}
@@ -994,15 +994,13 @@ public class PartitionEstimator {
      * @throws Exception
      */
     public Set<Integer> getAllPartitions(final Set<Integer> partitions, final Statement catalog_stmt, final Object params[], final int base_partition) throws Exception {
-        Set<Integer> all_partitions = new HashSet<Integer>();
-
         // Note that we will use the single-sited fragments (if available) since
         // they will be
         // faster for us to figure out what partitions has the data that this
         // statement needs
         CatalogMap<PlanFragment> fragments = (catalog_stmt.getHas_singlesited() ? catalog_stmt.getFragments() : catalog_stmt.getMs_fragments());
-        this.getAllFragmentPartitions(null, all_partitions, fragments.values(), params, base_partition);
-        return (all_partitions);
+        this.getAllFragmentPartitions(null, partitions, fragments.values(), params, base_partition);
+        return (partitions);
     }
 
     // ----------------------------------------------------------------------------
@@ -1103,6 +1101,39 @@ public class PartitionEstimator {
         return (all_param_idxs);
     }
 
+    /**
+     * Return a map from the StmtParameter offsets returned by getStatementEstimationParameters()
+     * to the partitioning Column that they are compared against. If the Statement
+     * cannot be used for fast look-ups, then the return value will be null.
+     * This is not cached, so it should not be used on the critical path.
+     *
+     * @param catalog_stmt
+     * @return
+     */
+    public Map<Integer, Column> getStatementEstimationColumns(Statement catalog_stmt) {
+        Collection<Integer> all_param_idxs = this.getStatementEstimationParameters(catalog_stmt);
+        if (all_param_idxs == null) return (null);
+
+        Map<Integer, Column> param_cols = new HashMap<Integer, Column>();
+        for (PlanFragment catalog_frag : catalog_stmt.getFragments()) {
+            PartitionEstimator.CacheEntry cache_entry = null;
+            try {
+                cache_entry = this.getFragmentCacheEntry(catalog_frag);
+            } catch (Exception ex) {
+                throw new RuntimeException("Failed to retrieve CacheEntry for " + catalog_frag.fullName());
+            }
+            for (Table catalog_tbl : cache_entry.getTables()) {
+                Column partition_col = catalog_tbl.getPartitioncolumn();
+                if (partition_col != null && cache_entry.containsKey(partition_col)) {
+                    for (int idx : cache_entry.get(partition_col)) {
+                        param_cols.put(Integer.valueOf(idx), partition_col);
+                    } // FOR
+                }
+            } // FOR
+        } // FOR
+        return (param_cols);
+    }
+
     /**
      * @param frag_partitions
      * @param fragments
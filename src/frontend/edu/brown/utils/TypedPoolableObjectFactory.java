@@ -70,6 +70,10 @@ public abstract class TypedPoolableObjectFactory<T extends Poolable> extends Bas
             this.destroyed.getAndIncrement();
     }
 
+    public boolean isCountingEnabled() {
+        return (this.enable_counting);
+    }
+
     public int getCreatedCount() {
         return (this.created.get());
     }
@@ -0,0 +1,319 @@
+/***************************************************************************
+ *  Copyright (C) 2012 by H-Store Project                                  *
+ *  Brown University                                                       *
+ *  Massachusetts Institute of Technology                                  *
+ *  Yale University                                                        *
+ *                                                                         *
+ *  http://hstore.cs.brown.edu/                                            *
+ *                                                                         *
+ *  Permission is hereby granted, free of charge, to any person obtaining  *
+ *  a copy of this software and associated documentation files (the        *
+ *  "Software"), to deal in the Software without restriction, including    *
+ *  without limitation the rights to use, copy, modify, merge, publish,    *
+ *  distribute, sublicense, and/or sell copies of the Software, and to     *
+ *  permit persons to whom the Software is furnished to do so, subject to  *
+ *  the following conditions:                                              *
+ *                                                                         *
+ *  The above copyright notice and this permission notice shall be         *
+ *  included in all copies or substantial portions of the Software.        *
+ *                                                                         *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,        *
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF     *
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. *
+ *  IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR      *
+ *  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,  *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR  *
+ *  OTHER DEALINGS IN THE SOFTWARE.                                        *
+ ***************************************************************************/
+package edu.brown.utils;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.pool.BaseObjectPool;
+import org.apache.log4j.Logger;
+
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * Object pool that does not need to grab a lock when borrowing or returning objects.
+ * Each thread keeps a small stack of idle objects for itself. Objects that do not
+ * fit in a thread's local stack are handed off to a shared lock-free stack that 
+ * any thread can borrow from. Threads that only ever return objects to this pool
+ * (e.g., the thread that cleans up a transaction that was created by another thread)
+ * always put them on the shared stack so that the borrowing threads can get them back.
+ * @param <T>
+ */
+public class TypedThreadLocalObjectPool<T extends Poolable> extends BaseObjectPool {
+    private static final Logger LOG = Logger.getLogger(TypedThreadLocalObjectPool.class);
+    private final static LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private final static LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+    
+    /**
+     * The default number of idle objects that each thread will keep for itself
+     */
+    public static final int DEFAULT_LOCAL_IDLE = 64;
+    
+    // ----------------------------------------------------------------------------
+    // INTERNAL STATE
+    // ----------------------------------------------------------------------------
+
+    private static final class Node<T> {
+        private final T item;
+        private Node<T> next;
+        
+        private Node(T item) {
+            this.item = item;
+        }
+    }
+    
+    /**
+     * Per-thread stack of idle objects. Only the owning thread modifies this.
+     */
+    private static final class LocalCache<T> {
+        private final Object items[];
+        private volatile int size = 0;
+        private boolean borrower = false;
+        
+        private LocalCache(int capacity) {
+            this.items = new Object[capacity];
+        }
+        @SuppressWarnings("unchecked")
+        private T pop() {
+            if (this.size == 0) return (null);
+            int idx = this.size - 1;
+            T t = (T)this.items[idx];
+            this.items[idx] = null;
+            this.size = idx;
+            return (t);
+        }
+        private boolean push(T t) {
+            if (this.size == this.items.length) return (false);
+            this.items[this.size] = t;
+            this.size = this.size + 1;
+            return (true);
+        }
+    }
+    
+    private final TypedPoolableObjectFactory<T> factory;
+    private final int max_idle;
+    private final int local_idle;
+    private final boolean enable_tracking;
+    
+    /**
+     * Shared overflow stack
+     */
+    private final AtomicReference<Node<T>> head = new AtomicReference<Node<T>>();
+    private final AtomicInteger shared_idle = new AtomicInteger(0);
+    
+    /**
+     * Only updated if the factory is counting objects
+     */
+    private final AtomicInteger active = new AtomicInteger(0);
+    
+    /**
+     * All of the LocalCaches that have been created for this pool
+     * This is only used to compute the number of idle objects
+     */
+    private final ConcurrentLinkedQueue<LocalCache<T>> caches = new ConcurrentLinkedQueue<LocalCache<T>>();
+    
+    private final ThreadLocal<LocalCache<T>> local = new ThreadLocal<LocalCache<T>>() {
+        @Override
+        protected LocalCache<T> initialValue() {
+            LocalCache<T> cache = new LocalCache<T>(local_idle);
+            caches.add(cache);
+            return (cache);
+        }
+    };
+    
+    // ----------------------------------------------------------------------------
+    // CONSTRUCTORS
+    // ----------------------------------------------------------------------------
+
+    public TypedThreadLocalObjectPool(TypedPoolableObjectFactory<T> factory, int idle) {
+        this(factory, idle, DEFAULT_LOCAL_IDLE);
+    }
+    
+    /**
+     * Constructor
+     * @param factory
+     * @param idle The max number of idle objects to keep in the shared stack
+     * @param local_idle The max number of idle objects that each thread will keep for itself
+     */
+    public TypedThreadLocalObjectPool(TypedPoolableObjectFactory<T> factory, int idle, int local_idle) {
+        assert(factory != null);
+        this.factory = factory;
+        this.max_idle = Math.max(0, idle);
+        this.local_idle = Math.max(0, Math.min(local_idle, this.max_idle));
+        this.enable_tracking = factory.isCountingEnabled();
+    }
+    
+    // ----------------------------------------------------------------------------
+    // OBJECTPOOL API
+    // ----------------------------------------------------------------------------
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public T borrowObject() throws Exception {
+        assertOpen();
+        LocalCache<T> cache = this.local.get();
+        cache.borrower = true;
+        
+        T t = cache.pop();
+        if (t == null) t = this.popShared();
+        if (t == null) {
+            if (trace.get())
+                LOG.trace(String.format("Creating new object in %s [thread=%s]",
+                                        this.getClass().getSimpleName(), Thread.currentThread().getName()));
+            t = (T)this.factory.makeObject();
+        }
+        this.factory.activateObject(t);
+        if (this.enable_tracking) this.active.incrementAndGet();
+        assert (t.isInitialized() == false) : String.format("Trying to reuse %s<%s> before it is finished!", this.getClass().getSimpleName(), t);
+        return t;
+    }
+
+    public void returnObject(T t) {
+        if (debug.get())
+            LOG.debug(String.format("Returning %s back to ObjectPool [hashCode=%d]", t.getClass().getSimpleName(), t.hashCode()));
+        try {
+            this.factory.passivateObject(t);
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+        if (this.enable_tracking) this.active.decrementAndGet();
+        if (this.isClosed()) {
+            this.destroy(t);
+            return;
+        }
+        
+        // Only keep the object for ourselves if this thread is going to borrow
+        // from this pool. Otherwise we need to hand it off to somebody else.
+        LocalCache<T> cache = this.local.get();
+        if (cache.borrower && cache.push(t)) return;
+        if (this.pushShared(t) == false) this.destroy(t);
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public void returnObject(Object obj) throws Exception {
+        this.returnObject((T)obj);
+    }
+
+    @Override
+    public void invalidateObject(Object obj) throws Exception {
+        if (this.enable_tracking) this.active.decrementAndGet();
+        this.factory.destroyObject(obj);
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public void addObject() throws Exception {
+        assertOpen();
+        T t = (T)this.factory.makeObject();
+        this.factory.passivateObject(t);
+        if (this.pushShared(t) == false) this.destroy(t);
+    }
+    
+    /**
+     * Returns the number of objects borrowed from this pool. 
+     * This is only tracked if the factory is counting objects.
+     */
+    @Override
+    public int getNumActive() {
+        return (this.active.get());
+    }
+    
+    /**
+     * Returns the number of idle objects in the shared stack and in all of the 
+     * threads' local caches. This is only an estimate if there are other threads
+     * using the pool at the same time.
+     */
+    @Override
+    public int getNumIdle() {
+        int total = this.shared_idle.get();
+        for (LocalCache<T> cache : this.caches) {
+            total += cache.size;
+        } // FOR
+        return (total);
+    }
+    
+    /**
+     * Destroy all of the idle objects in the shared stack and in the
+     * calling thread's local cache. We can't touch the other threads' caches.
+     */
+    @Override
+    public void clear() {
+        T t = null;
+        while ((t = this.popShared()) != null) {
+            this.destroy(t);
+        } // WHILE
+        LocalCache<T> cache = this.local.get();
+        while ((t = cache.pop()) != null) {
+            this.destroy(t);
+        } // WHILE
+    }
+    
+    @Override
+    public void close() throws Exception {
+        super.close();
+        this.clear();
+    }
+    
+    public TypedPoolableObjectFactory<T> getFactory() {
+        return (this.factory);
+    }
+    
+    // ----------------------------------------------------------------------------
+    // INTERNAL METHODS
+    // ----------------------------------------------------------------------------
+    
+    private boolean pushShared(T t) {
+        if (this.shared_idle.incrementAndGet() > this.max_idle) {
+            this.shared_idle.decrementAndGet();
+            return (false);
+        }
+        Node<T> node = new Node<T>(t);
+        do {
+            node.next = this.head.get();
+        } while (this.head.compareAndSet(node.next, node) == false);
+        return (true);
+    }
+    
+    private T popShared() {
+        Node<T> node = null;
+        do {
+            node = this.head.get();
+            if (node == null) return (null);
+        } while (this.head.compareAndSet(node, node.next) == false);
+        this.shared_idle.decrementAndGet();
+        return (node.item);
+    }
+    
+    private void destroy(T t) {
+        try {
+            this.factory.destroyObject(t);
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    /**
+     * @param <X>
+     * @param clazz
+     * @param idle
+     * @param local_idle
+     * @param enable_tracking
+     * @param args
+     * @return
+     */
+    public static <X extends Poolable> TypedThreadLocalObjectPool<X> factory(final Class<X> clazz, final int idle, final int local_idle, final boolean enable_tracking, final Object... args) {
+        TypedPoolableObjectFactory<X> factory = TypedPoolableObjectFactory.makeFactory(clazz, enable_tracking, args);
+        return new TypedThreadLocalObjectPool<X>(factory, idle, local_idle);
+    }
+}
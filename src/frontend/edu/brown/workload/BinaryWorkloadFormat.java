@@ -0,0 +1,116 @@
+/***************************************************************************
+ *  Copyright (C) 2012 by H-Store Project                                  *
+ *  Brown University                                                       *
+ *  Massachusetts Institute of Technology                                  *
+ *  Yale University                                                        *
+ *                                                                         *
+ *  http://hstore.cs.brown.edu/                                            *
+ *                                                                         *
+ *  Permission is hereby granted, free of charge, to any person obtaining  *
+ *  a copy of this software and associated documentation files (the        *
+ *  "Software"), to deal in the Software without restriction, including    *
+ *  without limitation the rights to use, copy, modify, merge, publish,    *
+ *  distribute, sublicense, and/or sell copies of the Software, and to     *
+ *  permit persons to whom the Software is furnished to do so, subject to  *
+ *  the following conditions:                                              *
+ *                                                                         *
+ *  The above copyright notice and this permission notice shall be         *
+ *  included in all copies or substantial portions of the Software.        *
+ *                                                                         *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,        *
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF     *
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. *
+ *  IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR      *
+ *  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,  *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR  *
+ *  OTHER DEALINGS IN THE SOFTWARE.                                        *
+ ***************************************************************************/
+package edu.brown.workload;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Layout constants for the compact binary workload trace format.
+ * <p>
+ * A binary trace starts with {@link #MAGIC} and {@link #VERSION}, followed by a
+ * sequence of records. Every record is a one-byte record type, a four-byte body length,
+ * and then the body. Catalog keys and short string parameters are dictionary-encoded:
+ * the first time a string is written, a {@link #RECORD_DICTIONARY} entry assigns it an id,
+ * and every later reference is just that id. This means that a reader can stream through
+ * the file front-to-back without ever needing a footer. All strings are stored as a
+ * four-byte length followed by their UTF-8 bytes.
+ * <p>
+ * The body of a {@link #RECORD_TXN} always starts with the procedure's dictionary id
+ * so that readers can reject a txn by name and jump over it without decoding anything else.
+ */
+public abstract class BinaryWorkloadFormat {
+
+    /** 'HSWB' */
+    public static final int MAGIC = 0x48535742;
+    public static final short VERSION = 2;
+    public static final int HEADER_SIZE = 4 + 2;
+    
+    // Record Types
+    public static final byte RECORD_DICTIONARY = 1;
+    public static final byte RECORD_TXN = 2;
+    public static final int RECORD_HEADER_SIZE = 1 + 4;
+    
+    // Parameter Types
+    public static final byte PARAM_NULL = 0;
+    public static final byte PARAM_BYTE = 1;
+    public static final byte PARAM_SHORT = 2;
+    public static final byte PARAM_INT = 3;
+    public static final byte PARAM_LONG = 4;
+    public static final byte PARAM_FLOAT = 5;
+    public static final byte PARAM_DOUBLE = 6;
+    public static final byte PARAM_BOOLEAN = 7;
+    public static final byte PARAM_TIMESTAMP = 8;
+    public static final byte PARAM_DECIMAL = 9;
+    /** Dictionary-encoded string */
+    public static final byte PARAM_STRING_REF = 10;
+    /** Inline string that was too long or arrived after the dictionary was full */
+    public static final byte PARAM_STRING = 11;
+    public static final byte PARAM_ARRAY = 12;
+    
+    /** The encoding used for all strings */
+    public static final Charset CHARSET = Charset.forName("UTF-8");
+    
+    /** Placeholder for a null start/stop timestamp */
+    public static final long NULL_TIMESTAMP = Long.MIN_VALUE;
+    
+    /** Flag bits stored for each txn and query */
+    public static final byte FLAG_ABORTED = 0x01;
+    
+    /** Only string parameters up to this length will be put in the dictionary */
+    public static final int MAX_DICTIONARY_STRING_LENGTH = 64;
+    /** Stop adding string parameters to the dictionary after this many entries */
+    public static final int MAX_DICTIONARY_SIZE = 1 << 20;
+    
+    /**
+     * Returns true if the given file starts with the binary trace header
+     * @param path
+     * @return
+     */
+    public static boolean isBinaryWorkload(File path) {
+        if (path.isFile() == false || path.length() < HEADER_SIZE) return (false);
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(path));
+            return (in.readInt() == MAGIC);
+        } catch (IOException ex) {
+            return (false);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    // IGNORE
+                }
+            }
+        }
+    }
+}
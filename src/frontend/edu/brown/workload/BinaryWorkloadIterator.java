@@ -0,0 +1,355 @@
+/***************************************************************************
+ *  Copyright (C) 2012 by H-Store Project                                  *
+ *  Brown University                                                       *
+ *  Massachusetts Institute of Technology                                  *
+ *  Yale University                                                        *
+ *                                                                         *
+ *  http://hstore.cs.brown.edu/                                            *
+ *                                                                         *
+ *  Permission is hereby granted, free of charge, to any person obtaining  *
+ *  a copy of this software and associated documentation files (the        *
+ *  "Software"), to deal in the Software without restriction, including    *
+ *  without limitation the rights to use, copy, modify, merge, publish,    *
+ *  distribute, sublicense, and/or sell copies of the Software, and to     *
+ *  permit persons to whom the Software is furnished to do so, subject to  *
+ *  the following conditions:                                              *
+ *                                                                         *
+ *  The above copyright notice and this permission notice shall be         *
+ *  included in all copies or substantial portions of the Software.        *
+ *                                                                         *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,        *
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF     *
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. *
+ *  IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR      *
+ *  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,  *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR  *
+ *  OTHER DEALINGS IN THE SOFTWARE.                                        *
+ ***************************************************************************/
+package edu.brown.workload;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.types.TimestampType;
+
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.statistics.Histogram;
+import edu.brown.workload.filters.Filter;
+import edu.brown.workload.filters.Filter.FilterResult;
+import edu.brown.workload.filters.ProcedureNameFilter;
+
+/**
+ * Streams TransactionTraces out of a binary workload file without loading the
+ * entire trace into memory. The file is memory-mapped one window at a time.
+ * If a Filter is given, then txns for procedures that are not included in any
+ * ProcedureNameFilter in the chain are skipped without being decoded, and
+ * the full Filter chain is applied to everything else.
+ * @see BinaryWorkloadFormat
+ */
+public class BinaryWorkloadIterator implements Iterator<TransactionTrace>, Closeable {
+    private static final Logger LOG = Logger.getLogger(BinaryWorkloadIterator.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+    
+    /** How much of the file we will map at a time */
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final File path;
+    private final Database catalog_db;
+    private final Filter filter;
+    private final Set<String> fast_procs;
+    
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long file_size;
+    private MappedByteBuffer window;
+    private long window_offset = -1;
+    
+    /** Current position in the file */
+    private long position;
+    private final List<String> dictionary = new ArrayList<String>();
+    
+    private TransactionTrace next;
+    private boolean halted = false;
+    private int skip_ctr = 0;
+    
+    public BinaryWorkloadIterator(File path, Database catalog_db, Filter filter) throws IOException {
+        this.path = path;
+        this.catalog_db = catalog_db;
+        this.filter = filter;
+        
+        // Same trick as Workload.load(): if we have ProcedureNameFilters, then we
+        // can throw out txns based on their name before we bother decoding them
+        Set<String> procs = null;
+        if (filter != null) {
+            for (ProcedureNameFilter f : filter.getFilters(ProcedureNameFilter.class)) {
+                if (f.getProcedureNames().isEmpty()) continue;
+                if (procs == null) procs = new HashSet<String>();
+                for (String proc_name : f.getProcedureNames()) {
+                    procs.add(proc_name.toUpperCase());
+                } // FOR
+            } // FOR
+        }
+        this.fast_procs = procs;
+        
+        this.file = new RandomAccessFile(path, "r");
+        this.channel = this.file.getChannel();
+        this.file_size = this.channel.size();
+        if (this.file_size < BinaryWorkloadFormat.HEADER_SIZE) {
+            this.close();
+            throw new IOException("Invalid binary workload file '" + path + "'");
+        }
+        this.map(0, BinaryWorkloadFormat.HEADER_SIZE);
+        int magic = this.window.getInt();
+        short version = this.window.getShort();
+        if (magic != BinaryWorkloadFormat.MAGIC || version != BinaryWorkloadFormat.VERSION) {
+            this.close();
+            throw new IOException(String.format("Invalid binary workload file '%s' [magic=%x, version=%d]",
+                                                path, magic, version));
+        }
+        this.position = BinaryWorkloadFormat.HEADER_SIZE;
+    }
+    
+    /**
+     * Make sure that the bytes [offset, offset+length) are mapped in our
+     * current window and position the window at offset.
+     */
+    private void map(long offset, int length) throws IOException {
+        if (this.window == null || offset < this.window_offset ||
+            offset + length > this.window_offset + this.window.capacity()) {
+            long size = Math.min(Math.max(length, WINDOW_SIZE), this.file_size - offset);
+            if (size < length) {
+                throw new IOException(String.format("Truncated record at offset %d in '%s'", offset, this.path));
+            }
+            this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+            this.window_offset = offset;
+            if (trace.get()) LOG.trace(String.format("Mapped %d bytes at offset %d", size, offset));
+        }
+        this.window.position((int)(offset - this.window_offset));
+    }
+    
+    /**
+     * Advance to the next txn record and return the name of its procedure.
+     * Dictionary records are consumed along the way. When this returns, the window is
+     * positioned just after the procedure id and the file position is at the next record.
+     * Returns null if we are at the end of the file.
+     */
+    private String nextTxnRecord() throws IOException {
+        while (this.position + BinaryWorkloadFormat.RECORD_HEADER_SIZE <= this.file_size) {
+            this.map(this.position, BinaryWorkloadFormat.RECORD_HEADER_SIZE);
+            byte type = this.window.get();
+            int length = this.window.getInt();
+            long body_offset = this.position + BinaryWorkloadFormat.RECORD_HEADER_SIZE;
+            this.map(body_offset, length);
+            this.position = body_offset + length;
+            
+            switch (type) {
+                case BinaryWorkloadFormat.RECORD_DICTIONARY: {
+                    int id = this.window.getInt();
+                    String value = this.readString();
+                    assert(id == this.dictionary.size()) : "Unexpected dictionary id " + id;
+                    this.dictionary.add(value);
+                    break;
+                }
+                case BinaryWorkloadFormat.RECORD_TXN:
+                    return (this.dictionary.get(this.window.getInt()));
+                default:
+                    throw new IOException(String.format("Unexpected record type %d at offset %d in '%s'",
+                                                        type, body_offset, this.path));
+            } // SWITCH
+        } // WHILE
+        return (null);
+    }
+    
+    private void fetch() {
+        if (this.next != null || this.halted) return;
+        try {
+            String proc_name = null;
+            while ((proc_name = this.nextTxnRecord()) != null) {
+                if (this.fast_procs != null && this.fast_procs.contains(proc_name.toUpperCase()) == false) {
+                    this.skip_ctr++;
+                    continue;
+                }
+                TransactionTrace txn_trace = this.readTransaction(proc_name);
+                if (this.filter != null) {
+                    FilterResult result = this.filter.apply(txn_trace);
+                    if (trace.get()) LOG.trace(txn_trace + " Filter Result: " + result);
+                    if (result == FilterResult.HALT) {
+                        if (debug.get()) LOG.debug("Got HALT response from filter! Stopping!");
+                        this.halted = true;
+                        break;
+                    } else if (result == FilterResult.SKIP) {
+                        this.skip_ctr++;
+                        continue;
+                    }
+                }
+                this.next = txn_trace;
+                break;
+            } // WHILE
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed to read binary workload file '" + this.path + "'", ex);
+        }
+    }
+    
+    @Override
+    public boolean hasNext() {
+        this.fetch();
+        return (this.next != null);
+    }
+
+    @Override
+    public TransactionTrace next() {
+        this.fetch();
+        if (this.next == null) throw new NoSuchElementException();
+        TransactionTrace ret = this.next;
+        this.next = null;
+        return (ret);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+    
+    /**
+     * Return the number of txns that were skipped because of the filter
+     * @return
+     */
+    public int getSkippedCount() {
+        return (this.skip_ctr);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        this.window = null;
+        this.channel.close();
+        this.file.close();
+    }
+    
+    // ----------------------------------------------------------------------------
+    // DECODING METHODS
+    // ----------------------------------------------------------------------------
+    
+    private TransactionTrace readTransaction(String proc_name) {
+        Procedure catalog_proc = this.catalog_db.getProcedures().getIgnoreCase(proc_name);
+        if (catalog_proc == null) {
+            throw new RuntimeException("Invalid procedure '" + proc_name + "' in binary workload file '" + this.path + "'");
+        }
+        long txn_id = this.window.getLong();
+        TransactionTrace txn_trace = new TransactionTrace(txn_id, catalog_proc, null);
+        this.readElement(txn_trace);
+        
+        int num_queries = this.window.getInt();
+        for (int i = 0; i < num_queries; i++) {
+            String stmt_key = this.dictionary.get(this.window.getInt());
+            int batch_id = this.window.getInt();
+            QueryTrace query_trace = new QueryTrace(stmt_key, null, batch_id);
+            this.readElement(query_trace);
+            txn_trace.addQuery(query_trace);
+        } // FOR
+        return (txn_trace);
+    }
+    
+    private void readElement(AbstractTraceElement<?> element) {
+        long start = this.window.getLong();
+        long stop = this.window.getLong();
+        element.setTimestamps(start != BinaryWorkloadFormat.NULL_TIMESTAMP ? start : null,
+                              stop != BinaryWorkloadFormat.NULL_TIMESTAMP ? stop : null);
+        element.aborted = ((this.window.get() & BinaryWorkloadFormat.FLAG_ABORTED) != 0);
+        element.weight = this.window.getShort();
+        
+        Object params[] = new Object[this.window.getInt()];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = this.readParam();
+        } // FOR
+        element.params = params;
+    }
+    
+    private Object readParam() {
+        byte type = this.window.get();
+        switch (type) {
+            case BinaryWorkloadFormat.PARAM_NULL:
+                return (null);
+            case BinaryWorkloadFormat.PARAM_BYTE:
+                return (this.window.get());
+            case BinaryWorkloadFormat.PARAM_SHORT:
+                return (this.window.getShort());
+            case BinaryWorkloadFormat.PARAM_INT:
+                return (this.window.getInt());
+            case BinaryWorkloadFormat.PARAM_LONG:
+                return (this.window.getLong());
+            case BinaryWorkloadFormat.PARAM_FLOAT:
+                return (this.window.getFloat());
+            case BinaryWorkloadFormat.PARAM_DOUBLE:
+                return (this.window.getDouble());
+            case BinaryWorkloadFormat.PARAM_BOOLEAN:
+                return (this.window.get() != 0);
+            case BinaryWorkloadFormat.PARAM_TIMESTAMP:
+                return (new TimestampType(this.window.getLong()));
+            case BinaryWorkloadFormat.PARAM_DECIMAL:
+                return (new BigDecimal(this.readString()));
+            case BinaryWorkloadFormat.PARAM_STRING_REF:
+                return (this.dictionary.get(this.window.getInt()));
+            case BinaryWorkloadFormat.PARAM_STRING:
+                return (this.readString());
+            case BinaryWorkloadFormat.PARAM_ARRAY: {
+                Object inner[] = new Object[this.window.getInt()];
+                for (int i = 0; i < inner.length; i++) {
+                    inner[i] = this.readParam();
+                } // FOR
+                return (inner);
+            }
+            default:
+                throw new RuntimeException(String.format("Unexpected parameter type %d in '%s'", type, this.path));
+        } // SWITCH
+    }
+    
+    /**
+     * Decode a string written by BinaryWorkloadWriter.writeString()
+     */
+    private String readString() {
+        int length = this.window.getInt();
+        byte bytes[] = new byte[length];
+        this.window.get(bytes);
+        return (new String(bytes, BinaryWorkloadFormat.CHARSET));
+    }
+    
+    /**
+     * Generate a Histogram for how often each procedure is executed in a binary
+     * workload file without decoding any of the txns.
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static Histogram<String> getProcedureHistogram(File path) throws IOException {
+        Histogram<String> h = new Histogram<String>();
+        BinaryWorkloadIterator it = new BinaryWorkloadIterator(path, null, null);
+        try {
+            String proc_name = null;
+            while ((proc_name = it.nextTxnRecord()) != null) {
+                h.put(proc_name);
+            } // WHILE
+        } finally {
+            it.close();
+        }
+        return (h);
+    }
+}
@@ -0,0 +1,336 @@
+/***************************************************************************
+ *  Copyright (C) 2012 by H-Store Project                                  *
+ *  Brown University                                                       *
+ *  Massachusetts Institute of Technology                                  *
+ *  Yale University                                                        *
+ *                                                                         *
+ *  http://hstore.cs.brown.edu/                                            *
+ *                                                                         *
+ *  Permission is hereby granted, free of charge, to any person obtaining  *
+ *  a copy of this software and associated documentation files (the        *
+ *  "Software"), to deal in the Software without restriction, including    *
+ *  without limitation the rights to use, copy, modify, merge, publish,    *
+ *  distribute, sublicense, and/or sell copies of the Software, and to     *
+ *  permit persons to whom the Software is furnished to do so, subject to  *
+ *  the following conditions:                                              *
+ *                                                                         *
+ *  The above copyright notice and this permission notice shall be         *
+ *  included in all copies or substantial portions of the Software.        *
+ *                                                                         *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,        *
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF     *
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. *
+ *  IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR      *
+ *  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,  *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR  *
+ *  OTHER DEALINGS IN THE SOFTWARE.                                        *
+ ***************************************************************************/
+package edu.brown.workload;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.voltdb.catalog.Database;
+import org.voltdb.types.TimestampType;
+
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.utils.ArgumentsParser;
+import edu.brown.utils.FileUtil;
+
+/**
+ * Writes TransactionTraces out in the compact binary workload format.
+ * Query output tables are not included in binary traces.
+ * @see BinaryWorkloadFormat
+ */
+public class BinaryWorkloadWriter implements Closeable {
+    private static final Logger LOG = Logger.getLogger(BinaryWorkloadWriter.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+    
+    /** Reusable buffer for the record that we are currently encoding */
+    private final ByteArrayOutputStream body_buffer = new ByteArrayOutputStream(4096);
+    private final DataOutputStream body = new DataOutputStream(this.body_buffer);
+    
+    private int txn_ctr = 0;
+    
+    public BinaryWorkloadWriter(File output_path) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output_path), 65536));
+        this.out.writeInt(BinaryWorkloadFormat.MAGIC);
+        this.out.writeShort(BinaryWorkloadFormat.VERSION);
+    }
+    
+    /**
+     * Return the number of TransactionTraces written so far
+     * @return
+     */
+    public int getTransactionCount() {
+        return (this.txn_ctr);
+    }
+    
+    /**
+     * Append the given TransactionTrace (and all of its QueryTraces) to the output file
+     * @param txn_trace
+     * @throws IOException
+     */
+    public void write(TransactionTrace txn_trace) throws IOException {
+        this.body_buffer.reset();
+        
+        // The procedure id must always come first so that readers can skip the rest
+        this.body.writeInt(this.getDictionaryId(txn_trace.catalog_item_name, true));
+        this.body.writeLong(txn_trace.txn_id);
+        this.writeElement(txn_trace);
+        
+        this.body.writeInt(txn_trace.getQueryCount());
+        for (QueryTrace query_trace : txn_trace.getQueries()) {
+            this.body.writeInt(this.getDictionaryId(query_trace.catalog_item_name, true));
+            this.body.writeInt(query_trace.getBatchId());
+            this.writeElement(query_trace);
+        } // FOR
+        
+        this.body.flush();
+        this.out.writeByte(BinaryWorkloadFormat.RECORD_TXN);
+        this.out.writeInt(this.body_buffer.size());
+        this.body_buffer.writeTo(this.out);
+        this.txn_ctr++;
+        if (trace.get()) LOG.trace(String.format("Wrote %s with %d queries [bytes=%d]",
+                                                 txn_trace, txn_trace.getQueryCount(), this.body_buffer.size()));
+    }
+    
+    @Override
+    public void close() throws IOException {
+        this.out.flush();
+        this.out.close();
+        if (debug.get()) LOG.debug(String.format("Wrote %d txns with %d dictionary entries",
+                                                 this.txn_ctr, this.dictionary.size()));
+    }
+    
+    // ----------------------------------------------------------------------------
+    // ENCODING METHODS
+    // ----------------------------------------------------------------------------
+    
+    private void writeElement(AbstractTraceElement<?> element) throws IOException {
+        this.body.writeLong(element.start_timestamp != null ? element.start_timestamp : BinaryWorkloadFormat.NULL_TIMESTAMP);
+        this.body.writeLong(element.stop_timestamp != null ? element.stop_timestamp : BinaryWorkloadFormat.NULL_TIMESTAMP);
+        this.body.writeByte(element.aborted ? BinaryWorkloadFormat.FLAG_ABORTED : 0);
+        this.body.writeShort(element.weight);
+        
+        Object params[] = element.params;
+        if (params == null) {
+            this.body.writeInt(0);
+        } else {
+            this.body.writeInt(params.length);
+            for (Object param : params) {
+                this.writeParam(param);
+            } // FOR
+        }
+    }
+    
+    private void writeParam(Object param) throws IOException {
+        if (param == null) {
+            this.body.writeByte(BinaryWorkloadFormat.PARAM_NULL);
+        } else if (param instanceof Long) {
+            this.body.writeByte(BinaryWorkloadFormat.PARAM_LONG);
+            this.body.writeLong((Long)param);
+        } else if (param instanceof Integer) {
+            this.body.writeByte(BinaryWorkloadFormat.PARAM_INT);
+            this.body.writeInt((Integer)param);
+        } else if (param instanceof Short) {
+            this.body.writeByte(BinaryWorkloadFormat.PARAM_SHORT);
+            this.body.writeShort((Short)param);
+        } else if (param instanceof Byte) {
+            this.body.writeByte(BinaryWorkloadFormat.PARAM_BYTE);
+            this.body.writeByte((Byte)param);
+        } else if (param instanceof Double) {
+            this.body.writeByte(BinaryWorkloadFormat.PARAM_DOUBLE);
+            this.body.writeDouble((Double)param);
+        } else if (param instanceof Float) {
+            this.body.writeByte(BinaryWorkloadFormat.PARAM_FLOAT);
+            this.body.writeFloat((Float)param);
+        } else if (param instanceof Boolean) {
+            this.body.writeByte(BinaryWorkloadFormat.PARAM_BOOLEAN);
+            this.body.writeBoolean((Boolean)param);
+        } else if (param instanceof TimestampType) {
+            this.body.writeByte(BinaryWorkloadFormat.PARAM_TIMESTAMP);
+            this.body.writeLong(((TimestampType)param).getTime());
+        } else if (param instanceof Date) {
+            this.body.writeByte(BinaryWorkloadFormat.PARAM_TIMESTAMP);
+            this.body.writeLong(((Date)param).getTime() * 1000l);
+        } else if (param instanceof BigDecimal) {
+            this.body.writeByte(BinaryWorkloadFormat.PARAM_DECIMAL);
+            this.writeString(this.body, param.toString());
+        } else if (param instanceof long[]) {
+            long arr[] = (long[])param;
+            this.writeArrayHeader(arr.length);
+            for (long val : arr) this.writeParam(val);
+        } else if (param instanceof int[]) {
+            int arr[] = (int[])param;
+            this.writeArrayHeader(arr.length);
+            for (int val : arr) this.writeParam(val);
+        } else if (param instanceof short[]) {
+            short arr[] = (short[])param;
+            this.writeArrayHeader(arr.length);
+            for (short val : arr) this.writeParam(val);
+        } else if (param instanceof byte[]) {
+            byte arr[] = (byte[])param;
+            this.writeArrayHeader(arr.length);
+            for (byte val : arr) this.writeParam(val);
+        } else if (param instanceof double[]) {
+            double arr[] = (double[])param;
+            this.writeArrayHeader(arr.length);
+            for (double val : arr) this.writeParam(val);
+        } else if (param instanceof Object[]) {
+            Object arr[] = (Object[])param;
+            this.writeArrayHeader(arr.length);
+            for (Object val : arr) this.writeParam(val);
+        } else {
+            String str = param.toString();
+            Integer id = (str.length() <= BinaryWorkloadFormat.MAX_DICTIONARY_STRING_LENGTH ?
+                                this.getDictionaryId(str, false) : null);
+            if (id != null) {
+                this.body.writeByte(BinaryWorkloadFormat.PARAM_STRING_REF);
+                this.body.writeInt(id);
+            } else {
+                this.body.writeByte(BinaryWorkloadFormat.PARAM_STRING);
+                this.writeString(this.body, str);
+            }
+        }
+    }
+    
+    /**
+     * Write out the length of the UTF-8 encoding of the given string followed by its bytes.
+     * We can't use DataOutput.writeUTF() because it can't handle strings that are
+     * longer than 64KB once they are encoded.
+     */
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        byte bytes[] = value.getBytes(BinaryWorkloadFormat.CHARSET);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private void writeArrayHeader(int length) throws IOException {
+        this.body.writeByte(BinaryWorkloadFormat.PARAM_ARRAY);
+        this.body.writeInt(length);
+    }
+    
+    /**
+     * Return the dictionary id for the given string. If this is the first time that
+     * we have seen it, then a new dictionary record is written out before the record
+     * that we are currently encoding. Returns null if the dictionary is full and
+     * force is false.
+     * @param value
+     * @param force
+     * @return
+     * @throws IOException
+     */
+    private Integer getDictionaryId(String value, boolean force) throws IOException {
+        Integer id = this.dictionary.get(value);
+        if (id == null) {
+            if (force == false && this.dictionary.size() >= BinaryWorkloadFormat.MAX_DICTIONARY_SIZE) {
+                return (null);
+            }
+            id = this.dictionary.size();
+            this.dictionary.put(value, id);
+            
+            ByteArrayOutputStream entry_buffer = new ByteArrayOutputStream();
+            DataOutputStream entry = new DataOutputStream(entry_buffer);
+            entry.writeInt(id);
+            this.writeString(entry, value);
+            entry.flush();
+            this.out.writeByte(BinaryWorkloadFormat.RECORD_DICTIONARY);
+            this.out.writeInt(entry_buffer.size());
+            entry_buffer.writeTo(this.out);
+        }
+        return (id);
+    }
+    
+    /**
+     * Convert a JSON workload trace into the binary format. The JSON file is streamed one
+     * line at a time, so we never have more than one TransactionTrace in memory.
+     * @param input_path
+     * @param output_path
+     * @param catalog_db
+     * @return the number of txns that were written
+     * @throws Exception
+     */
+    public static int convert(File input_path, File output_path, Database catalog_db) throws Exception {
+        BufferedReader in = FileUtil.getReader(input_path);
+        BinaryWorkloadWriter writer = new BinaryWorkloadWriter(output_path);
+        int line_ctr = 0;
+        try {
+            String line = null;
+            while ((line = in.readLine()) != null) {
+                line_ctr++;
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                
+                JSONObject json_object = null;
+                try {
+                    json_object = new JSONObject(line);
+                } catch (JSONException ex) {
+                    LOG.warn(String.format("Ignoring invalid TransactionTrace on line %d of '%s'", line_ctr, input_path));
+                    continue;
+                }
+                if (json_object.has(TransactionTrace.Members.TXN_ID.name()) == false) {
+                    throw new Exception(String.format("Unexpected serialization line %d in workload trace file '%s'",
+                                                      line_ctr, input_path));
+                }
+                TransactionTrace txn_trace = TransactionTrace.loadFromJSONObject(json_object, catalog_db);
+                if (txn_trace == null) {
+                    throw new Exception(String.format("Failed to deserialize TransactionTrace on line %d of '%s'",
+                                                      line_ctr, input_path));
+                }
+                writer.write(txn_trace);
+                if (debug.get() && writer.getTransactionCount() % 10000 == 0)
+                    LOG.debug("Converted " + writer.getTransactionCount() + " transactions...");
+            } // WHILE
+        } finally {
+            in.close();
+            writer.close();
+        }
+        return (writer.getTransactionCount());
+    }
+    
+    /**
+     * Convert a JSON workload trace into the binary format.
+     * The JSON file is given as the first optional parameter. We don't use the
+     * workload parameter because then ArgumentsParser would load the whole trace.
+     * @param vargs
+     * @throws Exception
+     */
+    public static void main(String[] vargs) throws Exception {
+        ArgumentsParser args = ArgumentsParser.load(vargs);
+        args.require(
+            ArgumentsParser.PARAM_CATALOG,
+            ArgumentsParser.PARAM_WORKLOAD_OUTPUT
+        );
+        Database catalog_db = args.catalog_db;
+        assert(catalog_db != null);
+        assert(args.getOptParamCount() == 1) : "Expected the path of the JSON workload trace";
+        
+        File input_path = new File(args.getOptParam(0));
+        File output_path = new File(args.getParam(ArgumentsParser.PARAM_WORKLOAD_OUTPUT));
+        LOG.info(String.format("Converting '%s' into binary workload '%s'", input_path, output_path));
+        int num_txns = convert(input_path, output_path, catalog_db);
+        LOG.info(String.format("Wrote %d txns to '%s' [%d bytes]", num_txns, output_path, output_path.length()));
+    }
+}
@@ -350,6 +350,11 @@ public class Workload implements WorkloadTrace, Iterable<TransactionTrace> {
         this.input_path = new File(input_path);
         long start = System.currentTimeMillis();
         
+        if (BinaryWorkloadFormat.isBinaryWorkload(this.input_path)) {
+            this.loadBinary(catalog_db, filter, start);
+            return;
+        }
+        
         // HACK: Throw out traces unless they have the procedures that we're looking for
         Pattern temp_pattern = null;
         if (filter != null) {
@@ -407,7 +412,43 @@ public class Workload implements WorkloadTrace, Iterable<TransactionTrace> {
         return;
     }
     
-
+    /**
+     * Load a workload trace that was written by BinaryWorkloadWriter. The txns are
+     * streamed out of the file and the filter is applied before they are added to
+     * this Workload, so skipped txns are never materialized.
+     * @param catalog_db
+     * @param filter
+     * @param start
+     * @throws Exception
+     */
+    private void loadBinary(Database catalog_db, Filter filter, long start) throws Exception {
+        int query_ctr = 0;
+        int weightedTxn_ctr = 0;
+        int weightedQuery_ctr = 0;
+        
+        BinaryWorkloadIterator it = new BinaryWorkloadIterator(this.input_path, catalog_db, filter);
+        try {
+            while (it.hasNext()) {
+                TransactionTrace txn_trace = it.next();
+                query_ctr += txn_trace.getQueryCount();
+                weightedTxn_ctr += txn_trace.weight;
+                for (QueryTrace q : txn_trace.getQueries()) {
+                    weightedQuery_ctr += q.weight;
+                } // FOR
+                this.addTransaction(txn_trace.getCatalogItem(catalog_db), txn_trace, true);
+            } // WHILE
+        } finally {
+            it.close();
+        }
+        VerifyWorkload.verify(catalog_db, this);
+        
+        long stop = System.currentTimeMillis();
+        LOG.info(String.format("Loaded %d txns / %d queries from binary workload '%s' in %.1f seconds [skipped=%d]",
+                               this.xact_trace.size(), query_ctr, this.input_path.getName(), (stop - start) / 1000d, it.getSkippedCount()));
+        if (this.xact_trace.size() != weightedTxn_ctr || query_ctr != weightedQuery_ctr) {
+            LOG.info(String.format("Weighted Workload: %d txns / %d queries", weightedTxn_ctr, weightedQuery_ctr));
+        }
+    }
     
     // ----------------------------------------------------------
     // ITERATORS METHODS
@@ -311,6 +311,9 @@ public abstract class WorkloadUtil {
      * @throws Exception
      */
     public static Histogram<String> getProcedureHistogram(File workload_path) throws Exception {
+        if (BinaryWorkloadFormat.isBinaryWorkload(workload_path)) {
+            return (BinaryWorkloadIterator.getProcedureHistogram(workload_path));
+        }
         final Histogram<String> h = new Histogram<String>();
         final String regex = "^\\{[\\s]*" +
                              // Old Format: Start with an ID#
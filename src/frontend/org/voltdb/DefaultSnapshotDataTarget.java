@@ -79,6 +79,12 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
 
     private final AtomicInteger m_outstandingWriteTasks = new AtomicInteger(0);
 
+    /**
+     * Limits how fast all of the targets can write and whether each
+     * write needs to be synced right away
+     */
+    private final SnapshotIOScheduler m_scheduler = SnapshotIOScheduler.singleton();
+
     private static final ExecutorService m_es = Executors.newSingleThreadExecutor(new ThreadFactory() {
         @Override
         public Thread newThread(Runnable r) {
@@ -288,14 +294,22 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
                         }
                     }
 
-                    m_bytesAllowedBeforeSync.acquire(tupleData.b.remaining());
+                    final boolean writeThrough = m_scheduler.isWriteThrough();
+                    m_scheduler.acquire(tupleData.b.remaining());
+                    if (!writeThrough) {
+                        m_bytesAllowedBeforeSync.acquire(tupleData.b.remaining());
+                    }
 
                     int totalWritten = 0;
                     while (tupleData.b.hasRemaining()) {
                         totalWritten += m_channel.write(tupleData.b);
                     }
                     m_bytesWritten += totalWritten;
-                    m_bytesWrittenSinceLastSync.addAndGet(totalWritten);
+                    if (writeThrough) {
+                        m_channel.force(false);
+                    } else {
+                        m_bytesWrittenSinceLastSync.addAndGet(totalWritten);
+                    }
                 } catch (IOException e) {
                     m_writeException = e;
                     LOG.error("Error while attempting to write snapshot data to file " + m_file, e);
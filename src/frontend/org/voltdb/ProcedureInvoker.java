@@ -0,0 +1,19 @@
+package org.voltdb;
+
+/**
+ * Invokes a VoltProcedure's run() method directly without going through reflection.
+ * Implementations of this are generated at runtime by {@link ProcedureInvokerGenerator}.
+ */
+public interface ProcedureInvoker {
+
+    /**
+     * Unpack the given parameters and pass them to the procedure's run() method.
+     * Any exception that run() throws is passed up to the caller as-is.
+     * @param proc
+     * @param params
+     * @return The raw result of the run() method
+     * @throws Throwable
+     */
+    public Object invoke(VoltProcedure proc, Object params[]) throws Throwable;
+
+}
@@ -0,0 +1,343 @@
+package org.voltdb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * Generates a {@link ProcedureInvoker} class for a VoltProcedure's run() method.
+ * The generated invoke() method casts the procedure to its actual class, unboxes each
+ * of the parameters into the type that run() expects, and then calls run() with a regular
+ * invokevirtual instruction. This means that the JIT can inline run() into the invoker,
+ * whereas Method.invoke() has to go through its accessor and check every argument.
+ * We write the bytecode ourselves because it is only a handful of instructions and
+ * there is no bytecode library on our classpath.
+ */
+public abstract class ProcedureInvokerGenerator {
+    private static final Logger LOG = Logger.getLogger(ProcedureInvokerGenerator.class);
+    private final static LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private final static LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    /**
+     * The suffix for the name of the generated invoker classes
+     */
+    public static final String CLASS_SUFFIX = "$$Invoker";
+
+    private static final String OBJECT = "java/lang/Object";
+    private static final String NUMBER = "java/lang/Number";
+    private static final String INVOKER = ProcedureInvoker.class.getName().replace('.', '/');
+    private static final String INVOKE_NAME = "invoke";
+    private static final String INVOKE_DESC = "(Lorg/voltdb/VoltProcedure;[Ljava/lang/Object;)Ljava/lang/Object;";
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    /**
+     * We don't need the StackMapTable attribute from Java 6 because
+     * the generated methods do not have any branches
+     */
+    private static final int CLASS_MAJOR_VERSION = 49;
+
+    /**
+     * Procedure Class -> ProcedureInvoker
+     * We only want to generate one invoker class per procedure, even though
+     * each PartitionExecutor will have many instances of that procedure
+     */
+    private static final Map<Class<?>, ProcedureInvoker> CACHE = new HashMap<Class<?>, ProcedureInvoker>();
+
+    /**
+     * Returns a ProcedureInvoker for the given run() method of the procedure class.
+     * Returns null if we can't generate one, which means that the caller will
+     * need to use reflection to invoke the method.
+     * @param procClass
+     * @param procMethod
+     * @return
+     */
+    public static synchronized ProcedureInvoker getInvoker(Class<?> procClass, Method procMethod) {
+        if (CACHE.containsKey(procClass)) {
+            return (CACHE.get(procClass));
+        }
+        ProcedureInvoker invoker = null;
+        if (isSupported(procClass, procMethod)) {
+            try {
+                invoker = generate(procClass, procMethod);
+                if (debug.get()) LOG.debug("Generated " + invoker.getClass().getName());
+            } catch (Throwable ex) {
+                LOG.warn("Failed to generate ProcedureInvoker for " + procClass.getName(), ex);
+            }
+        } else if (debug.get()) {
+            LOG.debug("Unable to generate ProcedureInvoker for " + procClass.getName());
+        }
+        CACHE.put(procClass, invoker);
+        return (invoker);
+    }
+
+    /**
+     * The generated class lives in its own ClassLoader, so everything that it
+     * touches has to be public
+     * @param procClass
+     * @param procMethod
+     * @return
+     */
+    private static boolean isSupported(Class<?> procClass, Method procMethod) {
+        if (Modifier.isPublic(procClass.getModifiers()) == false ||
+            Modifier.isPublic(procMethod.getModifiers()) == false ||
+            Modifier.isStatic(procMethod.getModifiers()) ||
+            procMethod.getDeclaringClass().isAssignableFrom(procClass) == false) {
+            return (false);
+        }
+        for (Class<?> paramType : procMethod.getParameterTypes()) {
+            while (paramType.isArray()) paramType = paramType.getComponentType();
+            if (paramType.isPrimitive() == false && Modifier.isPublic(paramType.getModifiers()) == false) {
+                return (false);
+            }
+        } // FOR
+        return (true);
+    }
+
+    private static ProcedureInvoker generate(Class<?> procClass, Method procMethod) throws Exception {
+        String className = procClass.getName() + CLASS_SUFFIX;
+        byte bytes[] = generateClass(className.replace('.', '/'), procClass, procMethod);
+        Class<?> invokerClass = new InvokerClassLoader(procClass.getClassLoader()).define(className, bytes);
+        return ((ProcedureInvoker)invokerClass.newInstance());
+    }
+
+    /**
+     * Defines a single generated class. The parent is the procedure's ClassLoader
+     * so that the generated class can see the procedure and its parameter types
+     */
+    private static class InvokerClassLoader extends ClassLoader {
+        private InvokerClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+        private Class<?> define(String name, byte bytes[]) {
+            return (this.defineClass(name, bytes, 0, bytes.length));
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+    // CLASS FILE
+    // ----------------------------------------------------------------------------
+
+    protected static byte[] generateClass(String className, Class<?> procClass, Method procMethod) throws IOException {
+        ConstantPool cp = new ConstantPool();
+        int thisClass = cp.addClass(className);
+        int superClass = cp.addClass(OBJECT);
+        int invokerClass = cp.addClass(INVOKER);
+        int codeAttr = cp.addUtf8("Code");
+
+        // <init>
+        ByteArrayOutputStream initCode = new ByteArrayOutputStream();
+        initCode.write(0x2a); // aload_0
+        writeOp(initCode, 0xb7, cp.addMethodRef(OBJECT, "<init>", "()V")); // invokespecial
+        initCode.write(0xb1); // return
+
+        // invoke()
+        String procName = procClass.getName().replace('.', '/');
+        String runDesc = getDescriptor(procMethod);
+        Class<?> paramTypes[] = procMethod.getParameterTypes();
+        ByteArrayOutputStream invokeCode = new ByteArrayOutputStream();
+        int stack = 1;
+        int maxStack = 1;
+        invokeCode.write(0x2b); // aload_1
+        writeOp(invokeCode, 0xc0, cp.addClass(procName)); // checkcast
+        for (int i = 0; i < paramTypes.length; i++) {
+            invokeCode.write(0x2c); // aload_2
+            pushInt(invokeCode, cp, i);
+            invokeCode.write(0x32); // aaload
+            maxStack = Math.max(maxStack, stack + 2);
+            unbox(invokeCode, cp, paramTypes[i]);
+            stack += (paramTypes[i] == long.class || paramTypes[i] == double.class ? 2 : 1);
+            maxStack = Math.max(maxStack, stack);
+        } // FOR
+        writeOp(invokeCode, 0xb6, cp.addMethodRef(procName, procMethod.getName(), runDesc)); // invokevirtual
+        box(invokeCode, cp, procMethod.getReturnType());
+        maxStack = Math.max(maxStack, 2);
+        invokeCode.write(0xb0); // areturn
+
+        int initName = cp.addUtf8("<init>");
+        int initDesc = cp.addUtf8("()V");
+        int invokeName = cp.addUtf8(INVOKE_NAME);
+        int invokeDesc = cp.addUtf8(INVOKE_DESC);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(CLASS_MAJOR_VERSION);
+        cp.write(out);
+        out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1); // interfaces
+        out.writeShort(invokerClass);
+        out.writeShort(0); // fields
+        out.writeShort(2); // methods
+        writeMethod(out, initName, initDesc, codeAttr, 1, 1, initCode.toByteArray());
+        writeMethod(out, invokeName, invokeDesc, codeAttr, maxStack, 3, invokeCode.toByteArray());
+        out.writeShort(0); // attributes
+        out.flush();
+        return (bytes.toByteArray());
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int desc, int codeAttr,
+                                    int maxStack, int maxLocals, byte code[]) throws IOException {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(desc);
+        out.writeShort(1); // attributes
+        out.writeShort(codeAttr);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    private static void writeOp(ByteArrayOutputStream code, int op, int index) {
+        code.write(op);
+        code.write(index >> 8);
+        code.write(index);
+    }
+
+    private static void pushInt(ByteArrayOutputStream code, ConstantPool cp, int value) {
+        if (value <= 5) {
+            code.write(0x03 + value); // iconst_<n>
+        } else if (value <= Byte.MAX_VALUE) {
+            code.write(0x10); // bipush
+            code.write(value);
+        } else {
+            code.write(0x11); // sipush
+            code.write(value >> 8);
+            code.write(value);
+        }
+    }
+
+    /**
+     * Convert the Object on the top of the stack into the given parameter type.
+     * Numeric primitives are read through java.lang.Number, since tryToMakeCompatible()
+     * lets through smaller boxed types (e.g., an Integer for a long parameter).
+     */
+    private static void unbox(ByteArrayOutputStream code, ConstantPool cp, Class<?> type) {
+        if (type == boolean.class) {
+            writeOp(code, 0xc0, cp.addClass("java/lang/Boolean"));
+            writeOp(code, 0xb6, cp.addMethodRef("java/lang/Boolean", "booleanValue", "()Z"));
+        } else if (type == char.class) {
+            writeOp(code, 0xc0, cp.addClass("java/lang/Character"));
+            writeOp(code, 0xb6, cp.addMethodRef("java/lang/Character", "charValue", "()C"));
+        } else if (type.isPrimitive()) {
+            String desc = getDescriptor(type);
+            writeOp(code, 0xc0, cp.addClass(NUMBER));
+            writeOp(code, 0xb6, cp.addMethodRef(NUMBER, type.getName() + "Value", "()" + desc));
+        } else if (type != Object.class) {
+            String name = (type.isArray() ? getDescriptor(type) : type.getName().replace('.', '/'));
+            writeOp(code, 0xc0, cp.addClass(name)); // checkcast
+        }
+    }
+
+    /**
+     * Convert the value returned by run() into an Object
+     */
+    private static void box(ByteArrayOutputStream code, ConstantPool cp, Class<?> type) {
+        if (type == void.class) {
+            code.write(0x01); // aconst_null
+        } else if (type.isPrimitive()) {
+            String wrapper = null;
+            if (type == boolean.class) wrapper = "java/lang/Boolean";
+            else if (type == char.class) wrapper = "java/lang/Character";
+            else if (type == byte.class) wrapper = "java/lang/Byte";
+            else if (type == short.class) wrapper = "java/lang/Short";
+            else if (type == int.class) wrapper = "java/lang/Integer";
+            else if (type == long.class) wrapper = "java/lang/Long";
+            else if (type == float.class) wrapper = "java/lang/Float";
+            else wrapper = "java/lang/Double";
+            writeOp(code, 0xb8, cp.addMethodRef(wrapper, "valueOf", "(" + getDescriptor(type) + ")L" + wrapper + ";"));
+        }
+    }
+
+    protected static String getDescriptor(Method m) {
+        StringBuilder sb = new StringBuilder("(");
+        for (Class<?> type : m.getParameterTypes()) {
+            sb.append(getDescriptor(type));
+        } // FOR
+        return (sb.append(")").append(getDescriptor(m.getReturnType())).toString());
+    }
+
+    protected static String getDescriptor(Class<?> type) {
+        if (type.isArray()) return ("[" + getDescriptor(type.getComponentType()));
+        if (type == void.class) return ("V");
+        if (type == boolean.class) return ("Z");
+        if (type == byte.class) return ("B");
+        if (type == char.class) return ("C");
+        if (type == short.class) return ("S");
+        if (type == int.class) return ("I");
+        if (type == long.class) return ("J");
+        if (type == float.class) return ("F");
+        if (type == double.class) return ("D");
+        return ("L" + type.getName().replace('.', '/') + ";");
+    }
+
+    /**
+     * Constant pool entries for the generated class. We only need
+     * strings, classes, and method references.
+     */
+    private static class ConstantPool {
+        private final List<Object[]> entries = new ArrayList<Object[]>();
+        private final Map<String, Integer> index = new HashMap<String, Integer>();
+
+        private int add(String key, Object...entry) {
+            Integer idx = this.index.get(key);
+            if (idx == null) {
+                this.entries.add(entry);
+                idx = this.entries.size();
+                this.index.put(key, idx);
+            }
+            return (idx.intValue());
+        }
+        private int addUtf8(String value) {
+            return (this.add("U" + value, 1, value));
+        }
+        private int addClass(String name) {
+            int utf8 = this.addUtf8(name);
+            return (this.add("C" + name, 7, utf8));
+        }
+        private int addMethodRef(String owner, String name, String desc) {
+            int ownerIdx = this.addClass(owner);
+            int nameIdx = this.addUtf8(name);
+            int descIdx = this.addUtf8(desc);
+            int nameAndType = this.add("N" + name + desc, 12, nameIdx, descIdx);
+            return (this.add("M" + owner + "." + name + desc, 10, ownerIdx, nameAndType));
+        }
+        private void write(DataOutputStream out) throws IOException {
+            out.writeShort(this.entries.size() + 1);
+            for (Object entry[] : this.entries) {
+                int tag = (Integer)entry[0];
+                out.writeByte(tag);
+                if (tag == 1) {
+                    out.writeUTF((String)entry[1]);
+                } else {
+                    for (int i = 1; i < entry.length; i++) {
+                        out.writeShort((Integer)entry[i]);
+                    } // FOR
+                }
+            } // FOR
+        }
+    }
+}
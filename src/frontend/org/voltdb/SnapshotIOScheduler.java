@@ -0,0 +1,137 @@
+package org.voltdb;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * Controls how fast the SnapshotDataTargets are allowed to write snapshot data out to disk.
+ * The write rate is enforced with a token bucket that is shared by all of the targets
+ * in this JVM. Since the writes happen in the snapshot write service thread, a throttled
+ * write never blocks a partition. It only delays when the partition gets its snapshot
+ * buffer back, which means that it will not do any more snapshot work until then.
+ */
+public class SnapshotIOScheduler {
+    private static final Logger LOG = Logger.getLogger(SnapshotIOScheduler.class);
+    private final static LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private final static LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    private static SnapshotIOScheduler INSTANCE;
+
+    private final long bytes_per_sec;
+    private final long max_burst;
+    private final boolean write_through;
+
+    /**
+     * The number of bytes that can be written right now. This will be negative
+     * if a write took more than what was available and the next writer has to wait.
+     */
+    private long available;
+    private long last_refill;
+
+    private final AtomicLong bytes_written = new AtomicLong(0);
+    private final AtomicLong throttle_time = new AtomicLong(0);
+
+    /**
+     * Constructor
+     * @param mb_per_sec The max number of megabytes per second to write out (zero means no limit) 
+     * @param write_through Whether each chunk should be synced to disk right after it is written
+     */
+    public SnapshotIOScheduler(int mb_per_sec, boolean write_through) {
+        this.bytes_per_sec = Math.max(0, mb_per_sec) * 1024l * 1024l;
+        this.max_burst = Math.max(this.bytes_per_sec / 10, SnapshotSiteProcessor.m_snapshotBufferLength);
+        this.write_through = write_through;
+        this.available = this.max_burst;
+        this.last_refill = System.nanoTime();
+    }
+
+    public static synchronized SnapshotIOScheduler singleton() {
+        if (INSTANCE == null) {
+            HStoreConf hstore_conf = HStoreConf.singleton(true);
+            INSTANCE = new SnapshotIOScheduler(hstore_conf.site.snapshot_io_rate,
+                                               hstore_conf.site.snapshot_write_through);
+            if (debug.get())
+                LOG.debug(String.format("Created %s [rate=%dMB/s, writeThrough=%s]",
+                                        SnapshotIOScheduler.class.getSimpleName(),
+                                        hstore_conf.site.snapshot_io_rate,
+                                        INSTANCE.write_through));
+        }
+        return (INSTANCE);
+    }
+
+    // ----------------------------------------------------------------------------
+    // I/O RATE LIMITING
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Block until we are allowed to write out the given number of bytes.
+     * A write that is larger than what is currently available is allowed to go
+     * through right away, but then the next write will have to wait until 
+     * the bucket has been paid back.
+     * @param bytes
+     * @throws InterruptedException
+     */
+    public void acquire(int bytes) throws InterruptedException {
+        this.bytes_written.addAndGet(bytes);
+        if (this.bytes_per_sec == 0) return;
+
+        long wait = 0;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long refill = (long)((now - this.last_refill) / 1000000000d * this.bytes_per_sec);
+            if (refill > 0) {
+                this.available = Math.min(this.max_burst, this.available + refill);
+                this.last_refill = now;
+            }
+            if (this.available < 0) {
+                wait = -this.available * 1000000000l / this.bytes_per_sec;
+            }
+            this.available -= bytes;
+        } // SYNCH
+
+        if (wait > 0) {
+            if (trace.get())
+                LOG.trace(String.format("Throttling snapshot write of %d bytes for %.2f ms", bytes, wait / 1000000d));
+            this.throttle_time.addAndGet(wait);
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+    // ACCESS METHODS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Returns true if the snapshot targets should sync every chunk to disk as soon
+     * as it is written so that snapshot data does not build up in the page cache
+     */
+    public boolean isWriteThrough() {
+        return (this.write_through);
+    }
+
+    public long getBytesPerSecond() {
+        return (this.bytes_per_sec);
+    }
+
+    /**
+     * Returns the total number of bytes that have been passed to acquire()
+     */
+    public long getBytesWritten() {
+        return (this.bytes_written.get());
+    }
+
+    /**
+     * Returns the total amount of time (in nanoseconds) that writes were delayed
+     */
+    public long getThrottleTime() {
+        return (this.throttle_time.get());
+    }
+}
@@ -60,6 +60,7 @@ import edu.brown.hstore.dtxn.AbstractTransaction;
 import edu.brown.hstore.dtxn.LocalTransaction;
 import edu.brown.hstore.interfaces.Loggable;
 import edu.brown.hstore.util.ParameterSetArrayCache;
+import edu.brown.hstore.util.WorkloadSampler;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.markov.MarkovEdge;
@@ -114,6 +115,7 @@ public abstract class VoltProcedure implements Poolable, Loggable {
 
     // private members reserved exclusively to VoltProcedure
     private Method procMethod;
+    private ProcedureInvoker procInvoker = null;
     private boolean procMethodNoJava = false;
     private boolean procIsMapReduce = false;
     private Class<?>[] paramTypes;
@@ -128,6 +130,11 @@ public abstract class VoltProcedure implements Poolable, Loggable {
     // cached fake SQLStmt array for single statement non-java procs
     private SQLStmt[] m_cachedSingleStmt = { null };
 
+    // the fixed batch of a straight-line procedure and the index of the procedure
+    // parameter for each of the SQLStmts' parameters. This is null if we have to invoke run()
+    private SQLStmt[] straightLineStmts = null;
+    private int[][] straightLineParams = null;
+
     // Used to figure out what partitions a query needs to go to
     private Procedure catalog_proc;
     private String procedure_name;
@@ -162,6 +169,12 @@ public abstract class VoltProcedure implements Poolable, Loggable {
     private Object workloadTxnHandle = null;
     private Integer workloadBatchId = null;
     private List<Object> workloadQueryHandles;
+    
+    /**
+     * Sampling workload capture buffer for this procedure's partition.
+     * This will be null if sampling is disabled at this HStoreSite.
+     */
+    private WorkloadSampler.PartitionBuffer workloadSampleBuffer = null;
 
     // ----------------------------------------------------------------------------
     // INVOCATION MEMBERS
@@ -258,6 +271,14 @@ public abstract class VoltProcedure implements Poolable, Loggable {
             this.workloadQueryHandles = new ArrayList<Object>();
         }
         
+        // Sampling Workload Capture
+        // We can only write into the partition's buffer from its PartitionExecutor's thread 
+        if (this.hstore_site != null && this.hstore_site.getWorkloadSampler() != null &&
+            catalog_proc.getSystemproc() == false &&
+            this.hstore_site.getPartitionExecutor(this.partitionId) == executor) {
+            this.workloadSampleBuffer = this.hstore_site.getWorkloadSampler().getPartitionBuffer(this.partitionId);
+        }
+        
         this.t_estimator = this.executor.getTransactionEstimator();
         this.p_estimator = p_estimator;
         
@@ -344,6 +365,11 @@ public abstract class VoltProcedure implements Poolable, Loggable {
             if (procMethod == null) {
                 LOG.fatal("No good method found in: " + getClass().getName());
             }
+            // Call run() through a generated invoker instead of reflection
+            else if (procIsMapReduce == false && catalog_proc.getSystemproc() == false &&
+                     hstore_conf.site.exec_procedure_invokers) {
+                this.procInvoker = ProcedureInvokerGenerator.getInvoker(getClass(), procMethod);
+            }
 
             Field[] fields = getClass().getFields();
             for (final Field f : fields) {
@@ -412,6 +438,127 @@ public abstract class VoltProcedure implements Poolable, Loggable {
                 paramTypeComponentType[param.getIndex()] = null;
             }
         }
+        
+        // Straight-Line Procedures
+        // We can't use the precomputed batch if we need to trace what run() does
+        if (catalog_proc.getStraightline() && hstore_conf.site.exec_straightline_procedures &&
+            this.isNative && this.workloadTraceEnable == false) {
+            this.initStraightLine();
+        }
+    }
+    
+    /**
+     * Build the fixed batch of SQLStmts for a straight-line procedure
+     */
+    private void initStraightLine() {
+        CatalogMap<Statement> catalog_stmts = this.catalog_proc.getStatements();
+        int batchSize = 0;
+        for (Statement catalog_stmt : catalog_stmts) {
+            if (catalog_stmt.getStraightlineindex() >= 0) batchSize++;
+        } // FOR
+        if (batchSize == 0 || batchSize > this.batchQueryStmts.length) return;
+        
+        SQLStmt batchStmts[] = new SQLStmt[batchSize];
+        int batchParams[][] = new int[batchSize][];
+        for (Statement catalog_stmt : catalog_stmts) {
+            int idx = catalog_stmt.getStraightlineindex();
+            if (idx < 0) continue;
+            SQLStmt stmt = (this.procMethodNoJava ? this.m_cachedSingleStmt[0] : this.stmts.get(catalog_stmt.getName()));
+            if (idx >= batchSize || stmt == null) {
+                LOG.warn(String.format("Invalid straight-line batch for %s. Will invoke run() instead", this.procedure_name));
+                return;
+            }
+            batchStmts[idx] = stmt;
+            batchParams[idx] = new int[catalog_stmt.getParameters().size()];
+            for (StmtParameter catalog_param : catalog_stmt.getParameters()) {
+                // The whole value of the ProcParameter has to be passed to the query,
+                // so we can't use arrays here
+                ProcParameter catalog_proc_param = this.catalog_proc.getParameters().get(catalog_param.getStraightlineprocparameter());
+                if (catalog_proc_param == null || catalog_proc_param.getIsarray() ||
+                    catalog_param.getIndex() >= batchParams[idx].length) {
+                    LOG.warn(String.format("Invalid straight-line parameter mapping for %s. Will invoke run() instead",
+                                           CatalogUtil.getDisplayName(catalog_param)));
+                    return;
+                }
+                batchParams[idx][catalog_param.getIndex()] = catalog_proc_param.getIndex();
+            } // FOR
+        } // FOR
+        this.straightLineStmts = batchStmts;
+        this.straightLineParams = batchParams;
+        if (d) LOG.debug(String.format("%s is a straight-line procedure with %d statements", this.procedure_name, batchSize));
+    }
+    
+    /**
+     * Returns true if this procedure will execute its fixed batch of queries
+     * without invoking its run() method
+     * @return
+     */
+    public boolean isStraightLine() {
+        return (this.straightLineStmts != null);
+    }
+
+    /**
+     * Returns the fixed batch of SQLStmts for a straight-line procedure
+     * @return
+     */
+    public SQLStmt[] getStraightLineStatements() {
+        return (this.straightLineStmts);
+    }
+
+    /**
+     * Build the clean ParameterSets for the fixed batch of a straight-line procedure
+     * without invoking it. This will return null if the given procedure parameters
+     * are not valid, since the txn will need to find out about that in call()
+     * @param paramList
+     * @return
+     */
+    public ParameterSet[] getStraightLineParameterSets(Object paramList[]) {
+        assert(this.straightLineStmts != null) : this.procedure_name + " is not straight-line";
+        if (paramList.length != this.paramTypesLength) return (null);
+
+        Object procParams[] = new Object[paramList.length];
+        try {
+            for (int i = 0; i < procParams.length; i++) {
+                procParams[i] = tryToMakeCompatible(i, paramList[i]);
+            } // FOR
+        } catch (Exception ex) {
+            return (null);
+        }
+
+        ParameterSet params[] = new ParameterSet[this.straightLineStmts.length];
+        for (int i = 0; i < params.length; i++) {
+            int map[] = this.straightLineParams[i];
+            Object args[] = new Object[map.length];
+            for (int j = 0; j < args.length; j++) {
+                args[j] = procParams[map[j]];
+            } // FOR
+            try {
+                params[i] = getCleanParams(this.straightLineStmts[i], args);
+            } catch (ExpectedProcedureException ex) {
+                return (null);
+            }
+        } // FOR
+        return (params);
+    }
+
+    /**
+     * Queue up the fixed batch of a straight-line procedure using the
+     * current procedure parameters and then execute it
+     * @return
+     */
+    private VoltTable[] executeStraightLine() {
+        for (int i = 0; i < this.straightLineStmts.length; i++) {
+            int map[] = this.straightLineParams[i];
+            Object args[] = new Object[map.length];
+            for (int j = 0; j < args.length; j++) {
+                args[j] = this.procParams[map[j]];
+            } // FOR
+            this.batchQueryStmts[i] = this.straightLineStmts[i];
+            this.batchQueryArgs[i] = args;
+        } // FOR
+        this.batchQueryStmtIndex = this.straightLineStmts.length;
+        this.batchQueryArgsIndex = this.straightLineStmts.length;
+        return (this.voltExecuteSQL(true));
     }
     
     protected SQLStmt getSQLStmt(String name) {
@@ -573,9 +720,12 @@ public abstract class VoltProcedure implements Poolable, Loggable {
             this.workloadQueryHandles.clear();
             this.workloadTxnHandle = ProcedureProfiler.workloadTrace.startTransaction(this.m_currentTxnState.getTransactionId(), catalog_proc, this.procParams);
         }
+        if (this.workloadSampleBuffer != null) {
+            this.workloadSampleBuffer.startTransaction(this.m_currentTxnState.getTransactionId(), catalog_proc, this.procParams);
+        }
 
         // Fix to make no-Java procedures work
-        if (procMethodNoJava || procIsMapReduce) this.procParams = new Object[] { this.procParams } ;
+        if ((procMethodNoJava || procIsMapReduce) && this.straightLineStmts == null) this.procParams = new Object[] { this.procParams } ;
         
         if (hstore_conf.site.txn_profiling) this.m_localTxnState.profiler.startExecJava();
         try {
@@ -584,8 +734,21 @@ public abstract class VoltProcedure implements Poolable, Loggable {
                                            this.procParams + Arrays.toString(this.procParams),
                                            this.partitionId));
             try {
-                Object rawResult = procMethod.invoke(this, this.procParams);
-                this.results = getResultsFromRawResults(rawResult);
+                if (this.straightLineStmts != null) {
+                    this.results = this.executeStraightLine();
+                } else if (this.procInvoker != null) {
+                    Object rawResult = null;
+                    try {
+                        rawResult = this.procInvoker.invoke(this, this.procParams);
+                    } catch (Throwable ex) {
+                        // Handle this the same way as if it came out of Method.invoke()
+                        throw new InvocationTargetException(ex);
+                    }
+                    this.results = getResultsFromRawResults(rawResult);
+                } else {
+                    Object rawResult = procMethod.invoke(this, this.procParams);
+                    this.results = getResultsFromRawResults(rawResult);
+                }
                 if (this.results == null) results = HStoreConstants.EMPTY_RESULT;
             } catch (IllegalAccessException e) {
                 // If reflection fails, invoke the same error handling that other exceptions do
@@ -701,6 +864,15 @@ public abstract class VoltProcedure implements Poolable, Loggable {
             }
         }
 
+        // Sampling Workload Capture - Only keep txns that committed or aborted on their own
+        if (this.workloadSampleBuffer != null && this.workloadSampleBuffer.isActive()) {
+            if (this.status == Status.OK || this.status == Status.ABORT_USER) {
+                this.workloadSampleBuffer.stopTransaction(this.status == Status.ABORT_USER);
+            } else {
+                this.workloadSampleBuffer.discardTransaction();
+            }
+        }
+
         // This should never happen
         if (this.results == null) {
             throw new RuntimeException("We got back a null result from " + this.m_currentTxnState);
@@ -1005,6 +1177,8 @@ public abstract class VoltProcedure implements Poolable, Loggable {
 
         // Execute the queries and return the VoltTable results
         last_batchQueryStmtIndex = batchQueryStmtIndex;
+        boolean sampleBatch = (this.workloadSampleBuffer != null && this.workloadSampleBuffer.isActive());
+        long sampleStart = (sampleBatch ? System.nanoTime() : 0);
 
         VoltTable[] retval = null;
         try {
@@ -1039,6 +1213,10 @@ public abstract class VoltProcedure implements Poolable, Loggable {
             workloadQueryHandles.clear();
         }
 
+        if (sampleBatch) {
+            this.workloadSampleBuffer.recordBatch(batchQueryStmts, batchQueryArgs, batchQueryStmtIndex, sampleStart);
+        }
+
         batchQueryStmtIndex = 0;
         batchQueryArgsIndex = 0;
         
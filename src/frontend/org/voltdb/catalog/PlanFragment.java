@@ -34,6 +34,7 @@ public class PlanFragment extends CatalogType {
     boolean m_nontransactional;
     boolean m_fastaggregate;
     boolean m_fastcombine;
+    boolean m_vectorized;
 
     void setBaseValues(Catalog catalog, CatalogType parent, String path, String name) {
         super.setBaseValues(catalog, parent, path, name);
@@ -45,6 +46,7 @@ public class PlanFragment extends CatalogType {
         this.addField("nontransactional", m_nontransactional);
         this.addField("fastaggregate", m_fastaggregate);
         this.addField("fastcombine", m_fastcombine);
+        this.addField("vectorized", m_vectorized);
     }
 
     public void update() {
@@ -56,6 +58,7 @@ public class PlanFragment extends CatalogType {
         m_nontransactional = (Boolean) m_fields.get("nontransactional");
         m_fastaggregate = (Boolean) m_fields.get("fastaggregate");
         m_fastcombine = (Boolean) m_fields.get("fastcombine");
+        m_vectorized = (Boolean) m_fields.get("vectorized");
     }
 
     /** GETTER: Unique Id for this PlanFragment */
@@ -98,6 +101,11 @@ public class PlanFragment extends CatalogType {
         return m_fastcombine;
     }
 
+    /** GETTER: Whether this PlanFragment is a scan pipeline that the EE can execute batch-at-a-time */
+    public boolean getVectorized() {
+        return m_vectorized;
+    }
+
     /** SETTER: Unique Id for this PlanFragment */
     public void setId(int value) {
         m_id = value; m_fields.put("id", value);
@@ -138,4 +146,9 @@ public class PlanFragment extends CatalogType {
         m_fastcombine = value; m_fields.put("fastcombine", value);
     }
 
+    /** SETTER: Whether this PlanFragment is a scan pipeline that the EE can execute batch-at-a-time */
+    public void setVectorized(boolean value) {
+        m_vectorized = value; m_fields.put("vectorized", value);
+    }
+
 }
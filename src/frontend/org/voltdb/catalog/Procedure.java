@@ -42,6 +42,7 @@ public class Procedure extends CatalogType {
     String m_reduceInputQuery = new String();
     String m_reduceEmitTable = new String();
     boolean m_hasjava;
+    boolean m_straightline;
     int m_partitionparameter;
     CatalogMap<AuthProgram> m_authPrograms;
     CatalogMap<Statement> m_statements;
@@ -67,6 +68,7 @@ public class Procedure extends CatalogType {
         this.addField("reduceInputQuery", m_reduceInputQuery);
         this.addField("reduceEmitTable", m_reduceEmitTable);
         this.addField("hasjava", m_hasjava);
+        this.addField("straightline", m_straightline);
         this.addField("partitiontable", null);
         this.addField("partitioncolumn", null);
         this.addField("partitionparameter", m_partitionparameter);
@@ -93,6 +95,7 @@ public class Procedure extends CatalogType {
         m_reduceInputQuery = (String) m_fields.get("reduceInputQuery");
         m_reduceEmitTable = (String) m_fields.get("reduceEmitTable");
         m_hasjava = (Boolean) m_fields.get("hasjava");
+        m_straightline = (Boolean) m_fields.get("straightline");
         m_partitionparameter = (Integer) m_fields.get("partitionparameter");
     }
 
@@ -176,6 +179,11 @@ public class Procedure extends CatalogType {
         return m_hasjava;
     }
 
+    /** GETTER: Does this Procedure only execute one fixed batch of Statements whose parameters come directly from its input parameters? */
+    public boolean getStraightline() {
+        return m_straightline;
+    }
+
     /** GETTER: Which table contains the partition column for this procedure? */
     public Table getPartitiontable() {
         Object o = getField("partitiontable");
@@ -292,6 +300,11 @@ public class Procedure extends CatalogType {
         m_hasjava = value; m_fields.put("hasjava", value);
     }
 
+    /** SETTER: Does this Procedure only execute one fixed batch of Statements whose parameters come directly from its input parameters? */
+    public void setStraightline(boolean value) {
+        m_straightline = value; m_fields.put("straightline", value);
+    }
+
     /** SETTER: Which table contains the partition column for this procedure? */
     public void setPartitiontable(Table value) {
         m_fields.put("partitiontable", value);
@@ -37,6 +37,7 @@ public class Statement extends CatalogType {
     boolean m_secondaryindex;
     boolean m_prefetchable;
     boolean m_deferrable;
+    int m_straightlineindex;
     int m_paramnum;
     CatalogMap<StmtParameter> m_parameters;
     CatalogMap<Column> m_output_columns;
@@ -63,6 +64,7 @@ public class Statement extends CatalogType {
         this.addField("secondaryindex", m_secondaryindex);
         this.addField("prefetchable", m_prefetchable);
         this.addField("deferrable", m_deferrable);
+        this.addField("straightlineindex", m_straightlineindex);
         this.addField("paramnum", m_paramnum);
         m_parameters = new CatalogMap<StmtParameter>(catalog, this, path + "/" + "parameters", StmtParameter.class);
         m_childCollections.put("parameters", m_parameters);
@@ -93,6 +95,7 @@ public class Statement extends CatalogType {
         m_secondaryindex = (Boolean) m_fields.get("secondaryindex");
         m_prefetchable = (Boolean) m_fields.get("prefetchable");
         m_deferrable = (Boolean) m_fields.get("deferrable");
+        m_straightlineindex = (Integer) m_fields.get("straightlineindex");
         m_paramnum = (Integer) m_fields.get("paramnum");
         m_has_singlesited = (Boolean) m_fields.get("has_singlesited");
         m_exptree = (String) m_fields.get("exptree");
@@ -155,6 +158,11 @@ public class Statement extends CatalogType {
         return m_deferrable;
     }
 
+    /** GETTER: The position of this Statement in its Procedure's straight-line batch */
+    public int getStraightlineindex() {
+        return m_straightlineindex;
+    }
+
     public int getParamnum() {
         return m_paramnum;
     }
@@ -266,6 +274,11 @@ public class Statement extends CatalogType {
         m_deferrable = value; m_fields.put("deferrable", value);
     }
 
+    /** SETTER: The position of this Statement in its Procedure's straight-line batch */
+    public void setStraightlineindex(int value) {
+        m_straightlineindex = value; m_fields.put("straightlineindex", value);
+    }
+
     public void setParamnum(int value) {
         m_paramnum = value; m_fields.put("paramnum", value);
     }
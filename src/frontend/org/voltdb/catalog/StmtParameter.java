@@ -30,6 +30,7 @@ public class StmtParameter extends CatalogType {
     int m_javatype;
     int m_index;
     int m_procparameteroffset;
+    int m_straightlineprocparameter;
 
     void setBaseValues(Catalog catalog, CatalogType parent, String path, String name) {
         super.setBaseValues(catalog, parent, path, name);
@@ -38,6 +39,7 @@ public class StmtParameter extends CatalogType {
         this.addField("index", m_index);
         this.addField("procparameter", null);
         this.addField("procparameteroffset", m_procparameteroffset);
+        this.addField("straightlineprocparameter", m_straightlineprocparameter);
     }
 
     public void update() {
@@ -45,6 +47,7 @@ public class StmtParameter extends CatalogType {
         m_javatype = (Integer) m_fields.get("javatype");
         m_index = (Integer) m_fields.get("index");
         m_procparameteroffset = (Integer) m_fields.get("procparameteroffset");
+        m_straightlineprocparameter = (Integer) m_fields.get("straightlineprocparameter");
     }
 
     /** GETTER: The SQL type of the parameter (int/float/date/etc) */
@@ -80,6 +83,11 @@ public class StmtParameter extends CatalogType {
         return m_procparameteroffset;
     }
 
+    /** GETTER: The index of the ProcParameter that is passed to this parameter in its Procedure's straight-line batch */
+    public int getStraightlineprocparameter() {
+        return m_straightlineprocparameter;
+    }
+
     /** SETTER: The SQL type of the parameter (int/float/date/etc) */
     public void setSqltype(int value) {
         m_sqltype = value; m_fields.put("sqltype", value);
@@ -105,4 +113,9 @@ public class StmtParameter extends CatalogType {
         m_procparameteroffset = value; m_fields.put("procparameteroffset", value);
     }
 
+    /** SETTER: The index of the ProcParameter that is passed to this parameter in its Procedure's straight-line batch */
+    public void setStraightlineprocparameter(int value) {
+        m_straightlineprocparameter = value; m_fields.put("straightlineprocparameter", value);
+    }
+
 }
@@ -258,6 +258,12 @@ public abstract class ProcedureCompiler {
 
         Class<?>[] paramTypes = populateProcedureParameters(compiler, procClass, procedure);
 
+        // check whether we can execute this procedure's batch without invoking its Java code
+        procedure.setStraightline(false);
+        if (procedure.getMapreduce() == false) {
+            StraightLineProcedureAnalyzer.analyze(procClass, procedure);
+        }
+
         // parse the procinfo
         procedure.setSinglepartition(info.singlePartition);
         if (info.partitionInfo != null && info.partitionInfo.isEmpty() == false) {
@@ -485,6 +491,15 @@ public abstract class ProcedureCompiler {
             i++;
         }
 
+        // single statement procedures are always straight-line, since each parameter
+        // is passed directly to the statement
+        int stmtParamMap[] = new int[i];
+        for (int j = 0; j < stmtParamMap.length; j++) {
+            stmtParamMap[j] = j;
+        }
+        StraightLineProcedureAnalyzer.mapParameters(procedure, catalogStmt, 0, stmtParamMap);
+        procedure.setStraightline(true);
+
         // parse the procinfo
         procedure.setSinglepartition(info.singlePartition);
         if (info.singlePartition) {
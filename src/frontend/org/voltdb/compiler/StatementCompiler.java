@@ -42,9 +42,13 @@ import org.voltdb.planner.QueryPlanner;
 import org.voltdb.planner.TrivialCostModel;
 import org.voltdb.plannodes.AbstractPlanNode;
 import org.voltdb.plannodes.AbstractScanPlanNode;
+import org.voltdb.plannodes.AggregatePlanNode;
 import org.voltdb.plannodes.DeletePlanNode;
 import org.voltdb.plannodes.InsertPlanNode;
 import org.voltdb.plannodes.PlanNodeList;
+import org.voltdb.plannodes.ProjectionPlanNode;
+import org.voltdb.plannodes.SendPlanNode;
+import org.voltdb.plannodes.SeqScanPlanNode;
 import org.voltdb.plannodes.UpdatePlanNode;
 import org.voltdb.types.QueryType;
 import org.voltdb.utils.BuildDirectoryUtils;
@@ -282,6 +286,7 @@ public abstract class StatementCompiler {
                 planFragment.setReadonly(readonly);
                 planFragment.setHasdependencies(fragment.hasDependencies);
                 planFragment.setMultipartition(fragment.multiPartition);
+                planFragment.setVectorized(fragmentVectorizable(fragment.planGraph));
                 planFragment.setId(id);
 
                 String json = null;
@@ -431,4 +436,27 @@ public abstract class StatementCompiler {
         // if nothing found, return true
         return true;
     }
+    
+    /**
+     * Check through a plan graph and return true if it is a single scan
+     * pipeline that the EE can execute batch-at-a-time. The leaf must be a
+     * SeqScan and every node above it must be a Projection, an Aggregate,
+     * or the final Send.
+     */
+    static boolean fragmentVectorizable(AbstractPlanNode node) {
+        if (node == null)
+            return false;
+
+        if (node instanceof SeqScanPlanNode)
+            return (node.getChildPlanNodeCount() == 0);
+        if ((node instanceof SendPlanNode ||
+             node instanceof ProjectionPlanNode ||
+             node instanceof AggregatePlanNode) == false)
+            return false;
+
+        // there can only be one input coming up the pipeline
+        if (node.getChildPlanNodeCount() != 1)
+            return false;
+        return fragmentVectorizable(node.getChild(0));
+    }
 }
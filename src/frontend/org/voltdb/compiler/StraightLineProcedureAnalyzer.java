@@ -0,0 +1,520 @@
+package org.voltdb.compiler;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.voltdb.catalog.ProcParameter;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.StmtParameter;
+
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * Figures out whether a stored procedure is "straight-line", which means that its run()
+ * method queues up a fixed batch of SQLStmts whose parameters are all taken directly from
+ * the procedure's input parameters, executes that batch, and then returns the results.
+ * We check this by walking through the bytecode of the run() method. We only accept the
+ * handful of instructions that javac generates for this kind of method. Anything else
+ * (branches, loops, other method calls, exception handlers) means that the procedure
+ * needs to have its Java code invoked. Since every Statement in a straight-line procedure's
+ * batch is known ahead of time, the PartitionExecutor can plan and execute the batch
+ * without ever invoking the procedure's Java code.
+ */
+public abstract class StraightLineProcedureAnalyzer {
+    private static final Logger LOG = Logger.getLogger(StraightLineProcedureAnalyzer.class);
+    private final static LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private final static LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    private static final String SQLSTMT_DESC = "Lorg/voltdb/SQLStmt;";
+    private static final String QUEUE_NAME = "voltQueueSQL";
+    private static final String QUEUE_DESC = "(Lorg/voltdb/SQLStmt;[Ljava/lang/Object;)V";
+    private static final String EXECUTE_NAME = "voltExecuteSQL";
+    private static final String EXECUTE_DESC = "()[Lorg/voltdb/VoltTable;";
+    private static final String EXECUTE_FINAL_DESC = "(Z)[Lorg/voltdb/VoltTable;";
+    private static final String RUN_RETURN_DESC = ")[Lorg/voltdb/VoltTable;";
+    private static final String VALUEOF_NAME = "valueOf";
+
+    /**
+     * The primitive wrapper classes whose valueOf() calls javac inserts when
+     * passing primitive procedure parameters to voltQueueSQL()
+     */
+    private static final Set<String> BOXING_CLASSES = new HashSet<String>();
+    static {
+        for (String c : new String[]{ "Byte", "Short", "Integer", "Long", "Float", "Double", "Boolean" }) {
+            BOXING_CLASSES.add("java/lang/" + c);
+        } // FOR
+    }
+
+    /**
+     * A SQLStmt that gets queued in a straight-line procedure's batch
+     */
+    public static class QueuedStatement {
+        /** The name of the SQLStmt field */
+        public final String name;
+        /** The index of the procedure parameter used for each of the SQLStmt's parameters */
+        public final int params[];
+
+        private QueuedStatement(String name, int params[]) {
+            this.name = name;
+            this.params = params;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(this.name).append("(");
+            for (int i = 0; i < this.params.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append("param").append(this.params[i]);
+            } // FOR
+            return (sb.append(")").toString());
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+    // CATALOG
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Check whether the given Java stored procedure is straight-line. If it is, then the catalog
+     * will be updated with the position of each Statement in its batch and the index of the
+     * ProcParameter used for each StmtParameter.
+     * @param procClass
+     * @param catalog_proc
+     * @return true if the procedure was marked as straight-line
+     */
+    public static boolean analyze(Class<?> procClass, Procedure catalog_proc) {
+        List<QueuedStatement> batch = null;
+        try {
+            batch = analyze(procClass);
+        } catch (IOException ex) {
+            LOG.warn("Failed to read the bytecode for " + procClass.getName(), ex);
+        }
+        if (batch == null) {
+            if (debug.get()) LOG.debug(catalog_proc.getName() + " is not a straight-line procedure");
+            return (false);
+        }
+
+        // Make sure that everything lines up with what is in the catalog
+        // before we change anything
+        Statement catalog_stmts[] = new Statement[batch.size()];
+        for (int i = 0; i < catalog_stmts.length; i++) {
+            QueuedStatement queued = batch.get(i);
+            catalog_stmts[i] = catalog_proc.getStatements().get(queued.name);
+            if (catalog_stmts[i] == null || catalog_stmts[i].getParameters().size() != queued.params.length) {
+                if (debug.get()) LOG.debug(String.format("%s queues %s but it does not match the catalog",
+                                                         catalog_proc.getName(), queued));
+                return (false);
+            }
+            // The whole value of a ProcParameter has to get passed to the StmtParameter
+            for (int param : queued.params) {
+                ProcParameter catalog_param = catalog_proc.getParameters().get(param);
+                if (catalog_param == null || catalog_param.getIsarray()) return (false);
+            } // FOR
+        } // FOR
+
+        for (Statement catalog_stmt : catalog_proc.getStatements()) {
+            catalog_stmt.setStraightlineindex(-1);
+        } // FOR
+        for (int i = 0; i < catalog_stmts.length; i++) {
+            mapParameters(catalog_proc, catalog_stmts[i], i, batch.get(i).params);
+        } // FOR
+        catalog_proc.setStraightline(true);
+        if (debug.get()) LOG.debug(String.format("%s is a straight-line procedure: %s", catalog_proc.getName(), batch));
+        return (true);
+    }
+
+    /**
+     * Set the Statement's position in its Procedure's straight-line batch
+     * and map each of its StmtParameters to a ProcParameter. We don't use
+     * StmtParameter.procparameter for this, since that is only a best guess
+     * that can get overwritten by the parameter mappings.
+     * @param catalog_proc
+     * @param catalog_stmt
+     * @param index
+     * @param params The ProcParameter index for each StmtParameter (in the order of their indexes)
+     */
+    public static void mapParameters(Procedure catalog_proc, Statement catalog_stmt, int index, int params[]) {
+        catalog_stmt.setStraightlineindex(index);
+        for (StmtParameter stmt_param : catalog_stmt.getParameters()) {
+            int param = params[stmt_param.getIndex()];
+            assert(catalog_proc.getParameters().get(param) != null) :
+                "Invalid ProcParameter #" + param + " for " + catalog_stmt.fullName();
+            stmt_param.setStraightlineprocparameter(param);
+        } // FOR
+    }
+
+    // ----------------------------------------------------------------------------
+    // BYTECODE
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Placeholders for the values on the operand stack and in the local variables
+     */
+    private static final Object THIS = new Object();
+    private static final Object RESULT = new Object();
+    private static class Param {
+        private final int index;
+        private Param(int index) { this.index = index; }
+    }
+    private static class Int {
+        private final int value;
+        private Int(int value) { this.value = value; }
+    }
+    private static class Stmt {
+        private final String name;
+        private Stmt(String name) { this.name = name; }
+    }
+    private static class Args {
+        private final Param params[];
+        private Args(int size) { this.params = new Param[size]; }
+    }
+
+    /**
+     * Thrown when we hit something in the bytecode that a straight-line procedure can't have
+     */
+    private static class NotStraightLine extends Exception {
+        private static final long serialVersionUID = 1L;
+        private NotStraightLine(String msg) { super(msg); }
+    }
+
+    /**
+     * Returns the batch that the given procedure's run() method queues up and executes
+     * or null if the procedure is not straight-line.
+     * @param procClass
+     * @return
+     * @throws IOException
+     */
+    public static List<QueuedStatement> analyze(Class<?> procClass) throws IOException {
+        String resource = "/" + procClass.getName().replace('.', '/') + ".class";
+        InputStream in = procClass.getResourceAsStream(resource);
+        if (in == null) {
+            LOG.warn("Unable to find the bytecode for " + procClass.getName());
+            return (null);
+        }
+        try {
+            ClassFile cf = new ClassFile(new DataInputStream(in));
+            if (cf.runCode == null) return (null);
+            return (simulate(cf));
+        } catch (NotStraightLine ex) {
+            if (trace.get()) LOG.trace(procClass.getSimpleName() + " is not straight-line: " + ex.getMessage());
+            return (null);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Walk through the run() method's bytecode and keep track of what is on the operand stack
+     * @param cf
+     * @return
+     * @throws NotStraightLine
+     */
+    private static List<QueuedStatement> simulate(ClassFile cf) throws NotStraightLine {
+        List<QueuedStatement> batch = new ArrayList<QueuedStatement>();
+        Set<String> queued = new HashSet<String>();
+        boolean executed = false;
+
+        Object locals[] = new Object[cf.runMaxLocals];
+        locals[0] = THIS;
+        String desc = cf.runDesc;
+        int slot = 1;
+        int param = 0;
+        for (int i = 1; desc.charAt(i) != ')'; i++, param++) {
+            char c = desc.charAt(i);
+            boolean array = false;
+            while (c == '[') {
+                array = true;
+                c = desc.charAt(++i);
+            }
+            if (c == 'L') i = desc.indexOf(';', i);
+            // Arrays can't be passed straight through to a SQLStmt, so we leave them out
+            if (array == false) locals[slot] = new Param(param);
+            slot += (array == false && (c == 'J' || c == 'D') ? 2 : 1);
+        } // FOR
+        if (desc.endsWith(RUN_RETURN_DESC) == false) {
+            throw new NotStraightLine("run() does not return VoltTable[]");
+        }
+
+        byte code[] = cf.runCode;
+        List<Object> stack = new ArrayList<Object>();
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc] & 0xFF;
+            switch (op) {
+                case 0x00: // nop
+                    pc += 1;
+                    break;
+                // iconst_m1 ... iconst_5
+                case 0x02: case 0x03: case 0x04: case 0x05: case 0x06: case 0x07: case 0x08:
+                    stack.add(new Int(op - 0x03));
+                    pc += 1;
+                    break;
+                case 0x10: // bipush
+                    stack.add(new Int(code[pc+1]));
+                    pc += 2;
+                    break;
+                case 0x11: // sipush
+                    stack.add(new Int((short)(((code[pc+1] & 0xFF) << 8) | (code[pc+2] & 0xFF))));
+                    pc += 3;
+                    break;
+                // iload, lload, fload, dload, aload
+                case 0x15: case 0x16: case 0x17: case 0x18: case 0x19:
+                    stack.add(load(locals, code[pc+1] & 0xFF));
+                    pc += 2;
+                    break;
+                // iload_<n>, lload_<n>, fload_<n>, dload_<n>, aload_<n>
+                case 0x1a: case 0x1b: case 0x1c: case 0x1d:
+                case 0x1e: case 0x1f: case 0x20: case 0x21:
+                case 0x22: case 0x23: case 0x24: case 0x25:
+                case 0x26: case 0x27: case 0x28: case 0x29:
+                case 0x2a: case 0x2b: case 0x2c: case 0x2d:
+                    stack.add(load(locals, (op - 0x1a) % 4));
+                    pc += 1;
+                    break;
+                case 0x3a: // astore
+                    locals[code[pc+1] & 0xFF] = pop(stack);
+                    pc += 2;
+                    break;
+                case 0x4b: case 0x4c: case 0x4d: case 0x4e: // astore_<n>
+                    locals[op - 0x4b] = pop(stack);
+                    pc += 1;
+                    break;
+                case 0x53: { // aastore
+                    Object value = pop(stack);
+                    Int index = pop(stack, Int.class);
+                    Args args = pop(stack, Args.class);
+                    if ((value instanceof Param) == false) {
+                        throw new NotStraightLine("SQLStmt parameter is not a procedure parameter");
+                    }
+                    args.params[index.value] = (Param)value;
+                    pc += 1;
+                    break;
+                }
+                case 0x57: // pop
+                    pop(stack);
+                    pc += 1;
+                    break;
+                case 0x59: // dup
+                    stack.add(stack.get(stack.size() - 1));
+                    pc += 1;
+                    break;
+                case 0xb0: { // areturn
+                    if (pop(stack) != RESULT || executed == false) {
+                        throw new NotStraightLine("run() does not return the batch's results");
+                    }
+                    return (batch.isEmpty() ? null : batch);
+                }
+                case 0xb4: { // getfield
+                    String ref[] = cf.getMemberRef(u2(code, pc+1));
+                    if (pop(stack) != THIS || ref[2].equals(SQLSTMT_DESC) == false) {
+                        throw new NotStraightLine("Unexpected field " + ref[1]);
+                    }
+                    stack.add(new Stmt(ref[1]));
+                    pc += 3;
+                    break;
+                }
+                case 0xb6: { // invokevirtual
+                    String ref[] = cf.getMemberRef(u2(code, pc+1));
+                    if (ref[1].equals(QUEUE_NAME) && ref[2].equals(QUEUE_DESC)) {
+                        if (executed) throw new NotStraightLine("Multiple batches");
+                        Args args = pop(stack, Args.class);
+                        Stmt stmt = pop(stack, Stmt.class);
+                        if (pop(stack) != THIS) throw new NotStraightLine("Unexpected " + QUEUE_NAME + "() target");
+                        if (queued.add(stmt.name) == false) {
+                            throw new NotStraightLine(stmt.name + " is queued more than once");
+                        }
+                        int params[] = new int[args.params.length];
+                        for (int i = 0; i < params.length; i++) {
+                            if (args.params[i] == null) throw new NotStraightLine("Missing parameter for " + stmt.name);
+                            params[i] = args.params[i].index;
+                        } // FOR
+                        batch.add(new QueuedStatement(stmt.name, params));
+                    } else if (ref[1].equals(EXECUTE_NAME) && (ref[2].equals(EXECUTE_DESC) || ref[2].equals(EXECUTE_FINAL_DESC))) {
+                        if (executed) throw new NotStraightLine("Multiple batches");
+                        if (ref[2].equals(EXECUTE_FINAL_DESC)) pop(stack, Int.class);
+                        if (pop(stack) != THIS) throw new NotStraightLine("Unexpected " + EXECUTE_NAME + "() target");
+                        stack.add(RESULT);
+                        executed = true;
+                    } else {
+                        throw new NotStraightLine("Unexpected method call " + ref[0] + "." + ref[1]);
+                    }
+                    pc += 3;
+                    break;
+                }
+                case 0xb8: { // invokestatic
+                    String ref[] = cf.getMemberRef(u2(code, pc+1));
+                    if (BOXING_CLASSES.contains(ref[0]) == false || ref[1].equals(VALUEOF_NAME) == false ||
+                        ref[2].startsWith("(L")) {
+                        throw new NotStraightLine("Unexpected method call " + ref[0] + "." + ref[1]);
+                    }
+                    // Boxing a procedure parameter doesn't change where the value came from
+                    Param p = pop(stack, Param.class);
+                    stack.add(p);
+                    pc += 3;
+                    break;
+                }
+                case 0xbd: { // anewarray
+                    Int size = pop(stack, Int.class);
+                    if (size.value < 0) throw new NotStraightLine("Negative array size");
+                    stack.add(new Args(size.value));
+                    pc += 3;
+                    break;
+                }
+                default:
+                    throw new NotStraightLine(String.format("Unsupported instruction 0x%02x at %d", op, pc));
+            } // SWITCH
+        } // WHILE
+        throw new NotStraightLine("run() does not return");
+    }
+
+    private static Object load(Object locals[], int slot) throws NotStraightLine {
+        if (slot >= locals.length || locals[slot] == null) {
+            throw new NotStraightLine("Unexpected local variable #" + slot);
+        }
+        return (locals[slot]);
+    }
+
+    private static Object pop(List<Object> stack) throws NotStraightLine {
+        if (stack.isEmpty()) throw new NotStraightLine("Empty operand stack");
+        return (stack.remove(stack.size() - 1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T pop(List<Object> stack, Class<T> expected) throws NotStraightLine {
+        Object o = pop(stack);
+        if (expected.isInstance(o) == false) {
+            throw new NotStraightLine("Expected " + expected.getSimpleName() + " on the operand stack");
+        }
+        return ((T)o);
+    }
+
+    private static int u2(byte code[], int offset) {
+        return (((code[offset] & 0xFF) << 8) | (code[offset+1] & 0xFF));
+    }
+
+    /**
+     * Just enough of a class file parser to get the constant pool
+     * and the code for the run() method
+     */
+    private static class ClassFile {
+        private Object constants[];
+        private String runDesc;
+        private int runMaxLocals;
+        private byte runCode[];
+
+        private ClassFile(DataInputStream in) throws IOException, NotStraightLine {
+            if (in.readInt() != 0xCAFEBABE) throw new IOException("Invalid class file");
+            in.readUnsignedShort(); // minor
+            in.readUnsignedShort(); // major
+
+            int count = in.readUnsignedShort();
+            this.constants = new Object[count];
+            for (int i = 1; i < count; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case 1: // Utf8
+                        this.constants[i] = in.readUTF();
+                        break;
+                    case 3: case 4: // Integer, Float
+                        in.readInt();
+                        break;
+                    case 5: case 6: // Long, Double
+                        in.readLong();
+                        i++;
+                        break;
+                    case 7: case 8: case 16: // Class, String, MethodType
+                        this.constants[i] = new int[]{ in.readUnsignedShort() };
+                        break;
+                    case 9: case 10: case 11: case 12: case 18: // Refs, NameAndType, InvokeDynamic
+                        this.constants[i] = new int[]{ in.readUnsignedShort(), in.readUnsignedShort() };
+                        break;
+                    case 15: // MethodHandle
+                        in.readUnsignedByte();
+                        in.readUnsignedShort();
+                        break;
+                    default:
+                        throw new IOException("Unexpected constant pool tag " + tag);
+                } // SWITCH
+            } // FOR
+
+            in.readUnsignedShort(); // access flags
+            in.readUnsignedShort(); // this class
+            in.readUnsignedShort(); // super class
+            int interfaces = in.readUnsignedShort();
+            for (int i = 0; i < interfaces; i++) in.readUnsignedShort();
+
+            int fields = in.readUnsignedShort();
+            for (int i = 0; i < fields; i++) {
+                in.readUnsignedShort(); // access flags
+                in.readUnsignedShort(); // name
+                in.readUnsignedShort(); // descriptor
+                this.skipAttributes(in);
+            } // FOR
+
+            int methods = in.readUnsignedShort();
+            for (int i = 0; i < methods; i++) {
+                in.readUnsignedShort(); // access flags
+                String name = this.getUtf8(in.readUnsignedShort());
+                String desc = this.getUtf8(in.readUnsignedShort());
+                if (name.equals("run") == false) {
+                    this.skipAttributes(in);
+                    continue;
+                }
+                if (this.runDesc != null) throw new NotStraightLine("Multiple run() methods");
+                this.runDesc = desc;
+                int attributes = in.readUnsignedShort();
+                for (int j = 0; j < attributes; j++) {
+                    String attr = this.getUtf8(in.readUnsignedShort());
+                    int length = in.readInt();
+                    if (attr.equals("Code") == false) {
+                        in.skipBytes(length);
+                        continue;
+                    }
+                    in.readUnsignedShort(); // max stack
+                    this.runMaxLocals = in.readUnsignedShort();
+                    this.runCode = new byte[in.readInt()];
+                    in.readFully(this.runCode);
+                    if (in.readUnsignedShort() > 0) throw new NotStraightLine("run() has exception handlers");
+                    this.skipAttributes(in);
+                } // FOR
+            } // FOR
+        }
+
+        private void skipAttributes(DataInputStream in) throws IOException {
+            int attributes = in.readUnsignedShort();
+            for (int i = 0; i < attributes; i++) {
+                in.readUnsignedShort();
+                in.skipBytes(in.readInt());
+            } // FOR
+        }
+
+        private String getUtf8(int index) {
+            return ((String)this.constants[index]);
+        }
+
+        /**
+         * Returns the owner class, name, and descriptor of a field or method reference
+         * @param index
+         * @return
+         */
+        private String[] getMemberRef(int index) {
+            int ref[] = (int[])this.constants[index];
+            int owner[] = (int[])this.constants[ref[0]];
+            int nameAndType[] = (int[])this.constants[ref[1]];
+            return (new String[]{ this.getUtf8(owner[0]),
+                                  this.getUtf8(nameAndType[0]),
+                                  this.getUtf8(nameAndType[1]) });
+        }
+    }
+}
@@ -82,9 +82,11 @@ import org.voltdb.compiler.projectfile.UsersType;
 import org.voltdb.compiler.projectfile.VerticalpartitionsType.Verticalpartition;
 import org.voltdb.planner.VerticalPartitionPlanner;
 import org.voltdb.sysprocs.AdHoc;
+import org.voltdb.sysprocs.BulkLoadTable;
 import org.voltdb.sysprocs.DatabaseDump;
 import org.voltdb.sysprocs.ExecutorStatus;
 import org.voltdb.sysprocs.GarbageCollection;
+import org.voltdb.sysprocs.LatencyStats;
 import org.voltdb.sysprocs.LoadMultipartitionTable;
 import org.voltdb.sysprocs.NoOp;
 import org.voltdb.sysprocs.RecomputeMarkovs;
@@ -94,6 +96,7 @@ import org.voltdb.sysprocs.SnapshotRestore;
 import org.voltdb.sysprocs.SnapshotSave;
 import org.voltdb.sysprocs.SnapshotScan;
 import org.voltdb.sysprocs.SnapshotStatus;
+import org.voltdb.sysprocs.WorkloadSampling;
 import org.voltdb.types.IndexType;
 import org.voltdb.utils.Encoder;
 import org.voltdb.utils.JarReader;
@@ -1220,6 +1223,7 @@ public class VoltCompiler {
         final Object[][] procedures = {
             // SysProcedure Class                   readonly    everysite
             {LoadMultipartitionTable.class,         false,      true},
+            {BulkLoadTable.class,                   false,      true},
             {DatabaseDump.class,                    true,       true},
             {RecomputeMarkovs.class,                true,       true},
             {Shutdown.class,                        false,      true},
@@ -1227,6 +1231,8 @@ public class VoltCompiler {
             {AdHoc.class,                           false,      false},
             {GarbageCollection.class,               true,       true},
             {ExecutorStatus.class,                  true,       false},
+            {WorkloadSampling.class,                true,       true},
+            {LatencyStats.class,                    true,       true},
             {SnapshotSave.class,                    false,      false},
             {SnapshotRestore.class,                 false,      false},
             {SnapshotStatus.class,                  false,      false},
@@ -19,6 +19,7 @@ package org.voltdb.jni;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -325,6 +326,38 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
 //            long txnId, long lastCommittedTxnId,
 //            long undoQuantumToken) throws EEException;
     
+    /**
+     * Run the query plan fragments for multiple transactions one after another.
+     * The fragments, dependency ids, and ParameterSets for all of the transactions
+     * are concatenated together and batchSizes says how many of them belong to each
+     * transaction. Each transaction is executed with its own undo token so that
+     * it can be committed or aborted separately afterwards.
+     * The default implementation just invokes the EE once per transaction.
+     * @return the DependencySet for each transaction
+     */
+    public DependencySet[] executeQueryPlanFragmentBatches(int numBatches,
+                                                           int[] batchSizes,
+                                                           long[] planFragmentIds,
+                                                           int[] input_depIds,
+                                                           int[] output_depIds,
+                                                           ParameterSet[] parameterSets,
+                                                           long[] txnIds, long lastCommittedTxnId,
+                                                           long[] undoTokens) throws EEException {
+        DependencySet results[] = new DependencySet[numBatches];
+        int offset = 0;
+        for (int i = 0; i < numBatches; i++) {
+            int end = offset + batchSizes[i];
+            results[i] = this.executeQueryPlanFragmentsAndGetDependencySet(
+                                Arrays.copyOfRange(planFragmentIds, offset, end), batchSizes[i],
+                                Arrays.copyOfRange(input_depIds, offset, end),
+                                Arrays.copyOfRange(output_depIds, offset, end),
+                                Arrays.copyOfRange(parameterSets, offset, end), batchSizes[i],
+                                txnIds[i], lastCommittedTxnId, undoTokens[i]);
+            offset = end;
+        } // FOR
+        return (results);
+    }
+    
     /** Run multiple query plan fragments */
     public VoltTable[] executeQueryPlanFragmentsAndGetResults(long[] planFragmentIds,
                                                                        int numFragmentIds,
@@ -531,6 +564,22 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
             int[] outputDepIds,
             long txnId, long lastCommittedTxnId, long undoToken);
 
+    /**
+     * Executes the plan fragments for multiple transactions in a single call.
+     * Each transaction's fragments are executed in the undo quantum for its undo token.
+     * @param pointer the VoltDBEngine pointer
+     * @param numBatches the number of transactions
+     * @param batchSizes the number of fragments for each transaction
+     * @param planFragmentIds the fragment ids for all of the transactions
+     * @return error code
+     */
+    protected native int nativeExecuteQueryPlanFragmentBatches(long pointer,
+            int numBatches, int[] batchSizes,
+            long[] planFragmentIds,
+            int[] input_depIds,
+            int[] outputDepIds,
+            long[] txnIds, long lastCommittedTxnId, long[] undoTokens);
+
     /**
      * Serialize the result temporary table.
      * @param pointer the VoltDBEngine pointer
@@ -383,57 +383,133 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         // use the copy
         ByteBuffer fullBacking = deserializer.buffer();
         try {
-            // read the complete size of the buffer used
-            fullBacking.getInt();
-            // check if anything was changed
-            m_dirty = (fullBacking.get() == 1 ? true : false);
-
-            // get a copy of the buffer
-            // Because this is a copy, that means we don't have to worry about the EE overwriting us
-            // Not sure of the implications for performance.
-             // deserializer.readBuffer(totalSize);
-            
-            // At this point we don't know how many dependencies we expect to get back from our fragments.
-            // We're just going to assume that each PlanFragment generated one and only one output dependency
-            VoltTable results[] = new VoltTable[numFragmentIds];
-            int dependencies[] = new int[numFragmentIds];
-            int dep_ctr = 0;
+            return (this.readDependencySet(fullBacking, planFragmentIds, output_depIds, 0, numFragmentIds, txnId));
+        } catch (Throwable ex) {
+            LOG.error("Failed to deserialze result table" + ex);
+            throw new EEException(ERRORCODE_WRONG_SERIALIZED_BYTES);
+        }
+    }
+    
+    /**
+     * Wrapper for {@link #nativeExecuteQueryPlanFragmentBatches(long, int, int[], long[], int[], int[], long[], long, long[])}.
+     */
+    @Override
+    public DependencySet[] executeQueryPlanFragmentBatches(int numBatches,
+                                                           int[] batchSizes,
+                                                           long[] planFragmentIds,
+                                                           int[] input_depIds,
+                                                           int[] output_depIds,
+                                                           ParameterSet[] parameterSets,
+                                                           long[] txnIds, long lastCommittedTxnId,
+                                                           long[] undoTokens) throws EEException {
+        assert(parameterSets != null) : "Null ParameterSets for txn batch " + Arrays.toString(txnIds);
+        int numFragmentIds = 0;
+        for (int i = 0; i < numBatches; i++) {
+            numFragmentIds += batchSizes[i];
+        } // FOR
+        
+        // serialize the param sets for all of the txns
+        fsForParameterSet.clear();
+        try {
             for (int i = 0; i < numFragmentIds; ++i) {
-                int numDependencies = fullBacking.getInt(); // number of dependencies for this frag
-                assert(numDependencies == 1) :
-                    "Unexpected multiple output dependencies from PlanFragment #" + planFragmentIds[i];
-                
-                // PAVLO: Since we can't pass the dependency ids using nativeExecuteQueryPlanFragmentsAndGetResults(),
-                // the results will come back without a dependency id. So we have to just assume
-                // that the frags were executed in the order that we passed to the EE and that we
-                // can just use the list of output_depIds that we have 
-                for (int ii = 0; ii < numDependencies; ++ii) {
-                    assert(dep_ctr < output_depIds.length) : 
-                        "Trying to get depId #" + dep_ctr + ": " + Arrays.toString(output_depIds);
-                    fullBacking.getInt(); // IGNORE 
-                    int depid = output_depIds[dep_ctr];
-                    assert(depid >= 0);
-                    
-                    int tableSize = fullBacking.getInt();
-                    assert(tableSize < 10000000);
-                    byte tableBytes[] = new byte[tableSize];
-                    fullBacking.get(tableBytes, 0, tableSize);
-                    final ByteBuffer tableBacking = ByteBuffer.wrap(tableBytes);
-//                    fullBacking.position(fullBacking.position() + tableSize);
-                    
-                    results[dep_ctr] = PrivateVoltTableFactory.createVoltTableFromBuffer(tableBacking, true);
-                    dependencies[dep_ctr] = depid;
-                    if (d) LOG.debug(String.format("%d - New output VoltTable for DependencyId %d [origTableSize=%d]\n%s",
-                                                   txnId, depid, tableSize, results[dep_ctr].toString())); 
-                    dep_ctr++;
-                } // FOR
+                parameterSets[i].writeExternal(fsForParameterSet);
+            }
+        } catch (final IOException exception) {
+            throw new RuntimeException(exception); // can't happen
+        }
+        
+        deserializer.clear();
+        final int errorCode = nativeExecuteQueryPlanFragmentBatches(pointer,
+                numBatches, batchSizes,
+                planFragmentIds,
+                input_depIds,
+                output_depIds,
+                txnIds, lastCommittedTxnId, undoTokens);
+        checkErrorCode(errorCode);
+        
+        // Each txn's results come back one after another in the same buffer
+        ByteBuffer fullBacking = deserializer.buffer();
+        DependencySet results[] = new DependencySet[numBatches];
+        boolean dirty = false;
+        try {
+            int offset = 0;
+            for (int i = 0; i < numBatches; i++) {
+                results[i] = this.readDependencySet(fullBacking, planFragmentIds, output_depIds, offset, batchSizes[i], txnIds[i]);
+                dirty = dirty || m_dirty;
+                offset += batchSizes[i];
             } // FOR
-            
-            return (new DependencySet(dependencies, results));
         } catch (Throwable ex) {
             LOG.error("Failed to deserialze result table" + ex);
             throw new EEException(ERRORCODE_WRONG_SERIALIZED_BYTES);
         }
+        m_dirty = dirty;
+        return (results);
+    }
+    
+    /**
+     * Read the output dependencies for one batch of fragments out of the EE's result buffer.
+     * The buffer's position will be left at the end of the batch's results
+     * @param fullBacking
+     * @param planFragmentIds
+     * @param output_depIds
+     * @param offset The position of the batch's first fragment in planFragmentIds and output_depIds
+     * @param numFragmentIds
+     * @param txnId
+     * @return
+     */
+    private DependencySet readDependencySet(ByteBuffer fullBacking,
+                                            long[] planFragmentIds,
+                                            int[] output_depIds,
+                                            int offset,
+                                            int numFragmentIds,
+                                            long txnId) {
+        // read the complete size of the buffer used
+        fullBacking.getInt();
+        // check if anything was changed
+        m_dirty = (fullBacking.get() == 1 ? true : false);
+
+        // get a copy of the buffer
+        // Because this is a copy, that means we don't have to worry about the EE overwriting us
+        // Not sure of the implications for performance.
+         // deserializer.readBuffer(totalSize);
+        
+        // At this point we don't know how many dependencies we expect to get back from our fragments.
+        // We're just going to assume that each PlanFragment generated one and only one output dependency
+        VoltTable results[] = new VoltTable[numFragmentIds];
+        int dependencies[] = new int[numFragmentIds];
+        int dep_ctr = 0;
+        for (int i = 0; i < numFragmentIds; ++i) {
+            int numDependencies = fullBacking.getInt(); // number of dependencies for this frag
+            assert(numDependencies == 1) :
+                "Unexpected multiple output dependencies from PlanFragment #" + planFragmentIds[offset + i];
+            
+            // PAVLO: Since we can't pass the dependency ids using nativeExecuteQueryPlanFragmentsAndGetResults(),
+            // the results will come back without a dependency id. So we have to just assume
+            // that the frags were executed in the order that we passed to the EE and that we
+            // can just use the list of output_depIds that we have 
+            for (int ii = 0; ii < numDependencies; ++ii) {
+                assert(offset + dep_ctr < output_depIds.length) : 
+                    "Trying to get depId #" + dep_ctr + ": " + Arrays.toString(output_depIds);
+                fullBacking.getInt(); // IGNORE 
+                int depid = output_depIds[offset + dep_ctr];
+                assert(depid >= 0);
+                
+                int tableSize = fullBacking.getInt();
+                assert(tableSize < 10000000);
+                byte tableBytes[] = new byte[tableSize];
+                fullBacking.get(tableBytes, 0, tableSize);
+                final ByteBuffer tableBacking = ByteBuffer.wrap(tableBytes);
+//                    fullBacking.position(fullBacking.position() + tableSize);
+                
+                results[dep_ctr] = PrivateVoltTableFactory.createVoltTableFromBuffer(tableBacking, true);
+                dependencies[dep_ctr] = depid;
+                if (d) LOG.debug(String.format("%d - New output VoltTable for DependencyId %d [origTableSize=%d]\n%s",
+                                               txnId, depid, tableSize, results[dep_ctr].toString())); 
+                dep_ctr++;
+            } // FOR
+        } // FOR
+        
+        return (new DependencySet(dependencies, results));
     }
 
     /**
@@ -459,6 +459,9 @@ public class PlanAssembler {
                     m_parsedSelect.paramsById.get(m_parsedSelect.limitParameterId);
                 limit.setLimitParameterIndex(parameterInfo.index);
             }
+            if ((m_parsedSelect.offset <= 0) && (m_parsedSelect.offsetParameterId == -1)) {
+                addInlineTopN(root, limit);
+            }
             limit.addAndLinkChild(root);
             limit.setOutputColumns(root.getOutputColumnGUIDs());
             root = limit;
@@ -1088,6 +1091,32 @@ public class PlanAssembler {
         return orderByNode;
     }
 
+    /**
+     * If the LIMIT is going directly on top of an ORDER BY (possibly with a
+     * projection in between), give the ORDER BY an inline copy of it so that the
+     * EE only keeps the top N tuples in a bounded heap instead of sorting its
+     * entire input. The separate LIMIT stays in the tree. If the ORDER BY is later
+     * pushed down below a Send, the copy goes with it and each partition only
+     * sends back its local top N.
+     * @param root
+     * @param limit
+     */
+    void addInlineTopN(AbstractPlanNode root, LimitPlanNode limit) {
+        AbstractPlanNode node = root;
+        if ((node instanceof ProjectionPlanNode) && node.getChildPlanNodeCount() == 1) {
+            node = node.getChild(0);
+        }
+        if ((node instanceof OrderByPlanNode) == false ||
+            node.getInlinePlanNode(PlanNodeType.LIMIT) != null) {
+            return;
+        }
+        LimitPlanNode inline_limit = new LimitPlanNode(m_context, getNextPlanNodeId());
+        inline_limit.setLimit(limit.getLimit());
+        inline_limit.setLimitParameterIndex(limit.getLimitParameterIndex());
+        inline_limit.setOutputColumns(node.getOutputColumnGUIDs());
+        node.addInlinePlanNode(inline_limit);
+    }
+
     AbstractPlanNode addOffsetAndLimit(AbstractPlanNode root) {
         return null;
     }
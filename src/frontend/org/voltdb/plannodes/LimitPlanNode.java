@@ -114,4 +114,12 @@ public class LimitPlanNode extends AbstractPlanNode {
         m_offsetParameterId = offsetParameterId;
     }
 
+    public long getLimitParameterIndex() {
+        return m_limitParameterId;
+    }
+
+    public long getOffsetParameterIndex() {
+        return m_offsetParameterId;
+    }
+
 }
@@ -19,6 +19,7 @@ package org.voltdb.plannodes;
 
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONStringer;
 import org.voltdb.catalog.Database;
 import org.voltdb.planner.PlannerContext;
 import org.voltdb.types.PlanNodeType;
@@ -28,6 +29,23 @@ import org.voltdb.types.PlanNodeType;
  */
 public class ReceivePlanNode extends AbstractPlanNode {
 
+    public enum Members {
+        MERGE_SORTED,
+        COMBINE_AGGREGATES;
+    }
+
+    /**
+     * Each incoming dependency is already sorted by the ORDER BY above us,
+     * so the EE can merge them instead of sorting the union again
+     */
+    private boolean m_mergeSorted = false;
+
+    /**
+     * Each incoming dependency holds partial aggregates for the AGGREGATE
+     * above us, which can combine them one dependency at a time
+     */
+    private boolean m_combineAggregates = false;
+
     /**
      * @param id
      */
@@ -45,7 +63,32 @@ public class ReceivePlanNode extends AbstractPlanNode {
         super.validate();
     }
 
+    public boolean isMergeSorted() {
+        return m_mergeSorted;
+    }
+
+    public void setMergeSorted(boolean mergeSorted) {
+        m_mergeSorted = mergeSorted;
+    }
+
+    public boolean isCombineAggregates() {
+        return m_combineAggregates;
+    }
+
+    public void setCombineAggregates(boolean combineAggregates) {
+        m_combineAggregates = combineAggregates;
+    }
+
+    @Override
+    public void toJSONString(JSONStringer stringer) throws JSONException {
+        super.toJSONString(stringer);
+        stringer.key(Members.MERGE_SORTED.name()).value(m_mergeSorted);
+        stringer.key(Members.COMBINE_AGGREGATES.name()).value(m_combineAggregates);
+    }
+
     @Override
     protected void loadFromJSONObject(JSONObject obj, Database db) throws JSONException {
+        m_mergeSorted = obj.optBoolean(Members.MERGE_SORTED.name(), false);
+        m_combineAggregates = obj.optBoolean(Members.COMBINE_AGGREGATES.name(), false);
     }
 }
@@ -0,0 +1,255 @@
+package org.voltdb.sysprocs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.voltdb.BackendTarget;
+import org.voltdb.DependencySet;
+import org.voltdb.HsqlBackend;
+import org.voltdb.ParameterSet;
+import org.voltdb.ProcInfo;
+import org.voltdb.VoltSystemProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Table;
+import org.voltdb.exceptions.MispredictionException;
+import org.voltdb.exceptions.ServerFaultException;
+import org.voltdb.utils.VoltTableUtil;
+
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.PartitionExecutor;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.statistics.Histogram;
+import edu.brown.utils.PartitionEstimator;
+import edu.brown.utils.ProfileMeasurement;
+
+/**
+ * Bulk load the rows of a VoltTable into a table. This is like @LoadMultipartitionTable
+ * except that the rows are appended to the table without undo logging, so they will
+ * not be removed if the txn aborts. The results contain the number of tuples and bytes
+ * that were loaded at each partition along with the running totals for that table,
+ * so that loaders can report their progress and throughput.
+ */
+@ProcInfo(singlePartition = false)
+public class BulkLoadTable extends VoltSystemProcedure {
+    private static final Logger LOG = Logger.getLogger(BulkLoadTable.class);
+    private final static LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private final static LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    public static final ColumnInfo nodeResultsColumns[] = {
+        new ColumnInfo("PARTITION_ID", VoltType.INTEGER),
+        new ColumnInfo("TABLE_NAME", VoltType.STRING),
+        new ColumnInfo("TUPLES", VoltType.BIGINT),
+        new ColumnInfo("BYTES", VoltType.BIGINT),
+        new ColumnInfo("LOAD_TIME_MS", VoltType.FLOAT),
+        new ColumnInfo("TOTAL_TUPLES", VoltType.BIGINT),
+        new ColumnInfo("TOTAL_BYTES", VoltType.BIGINT),
+        new ColumnInfo("TOTAL_LOAD_TIME_MS", VoltType.FLOAT),
+        new ColumnInfo("TUPLES_PER_SEC", VoltType.FLOAT),
+    };
+
+    /**
+     * The total number of tuples and bytes that have been bulk loaded
+     * into each table at this partition
+     */
+    private final Histogram<String> totalTuples = new Histogram<String>();
+    private final Histogram<String> totalBytes = new Histogram<String>();
+    private final Map<String, ProfileMeasurement> loadTimes = new HashMap<String, ProfileMeasurement>();
+
+    private final Histogram<Integer> allPartitionsHistogram = new Histogram<Integer>();
+
+    @Override
+    public void globalInit(PartitionExecutor site, Procedure catalog_proc,
+            BackendTarget eeType, HsqlBackend hsql, PartitionEstimator p_estimator) {
+        super.globalInit(site, catalog_proc, eeType, hsql, p_estimator);
+        site.registerPlanFragment(SysProcFragmentId.PF_bulkLoadDistribute, this);
+        site.registerPlanFragment(SysProcFragmentId.PF_bulkLoadAggregate, this);
+
+        this.allPartitionsHistogram.putAll(CatalogUtil.getAllPartitionIds(catalog_proc));
+    }
+
+    @Override
+    public DependencySet executePlanFragment(long txn_id,
+                                             Map<Integer, List<VoltTable>> dependencies,
+                                             int fragmentId,
+                                             ParameterSet params,
+                                             PartitionExecutor.SystemProcedureExecutionContext context) {
+        DependencySet result = null;
+        switch (fragmentId) {
+            // Load the table at this partition
+            case SysProcFragmentId.PF_bulkLoadDistribute: {
+                String table_name = (String)params.toArray()[0];
+                VoltTable data = (VoltTable)params.toArray()[1];
+                Table catalog_tbl = this.database.getTables().getIgnoreCase(table_name);
+                assert(catalog_tbl != null) : "Invalid table '" + table_name + "'";
+
+                ProfileMeasurement pm = this.loadTimes.get(table_name);
+                if (pm == null) {
+                    pm = new ProfileMeasurement(table_name);
+                    this.loadTimes.put(table_name, pm);
+                }
+                long start = ProfileMeasurement.getTime();
+                this.executor.bulkLoadTable(this.getTransactionState(), catalog_tbl, data);
+                long stop = ProfileMeasurement.getTime();
+                pm.addThinkTime(start, stop);
+
+                long tuples = data.getRowCount();
+                long bytes = data.getUnderlyingBufferSize();
+                this.totalTuples.put(table_name, tuples);
+                this.totalBytes.put(table_name, bytes);
+
+                double loadTime = (stop - start) / 1000000d;
+                VoltTable vt = new VoltTable(nodeResultsColumns);
+                vt.addRow(this.partitionId,
+                          table_name,
+                          tuples,
+                          bytes,
+                          loadTime,
+                          this.totalTuples.get(table_name),
+                          this.totalBytes.get(table_name),
+                          pm.getTotalThinkTimeMS(),
+                          (loadTime > 0 ? tuples / (loadTime / 1000d) : 0d));
+                if (debug.get())
+                    LOG.debug(String.format("Bulk loaded %d tuples into %s at partition %d in %.2f ms [total=%d]",
+                                            tuples, table_name, this.partitionId, loadTime,
+                                            this.totalTuples.get(table_name)));
+                result = new DependencySet(SysProcFragmentId.PF_bulkLoadDistribute, vt);
+                break;
+            }
+            // Aggregate Results
+            case SysProcFragmentId.PF_bulkLoadAggregate:
+                List<VoltTable> partitionResults = dependencies.get(SysProcFragmentId.PF_bulkLoadDistribute);
+                if (partitionResults == null || partitionResults.isEmpty()) {
+                    String msg = "Missing partition results";
+                    throw new ServerFaultException(msg, txn_id);
+                }
+
+                VoltTable vt = VoltTableUtil.combine(partitionResults);
+                result = new DependencySet(SysProcFragmentId.PF_bulkLoadAggregate, vt);
+                break;
+            default:
+                String msg = "Unexpected sysproc fragmentId '" + fragmentId + "'";
+                throw new ServerFaultException(msg, txn_id);
+        } // SWITCH
+        return (result);
+    }
+
+    /**
+     * Split the input table into a separate table for each partition
+     * @param catalog_tbl
+     * @param table
+     * @return
+     */
+    private VoltTable[] splitTable(Table catalog_tbl, VoltTable table) {
+        VoltTable partitionedTables[] = new VoltTable[this.num_partitions];
+        int rowSize = table.getUnderlyingBufferSize() / Math.max(1, table.getRowCount());
+        boolean mispredict = false;
+        table.resetRowPosition();
+        while (table.advanceRow()) {
+            int p = -1;
+            try {
+                p = this.p_estimator.getTableRowPartition(catalog_tbl, table);
+            } catch (Exception e) {
+                LOG.fatal("Failed to split input table into partitions", e);
+                throw new RuntimeException(e.getMessage());
+            }
+            assert(p >= 0);
+
+            if (partitionedTables[p] == null) {
+                // Guess how big this partition's table will be so that we don't
+                // have to keep growing its buffer
+                partitionedTables[p] = table.clone(rowSize * (table.getRowCount() / this.num_partitions + 1));
+                this.m_localTxnState.getTouchedPartitions().put(p);
+                if (this.m_localTxnState.getPredictTouchedPartitions().contains(p) == false) {
+                    mispredict = true;
+                }
+            }
+            // Don't bother adding the row if we know that we're going to restart
+            if (mispredict == false) partitionedTables[p].add(table);
+        } // WHILE
+
+        if (mispredict) {
+            if (debug.get()) LOG.debug(String.format("%s - Restarting as a distributed transaction on partitions %s",
+                                                     this.m_localTxnState, this.m_localTxnState.getTouchedPartitions().values()));
+            throw new MispredictionException(this.getTransactionId(), this.m_localTxnState.getTouchedPartitions());
+        }
+        return (partitionedTables);
+    }
+
+    public VoltTable[] run(String tableName, VoltTable table) throws VoltAbortException {
+        assert(table != null) : "VoltTable to be loaded into " + tableName + " is null in txn #" + this.getTransactionId();
+
+        Table catalog_tbl = this.database.getTables().getIgnoreCase(tableName);
+        if (catalog_tbl == null) {
+            throw new VoltAbortException("Table '" + tableName + "' does not exist");
+        }
+        else if (table.getRowCount() == 0) {
+            throw new VoltAbortException("The VoltTable for table '" + tableName + "' is empty");
+        }
+        else if (CatalogUtil.getVerticalPartition(catalog_tbl) != null) {
+            throw new VoltAbortException("Table '" + tableName + "' has a vertical partition. " +
+                                         "Use @LoadMultipartitionTable instead");
+        }
+        if (debug.get()) LOG.debug(String.format("%s - Bulk loading %d tuples into %s [bytes=%d]",
+                                                 this.m_localTxnState, table.getRowCount(),
+                                                 tableName, table.getUnderlyingBufferSize()));
+
+        List<SynthesizedPlanFragment> pfs = new ArrayList<SynthesizedPlanFragment>();
+
+        // Replicated tables get sent to every partition
+        if (catalog_tbl.getIsreplicated()) {
+            if (this.m_localTxnState.getPredictTouchedPartitions().size() != this.allPartitionsHistogram.getValueCount()) {
+                throw new MispredictionException(this.getTransactionId(), this.allPartitionsHistogram);
+            }
+            SynthesizedPlanFragment pf = new SynthesizedPlanFragment();
+            pf.fragmentId = SysProcFragmentId.PF_bulkLoadDistribute;
+            pf.inputDependencyIds = new int[] { };
+            pf.outputDependencyIds = new int[] { SysProcFragmentId.PF_bulkLoadDistribute };
+            pf.multipartition = true;
+            pf.nonExecSites = false;
+            pf.parameters = new ParameterSet(catalog_tbl.getName(), table);
+            pfs.add(pf);
+        }
+        // Otherwise only send each partition the rows that it needs
+        else {
+            VoltTable partitionedTables[] = this.splitTable(catalog_tbl, table);
+            for (int partition = 0; partition < partitionedTables.length; partition++) {
+                if (partitionedTables[partition] == null) continue;
+                SynthesizedPlanFragment pf = new SynthesizedPlanFragment();
+                pf.fragmentId = SysProcFragmentId.PF_bulkLoadDistribute;
+                pf.inputDependencyIds = new int[] { };
+                pf.outputDependencyIds = new int[] { SysProcFragmentId.PF_bulkLoadDistribute };
+                pf.multipartition = false;
+                pf.nonExecSites = false;
+                pf.destPartitionId = partition;
+                pf.parameters = new ParameterSet(catalog_tbl.getName(), partitionedTables[partition]);
+                pf.last_task = true;
+                pfs.add(pf);
+            } // FOR
+        }
+
+        // a final plan fragment to aggregate the results
+        SynthesizedPlanFragment pf = new SynthesizedPlanFragment();
+        pf.fragmentId = SysProcFragmentId.PF_bulkLoadAggregate;
+        pf.inputDependencyIds = new int[] { SysProcFragmentId.PF_bulkLoadDistribute };
+        pf.outputDependencyIds = new int[] { SysProcFragmentId.PF_bulkLoadAggregate };
+        pf.multipartition = false;
+        pf.nonExecSites = false;
+        pf.destPartitionId = this.partitionId;
+        pf.parameters = new ParameterSet();
+        pf.last_task = true;
+        pfs.add(pf);
+
+        return executeSysProcPlanFragments(pfs.toArray(new SynthesizedPlanFragment[pfs.size()]),
+                                           SysProcFragmentId.PF_bulkLoadAggregate);
+    }
+}
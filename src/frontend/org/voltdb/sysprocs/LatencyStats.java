@@ -0,0 +1,163 @@
+package org.voltdb.sysprocs;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.voltdb.BackendTarget;
+import org.voltdb.DependencySet;
+import org.voltdb.HsqlBackend;
+import org.voltdb.ParameterSet;
+import org.voltdb.ProcInfo;
+import org.voltdb.VoltSystemProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Partition;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Site;
+import org.voltdb.exceptions.ServerFaultException;
+import org.voltdb.utils.VoltTableUtil;
+
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.PartitionExecutor;
+import edu.brown.hstore.util.ProcedureLatencies;
+import edu.brown.statistics.LatencyHistogram;
+import edu.brown.utils.CollectionUtil;
+import edu.brown.utils.PartitionEstimator;
+
+/** 
+ * Get the latency percentiles for each procedure and transaction phase at each HStoreSite.
+ * The latencies are in milliseconds. The rows for the procedure '*' are the merged
+ * latencies of all the procedures at that site. If reset is true, then the
+ * histograms are cleared after they are read.
+ * This requires that the site.txn_profiling option is enabled.
+ */
+@ProcInfo(singlePartition = false)
+public class LatencyStats extends VoltSystemProcedure {
+    private static final Logger LOG = Logger.getLogger(LatencyStats.class);
+
+    public static final ColumnInfo nodeResultsColumns[] = {
+        new ColumnInfo("SITE", VoltType.STRING),
+        new ColumnInfo("PROCEDURE", VoltType.STRING),
+        new ColumnInfo("PHASE", VoltType.STRING),
+        new ColumnInfo("COUNT", VoltType.BIGINT),
+        new ColumnInfo("MEAN", VoltType.FLOAT),
+        new ColumnInfo("P50", VoltType.FLOAT),
+        new ColumnInfo("P95", VoltType.FLOAT),
+        new ColumnInfo("P99", VoltType.FLOAT),
+        new ColumnInfo("P999", VoltType.FLOAT),
+        new ColumnInfo("MAX", VoltType.FLOAT),
+    };
+    
+    private static final double NS_TO_MS = 1000000d;
+    
+    private static void addRow(VoltTable vt, String site_name, String proc_name,
+                               ProcedureLatencies.Phase phase, LatencyHistogram h) {
+        vt.addRow(site_name, proc_name, phase.name(),
+                  h.getCount(),
+                  h.getMean() / NS_TO_MS,
+                  h.getValueAtPercentile(50) / NS_TO_MS,
+                  h.getValueAtPercentile(95) / NS_TO_MS,
+                  h.getValueAtPercentile(99) / NS_TO_MS,
+                  h.getValueAtPercentile(99.9) / NS_TO_MS,
+                  h.getMax() / NS_TO_MS);
+    }
+
+    @Override
+    public void globalInit(PartitionExecutor site, Procedure catalog_proc,
+            BackendTarget eeType, HsqlBackend hsql, PartitionEstimator p_estimator) {
+        super.globalInit(site, catalog_proc, eeType, hsql, p_estimator);
+        site.registerPlanFragment(SysProcFragmentId.PF_latencyStatsAggregate, this);
+        site.registerPlanFragment(SysProcFragmentId.PF_latencyStatsDistribute, this);
+    }
+
+    @Override
+    public DependencySet executePlanFragment(long txn_id,
+                                             Map<Integer, List<VoltTable>> dependencies,
+                                             int fragmentId,
+                                             ParameterSet params,
+                                             PartitionExecutor.SystemProcedureExecutionContext context) {
+        DependencySet result = null;
+        switch (fragmentId) {
+            // Collect the latencies at this site
+            case SysProcFragmentId.PF_latencyStatsDistribute: {
+                HStoreSite hstore_site = this.executor.getHStoreSite();
+                ProcedureLatencies latencies = hstore_site.getProcedureLatencies();
+                boolean reset = (((Number)params.toArray()[0]).intValue() != 0);
+                
+                VoltTable vt = new VoltTable(nodeResultsColumns);
+                if (latencies == null) {
+                    LOG.warn("Transaction profiling is not enabled at " + hstore_site.getSiteName());
+                } else {
+                    String site_name = hstore_site.getSiteName();
+                    for (ProcedureLatencies.Phase phase : ProcedureLatencies.Phase.values()) {
+                        LatencyHistogram total = latencies.getTotal(phase);
+                        if (total.isEmpty()) continue;
+                        addRow(vt, site_name, "*", phase, total);
+                        
+                        for (Procedure catalog_proc : latencies.getHistograms().keySet()) {
+                            LatencyHistogram h = latencies.get(catalog_proc, phase);
+                            if (h.isEmpty() == false) addRow(vt, site_name, catalog_proc.getName(), phase, h);
+                        } // FOR
+                    } // FOR
+                    if (reset) latencies.reset();
+                }
+                result = new DependencySet(SysProcFragmentId.PF_latencyStatsDistribute, vt);
+                break;
+            }
+            // Aggregate Results
+            case SysProcFragmentId.PF_latencyStatsAggregate:
+                List<VoltTable> siteResults = dependencies.get(SysProcFragmentId.PF_latencyStatsDistribute);
+                if (siteResults == null || siteResults.isEmpty()) {
+                    String msg = "Missing site results";
+                    throw new ServerFaultException(msg, txn_id);
+                }
+                
+                VoltTable vt = VoltTableUtil.combine(siteResults);
+                result = new DependencySet(SysProcFragmentId.PF_latencyStatsAggregate, vt);
+                break;
+            default:
+                String msg = "Unexpected sysproc fragmentId '" + fragmentId + "'";
+                throw new ServerFaultException(msg, txn_id);
+        } // SWITCH
+        return (result);
+    }
+
+    public VoltTable[] run(int reset) {
+        // Send the request to the first partition at each HStoreSite
+        final int num_sites = CatalogUtil.getNumberOfSites(this.database);
+        final SynthesizedPlanFragment pfs[] = new SynthesizedPlanFragment[num_sites + 1];
+        final ParameterSet params = new ParameterSet();
+        params.setParameters(reset);
+        
+        int i = 0;
+        for (Site catalog_site : CatalogUtil.getAllSites(this.database)) {
+            Partition catalog_part = CollectionUtil.first(catalog_site.getPartitions());
+            pfs[i] = new SynthesizedPlanFragment();
+            pfs[i].fragmentId = SysProcFragmentId.PF_latencyStatsDistribute;
+            pfs[i].inputDependencyIds = new int[] { };
+            pfs[i].outputDependencyIds = new int[] { SysProcFragmentId.PF_latencyStatsDistribute };
+            pfs[i].multipartition = true;
+            pfs[i].nonExecSites = false;
+            pfs[i].destPartitionId = catalog_part.getId();
+            pfs[i].parameters = params;
+            pfs[i].last_task = (catalog_site.getId() == hstore_site.getSiteId());
+            i += 1;
+        } // FOR
+
+        // a final plan fragment to aggregate the results
+        pfs[i] = new SynthesizedPlanFragment();
+        pfs[i].fragmentId = SysProcFragmentId.PF_latencyStatsAggregate;
+        pfs[i].inputDependencyIds = new int[] { SysProcFragmentId.PF_latencyStatsDistribute };
+        pfs[i].outputDependencyIds = new int[] { SysProcFragmentId.PF_latencyStatsAggregate };
+        pfs[i].multipartition = false;
+        pfs[i].nonExecSites = false;
+        pfs[i].destPartitionId = CollectionUtil.first(hstore_site.getLocalPartitionIds());
+        pfs[i].parameters = params;
+        pfs[i].last_task = true;
+        
+        return executeSysProcPlanFragments(pfs, SysProcFragmentId.PF_latencyStatsAggregate);
+    }
+}
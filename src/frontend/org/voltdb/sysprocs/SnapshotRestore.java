@@ -33,6 +33,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.log4j.Logger;
 import org.voltdb.BackendTarget;
@@ -48,9 +54,7 @@ import org.voltdb.VoltTable;
 import org.voltdb.VoltTable.ColumnInfo;
 import org.voltdb.VoltType;
 import org.voltdb.VoltTypeException;
-import org.voltdb.catalog.Partition;
 import org.voltdb.catalog.Procedure;
-import org.voltdb.catalog.Site;
 import org.voltdb.catalog.Table;
 import org.voltdb.client.ConnectionUtil;
 import org.voltdb.dtxn.DtxnConstants;
@@ -78,6 +82,29 @@ public class SnapshotRestore extends VoltSystemProcedure
     private static final int DEP_restoreScanResults = (int)
         SysProcFragmentId.PF_restoreScanResults;
 
+    /**
+     * The number of chunks that can be converted and re-hashed ahead of
+     * the batch that we're currently sending out to the partitions
+     */
+    private static final int RESTORE_PIPELINE_DEPTH = 4;
+
+    /**
+     * The number of bytes of partitioned tables to accumulate before
+     * sending them out to the partitions
+     */
+    private static final long RESTORE_BATCH_SIZE = 16 * 1024 * 1024;
+
+    private static final ExecutorService m_restoreConverters =
+        Executors.newFixedThreadPool(RESTORE_PIPELINE_DEPTH, new ThreadFactory() {
+            private int m_counter = 0;
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "SnapshotRestore converter " + (m_counter++));
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
     private static HashSet<String>  m_initializedTableSaveFiles = new HashSet<String>();
     private static ArrayDeque<TableSaveFile> m_saveFiles = new ArrayDeque<TableSaveFile>();
 
@@ -922,17 +949,6 @@ public class SnapshotRestore extends VoltSystemProcedure
                                                         int allowExport)
     {
         String hostname = ConnectionUtil.getHostnameOrAddress();
-        // XXX This is all very similar to the splitting code in
-        // LoadMultipartitionTable.  Consider ways to consolidate later
-        Map<Integer, Integer> sites_to_partitions =
-            new HashMap<Integer, Integer>();
-        for (Site site : VoltDB.instance().getCatalogContext().siteTracker.getUpSites())
-        {
-            for (Partition partition : site.getPartitions()) {
-                sites_to_partitions.put(Integer.parseInt(site.getTypeName()),
-                                        partition.getId());
-            }
-        }
 
         try
         {
@@ -955,103 +971,208 @@ public class SnapshotRestore extends VoltSystemProcedure
         VoltTable[] results = new VoltTable[] { constructResultsTable() };
         results[0].addRow(m_hostId, hostname, m_siteId, tableName, 0,
                 "NO DATA TO DISTRIBUTE", "");
-        final Table new_catalog_table = getCatalogTable(tableName);
+
+        // Converting and re-hashing the chunks happens on the helper threads
+        // while we are waiting for the partitions to load the previous batch.
+        // We only keep a few chunks in flight so that we don't run out of memory.
+        final Table catalog_table = this.database.getTables().getIgnoreCase(tableName);
+        final int num_partitions = CatalogUtil.getNumberOfPartitions(this.cluster);
+        final ArrayDeque<Future<VoltTable[]>> pending = new ArrayDeque<Future<VoltTable[]>>();
+        final Map<Integer, List<VoltTable>> batches = new HashMap<Integer, List<VoltTable>>();
+        long batchSize = 0;
         Boolean needsConversion = null;
-        org.voltdb.utils.DBBPool.BBContainer c = null;
-        while (hasMoreChunks())
+        try
         {
-            VoltTable table = null;
-            try
+            while (true)
             {
-                c = null;
-                c = getNextChunk();
-                if (c == null) {
-                    continue;//Should be equivalent to break
+                while (pending.size() < RESTORE_PIPELINE_DEPTH && hasMoreChunks())
+                {
+                    BBContainer c = getNextChunk();
+                    if (c == null) {
+                        continue;//Should be equivalent to break
+                    }
+                    if (needsConversion == null) {
+                        VoltTable old_table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b.duplicate(), true);
+                        needsConversion = SavedTableConverter.needsConversion(old_table, catalog_table);
+                    }
+                    pending.add(m_restoreConverters.submit(new ChunkPartitioner(catalog_table, num_partitions, c, needsConversion)));
                 }
-
-                if (needsConversion == null) {
-                    VoltTable old_table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b.duplicate(), true);
-                    needsConversion = SavedTableConverter.needsConversion(old_table, new_catalog_table);
+                if (pending.isEmpty()) {
+                    break;
                 }
 
-                final VoltTable old_table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b, true);
-                if (needsConversion) {
-                    table = SavedTableConverter.convertTable(old_table,
-                                                             new_catalog_table);
-                } else {
-                    table = old_table;
+                batchSize += addToBatches(batches, pending.poll().get());
+                if (batchSize >= RESTORE_BATCH_SIZE)
+                {
+                    results = sendPartitionedTables(tableName, batches, allowExport);
+                    batches.clear();
+                    batchSize = 0;
                 }
             }
-            catch (IOException e)
-            {
-                VoltTable result = PrivateVoltTableFactory.createUninitializedVoltTable();
-                result = constructResultsTable();
-                result.addRow(m_hostId, hostname, m_siteId, tableName, relevantPartitionIds[0],
-                              "FAILURE", "Unable to load table: " + tableName +
-                              " error: " + e.getMessage());
-                return result;
-            }
-            catch (VoltTypeException e)
-            {
-                VoltTable result = PrivateVoltTableFactory.createUninitializedVoltTable();
-                result = constructResultsTable();
-                result.addRow(m_hostId, hostname, m_siteId, tableName, relevantPartitionIds[0],
-                              "FAILURE", "Unable to load table: " + tableName +
-                              " error: " + e.getMessage());
-                return result;
-            }
+        }
+        catch (IOException e)
+        {
+            return restoreFailure(tableName, hostname, relevantPartitionIds[0], e, pending);
+        }
+        catch (InterruptedException e)
+        {
+            return restoreFailure(tableName, hostname, relevantPartitionIds[0], e, pending);
+        }
+        catch (ExecutionException e)
+        {
+            return restoreFailure(tableName, hostname, relevantPartitionIds[0], e.getCause(), pending);
+        }
 
-            VoltTable[] partitioned_tables =
-                createPartitionedTables(tableName, table);
-            if (c != null) {
-                c.discard();
+        if (batches.isEmpty() == false) {
+            results = sendPartitionedTables(tableName, batches, allowExport);
+        }
+        return results[0];
+   }
+
+    /**
+     * Add the non-empty per-partition tables of a chunk to the batches
+     * that will be sent out to the partitions next
+     * @param batches
+     * @param partitioned_tables
+     * @return The number of bytes that were added to the batches
+     */
+    static long addToBatches(Map<Integer, List<VoltTable>> batches,
+                             VoltTable[] partitioned_tables)
+    {
+        long size = 0;
+        for (int partition_id = 0; partition_id < partitioned_tables.length; partition_id++)
+        {
+            VoltTable table = partitioned_tables[partition_id];
+            if (table.getRowCount() == 0) continue;
+            List<VoltTable> batch = batches.get(partition_id);
+            if (batch == null) {
+                batch = new ArrayList<VoltTable>();
+                batches.put(partition_id, batch);
             }
+            batch.add(table);
+            size += table.getUnderlyingBufferSize();
+        }
+        return (size);
+    }
+
+    /**
+     * Send all of the batched tables out to their partitions in a single round of
+     * PlanFragments, so that the partitions can load them at the same time
+     */
+    private VoltTable[] sendPartitionedTables(String tableName,
+                                              Map<Integer, List<VoltTable>> batches,
+                                              int allowExport)
+    {
+        SynthesizedPlanFragment pfs[] = createPartitionedTableFragments(tableName, batches, allowExport);
+        int result_dependency_id = pfs[pfs.length - 1].outputDependencyIds[0];
+        LOG.trace("Sending " + (pfs.length - 1) + " partitioned tables for " + tableName +
+                  " to " + batches.size() + " partitions");
+        return executeSysProcPlanFragments(pfs, result_dependency_id);
+    }
 
-            int[] dependencyIds = new int[sites_to_partitions.size()];
-            SynthesizedPlanFragment[] pfs =
-                new SynthesizedPlanFragment[sites_to_partitions.size() + 1];
-            int pfs_index = 0;
-            for (int site_id : sites_to_partitions.keySet())
+    /**
+     * Create a PF_restoreSendPartitionedTable fragment for each of the batched
+     * tables, followed by the PF_restoreSendPartitionedTableResults fragment
+     * that collects all of their results
+     */
+    static SynthesizedPlanFragment[] createPartitionedTableFragments(String tableName,
+                                                                     Map<Integer, List<VoltTable>> batches,
+                                                                     int allowExport)
+    {
+        List<SynthesizedPlanFragment> pfs = new ArrayList<SynthesizedPlanFragment>();
+        for (Map.Entry<Integer, List<VoltTable>> e : batches.entrySet())
+        {
+            int partition_id = e.getKey();
+            for (VoltTable table : e.getValue())
             {
-                int partition_id = sites_to_partitions.get(site_id);
-                dependencyIds[pfs_index] =
-                    TableSaveFileState.getNextDependencyId();
-                pfs[pfs_index] = new SynthesizedPlanFragment();
-                pfs[pfs_index].fragmentId =
-                    SysProcFragmentId.PF_restoreSendPartitionedTable;
-                // XXX pfs[pfs_index].siteId = site_id;
-                pfs[pfs_index].multipartition = false;
-                pfs[pfs_index].outputDependencyIds = new int[]{ dependencyIds[pfs_index] };
-                pfs[pfs_index].inputDependencyIds = new int [] {};
+                int dependency_id = TableSaveFileState.getNextDependencyId();
+                SynthesizedPlanFragment pf = new SynthesizedPlanFragment();
+                pf.fragmentId = SysProcFragmentId.PF_restoreSendPartitionedTable;
+                pf.destPartitionId = partition_id;
+                pf.multipartition = false;
+                pf.outputDependencyIds = new int[]{ dependency_id };
+                pf.inputDependencyIds = new int [] {};
                 ParameterSet params = new ParameterSet();
                 params.setParameters(tableName, partition_id,
-                                     dependencyIds[pfs_index],
-                                     partitioned_tables[partition_id],
+                                     dependency_id,
+                                     table,
                                      allowExport);
-                pfs[pfs_index].parameters = params;
-                ++pfs_index;
+                pf.parameters = params;
+                pfs.add(pf);
             }
-            int result_dependency_id = TableSaveFileState.getNextDependencyId();
-            pfs[sites_to_partitions.size()] = new SynthesizedPlanFragment();
-            pfs[sites_to_partitions.size()].fragmentId =
-                SysProcFragmentId.PF_restoreSendPartitionedTableResults;
-            pfs[sites_to_partitions.size()].multipartition = false;
-            pfs[sites_to_partitions.size()].outputDependencyIds = new int[]{ result_dependency_id };
-            pfs[sites_to_partitions.size()].inputDependencyIds = dependencyIds;
-            ParameterSet params = new ParameterSet();
-            params.setParameters(result_dependency_id);
-            pfs[sites_to_partitions.size()].parameters = params;
-            results =
-                executeSysProcPlanFragments(pfs, result_dependency_id);
         }
-        return results[0];
-   }
+        int[] dependencyIds = new int[pfs.size()];
+        for (int i = 0; i < dependencyIds.length; i++) {
+            dependencyIds[i] = pfs.get(i).outputDependencyIds[0];
+        }
+
+        int result_dependency_id = TableSaveFileState.getNextDependencyId();
+        SynthesizedPlanFragment pf = new SynthesizedPlanFragment();
+        pf.fragmentId = SysProcFragmentId.PF_restoreSendPartitionedTableResults;
+        pf.multipartition = false;
+        pf.outputDependencyIds = new int[]{ result_dependency_id };
+        pf.inputDependencyIds = dependencyIds;
+        ParameterSet params = new ParameterSet();
+        params.setParameters(result_dependency_id);
+        pf.parameters = params;
+        pfs.add(pf);
+        return (pfs.toArray(new SynthesizedPlanFragment[pfs.size()]));
+    }
+
+    private VoltTable restoreFailure(String tableName, String hostname, int partitionId,
+                                     Throwable error, ArrayDeque<Future<VoltTable[]>> pending)
+    {
+        // Let the helper threads finish with whatever chunks they were
+        // working on so that the buffers get released
+        for (Future<VoltTable[]> f : pending) {
+            try {
+                f.get();
+            } catch (Exception ex) {
+                // Ignore
+            }
+        }
+        VoltTable result = constructResultsTable();
+        result.addRow(m_hostId, hostname, m_siteId, tableName, partitionId,
+                      "FAILURE", "Unable to load table: " + tableName +
+                      " error: " + error.getMessage());
+        return result;
+    }
+
+    /**
+     * Converts a chunk from a save file to the current schema and splits it
+     * up into a table for each partition. The chunk is discarded when it's done.
+     */
+    static class ChunkPartitioner implements Callable<VoltTable[]> {
+        private final Table catalog_table;
+        private final int num_partitions;
+        private final BBContainer chunk;
+        private final boolean needsConversion;
+
+        ChunkPartitioner(Table catalog_table, int num_partitions, BBContainer chunk, boolean needsConversion) {
+            this.catalog_table = catalog_table;
+            this.num_partitions = num_partitions;
+            this.chunk = chunk;
+            this.needsConversion = needsConversion;
+        }
+
+        @Override
+        public VoltTable[] call() throws Exception {
+            try {
+                VoltTable table = PrivateVoltTableFactory.createVoltTableFromBuffer(this.chunk.b, true);
+                if (this.needsConversion) {
+                    table = SavedTableConverter.convertTable(table, this.catalog_table);
+                }
+                return (createPartitionedTables(this.catalog_table, this.num_partitions, table));
+            } finally {
+                this.chunk.discard();
+            }
+        }
+    }
 
-    private VoltTable[] createPartitionedTables(String tableName,
-                                                VoltTable loadedTable)
+    static VoltTable[] createPartitionedTables(Table catalog_table,
+                                               int number_of_partitions,
+                                               VoltTable loadedTable)
     {
-        int number_of_partitions = CatalogUtil.getNumberOfPartitions(this.cluster);
-        Table catalog_table = this.database.getTables().getIgnoreCase(tableName);
         assert(!catalog_table.getIsreplicated());
         // XXX blatantly stolen from LoadMultipartitionTable
         // find the index and type of the partitioning attribute
@@ -1075,7 +1196,8 @@ public class SnapshotRestore extends VoltSystemProcedure
             {
                 partition =
                     TheHashinator.hashToPartition(loadedTable.get(partition_col,
-                                                          partition_type));
+                                                          partition_type),
+                                                  number_of_partitions);
             }
             catch (Exception e)
             {
@@ -135,4 +135,16 @@ public class SysProcFragmentId
     // @ExecutorStatus
     public static final int PF_execStatus = 190;
     
+    // @WorkloadSampling
+    public static final int PF_workloadSamplingDistribute = 195;
+    public static final int PF_workloadSamplingAggregate = 196;
+    
+    // @LatencyStats
+    public static final int PF_latencyStatsDistribute = 200;
+    public static final int PF_latencyStatsAggregate = 201;
+    
+    // @BulkLoadTable
+    public static final int PF_bulkLoadDistribute = 205;
+    public static final int PF_bulkLoadAggregate = 206;
+    
 }
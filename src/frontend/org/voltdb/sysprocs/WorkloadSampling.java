@@ -0,0 +1,137 @@
+package org.voltdb.sysprocs;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.voltdb.BackendTarget;
+import org.voltdb.DependencySet;
+import org.voltdb.HsqlBackend;
+import org.voltdb.ParameterSet;
+import org.voltdb.ProcInfo;
+import org.voltdb.VoltSystemProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Partition;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Site;
+import org.voltdb.exceptions.ServerFaultException;
+import org.voltdb.utils.VoltTableUtil;
+
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.PartitionExecutor;
+import edu.brown.hstore.util.WorkloadSampler;
+import edu.brown.utils.CollectionUtil;
+import edu.brown.utils.PartitionEstimator;
+
+/** 
+ * Change the workload sampling rate at each HStoreSite.
+ * A negative rate leaves the current rate unchanged and just reports the sampling status.
+ */
+@ProcInfo(singlePartition = false)
+public class WorkloadSampling extends VoltSystemProcedure {
+    private static final Logger LOG = Logger.getLogger(WorkloadSampling.class);
+
+    public static final ColumnInfo nodeResultsColumns[] = {
+        new ColumnInfo("SITE", VoltType.STRING),
+        new ColumnInfo("ENABLED", VoltType.INTEGER),
+        new ColumnInfo("RATE", VoltType.FLOAT),
+        new ColumnInfo("SAMPLED", VoltType.BIGINT),
+        new ColumnInfo("DROPPED", VoltType.BIGINT),
+    };
+
+    @Override
+    public void globalInit(PartitionExecutor site, Procedure catalog_proc,
+            BackendTarget eeType, HsqlBackend hsql, PartitionEstimator p_estimator) {
+        super.globalInit(site, catalog_proc, eeType, hsql, p_estimator);
+        site.registerPlanFragment(SysProcFragmentId.PF_workloadSamplingAggregate, this);
+        site.registerPlanFragment(SysProcFragmentId.PF_workloadSamplingDistribute, this);
+    }
+
+    @Override
+    public DependencySet executePlanFragment(long txn_id,
+                                             Map<Integer, List<VoltTable>> dependencies,
+                                             int fragmentId,
+                                             ParameterSet params,
+                                             PartitionExecutor.SystemProcedureExecutionContext context) {
+        DependencySet result = null;
+        switch (fragmentId) {
+            // Update the sampling rate
+            case SysProcFragmentId.PF_workloadSamplingDistribute: {
+                HStoreSite hstore_site = this.executor.getHStoreSite();
+                WorkloadSampler sampler = hstore_site.getWorkloadSampler();
+                double rate = ((Number)params.toArray()[0]).doubleValue();
+                
+                VoltTable vt = new VoltTable(nodeResultsColumns);
+                if (sampler == null) {
+                    vt.addRow(hstore_site.getSiteName(), 0, 0d, 0l, 0l);
+                } else {
+                    if (rate >= 0) {
+                        LOG.info(String.format("Changing workload sampling rate at %s from %.4f to %.4f",
+                                               hstore_site.getSiteName(), sampler.getSamplingRate(), rate));
+                        sampler.setSamplingRate(rate);
+                    }
+                    vt.addRow(hstore_site.getSiteName(), 1,
+                              sampler.getSamplingRate(),
+                              sampler.getSampledCount(),
+                              sampler.getDroppedCount());
+                }
+                result = new DependencySet(SysProcFragmentId.PF_workloadSamplingDistribute, vt);
+                break;
+            }
+            // Aggregate Results
+            case SysProcFragmentId.PF_workloadSamplingAggregate:
+                List<VoltTable> siteResults = dependencies.get(SysProcFragmentId.PF_workloadSamplingDistribute);
+                if (siteResults == null || siteResults.isEmpty()) {
+                    String msg = "Missing site results";
+                    throw new ServerFaultException(msg, txn_id);
+                }
+                
+                VoltTable vt = VoltTableUtil.combine(siteResults);
+                result = new DependencySet(SysProcFragmentId.PF_workloadSamplingAggregate, vt);
+                break;
+            default:
+                String msg = "Unexpected sysproc fragmentId '" + fragmentId + "'";
+                throw new ServerFaultException(msg, txn_id);
+        } // SWITCH
+        return (result);
+    }
+
+    public VoltTable[] run(double rate) {
+        // Send the new rate to the first partition at each HStoreSite
+        final int num_sites = CatalogUtil.getNumberOfSites(this.database);
+        final SynthesizedPlanFragment pfs[] = new SynthesizedPlanFragment[num_sites + 1];
+        final ParameterSet params = new ParameterSet();
+        params.setParameters(rate);
+        
+        int i = 0;
+        for (Site catalog_site : CatalogUtil.getAllSites(this.database)) {
+            Partition catalog_part = CollectionUtil.first(catalog_site.getPartitions());
+            pfs[i] = new SynthesizedPlanFragment();
+            pfs[i].fragmentId = SysProcFragmentId.PF_workloadSamplingDistribute;
+            pfs[i].inputDependencyIds = new int[] { };
+            pfs[i].outputDependencyIds = new int[] { SysProcFragmentId.PF_workloadSamplingDistribute };
+            pfs[i].multipartition = true;
+            pfs[i].nonExecSites = false;
+            pfs[i].destPartitionId = catalog_part.getId();
+            pfs[i].parameters = params;
+            pfs[i].last_task = (catalog_site.getId() == hstore_site.getSiteId());
+            i += 1;
+        } // FOR
+
+        // a final plan fragment to aggregate the results
+        pfs[i] = new SynthesizedPlanFragment();
+        pfs[i].fragmentId = SysProcFragmentId.PF_workloadSamplingAggregate;
+        pfs[i].inputDependencyIds = new int[] { SysProcFragmentId.PF_workloadSamplingDistribute };
+        pfs[i].outputDependencyIds = new int[] { SysProcFragmentId.PF_workloadSamplingAggregate };
+        pfs[i].multipartition = false;
+        pfs[i].nonExecSites = false;
+        pfs[i].destPartitionId = CollectionUtil.first(hstore_site.getLocalPartitionIds());
+        pfs[i].parameters = params;
+        pfs[i].last_task = true;
+        
+        return executeSysProcPlanFragments(pfs, SysProcFragmentId.PF_workloadSamplingAggregate);
+    }
+}
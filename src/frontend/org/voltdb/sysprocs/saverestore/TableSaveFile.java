@@ -24,10 +24,14 @@ import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.zip.CRC32;
 
 import org.voltdb.messaging.FastDeserializer;
@@ -76,6 +80,28 @@ public class TableSaveFile
     private static final int DEFAULT_CHUNKSIZE =
         org.voltdb.SnapshotSiteProcessor.m_snapshotBufferLength + (1024 * 256);
 
+    /**
+     * The chunk reader pulls data off of the disk in reads of this size
+     * instead of reading each chunk header and body separately
+     */
+    private static final int READ_AHEAD_SIZE = 1024 * 1024 * 4;
+
+    /**
+     * Chunks are validated (CRC check, row count fix up) by these threads so
+     * that the chunk reader can go straight on to the next chunk. Shared by
+     * all of the save files that are being read at the same time.
+     */
+    private static final ExecutorService m_validators =
+        Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            private int m_counter = 0;
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "TableSaveFile validator " + (m_counter++));
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
     public TableSaveFile(
             FileChannel dataIn,
             int readAheadChunks,
@@ -307,6 +333,13 @@ public class TableSaveFile
             }
         }
         synchronized (this) {
+            while (m_outstandingValidations > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
             while (!m_availableChunks.isEmpty()) {
                 m_availableChunks.poll().discard();
             }
@@ -325,8 +358,13 @@ public class TableSaveFile
     // Will get the next chunk of the table that is just over the chunk size
     public synchronized BBContainer getNextChunk() throws IOException
     {
-        if (!m_hasMoreChunks) {
-            return m_availableChunks.poll();
+        if (!m_hasMoreChunks && m_outstandingValidations == 0) {
+            Container c = m_availableChunks.poll();
+            // A validator may have failed after the reader already hit the end of the file
+            if (c == null && m_chunkReaderException != null) {
+                throw m_chunkReaderException;
+            }
+            return c;
         }
 
         if (m_chunkReader == null) {
@@ -336,7 +374,7 @@ public class TableSaveFile
         }
 
         Container c = null;
-        while (c == null && (m_hasMoreChunks || !m_availableChunks.isEmpty())) {
+        while (c == null && (m_hasMoreChunks || m_outstandingValidations > 0 || !m_availableChunks.isEmpty())) {
             c = m_availableChunks.poll();
             if (c == null) {
                 try {
@@ -357,7 +395,8 @@ public class TableSaveFile
 
     public synchronized boolean hasMoreChunks()
     {
-        return m_hasMoreChunks || !m_availableChunks.isEmpty();
+        return m_hasMoreChunks || m_outstandingValidations > 0 || !m_availableChunks.isEmpty() ||
+               m_chunkReaderException != null;
     }
 //
 //    /**
@@ -406,7 +445,13 @@ public class TableSaveFile
     private final int m_partitionIds[];
     private final int m_totalPartitions;
     private final long m_createTime;
-    private boolean m_hasMoreChunks = true;
+    private volatile boolean m_hasMoreChunks = true;
+
+    /**
+     * Number of chunks that have been read but are still being validated.
+     * Protected by the lock on this TableSaveFile
+     */
+    private int m_outstandingValidations = 0;
     private static ConcurrentLinkedQueue<Container> m_buffers = new ConcurrentLinkedQueue<Container>();
     private final ArrayDeque<Container> m_availableChunks = new ArrayDeque<Container>();
     private final HashSet<Integer> m_relevantPartitionIds;
@@ -415,7 +460,7 @@ public class TableSaveFile
      * Maintain a list of corrupted partitions. It is possible for uncorrupted partitions
      * to be recovered from a save file in the future
      */
-    private final HashSet<Integer> m_corruptedPartitions = new HashSet<Integer>();
+    private final Set<Integer> m_corruptedPartitions = Collections.synchronizedSet(new HashSet<Integer>());
 
     /**
      * Ignore corrupted chunks and continue validation of the rest of the chunks.
@@ -431,13 +476,64 @@ public class TableSaveFile
     private Thread m_chunkReaderThread = null;
     private IOException m_chunkReaderException = null;
 
+    /**
+     * Mark every partition in this file as corrupted
+     */
+    private void markAllPartitionsCorrupted() {
+        for (int partitionId : m_partitionIds) {
+            m_corruptedPartitions.add(partitionId);
+        }
+    }
+
+    /**
+     * Stop reading chunks because of an error. The exception will be thrown
+     * to the next caller of getNextChunk()
+     */
+    private synchronized void setChunkReaderException(IOException e) {
+        m_hasMoreChunks = false;
+        if (m_chunkReaderException == null) {
+            m_chunkReaderException = e;
+        }
+        notifyAll();
+    }
+
     /**
      * Thread to read chunks from the disk
      */
     private class ChunkReader implements Runnable {
 
+        private final ByteBuffer m_readAhead = ByteBuffer.allocateDirect(READ_AHEAD_SIZE);
+
+        private ChunkReader() {
+            m_readAhead.limit(0);
+        }
+
+        /**
+         * Fill the given buffer from the read ahead buffer, refilling it from
+         * the save file with one large read whenever it runs out
+         */
+        private void read(ByteBuffer dst) throws IOException {
+            while (dst.hasRemaining()) {
+                if (!m_readAhead.hasRemaining()) {
+                    m_readAhead.clear();
+                    int read = 0;
+                    while (read == 0) {
+                        read = m_saveFile.read(m_readAhead);
+                    }
+                    m_readAhead.flip();
+                    if (read == -1) {
+                        throw new EOFException();
+                    }
+                }
+                final int length = Math.min(dst.remaining(), m_readAhead.remaining());
+                final ByteBuffer slice = m_readAhead.duplicate();
+                slice.limit(slice.position() + length);
+                dst.put(slice);
+                m_readAhead.position(m_readAhead.position() + length);
+            }
+        }
+
         private void readChunks() {
-            int chunksRead = 0;
             while (m_hasMoreChunks) {
                 /*
                  * Limit the number of chunk reads at any one time.
@@ -453,12 +549,7 @@ public class TableSaveFile
                      * Get the length of the next chunk, partition id, crc for partition id,
                      */
                     ByteBuffer chunkLengthB = ByteBuffer.allocate(16);
-                    while (chunkLengthB.hasRemaining()) {
-                        final int read = m_saveFile.read(chunkLengthB);
-                        if (read == -1) {
-                            throw new EOFException();
-                        }
-                    }
+                    read(chunkLengthB);
                     chunkLengthB.flip();
                     final int nextChunkLength = chunkLengthB.getInt();
 
@@ -479,9 +570,7 @@ public class TableSaveFile
                     int generatedValue = (int)partitionIdCRC.getValue();
                     if (generatedValue != nextChunkPartitionIdCRC) {
                         chunkLengthB.position(0);
-                        for (int partitionId : m_partitionIds) {
-                            m_corruptedPartitions.add(partitionId);
-                        }
+                        markAllPartitionsCorrupted();
                         throw new IOException("Chunk partition ID CRC check failed. " +
                                 "This corrupts all partitions in this file");
                     }
@@ -544,108 +633,42 @@ public class TableSaveFile
                         c.b.put(m_tableHeader);
                         c.b.position(c.b.position() + 4);//Leave space for row count to be moved into
                         checksumStartPosition = c.b.position();
-                        while (c.b.hasRemaining()) {
-                            final int read = m_saveFile.read(c.b);
-                            if (read == -1) {
-                                throw new EOFException();
-                            }
-                        }
+                        read(c.b);
                         c.b.position(c.b.position() - 4);
                         rowCount = c.b.getInt();
                         c.b.position(checksumStartPosition);
                         completedRead = true;
                     } finally {
                         if (!completedRead) {
-                            for (int partitionId : m_partitionIds) {
-                                m_corruptedPartitions.add(partitionId);
-                            }
+                            markAllPartitionsCorrupted();
                         }
                     }
 
                     /*
-                     * Validate the rest of the chunk. This can fail if the data is corrupted
-                     * or the length value was corrupted.
+                     * Hand the chunk off to be validated so that we can start
+                     * reading the next one right away.
                      */
-                    final int calculatedCRC = DBBPool.getBufferCRC32(c.b, c.b.position(), c.b.remaining());
-                    if (calculatedCRC != nextChunkCRC) {
-                        m_corruptedPartitions.add(nextChunkPartitionId);
-                        if (m_continueOnCorruptedChunk) {
-                            c.discard();
-                            m_chunkReads.release();
-                            continue;
-                        } else {
-                            throw new IOException("CRC mismatch in saved table chunk");
-                        }
-                    }
-
-                    /*
-                     * Skip irrelevant chunks after CRC is calculated. Always calulate the CRC
-                     * in case it is the length value that is corrupted
-                     */
-                    if (m_relevantPartitionIds != null) {
-                        if (!m_relevantPartitionIds.contains(nextChunkPartitionId)) {
-                            c.discard();
-                            m_chunkReads.release();
-                            continue;
-                        }
-                    }
-
-                    /*
-                     * The row count which was stored on disk at the end (and for the CRC calc)
-                     * is now moved to the appropriate place for the table serialization format.
-                     * Update the limit to reflect that.
-                     *
-                     * Surrounded in a try finally just in case there is overflow/underflow. Shouldn't
-                     * happen but I could be wrong.
-                     */
-                    boolean success = false;
-                    try {
-                        c.b.limit(c.b.limit() - 4);
-                        c.b.position(checksumStartPosition - 4);
-                        c.b.putInt(rowCount);
-                        c.b.position(0);
-                        success = true;
-                    } finally {
-                        if (!success) {
-                            for (int partitionId : m_partitionIds) {
-                                m_corruptedPartitions.add(partitionId);
-                            }
-                        }
-                    }
-                    ++chunksRead;
                     synchronized (TableSaveFile.this) {
-                        m_availableChunks.offer(c);
-                        TableSaveFile.this.notifyAll();
+                        m_outstandingValidations++;
                     }
+                    m_validators.execute(new ChunkValidator(c,
+                                                            nextChunkPartitionId,
+                                                            nextChunkCRC,
+                                                            checksumStartPosition,
+                                                            rowCount));
                 } catch (EOFException eof) {
                     synchronized (TableSaveFile.this) {
                         m_hasMoreChunks = false;
                         TableSaveFile.this.notifyAll();
                     }
                 } catch (IOException e) {
-                    synchronized (TableSaveFile.this) {
-                        m_hasMoreChunks = false;
-                        m_chunkReaderException = e;
-                        TableSaveFile.this.notifyAll();
-                    }
+                    setChunkReaderException(e);
                 } catch (BufferUnderflowException e) {
-                    synchronized (TableSaveFile.this) {
-                        m_hasMoreChunks = false;
-                        m_chunkReaderException = new IOException(e);
-                        TableSaveFile.this.notifyAll();
-                    }
+                    setChunkReaderException(new IOException(e));
                 } catch (BufferOverflowException e) {
-                    synchronized (TableSaveFile.this) {
-                        m_hasMoreChunks = false;
-                        m_chunkReaderException = new IOException(e);
-                        TableSaveFile.this.notifyAll();
-                    }
+                    setChunkReaderException(new IOException(e));
                 } catch (IndexOutOfBoundsException e) {
-                    synchronized (TableSaveFile.this) {
-                        m_hasMoreChunks = false;
-                        m_chunkReaderException = new IOException(e);
-                        TableSaveFile.this.notifyAll();
-                    }
+                    setChunkReaderException(new IOException(e));
                 }
             }
         }
@@ -666,4 +689,103 @@ public class TableSaveFile
         }
 
     }
+
+    /**
+     * Validates the CRC of a chunk that has been read in and moves its row count
+     * into place before making it available to getNextChunk()
+     */
+    private class ChunkValidator implements Runnable {
+        private final Container m_chunk;
+        private final int m_partitionId;
+        private final int m_expectedCRC;
+        private final int m_checksumStartPosition;
+        private final int m_rowCount;
+
+        private ChunkValidator(Container chunk, int partitionId, int expectedCRC,
+                               int checksumStartPosition, int rowCount) {
+            m_chunk = chunk;
+            m_partitionId = partitionId;
+            m_expectedCRC = expectedCRC;
+            m_checksumStartPosition = checksumStartPosition;
+            m_rowCount = rowCount;
+        }
+
+        private void validate() throws IOException {
+            final Container c = m_chunk;
+
+            /*
+             * Validate the rest of the chunk. This can fail if the data is corrupted
+             * or the length value was corrupted.
+             */
+            final int calculatedCRC = DBBPool.getBufferCRC32(c.b, c.b.position(), c.b.remaining());
+            if (calculatedCRC != m_expectedCRC) {
+                m_corruptedPartitions.add(m_partitionId);
+                if (m_continueOnCorruptedChunk) {
+                    c.discard();
+                    m_chunkReads.release();
+                    return;
+                } else {
+                    c.discard();
+                    throw new IOException("CRC mismatch in saved table chunk");
+                }
+            }
+
+            /*
+             * Skip irrelevant chunks after CRC is calculated. Always calulate the CRC
+             * in case it is the length value that is corrupted
+             */
+            if (m_relevantPartitionIds != null) {
+                if (!m_relevantPartitionIds.contains(m_partitionId)) {
+                    c.discard();
+                    m_chunkReads.release();
+                    return;
+                }
+            }
+
+            /*
+             * The row count which was stored on disk at the end (and for the CRC calc)
+             * is now moved to the appropriate place for the table serialization format.
+             * Update the limit to reflect that.
+             *
+             * Surrounded in a try finally just in case there is overflow/underflow. Shouldn't
+             * happen but I could be wrong.
+             */
+            boolean success = false;
+            try {
+                c.b.limit(c.b.limit() - 4);
+                c.b.position(m_checksumStartPosition - 4);
+                c.b.putInt(m_rowCount);
+                c.b.position(0);
+                success = true;
+            } finally {
+                if (!success) {
+                    markAllPartitionsCorrupted();
+                }
+            }
+            synchronized (TableSaveFile.this) {
+                m_availableChunks.offer(c);
+                TableSaveFile.this.notifyAll();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                validate();
+            } catch (IOException e) {
+                setChunkReaderException(e);
+            } catch (BufferUnderflowException e) {
+                setChunkReaderException(new IOException(e));
+            } catch (BufferOverflowException e) {
+                setChunkReaderException(new IOException(e));
+            } catch (IndexOutOfBoundsException e) {
+                setChunkReaderException(new IOException(e));
+            } finally {
+                synchronized (TableSaveFile.this) {
+                    m_outstandingValidations--;
+                    TableSaveFile.this.notifyAll();
+                }
+            }
+        }
+    }
 }
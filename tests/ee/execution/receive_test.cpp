@@ -0,0 +1,454 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2010 VoltDB L.L.C.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB L.L.C. are licensed under the following
+ * terms and conditions:
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/* Copyright (C) 2008 by H-Store Project
+ * Brown University
+ * Massachusetts Institute of Technology
+ * Yale University
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <algorithm>
+#include <sstream>
+#include <string>
+#include <vector>
+
+#include "harness.h"
+#include "json_spirit/json_spirit.h"
+
+#include "common/common.h"
+#include "common/tabletuple.h"
+#include "common/Topend.h"
+#include "common/ValueFactory.hpp"
+#include "common/valuevector.h"
+#include "execution/VoltDBEngine.h"
+#include "executors/abstractexecutor.h"
+#include "executors/executorutil.h"
+#include "executors/receiveexecutor.h"
+#include "logging/StdoutLogProxy.h"
+#include "plannodes/abstractplannode.h"
+#include "plannodes/plannodefragment.h"
+#include "storage/table.h"
+#include "storage/tableiterator.h"
+#include "catalog/catalog.h"
+#include "catalog/cluster.h"
+#include "catalog/database.h"
+
+using namespace std;
+using namespace voltdb;
+
+typedef std::pair<int32_t, int64_t> Row;
+typedef std::vector<Row> Dependency;
+
+/*
+ * Hands the engine one dependency per call to loadNextDependency(), the
+ * same way that the Java side hands back each partition's results.
+ */
+class MockTopend : public Topend {
+  public:
+    MockTopend() : m_next(0) {}
+
+    void reset(const std::vector<Dependency> &dependencies) {
+        m_dependencies = dependencies;
+        m_next = 0;
+    }
+
+    virtual int loadNextDependency(int32_t dependencyId, Pool *pool,
+                                   Table* destination) {
+        if (m_next >= m_dependencies.size()) {
+            return 0;
+        }
+        const Dependency &dependency = m_dependencies[m_next++];
+        TableTuple &tuple = destination->tempTuple();
+        for (int ii = 0; ii < dependency.size(); ii++) {
+            tuple.setNValue(0, ValueFactory::getIntegerValue(dependency[ii].first));
+            tuple.setNValue(1, ValueFactory::getBigIntValue(dependency[ii].second));
+            destination->insertTuple(tuple);
+        }
+        return 1;
+    }
+
+    virtual void crashVoltDB(FatalException e) {
+    }
+
+  private:
+    std::vector<Dependency> m_dependencies;
+    int m_next;
+};
+
+/*
+ * Run the same RECEIVE fragments with and without the MERGE_SORTED and
+ * COMBINE_AGGREGATES flags and check that the ORDER BY and the hash
+ * aggregate above the RECEIVE produce the same rows either way.
+ */
+class ReceiveTest : public Test {
+public:
+    ReceiveTest() {
+        catalog_string =
+            "add / clusters cluster"
+            "\nadd /clusters[cluster] databases database"
+            "\nadd /clusters[cluster]/databases[database] programs program";
+
+        catalog::Catalog tempCatalog; // To retrieve the cluster ID
+        tempCatalog.execute(catalog_string);
+        CatalogId cluster_id = tempCatalog.clusters().get("cluster")->relativeIndex();
+
+        // The engine owns the topend
+        topend = new MockTopend();
+        engine = new VoltDBEngine(topend, new StdoutLogProxy());
+        ASSERT_TRUE(engine->initialize(cluster_id, 1001, 0, 0, ""));
+        ASSERT_TRUE(engine->loadCatalog(catalog_string));
+        database = engine->getCatalog()->clusters().get("cluster")->databases().get("database");
+    }
+
+    ~ReceiveTest() {
+        for (int ii = 0; ii < fragments.size(); ii++) {
+            delete fragments[ii];
+        }
+        delete engine;
+    }
+
+protected:
+    VoltDBEngine *engine;
+    MockTopend *topend;
+    std::string catalog_string;
+    const catalog::Database *database;
+    std::vector<PlanNodeFragment*> fragments;
+
+    // ----------------------------------------------------------------
+    // JSON plan builders
+    // ----------------------------------------------------------------
+
+    static std::string column(int guid, const std::string &name,
+                              const std::string &type, int size) {
+        std::ostringstream buffer;
+        buffer << "{\"GUID\":" << guid << ",\"NAME\":\"" << name << "\""
+               << ",\"TYPE\":\"" << type << "\",\"SIZE\":" << size << "}";
+        return buffer.str();
+    }
+
+    // Every dependency has the columns (A INTEGER, B BIGINT)
+    static std::string receive(int id, int parent_id, bool merge_sorted,
+                               bool combine_aggregates) {
+        std::ostringstream buffer;
+        buffer << "{\"ID\":" << id << ",\"PLAN_NODE_TYPE\":\"RECEIVE\","
+               << "\"INLINE_NODES\":[],\"PARENT_IDS\":[" << parent_id << "],"
+               << "\"CHILDREN_IDS\":[],\"OUTPUT_COLUMNS\":["
+               << column(1, "A", "INTEGER", 4) << ","
+               << column(2, "B", "BIGINT", 8) << "],"
+               << "\"MERGE_SORTED\":" << (merge_sorted ? "true" : "false") << ","
+               << "\"COMBINE_AGGREGATES\":" << (combine_aggregates ? "true" : "false")
+               << "}";
+        return buffer.str();
+    }
+
+    static std::string limit(int id, int limit) {
+        std::ostringstream buffer;
+        buffer << "{\"ID\":" << id << ",\"PLAN_NODE_TYPE\":\"LIMIT\","
+               << "\"INLINE_NODES\":[],\"PARENT_IDS\":[],\"CHILDREN_IDS\":[],"
+               << "\"OUTPUT_COLUMNS\":[],\"LIMIT\":" << limit << ",\"OFFSET\":0}";
+        return buffer.str();
+    }
+
+    // ORDER BY B ASC, with an inline LIMIT if limit >= 0
+    static std::string orderBy(int id, int child_id, int limit_value) {
+        std::ostringstream buffer;
+        buffer << "{\"ID\":" << id << ",\"PLAN_NODE_TYPE\":\"ORDERBY\","
+               << "\"INLINE_NODES\":[" << (limit_value >= 0 ? limit(id + 10, limit_value) : "") << "],"
+               << "\"PARENT_IDS\":[],\"CHILDREN_IDS\":[" << child_id << "],"
+               << "\"OUTPUT_COLUMNS\":["
+               << column(1, "A", "INTEGER", 4) << ","
+               << column(2, "B", "BIGINT", 8) << "],"
+               << "\"SORT_COLUMNS\":[{\"COLUMN_NAME\":\"B\",\"COLUMN_GUID\":2,"
+               << "\"SORT_DIRECTION\":\"ASC\"}]}";
+        return buffer.str();
+    }
+
+    // SELECT A, SUM(B), MAX(B) ... GROUP BY A
+    static std::string hashAggregate(int id, int child_id) {
+        std::ostringstream buffer;
+        buffer << "{\"ID\":" << id << ",\"PLAN_NODE_TYPE\":\"HASHAGGREGATE\","
+               << "\"INLINE_NODES\":[],\"PARENT_IDS\":[],"
+               << "\"CHILDREN_IDS\":[" << child_id << "],"
+               << "\"OUTPUT_COLUMNS\":["
+               << column(1, "A", "INTEGER", 4) << ","
+               << column(10, "TOTAL", "BIGINT", 8) << ","
+               << column(11, "BIGGEST", "BIGINT", 8) << "],"
+               << "\"AGGREGATE_COLUMNS\":["
+               << "{\"AGGREGATE_TYPE\":\"AGGREGATE_SUM\",\"AGGREGATE_NAME\":\"B\","
+               << "\"AGGREGATE_GUID\":2,\"AGGREGATE_OUTPUT_COLUMN\":1},"
+               << "{\"AGGREGATE_TYPE\":\"AGGREGATE_MAX\",\"AGGREGATE_NAME\":\"B\","
+               << "\"AGGREGATE_GUID\":2,\"AGGREGATE_OUTPUT_COLUMN\":2}],"
+               << "\"GROUPBY_COLUMNS\":[" << column(1, "A", "INTEGER", 4) << "]}";
+        return buffer.str();
+    }
+
+    // The first node in the list is the root of the fragment
+    static std::string fragment(const std::string &nodes,
+                                const std::string &execute_list) {
+        return "{\"PLAN_NODES\":[" + nodes + "],"
+               "\"EXECUTE_LIST\":[" + execute_list + "],"
+               "\"PARAMETERS\":[]}";
+    }
+
+    // ----------------------------------------------------------------
+    // Execution
+    // ----------------------------------------------------------------
+
+    /*
+     * Deserialize the fragment and initialize every node the same way that
+     * VoltDBEngine::initPlanFragment() does
+     */
+    PlanNodeFragment* init(const std::string &json) {
+        json_spirit::Value value;
+        json_spirit::read(json, value);
+        PlanNodeFragment *pnf = PlanNodeFragment::fromJSONObject(value.get_obj(), database);
+        fragments.push_back(pnf);
+
+        int tempTableMemory = 0;
+        for (int ctr = 0; ctr < pnf->getExecuteList().size(); ctr++) {
+            initPlanNode(pnf->getExecuteList()[ctr], &tempTableMemory);
+        }
+        return pnf;
+    }
+
+    void initPlanNode(AbstractPlanNode *node, int *tempTableMemory) {
+        AbstractExecutor *executor = getNewExecutor(engine, node);
+        assert(executor);
+        node->setExecutor(executor);
+        std::map<PlanNodeType, AbstractPlanNode*>::iterator it;
+        for (it = node->getInlinePlanNodes().begin();
+             it != node->getInlinePlanNodes().end(); it++) {
+            initPlanNode(it->second, tempTableMemory);
+        }
+        bool ret = executor->init(engine, database, tempTableMemory);
+        assert(ret);
+    }
+
+    /*
+     * Execute the fragment over the given dependencies and return the rows
+     * of the root node's output table in order
+     */
+    std::vector<std::string> execute(PlanNodeFragment *pnf,
+                                     const std::vector<Dependency> &dependencies) {
+        topend->reset(dependencies);
+        NValueArray params(0);
+        const std::vector<AbstractPlanNode*> &list = pnf->getExecuteList();
+        for (int ctr = 0; ctr < list.size(); ctr++) {
+            bool ret = list[ctr]->getExecutor()->execute(params);
+            assert(ret);
+        }
+        Table *output = pnf->getRootNode()->getOutputTable();
+        std::vector<std::string> rows;
+        TableTuple tuple(output->schema());
+        TableIterator iterator(output);
+        while (iterator.next(tuple)) {
+            std::ostringstream buffer;
+            for (int col = 0; col < tuple.sizeInValues(); col++) {
+                buffer << (col > 0 ? "|" : "") << tuple.getNValue(col).debug();
+            }
+            rows.push_back(buffer.str());
+        }
+        // Clean up the RECEIVE the way that the engine does at the end of
+        // the fragment
+        for (int ctr = 0; ctr < list.size(); ctr++) {
+            if (list[ctr]->getExecutor()->needsPostExecuteClear()) {
+                list[ctr]->getOutputTable()->deleteAllTuples(false);
+            }
+        }
+        return rows;
+    }
+
+    /*
+     * Run both fragments twice over the same dependencies and make sure
+     * that they agree. Returns the rows that came back.
+     */
+    std::vector<std::string> compare(const std::string &expected_json,
+                                     const std::string &actual_json,
+                                     const std::vector<Dependency> &dependencies,
+                                     bool sorted) {
+        PlanNodeFragment *expected_pnf = init(expected_json);
+        PlanNodeFragment *actual_pnf = init(actual_json);
+        std::vector<std::string> expected;
+        std::vector<std::string> actual;
+        for (int round = 0; round < 2; round++) {
+            expected = execute(expected_pnf, dependencies);
+            actual = execute(actual_pnf, dependencies);
+            if (sorted) {
+                std::sort(expected.begin(), expected.end());
+                std::sort(actual.begin(), actual.end());
+            }
+            EXPECT_EQ(expected.size(), actual.size());
+            for (int ii = 0; ii < expected.size() && ii < actual.size(); ii++) {
+                EXPECT_EQ(expected[ii], actual[ii]);
+            }
+        }
+        return actual;
+    }
+
+    static std::string row(int32_t a, int64_t b) {
+        std::ostringstream buffer;
+        buffer << ValueFactory::getIntegerValue(a).debug() << "|"
+               << ValueFactory::getBigIntValue(b).debug();
+        return buffer.str();
+    }
+
+    /*
+     * One sorted run per partition. Partition p sends B = p, p + 4, p + 8,
+     * ... so the runs interleave, and partition 2 sends nothing at all.
+     */
+    static std::vector<Dependency> sortedRuns() {
+        int sizes[] = { 7, 12, 0, 3 };
+        std::vector<Dependency> dependencies;
+        for (int p = 0; p < 4; p++) {
+            Dependency dependency;
+            for (int ii = 0; ii < sizes[p]; ii++) {
+                int64_t b = p + (4 * ii);
+                dependency.push_back(Row(static_cast<int32_t>(b % 5), b));
+            }
+            dependencies.push_back(dependency);
+        }
+        return dependencies;
+    }
+
+    void checkMerge(int limit_value) {
+        std::string expected_json =
+            fragment(orderBy(1, 2, limit_value) + "," + receive(2, 1, false, false), "2,1");
+        std::string actual_json =
+            fragment(orderBy(1, 2, limit_value) + "," + receive(2, 1, true, false), "2,1");
+        std::vector<Dependency> dependencies = sortedRuns();
+        std::vector<std::string> rows = compare(expected_json, actual_json,
+                                                dependencies, false);
+
+        // The RECEIVE has to have kept track of the runs for the ORDER BY
+        // to merge them instead of sorting
+        ReceiveExecutor *receive_executor = dynamic_cast<ReceiveExecutor*>
+            (fragments.back()->getExecuteList()[0]->getExecutor());
+        ASSERT_TRUE(receive_executor != NULL);
+        ASSERT_EQ(dependencies.size(), receive_executor->getRunSizes().size());
+        for (int ii = 0; ii < dependencies.size(); ii++) {
+            EXPECT_EQ((int)dependencies[ii].size(), receive_executor->getRunSizes()[ii]);
+        }
+
+        // Check the merge against what it should have produced as well
+        std::vector<Row> all;
+        for (int ii = 0; ii < dependencies.size(); ii++) {
+            all.insert(all.end(), dependencies[ii].begin(), dependencies[ii].end());
+        }
+        int expected_size = (int)all.size();
+        if (limit_value >= 0 && limit_value < expected_size) {
+            expected_size = limit_value;
+        }
+        ASSERT_EQ(expected_size, (int)rows.size());
+        std::vector<int64_t> keys;
+        for (int ii = 0; ii < all.size(); ii++) {
+            keys.push_back(all[ii].second);
+        }
+        std::sort(keys.begin(), keys.end());
+        for (int ii = 0; ii < rows.size(); ii++) {
+            EXPECT_EQ(row(static_cast<int32_t>(keys[ii] % 5), keys[ii]), rows[ii]);
+        }
+    }
+};
+
+TEST_F(ReceiveTest, MergeSortedRuns) {
+    checkMerge(-1);
+}
+
+TEST_F(ReceiveTest, MergeSortedRunsWithLimit) {
+    // Stop in the middle of the runs, past the end of the shortest one
+    checkMerge(13);
+    // A limit past the total number of tuples returns everything
+    checkMerge(100);
+    checkMerge(0);
+}
+
+TEST_F(ReceiveTest, CombineAggregates) {
+    // Each partition sends back its partial SUM for some of the groups
+    std::vector<Dependency> dependencies;
+    for (int p = 0; p < 4; p++) {
+        Dependency dependency;
+        for (int32_t a = p; a < 10; a += (p + 1)) {
+            dependency.push_back(Row(a, (a * 100) + p));
+        }
+        dependencies.push_back(dependency);
+    }
+    dependencies.push_back(Dependency());
+
+    std::string expected_json =
+        fragment(hashAggregate(1, 2) + "," + receive(2, 1, false, false), "2,1");
+    std::string actual_json =
+        fragment(hashAggregate(1, 2) + "," + receive(2, 1, false, true), "2,1");
+    std::vector<std::string> rows = compare(expected_json, actual_json,
+                                            dependencies, true);
+
+    // Check the totals for each group as well
+    std::vector<std::string> expected;
+    for (int32_t a = 0; a < 10; a++) {
+        int64_t total = 0;
+        int64_t biggest = -1;
+        for (int p = 0; p < dependencies.size(); p++) {
+            for (int ii = 0; ii < dependencies[p].size(); ii++) {
+                if (dependencies[p][ii].first == a) {
+                    total += dependencies[p][ii].second;
+                    biggest = std::max(biggest, dependencies[p][ii].second);
+                }
+            }
+        }
+        expected.push_back(row(a, total) + "|" +
+                           ValueFactory::getBigIntValue(biggest).debug());
+    }
+    std::sort(expected.begin(), expected.end());
+    ASSERT_EQ(expected.size(), rows.size());
+    for (int ii = 0; ii < expected.size(); ii++) {
+        EXPECT_EQ(expected[ii], rows[ii]);
+    }
+}
+
+TEST_F(ReceiveTest, CombineAggregatesNoDependencies) {
+    std::string expected_json =
+        fragment(hashAggregate(1, 2) + "," + receive(2, 1, false, false), "2,1");
+    std::string actual_json =
+        fragment(hashAggregate(1, 2) + "," + receive(2, 1, false, true), "2,1");
+    std::vector<Dependency> dependencies(3);
+    EXPECT_EQ(0, (int)compare(expected_json, actual_json, dependencies, true).size());
+}
+
+int main() {
+     return TestSuite::globalInstance()->runAll();
+}
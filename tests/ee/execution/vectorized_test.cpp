@@ -0,0 +1,477 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2010 VoltDB L.L.C.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB L.L.C. are licensed under the following
+ * terms and conditions:
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/* Copyright (C) 2008 by H-Store Project
+ * Brown University
+ * Massachusetts Institute of Technology
+ * Yale University
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <algorithm>
+#include <sstream>
+#include <string>
+#include <vector>
+
+#include "harness.h"
+#include "json_spirit/json_spirit.h"
+
+#include "common/common.h"
+#include "common/tabletuple.h"
+#include "common/ValueFactory.hpp"
+#include "common/valuevector.h"
+#include "execution/VoltDBEngine.h"
+#include "executors/abstractexecutor.h"
+#include "executors/executorutil.h"
+#include "executors/tuplebatch.h"
+#include "plannodes/abstractplannode.h"
+#include "plannodes/plannodefragment.h"
+#include "storage/table.h"
+#include "storage/tableiterator.h"
+#include "catalog/catalog.h"
+#include "catalog/cluster.h"
+#include "catalog/database.h"
+
+using namespace std;
+using namespace voltdb;
+
+#define TABLE_NAME "T"
+
+/*
+ * Run the same plan fragments the way the engine does for a normal
+ * fragment and for a vectorized one, and check that the SeqScans and the
+ * aggregates that were fused with them produce the same rows.
+ */
+class VectorizedScanTest : public Test {
+public:
+    VectorizedScanTest() {
+        catalog_string =
+            "add / clusters cluster"
+            "\nadd /clusters[cluster] databases database"
+            "\nadd /clusters[cluster]/databases[database] programs program"
+            "\nadd /clusters[cluster]/databases[database] tables " TABLE_NAME
+            "\nset /clusters[cluster]/databases[database]/tables[" TABLE_NAME "] type 0"
+            "\nset /clusters[cluster]/databases[database]/tables[" TABLE_NAME "] isreplicated false"
+            "\nset /clusters[cluster]/databases[database]/tables[" TABLE_NAME "] partitioncolumn 0"
+            "\nset /clusters[cluster]/databases[database]/tables[" TABLE_NAME "] estimatedtuplecount 0"
+            "\nadd /clusters[cluster]/databases[database]/tables[" TABLE_NAME "] columns A"
+            "\nset /clusters[cluster]/databases[database]/tables[" TABLE_NAME "]/columns[A] index 0"
+            "\nset /clusters[cluster]/databases[database]/tables[" TABLE_NAME "]/columns[A] type 5"
+            "\nset /clusters[cluster]/databases[database]/tables[" TABLE_NAME "]/columns[A] size 0"
+            "\nset /clusters[cluster]/databases[database]/tables[" TABLE_NAME "]/columns[A] nullable false"
+            "\nset /clusters[cluster]/databases[database]/tables[" TABLE_NAME "]/columns[A] name \"A\""
+            "\nadd /clusters[cluster]/databases[database]/tables[" TABLE_NAME "] columns B"
+            "\nset /clusters[cluster]/databases[database]/tables[" TABLE_NAME "]/columns[B] index 1"
+            "\nset /clusters[cluster]/databases[database]/tables[" TABLE_NAME "]/columns[B] type 6"
+            "\nset /clusters[cluster]/databases[database]/tables[" TABLE_NAME "]/columns[B] size 0"
+            "\nset /clusters[cluster]/databases[database]/tables[" TABLE_NAME "]/columns[B] nullable false"
+            "\nset /clusters[cluster]/databases[database]/tables[" TABLE_NAME "]/columns[B] name \"B\"";
+
+        catalog::Catalog tempCatalog; // To retrieve the cluster ID
+        tempCatalog.execute(catalog_string);
+        CatalogId cluster_id = tempCatalog.clusters().get("cluster")->relativeIndex();
+
+        engine = new VoltDBEngine();
+        ASSERT_TRUE(engine->initialize(cluster_id, 1001, 0, 0, ""));
+        ASSERT_TRUE(engine->loadCatalog(catalog_string));
+        database = engine->getCatalog()->clusters().get("cluster")->databases().get("database");
+        table = engine->getTable(TABLE_NAME);
+        assert(table);
+    }
+
+    ~VectorizedScanTest() {
+        for (int ii = 0; ii < fragments.size(); ii++) {
+            delete fragments[ii];
+        }
+        delete engine;
+    }
+
+protected:
+    VoltDBEngine *engine;
+    std::string catalog_string;
+    const catalog::Database *database;
+    Table *table;
+    std::vector<PlanNodeFragment*> fragments;
+
+    /*
+     * A = i % 100, B = i
+     */
+    void loadTable(int num_tuples) {
+        TableTuple &tuple = table->tempTuple();
+        for (int ii = 0; ii < num_tuples; ii++) {
+            tuple.setNValue(0, ValueFactory::getIntegerValue(ii % 100));
+            tuple.setNValue(1, ValueFactory::getBigIntValue(ii));
+            ASSERT_TRUE(table->insertTuple(tuple));
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // JSON plan builders
+    // ----------------------------------------------------------------
+
+    static std::string column(int guid, const std::string &name,
+                              const std::string &type, int size) {
+        std::ostringstream buffer;
+        buffer << "{\"GUID\":" << guid << ",\"NAME\":\"" << name << "\""
+               << ",\"TYPE\":\"" << type << "\",\"SIZE\":" << size << "}";
+        return buffer.str();
+    }
+
+    static std::string tableColumns() {
+        return column(1, "A", "INTEGER", 4) + "," + column(2, "B", "BIGINT", 8);
+    }
+
+    static std::string tupleValue(int idx, const std::string &name,
+                                  const std::string &type, int size) {
+        std::ostringstream buffer;
+        buffer << "{\"TYPE\":\"VALUE_TUPLE\",\"VALUE_TYPE\":\"" << type << "\""
+               << ",\"VALUE_SIZE\":" << size << ",\"COLUMN_IDX\":" << idx
+               << ",\"TABLE_NAME\":\"" TABLE_NAME "\",\"COLUMN_NAME\":\""
+               << name << "\"}";
+        return buffer.str();
+    }
+
+    static std::string parameter(int idx, const std::string &type, int size) {
+        std::ostringstream buffer;
+        buffer << "{\"TYPE\":\"VALUE_PARAMETER\",\"VALUE_TYPE\":\"" << type << "\""
+               << ",\"VALUE_SIZE\":" << size << ",\"PARAM_IDX\":" << idx << "}";
+        return buffer.str();
+    }
+
+    static std::string binary(const std::string &op, const std::string &left,
+                              const std::string &right) {
+        return "{\"TYPE\":\"" + op + "\",\"VALUE_TYPE\":\"BIGINT\",\"VALUE_SIZE\":0,"
+               "\"LEFT\":" + left + ",\"RIGHT\":" + right + "}";
+    }
+
+    // A < ?0 AND B >= ?1 flattens into a CompiledPredicate
+    static std::string compiledPredicate() {
+        return binary("CONJUNCTION_AND",
+                      binary("COMPARE_LESSTHAN",
+                             tupleValue(0, "A", "INTEGER", 4),
+                             parameter(0, "INTEGER", 4)),
+                      binary("COMPARE_GREATERTHANOREQUALTO",
+                             tupleValue(1, "B", "BIGINT", 8),
+                             parameter(1, "BIGINT", 8)));
+    }
+
+    // A < ?0 OR B >= ?1 has to be interpreted
+    static std::string interpretedPredicate() {
+        return binary("CONJUNCTION_OR",
+                      binary("COMPARE_LESSTHAN",
+                             tupleValue(0, "A", "INTEGER", 4),
+                             parameter(0, "INTEGER", 4)),
+                      binary("COMPARE_GREATERTHANOREQUALTO",
+                             tupleValue(1, "B", "BIGINT", 8),
+                             parameter(1, "BIGINT", 8)));
+    }
+
+    static std::string limit(int id, int limit) {
+        std::ostringstream buffer;
+        buffer << "{\"ID\":" << id << ",\"PLAN_NODE_TYPE\":\"LIMIT\","
+               << "\"INLINE_NODES\":[],\"PARENT_IDS\":[],\"CHILDREN_IDS\":[],"
+               << "\"OUTPUT_COLUMNS\":[],\"LIMIT\":" << limit << ",\"OFFSET\":0}";
+        return buffer.str();
+    }
+
+    static std::string seqScan(int id, int parent_id,
+                               const std::string &predicate,
+                               const std::string &inline_nodes) {
+        std::ostringstream buffer;
+        buffer << "{\"ID\":" << id << ",\"PLAN_NODE_TYPE\":\"SEQSCAN\","
+               << "\"INLINE_NODES\":[" << inline_nodes << "],"
+               << "\"PARENT_IDS\":[";
+        if (parent_id >= 0) buffer << parent_id;
+        buffer << "],\"CHILDREN_IDS\":[],"
+               << "\"OUTPUT_COLUMNS\":[" << tableColumns() << "],"
+               << "\"TARGET_TABLE_NAME\":\"" TABLE_NAME "\"";
+        if (predicate.empty() == false) {
+            buffer << ",\"PREDICATE\":" << predicate;
+        }
+        buffer << "}";
+        return buffer.str();
+    }
+
+    /*
+     * With group_by:    SELECT A, COUNT(B), SUM(B), MAX(B) ... GROUP BY A
+     * Without group_by: SELECT COUNT(B), SUM(B), MIN(A), MAX(B) ...
+     */
+    static std::string aggregate(int id, int child_id, bool group_by) {
+        std::ostringstream buffer;
+        buffer << "{\"ID\":" << id << ",\"PLAN_NODE_TYPE\":\""
+               << (group_by ? "HASHAGGREGATE" : "AGGREGATE") << "\","
+               << "\"INLINE_NODES\":[],\"PARENT_IDS\":[],"
+               << "\"CHILDREN_IDS\":[" << child_id << "],";
+        if (group_by) {
+            buffer << "\"OUTPUT_COLUMNS\":["
+                   << column(1, "A", "INTEGER", 4) << ","
+                   << column(10, "CNT", "BIGINT", 8) << ","
+                   << column(11, "TOTAL", "BIGINT", 8) << ","
+                   << column(12, "BIGGEST", "BIGINT", 8) << "],"
+                   << "\"AGGREGATE_COLUMNS\":["
+                   << aggregateColumn("AGGREGATE_COUNT", "B", 2, 1) << ","
+                   << aggregateColumn("AGGREGATE_SUM", "B", 2, 2) << ","
+                   << aggregateColumn("AGGREGATE_MAX", "B", 2, 3) << "],"
+                   << "\"GROUPBY_COLUMNS\":[" << column(1, "A", "INTEGER", 4) << "]";
+        } else {
+            buffer << "\"OUTPUT_COLUMNS\":["
+                   << column(10, "CNT", "BIGINT", 8) << ","
+                   << column(11, "TOTAL", "BIGINT", 8) << ","
+                   << column(12, "SMALLEST", "INTEGER", 4) << ","
+                   << column(13, "BIGGEST", "BIGINT", 8) << "],"
+                   << "\"AGGREGATE_COLUMNS\":["
+                   << aggregateColumn("AGGREGATE_COUNT", "B", 2, 0) << ","
+                   << aggregateColumn("AGGREGATE_SUM", "B", 2, 1) << ","
+                   << aggregateColumn("AGGREGATE_MIN", "A", 1, 2) << ","
+                   << aggregateColumn("AGGREGATE_MAX", "B", 2, 3) << "]";
+        }
+        buffer << "}";
+        return buffer.str();
+    }
+
+    static std::string aggregateColumn(const std::string &type,
+                                       const std::string &name,
+                                       int guid, int output_column) {
+        std::ostringstream buffer;
+        buffer << "{\"AGGREGATE_TYPE\":\"" << type << "\","
+               << "\"AGGREGATE_NAME\":\"" << name << "\","
+               << "\"AGGREGATE_GUID\":" << guid << ","
+               << "\"AGGREGATE_OUTPUT_COLUMN\":" << output_column << "}";
+        return buffer.str();
+    }
+
+    // The first node in the list is the root of the fragment
+    static std::string fragment(const std::string &nodes,
+                                const std::string &execute_list) {
+        return "{\"PLAN_NODES\":[" + nodes + "],"
+               "\"EXECUTE_LIST\":[" + execute_list + "],"
+               "\"PARAMETERS\":[]}";
+    }
+
+    // ----------------------------------------------------------------
+    // Execution
+    // ----------------------------------------------------------------
+
+    /*
+     * Deserialize the fragment and initialize every node the same way that
+     * VoltDBEngine::initPlanFragment() does, then build the runtime list of
+     * executors either one-to-one or through fuseVectorizedScans().
+     */
+    PlanNodeFragment* init(const std::string &json, bool vectorized,
+                           std::vector<AbstractExecutor*> &list) {
+        json_spirit::Value value;
+        json_spirit::read(json, value);
+        PlanNodeFragment *pnf = PlanNodeFragment::fromJSONObject(value.get_obj(), database);
+        fragments.push_back(pnf);
+
+        int tempTableMemory = 0;
+        for (int ctr = 0; ctr < pnf->getExecuteList().size(); ctr++) {
+            initPlanNode(pnf->getExecuteList()[ctr], &tempTableMemory);
+        }
+        if (vectorized) {
+            fuseVectorizedScans(pnf->getExecuteList(), list);
+        } else {
+            for (int ctr = 0; ctr < pnf->getExecuteList().size(); ctr++) {
+                list.push_back(pnf->getExecuteList()[ctr]->getExecutor());
+            }
+        }
+        return pnf;
+    }
+
+    void initPlanNode(AbstractPlanNode *node, int *tempTableMemory) {
+        AbstractExecutor *executor = getNewExecutor(engine, node);
+        assert(executor);
+        node->setExecutor(executor);
+        std::map<PlanNodeType, AbstractPlanNode*>::iterator it;
+        for (it = node->getInlinePlanNodes().begin();
+             it != node->getInlinePlanNodes().end(); it++) {
+            initPlanNode(it->second, tempTableMemory);
+        }
+        bool ret = executor->init(engine, database, tempTableMemory);
+        assert(ret);
+    }
+
+    /*
+     * Execute the list and return the rows of the root node's output table
+     */
+    std::vector<std::string> execute(PlanNodeFragment *pnf,
+                                     std::vector<AbstractExecutor*> &list,
+                                     const NValueArray &params) {
+        for (int ctr = 0; ctr < list.size(); ctr++) {
+            bool ret = list[ctr]->execute(params);
+            assert(ret);
+        }
+        Table *output = pnf->getRootNode()->getOutputTable();
+        std::vector<std::string> rows;
+        TableTuple tuple(output->schema());
+        TableIterator iterator(output);
+        while (iterator.next(tuple)) {
+            std::ostringstream buffer;
+            for (int col = 0; col < tuple.sizeInValues(); col++) {
+                buffer << (col > 0 ? "|" : "") << tuple.getNValue(col).debug();
+            }
+            rows.push_back(buffer.str());
+        }
+        return rows;
+    }
+
+    /*
+     * Run the fragment both ways and make sure that the results match.
+     * Returns the number of rows that came back.
+     */
+    int compare(const std::string &json, const NValueArray &params,
+                bool sorted, int expected_executors) {
+        std::vector<AbstractExecutor*> normal_list;
+        PlanNodeFragment *normal = init(json, false, normal_list);
+        std::vector<AbstractExecutor*> vectorized_list;
+        PlanNodeFragment *vectorized = init(json, true, vectorized_list);
+        EXPECT_EQ(expected_executors, (int)vectorized_list.size());
+
+        // Run everything twice to make sure that nothing is left over
+        // in the output tables between executions
+        std::vector<std::string> expected;
+        std::vector<std::string> actual;
+        for (int round = 0; round < 2; round++) {
+            expected = execute(normal, normal_list, params);
+            actual = execute(vectorized, vectorized_list, params);
+            if (sorted) {
+                std::sort(expected.begin(), expected.end());
+                std::sort(actual.begin(), actual.end());
+            }
+            EXPECT_EQ(expected.size(), actual.size());
+            for (int ii = 0; ii < expected.size() && ii < actual.size(); ii++) {
+                EXPECT_EQ(expected[ii], actual[ii]);
+            }
+        }
+        return (int)actual.size();
+    }
+
+    NValueArray makeParams(int32_t a, int64_t b) {
+        NValueArray params(2);
+        params[0] = ValueFactory::getIntegerValue(a);
+        params[1] = ValueFactory::getBigIntValue(b);
+        return params;
+    }
+};
+
+// Scan with a compiled predicate over a partial last batch
+TEST_F(VectorizedScanTest, ScanCompiledPredicate) {
+    loadTable(2500);
+    NValueArray params = makeParams(10, 1000);
+    std::string json = fragment(seqScan(1, -1, compiledPredicate(), ""), "1");
+    // A < 10 for 10 out of every 100 tuples in [1000, 2500)
+    EXPECT_EQ(150, compare(json, params, false, 1));
+}
+
+// Scan with a predicate that has to be interpreted
+TEST_F(VectorizedScanTest, ScanInterpretedPredicate) {
+    loadTable(2500);
+    NValueArray params = makeParams(10, 2000);
+    std::string json = fragment(seqScan(1, -1, interpretedPredicate(), ""), "1");
+    // 500 tuples in [2000, 2500) plus 10 out of every 100 before that
+    EXPECT_EQ(700, compare(json, params, false, 1));
+}
+
+// Predicates that select nothing and everything
+TEST_F(VectorizedScanTest, ScanAllOrNothing) {
+    loadTable(TUPLE_BATCH_SIZE + 1);
+    std::string json = fragment(seqScan(1, -1, compiledPredicate(), ""), "1");
+    EXPECT_EQ(0, compare(json, makeParams(0, 0), false, 1));
+    EXPECT_EQ(TUPLE_BATCH_SIZE + 1, compare(json, makeParams(100, 0), false, 1));
+}
+
+// An inline LIMIT that cuts off the scan in the middle of a batch
+TEST_F(VectorizedScanTest, ScanLimit) {
+    loadTable(2500);
+    NValueArray params = makeParams(50, 0);
+    std::string json = fragment(seqScan(1, -1, compiledPredicate(), limit(2, 600)), "1");
+    EXPECT_EQ(600, compare(json, params, false, 1));
+}
+
+TEST_F(VectorizedScanTest, ScanEmptyTable) {
+    std::string json = fragment(seqScan(1, -1, compiledPredicate(), ""), "1");
+    EXPECT_EQ(0, compare(json, makeParams(10, 0), false, 1));
+    json = fragment(seqScan(1, -1, interpretedPredicate(), ""), "1");
+    EXPECT_EQ(0, compare(json, makeParams(10, 0), false, 1));
+}
+
+// The scan is fused into the aggregate, so only one executor runs
+TEST_F(VectorizedScanTest, FusedAggregate) {
+    loadTable(2500);
+    NValueArray params = makeParams(10, 1000);
+    std::string nodes = aggregate(1, 2, false) + "," + seqScan(2, 1, compiledPredicate(), "");
+    EXPECT_EQ(1, compare(fragment(nodes, "2,1"), params, false, 1));
+
+    nodes = aggregate(1, 2, false) + "," + seqScan(2, 1, interpretedPredicate(), "");
+    EXPECT_EQ(1, compare(fragment(nodes, "2,1"), params, false, 1));
+
+    nodes = aggregate(1, 2, false) + "," + seqScan(2, 1, "", "");
+    EXPECT_EQ(1, compare(fragment(nodes, "2,1"), params, false, 1));
+}
+
+TEST_F(VectorizedScanTest, FusedHashAggregate) {
+    loadTable(2500);
+    NValueArray params = makeParams(10, 1000);
+    std::string nodes = aggregate(1, 2, true) + "," + seqScan(2, 1, compiledPredicate(), "");
+    EXPECT_EQ(10, compare(fragment(nodes, "2,1"), params, true, 1));
+
+    nodes = aggregate(1, 2, true) + "," + seqScan(2, 1, interpretedPredicate(), "");
+    EXPECT_EQ(100, compare(fragment(nodes, "2,1"), params, true, 1));
+}
+
+TEST_F(VectorizedScanTest, FusedAggregateEmptyTable) {
+    NValueArray params = makeParams(10, 0);
+    std::string nodes = aggregate(1, 2, false) + "," + seqScan(2, 1, compiledPredicate(), "");
+    compare(fragment(nodes, "2,1"), params, false, 1);
+
+    nodes = aggregate(1, 2, true) + "," + seqScan(2, 1, compiledPredicate(), "");
+    EXPECT_EQ(0, compare(fragment(nodes, "2,1"), params, true, 1));
+}
+
+// A scan with an inline LIMIT cannot be fused, but it still runs vectorized
+TEST_F(VectorizedScanTest, UnfusedAggregate) {
+    loadTable(2500);
+    NValueArray params = makeParams(50, 0);
+    std::string nodes = aggregate(1, 2, true) + "," +
+                        seqScan(2, 1, compiledPredicate(), limit(3, 1500));
+    EXPECT_EQ(50, compare(fragment(nodes, "2,1"), params, true, 2));
+}
+
+int main() {
+     return TestSuite::globalInstance()->runAll();
+}
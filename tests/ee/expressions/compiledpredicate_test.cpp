@@ -0,0 +1,253 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2010 VoltDB L.L.C.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB L.L.C. are licensed under the following
+ * terms and conditions:
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/* Copyright (C) 2008 by H-Store Project
+ * Brown University
+ * Massachusetts Institute of Technology
+ * Yale University
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <vector>
+
+#include "harness.h"
+
+#include "common/common.h"
+#include "common/tabletuple.h"
+#include "common/TupleSchema.h"
+#include "common/ValueFactory.hpp"
+#include "common/valuevector.h"
+#include "expressions/abstractexpression.h"
+#include "expressions/compiledpredicate.h"
+#include "expressions/expressionutil.h"
+#include "expressions/tuplevalueexpression.h"
+
+using namespace std;
+using namespace voltdb;
+
+/*
+ * Check that a CompiledPredicate gives the same answer as the
+ * interpreted AbstractExpression tree that it was compiled from.
+ */
+class CompiledPredicateTest : public Test {
+public:
+    CompiledPredicateTest() {
+        vector<ValueType> columnTypes;
+        vector<int32_t> columnLengths;
+        vector<bool> columnAllowNull;
+        columnTypes.push_back(VALUE_TYPE_INTEGER);
+        columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_INTEGER));
+        columnTypes.push_back(VALUE_TYPE_BIGINT);
+        columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_BIGINT));
+        columnTypes.push_back(VALUE_TYPE_TINYINT);
+        columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_TINYINT));
+        for (int ii = 0; ii < columnTypes.size(); ii++) {
+            columnAllowNull.push_back(true);
+        }
+        m_schema = TupleSchema::createTupleSchema(columnTypes, columnLengths, columnAllowNull, true);
+        m_data = new char[m_schema->tupleLength() + TUPLE_HEADER_SIZE];
+        m_tuple = TableTuple(m_data, m_schema);
+    }
+
+    ~CompiledPredicateTest() {
+        delete[] m_data;
+        TupleSchema::freeTupleSchema(m_schema);
+    }
+
+    void setTuple(int32_t a, int64_t b, int8_t c) {
+        m_tuple.setNValue(0, ValueFactory::getIntegerValue(a));
+        m_tuple.setNValue(1, ValueFactory::getBigIntValue(b));
+        m_tuple.setNValue(2, ValueFactory::getTinyIntValue(c));
+    }
+
+    AbstractExpression* column(int idx) {
+        return new TupleValueExpression(idx, "TABLE", "COLUMN");
+    }
+
+    // (col0 > ?0) AND (?1 = col1) AND (col2 <= 5)
+    AbstractExpression* buildPredicate() {
+        AbstractExpression *first = comparisonFactory(EXPRESSION_TYPE_COMPARE_GREATERTHAN,
+                                                      column(0),
+                                                      parameterValueFactory(0));
+        AbstractExpression *second = comparisonFactory(EXPRESSION_TYPE_COMPARE_EQUAL,
+                                                       parameterValueFactory(1),
+                                                       column(1));
+        AbstractExpression *third = comparisonFactory(EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO,
+                                                      column(2),
+                                                      constantValueFactory(ValueFactory::getTinyIntValue(5)));
+        return conjunctionFactory(EXPRESSION_TYPE_CONJUNCTION_AND, first,
+                                  conjunctionFactory(EXPRESSION_TYPE_CONJUNCTION_AND, second, third));
+    }
+
+protected:
+    TupleSchema *m_schema;
+    char *m_data;
+    TableTuple m_tuple;
+};
+
+TEST_F(CompiledPredicateTest, MatchesInterpreted) {
+    AbstractExpression *predicate = buildPredicate();
+    CompiledPredicate *compiled = CompiledPredicate::compile(predicate, m_schema);
+    ASSERT_TRUE(compiled != NULL);
+    EXPECT_EQ(3, compiled->getTermCount());
+
+    NValueArray params(2);
+    params[0] = ValueFactory::getIntegerValue(10);
+    params[1] = ValueFactory::getBigIntValue(77);
+    predicate->substitute(params);
+    EXPECT_TRUE(compiled->bind(params));
+
+    for (int32_t a = 8; a < 13; a++) {
+        for (int64_t b = 76; b < 79; b++) {
+            for (int8_t c = 3; c < 8; c++) {
+                setTuple(a, b, c);
+                EXPECT_EQ(predicate->eval(&m_tuple, NULL).isTrue(),
+                          compiled->eval(&m_tuple));
+            }
+        }
+    }
+
+    // Comparisons against NULL columns are never true
+    m_tuple.setNValue(0, NValue::getNullValue(VALUE_TYPE_INTEGER));
+    EXPECT_FALSE(compiled->eval(&m_tuple));
+
+    delete compiled;
+    delete predicate;
+}
+
+TEST_F(CompiledPredicateTest, BatchFilter) {
+    AbstractExpression *predicate = buildPredicate();
+    CompiledPredicate *compiled = CompiledPredicate::compile(predicate, m_schema);
+    ASSERT_TRUE(compiled != NULL);
+
+    NValueArray params(2);
+    params[0] = ValueFactory::getIntegerValue(10);
+    params[1] = ValueFactory::getBigIntValue(77);
+    predicate->substitute(params);
+    EXPECT_TRUE(compiled->bind(params));
+
+    // Lay out a batch of tuples that covers every combination of the
+    // terms passing and failing, including a NULL column
+    const int tupleLength = m_schema->tupleLength() + TUPLE_HEADER_SIZE;
+    const int count = 5 * 3 * 5 + 1;
+    char *data = new char[count * tupleLength];
+    char *addresses[count];
+    int idx = 0;
+    for (int32_t a = 8; a < 13; a++) {
+        for (int64_t b = 76; b < 79; b++) {
+            for (int8_t c = 3; c < 8; c++) {
+                addresses[idx] = data + (idx * tupleLength);
+                TableTuple tuple(addresses[idx], m_schema);
+                tuple.setNValue(0, ValueFactory::getIntegerValue(a));
+                tuple.setNValue(1, ValueFactory::getBigIntValue(b));
+                tuple.setNValue(2, ValueFactory::getTinyIntValue(c));
+                idx++;
+            }
+        }
+    }
+    addresses[idx] = data + (idx * tupleLength);
+    TableTuple nullTuple(addresses[idx], m_schema);
+    nullTuple.setNValue(0, NValue::getNullValue(VALUE_TYPE_INTEGER));
+    nullTuple.setNValue(1, ValueFactory::getBigIntValue(77));
+    nullTuple.setNValue(2, ValueFactory::getTinyIntValue(3));
+
+    // The selection vector has to hold exactly the tuples that the
+    // interpreted predicate accepts, in their original order
+    int selection[count];
+    int selected = compiled->filter(addresses, count, selection);
+    int expected = 0;
+    for (int ctr = 0; ctr < count; ctr++) {
+        TableTuple tuple(addresses[ctr], m_schema);
+        if (predicate->eval(&tuple, NULL).isTrue()) {
+            ASSERT_TRUE(expected < selected);
+            EXPECT_EQ(ctr, selection[expected]);
+            expected++;
+        }
+    }
+    EXPECT_EQ(expected, selected);
+    EXPECT_TRUE(selected > 0);
+
+    delete[] data;
+    delete compiled;
+    delete predicate;
+}
+
+TEST_F(CompiledPredicateTest, NullParameter) {
+    AbstractExpression *predicate = buildPredicate();
+    CompiledPredicate *compiled = CompiledPredicate::compile(predicate, m_schema);
+    ASSERT_TRUE(compiled != NULL);
+
+    NValueArray params(2);
+    params[0] = NValue::getNullValue(VALUE_TYPE_INTEGER);
+    params[1] = ValueFactory::getBigIntValue(77);
+    EXPECT_TRUE(compiled->bind(params));
+    setTuple(100, 77, 1);
+    EXPECT_FALSE(compiled->eval(&m_tuple));
+
+    // Non-integer parameters make us fall back to the interpreter
+    params[0] = ValueFactory::getDoubleValue(1.5);
+    EXPECT_FALSE(compiled->bind(params));
+
+    delete compiled;
+    delete predicate;
+}
+
+TEST_F(CompiledPredicateTest, UnsupportedShapes) {
+    // ORs are left to the interpreter
+    AbstractExpression *predicate =
+        conjunctionFactory(EXPRESSION_TYPE_CONJUNCTION_OR,
+                           comparisonFactory(EXPRESSION_TYPE_COMPARE_EQUAL,
+                                             column(0),
+                                             parameterValueFactory(0)),
+                           comparisonFactory(EXPRESSION_TYPE_COMPARE_EQUAL,
+                                             column(1),
+                                             parameterValueFactory(1)));
+    EXPECT_TRUE(CompiledPredicate::compile(predicate, m_schema) == NULL);
+    delete predicate;
+
+    // So are column-vs-column comparisons
+    predicate = comparisonFactory(EXPRESSION_TYPE_COMPARE_EQUAL,
+                                  column(0),
+                                  column(1));
+    EXPECT_TRUE(CompiledPredicate::compile(predicate, m_schema) == NULL);
+    delete predicate;
+}
+
+int main() {
+     return TestSuite::globalInstance()->runAll();
+}
@@ -81,7 +81,7 @@ using namespace voltdb;
 
 class IndexTest : public Test {
 public:
-    IndexTest() : table(NULL) {}
+    IndexTest() : table(NULL), schema(NULL) {}
     ~IndexTest()
     {
         delete table;
@@ -107,7 +107,7 @@ public:
             sprintf(buffer, "column%02d", ctr);
             columnNames[ctr] = buffer;
         }
-        TupleSchema* schema =
+        schema =
             TupleSchema::createTupleSchema(columnTypes,
                                            columnLengths,
                                            columnAllowNull,
@@ -154,6 +154,7 @@ public:
 
 protected:
     PersistentTable* table;
+    TupleSchema* schema;
     char* m_exceptionBuffer;
     VoltDBEngine* m_engine;
 };
@@ -618,6 +619,69 @@ TEST_F(IndexTest, IntsMulti) {
     delete[] searchkey.address();
 }
 
+TEST_F(IndexTest, BulkAddEntries) {
+    vector<int> iu_column_indices;
+    vector<ValueType> iu_column_types;
+    iu_column_indices.push_back(3);
+    iu_column_types.push_back(VALUE_TYPE_BIGINT);
+    init(TableIndexScheme("iu3",
+                          BALANCED_TREE_INDEX,
+                          iu_column_indices,
+                          iu_column_types,
+                          true, true, NULL));
+    TableIndex* index = table->index("iu3");
+    EXPECT_EQ(true, index != NULL);
+
+    // add the tuples backwards so that the index has to sort them
+    vector<void*> addresses;
+    TableTuple tuple(table->schema());
+    TableIterator iter = table->tableIterator();
+    while (iter.next(tuple)) {
+        addresses.insert(addresses.begin(), tuple.address());
+    }
+    EXPECT_EQ(NUM_OF_TUPLES, addresses.size());
+
+    TableIndex* unique =
+        TableIndexFactory::getInstance(TableIndexScheme("bulk_unique",
+                                                        BALANCED_TREE_INDEX,
+                                                        iu_column_indices,
+                                                        iu_column_types,
+                                                        true, true,
+                                                        schema));
+    EXPECT_EQ(true, unique->addEntries(&tuple, addresses));
+    EXPECT_EQ(index->getSize(), unique->getSize());
+    for (int i = 0; i < addresses.size(); ++i) {
+        tuple.move(addresses[i]);
+        EXPECT_EQ(true, unique->moveToTuple(&tuple));
+        EXPECT_EQ(tuple.address(), unique->nextValueAtKey().address());
+    }
+
+    // all of the keys are already there now
+    EXPECT_EQ(false, unique->addEntries(&tuple, addresses));
+    EXPECT_EQ(index->getSize(), unique->getSize());
+    delete unique;
+
+    vector<int> im_column_indices;
+    im_column_indices.push_back(1);
+    TableIndex* multi =
+        TableIndexFactory::getInstance(TableIndexScheme("bulk_multi",
+                                                        BALANCED_TREE_INDEX,
+                                                        im_column_indices,
+                                                        iu_column_types,
+                                                        false, true,
+                                                        schema));
+    EXPECT_EQ(true, multi->addEntries(&tuple, addresses));
+    EXPECT_EQ(NUM_OF_TUPLES, multi->getSize());
+    tuple.move(addresses[0]);
+    EXPECT_EQ(true, multi->moveToTuple(&tuple));
+    int count = 0;
+    while (!multi->nextValueAtKey().isNullTuple()) {
+        ++count;
+    }
+    EXPECT_EQ(NUM_OF_TUPLES / 2, count);
+    delete multi;
+}
+
 int main()
 {
     return TestSuite::globalInstance()->runAll();
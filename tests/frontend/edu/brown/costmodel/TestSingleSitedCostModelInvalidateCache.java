@@ -9,6 +9,7 @@ import java.util.Random;
 
 import org.voltdb.benchmark.tpcc.procedures.neworder;
 import org.voltdb.catalog.CatalogType;
+import org.voltdb.catalog.Column;
 import org.voltdb.catalog.Procedure;
 import org.voltdb.catalog.Table;
 
@@ -121,4 +122,34 @@ public class TestSingleSitedCostModelInvalidateCache extends BaseTestCase {
         List<CatalogType> all_items = new ArrayList<CatalogType>(catalog_proc.getStatements());
         this.validateCosts(cost_model, expected, all_items);
     }
+    
+    /**
+     * testIncrementalRepartition
+     */
+    public void testIncrementalRepartition() throws Exception {
+        final SingleSitedCostModel cost_model = new SingleSitedCostModel(catalog_db);
+        final double expected = cost_model.estimateWorkloadCost(catalog_db, workload);
+        assert(expected > 0);
+        
+        // Change the partitioning column of a table and only re-cost the txns
+        // that touch it. We should get back the same cost as a full pass
+        Table catalog_tbl = this.getTable("CUSTOMER");
+        Column orig_col = catalog_tbl.getPartitioncolumn();
+        Column new_col = this.getColumn(catalog_tbl, "C_ID");
+        assertNotSame(orig_col, new_col);
+        try {
+            catalog_tbl.setPartitioncolumn(new_col);
+            cost_model.invalidateCache(catalog_tbl);
+            assertFalse(cost_model.getDirtyTransactionIds().isEmpty());
+            double incremental = cost_model.estimateWorkloadCost(catalog_db, workload);
+            assertTrue(cost_model.getDirtyTransactionIds().isEmpty());
+            
+            double full = new SingleSitedCostModel(catalog_db).estimateWorkloadCost(catalog_db, workload);
+            assertEquals(full, incremental, 0.00001);
+        } finally {
+            catalog_tbl.setPartitioncolumn(orig_col);
+        }
+        cost_model.invalidateCache(catalog_tbl);
+        assertEquals(expected, cost_model.estimateWorkloadCost(catalog_db, workload), 0.00001);
+    }
 }
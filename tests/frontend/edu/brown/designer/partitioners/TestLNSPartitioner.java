@@ -286,6 +286,47 @@ public class TestLNSPartitioner extends BasePartitionerTestCase {
         } // FOR
     }
     
+    /**
+     * testParallelLocalSearch
+     */
+    public void testParallelLocalSearch() throws Exception {
+        // Two parallel rounds with the same seed and number of threads should
+        // pick the same neighborhoods and come back with the same solution
+        hints.search_threads = 4;
+        hints.search_seed = 981L;
+        hints.limit_back_tracks = 50;
+        hints.relaxation_min_size = 2;
+        hints.relaxation_factor_min = 0.5;
+        hints.enable_procparameter_search = false;
+        hints.max_memory_per_partition = Long.MAX_VALUE;
+        this.partitioner.init(this.hints);
+        this.partitioner.calculateInitialSolution(hints);
+        
+        PartitionPlan results[] = new PartitionPlan[2];
+        double costs[] = new double[results.length];
+        for (int i = 0; i < results.length; i++) {
+            this.partitioner.rng.setSeed(hints.search_seed);
+            this.partitioner.relaxed_sets.clear();
+            this.partitioner.relaxed_sets_max = null;
+            this.partitioner.last_relax_size = 0;
+            this.partitioner.last_halt_reason = AbstractPartitioner.HaltReason.NULL;
+            this.partitioner.restart_ctr = 0;
+            this.partitioner.best_solution = new PartitionPlan(this.partitioner.initial_solution);
+            this.partitioner.best_memory = this.partitioner.initial_memory;
+            this.partitioner.best_cost = this.partitioner.initial_cost;
+            
+            assertTrue(this.partitioner.parallelLocalSearch(hints));
+            assertEquals(hints.search_threads, this.partitioner.restart_ctr.intValue());
+            assertTrue(this.partitioner.best_cost <= this.partitioner.initial_cost);
+            results[i] = this.partitioner.best_solution;
+            costs[i] = this.partitioner.best_cost;
+        } // FOR
+        assertEquals(costs[0], costs[1]);
+        for (Table tbl : catalog_db.getTables()) {
+            assertEquals(tbl.toString(), results[0].getTableEntry(tbl), results[1].getTableEntry(tbl));
+        } // FOR
+    }
+    
     /**
      * testLocalSearchCostCheck
      */
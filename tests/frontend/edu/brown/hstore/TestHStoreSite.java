@@ -118,6 +118,54 @@ public class TestHStoreSite extends BaseTestCase {
         assertEquals(cresponse.getClientHandle(), clone.getClientHandle());
     }
     
+    /**
+     * testEventLoopBasePartition
+     */
+    @Test
+    public void testEventLoopBasePartition() throws Exception {
+        this.addPartitions(NUM_PARTITIONS);
+        Site catalog_site = CollectionUtil.first(CatalogUtil.getCluster(catalog).getSites());
+        boolean orig_thread_per_core = hstore_conf.site.exec_thread_per_core;
+        hstore_conf.site.exec_thread_per_core = true;
+        final HStoreSite hstore_site;
+        try {
+            hstore_site = new MockHStoreSite(catalog_site, hstore_conf);
+        } finally {
+            hstore_conf.site.exec_thread_per_core = orig_thread_per_core;
+        }
+        final Integer local_partitions[] = hstore_site.getLocalPartitionIdArray();
+        assertTrue(local_partitions.length > 1);
+        
+        // Requests without a base partition should go to the partition of the
+        // EventLoop that received them, regardless of their client handle
+        for (int i = 0; i < local_partitions.length; i++) {
+            final int offset = i;
+            final int results[] = new int[local_partitions.length];
+            Thread t = new Thread() {
+                public void run() {
+                    int loop_offset = hstore_site.getEventLoopOffset();
+                    results[0] = loop_offset;
+                    for (int handle = 1; handle < results.length; handle++) {
+                        results[handle] = hstore_site.getLocalBasePartition(loop_offset, handle);
+                    } // FOR
+                }
+            };
+            hstore_site.setEventLoopThread(offset, t);
+            t.start();
+            t.join();
+            assertEquals(offset, results[0]);
+            for (int handle = 1; handle < results.length; handle++) {
+                assertEquals(local_partitions[offset].intValue(), results[handle]);
+            } // FOR
+        } // FOR
+        
+        // Any other thread should still spread the requests across the partitions
+        assertEquals(-1, hstore_site.getEventLoopOffset());
+        for (int handle = 0; handle < local_partitions.length; handle++) {
+            assertEquals(local_partitions[handle].intValue(), hstore_site.getLocalBasePartition(-1, handle));
+        } // FOR
+    }
+    
 //    @Test
 //    public void testHStoreSite_AdHoc(){
 //    	this.hstore_site.run();
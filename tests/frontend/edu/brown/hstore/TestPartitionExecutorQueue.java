@@ -0,0 +1,154 @@
+package edu.brown.hstore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+import org.voltdb.messaging.FragmentTaskMessage;
+import org.voltdb.messaging.InitiateTaskMessage;
+import org.voltdb.messaging.PotentialSnapshotWorkMessage;
+import org.voltdb.messaging.TransactionInfoBaseMessage;
+import org.voltdb.messaging.VoltMessage;
+
+import edu.brown.hstore.PartitionExecutorQueue.Lane;
+
+public class TestPartitionExecutorQueue extends TestCase {
+
+    private static final int LANE_SIZE = 8;
+    private static final int NUM_THREADS = 4;
+    private static final int NUM_MESSAGES = 10000;
+
+    private final PartitionExecutorQueue queue = new PartitionExecutorQueue(LANE_SIZE);
+
+    private static InitiateTaskMessage makeInitiate(long txn_id, boolean sysproc) {
+        InitiateTaskMessage msg = new InitiateTaskMessage();
+        msg.setTxnId(txn_id);
+        msg.setSysProc(sysproc);
+        return (msg);
+    }
+
+    private static FragmentTaskMessage makeFragment(long txn_id, boolean sysproc) {
+        FragmentTaskMessage msg = new FragmentTaskMessage();
+        msg.setTxnId(txn_id);
+        msg.setSysProc(sysproc);
+        return (msg);
+    }
+
+    /**
+     * testPriorityOrder
+     */
+    public void testPriorityOrder() throws Exception {
+        List<VoltMessage> expected = new ArrayList<VoltMessage>();
+        expected.add(new PotentialSnapshotWorkMessage());
+        expected.add(makeFragment(5, true));
+        expected.add(makeInitiate(6, true));
+        expected.add(makeFragment(3, false));
+        expected.add(makeFragment(4, false));
+        expected.add(makeInitiate(1, false));
+        expected.add(makeInitiate(2, false));
+
+        // Add them in the reverse order of their lanes
+        for (int i = expected.size() - 1; i >= 0; i--) {
+            VoltMessage msg = expected.get(i);
+            if (Lane.get(msg) == Lane.INIT || Lane.get(msg) == Lane.WORK) continue;
+            assertTrue(this.queue.add(msg));
+        } // FOR
+        for (VoltMessage msg : expected) {
+            if (Lane.get(msg) == Lane.INIT || Lane.get(msg) == Lane.WORK) this.queue.add(msg);
+        } // FOR
+        assertEquals(expected.size(), this.queue.size());
+        assertEquals(2, this.queue.size(Lane.INIT));
+        assertEquals(expected.get(0), this.queue.peek());
+        assertEquals(expected.size(), this.queue.toArray().length);
+
+        for (VoltMessage msg : expected) {
+            assertSame(msg, this.queue.poll());
+        } // FOR
+        assertTrue(this.queue.isEmpty());
+        assertNull(this.queue.poll());
+    }
+
+    /**
+     * testOverflow
+     */
+    public void testOverflow() throws Exception {
+        int num_messages = LANE_SIZE * 4;
+        for (int i = 0; i < num_messages; i++) {
+            this.queue.add(makeInitiate(i, false));
+        } // FOR
+        assertEquals(num_messages, this.queue.size());
+        for (int i = 0; i < num_messages; i++) {
+            // Let a couple of new ones in while we're draining the overflow
+            if (i == LANE_SIZE) this.queue.add(makeInitiate(num_messages, false));
+            TransactionInfoBaseMessage msg = (TransactionInfoBaseMessage)this.queue.poll();
+            assertEquals(i, msg.getTxnId().longValue());
+        } // FOR
+        assertEquals(num_messages, ((TransactionInfoBaseMessage)this.queue.poll()).getTxnId().longValue());
+        assertTrue(this.queue.isEmpty());
+    }
+
+    /**
+     * testDrainTo
+     */
+    public void testDrainTo() throws Exception {
+        VoltMessage work = makeFragment(1, false);
+        this.queue.add(work);
+        this.queue.add(makeInitiate(2, false));
+        this.queue.add(makeInitiate(3, true));
+        this.queue.add(makeInitiate(4, false));
+
+        List<VoltMessage> blocked = new ArrayList<VoltMessage>();
+        assertEquals(3, this.queue.drainTo(blocked));
+        assertEquals(3, blocked.size());
+        assertEquals(1, this.queue.size());
+        assertSame(work, this.queue.poll());
+    }
+
+    /**
+     * testPollLane
+     */
+    public void testPollLane() throws Exception {
+        VoltMessage work = makeFragment(1, false);
+        VoltMessage init = makeInitiate(2, false);
+        this.queue.add(work);
+        this.queue.add(init);
+
+        assertNull(this.queue.poll(Lane.FINISH));
+        assertSame(init, this.queue.poll(Lane.INIT));
+        assertNull(this.queue.poll(Lane.INIT));
+        assertEquals(1, this.queue.size());
+        assertSame(work, this.queue.poll());
+    }
+
+    /**
+     * testConcurrentTake
+     */
+    public void testConcurrentTake() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(NUM_THREADS);
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final int offset = i * NUM_MESSAGES;
+            new Thread() {
+                public void run() {
+                    for (int j = 0; j < NUM_MESSAGES; j++) {
+                        queue.add(makeInitiate(offset + j, false));
+                    } // FOR
+                    latch.countDown();
+                };
+            }.start();
+        } // FOR
+
+        // Each producer's messages must come out in the order that they were added
+        long last[] = new long[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) last[i] = -1;
+        for (int i = 0; i < NUM_THREADS * NUM_MESSAGES; i++) {
+            long txn_id = ((TransactionInfoBaseMessage)this.queue.take()).getTxnId();
+            int producer = (int)(txn_id / NUM_MESSAGES);
+            assertTrue(txn_id + " <= " + last[producer], txn_id > last[producer]);
+            last[producer] = txn_id;
+        } // FOR
+        latch.await();
+        assertTrue(this.queue.isEmpty());
+    }
+}
@@ -175,6 +175,42 @@ public class TestVoltProcedureListener extends TestCase {
         assertEquals(expected, this.handler.getParameter());
     }
 
+    /**
+     * testConnectionEventLoops
+     */
+    public void testConnectionEventLoops() {
+        MockEventLoop mockEvent = new MockEventLoop();
+        MockEventLoop connectionEvents[] = { new MockEventLoop(), new MockEventLoop() };
+        VoltProcedureListener listener = new VoltProcedureListener(0, mockEvent, handler);
+        listener.setConnectionEventLoops(connectionEvents);
+        MockServerSocketChannel mockServer = new MockServerSocketChannel();
+        listener.setServerSocketForTest(mockServer);
+
+        // The connections should get spread across the EventLoops
+        ClientConnectionHandler handlers[] = new ClientConnectionHandler[connectionEvents.length];
+        MockSocketChannel channels[] = new MockSocketChannel[connectionEvents.length];
+        for (int i = 0; i < connectionEvents.length; i++) {
+            channels[i] = new MockSocketChannel();
+            channels[i].setConnected();
+            mockServer.nextAccept = channels[i];
+            listener.acceptCallback(mockServer);
+            assertNotNull(connectionEvents[i].handler);
+            handlers[i] = (ClientConnectionHandler) connectionEvents[i].handler;
+            for (int ii = i+1; ii < connectionEvents.length; ii++) {
+                assertNull(connectionEvents[ii].handler);
+            } // FOR
+        } // FOR
+        assertNull(mockEvent.handler);
+
+        // A blocked write should be registered with the connection's EventLoop
+        final byte[] MESSAGE = { 0x1, 0x2, 0x3 };
+        channels[1].writeChannel.numBytesToAccept = 1;
+        handlers[1].run(MESSAGE);
+        assertEquals(handlers[1], connectionEvents[1].writeHandler);
+        assertNull(connectionEvents[0].writeHandler);
+        assertNull(mockEvent.writeHandler);
+    }
+
     public void testBlockedWrites() {
         // Create a fake listener
         MockEventLoop mockEvent = new MockEventLoop();
@@ -0,0 +1,133 @@
+package edu.brown.hstore.estimators;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.voltdb.catalog.Column;
+import org.voltdb.catalog.ProcParameter;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Site;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.StmtParameter;
+
+import edu.brown.BaseTestCase;
+import edu.brown.benchmark.tm1.procedures.GetNewDestination;
+import edu.brown.benchmark.tm1.procedures.GetSubscriberData;
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.MockHStoreSite;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.mappings.ParameterMapping;
+import edu.brown.mappings.ParameterMappingsSet;
+import edu.brown.utils.CollectionUtil;
+import edu.brown.utils.ProjectType;
+
+public class TestMappingsEstimator extends BaseTestCase {
+
+    private static final int NUM_PARTITIONS = 4;
+
+    private HStoreSite hstore_site;
+    private Procedure catalog_proc;
+    private ParameterMappingsSet mappings;
+    private MappingsEstimator estimator;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+        this.addPartitions(NUM_PARTITIONS);
+
+        this.catalog_proc = this.getProcedure(GetNewDestination.class);
+        Statement catalog_stmt = this.getStatement(this.catalog_proc, "GetData");
+
+        // Map both of the S_ID StmtParameters to the first ProcParameter
+        this.mappings = new ParameterMappingsSet();
+        ProcParameter proc_param = this.catalog_proc.getParameters().get(0);
+        for (int i = 0; i < 2; i++) {
+            StmtParameter stmt_param = catalog_stmt.getParameters().get(i);
+            this.mappings.add(new ParameterMapping(catalog_stmt, 0, stmt_param, proc_param, 0, 1.0));
+        } // FOR
+
+        Site catalog_site = CollectionUtil.first(CatalogUtil.getCluster(catalog).getSites());
+        this.hstore_site = new MockHStoreSite(catalog_site, HStoreConf.singleton());
+        this.estimator = new MappingsEstimator(this.hstore_site, this.mappings,
+                                               Collections.singleton(this.catalog_proc.getName()));
+    }
+
+    private Object[] makeArgs(long s_id) {
+        return (new Object[]{ s_id, 1l, 0l, 0l });
+    }
+
+    private int getPartition(long s_id) {
+        Column catalog_col = this.getTable("SPECIAL_FACILITY").getPartitioncolumn();
+        return (this.hstore_site.getHasher().hash(s_id, catalog_col));
+    }
+
+    /**
+     * testGenerateRule
+     */
+    public void testGenerateRule() throws Exception {
+        assertTrue(this.estimator.canEstimate(this.catalog_proc));
+        MappingsEstimator.ProcedureRule rule = this.estimator.getRule(this.catalog_proc);
+        assertNotNull(rule);
+        assertFalse(rule.isBroadcast());
+        assertEquals(1, rule.size());
+
+        // Procedures that were not selected do not get a rule
+        assertFalse(this.estimator.canEstimate(this.getProcedure(GetSubscriberData.class)));
+
+        // And we can't generate a rule without the mappings
+        MappingsEstimator empty = new MappingsEstimator(this.hstore_site, new ParameterMappingsSet(), null);
+        assertFalse(empty.canEstimate(this.catalog_proc));
+    }
+
+    /**
+     * testInitializeTransaction
+     */
+    public void testInitializeTransaction() throws Exception {
+        long s_id = 1;
+        int partition = this.getPartition(s_id);
+
+        // Single-partition if the base partition is where the data is
+        Collection<Integer> partitions = this.estimator.initializeTransaction(this.catalog_proc, this.makeArgs(s_id), partition);
+        assertNotNull(partitions);
+        assertEquals(Collections.singleton(partition), partitions);
+
+        // Otherwise it has to touch both of them
+        int base_partition = (partition + 1) % NUM_PARTITIONS;
+        partitions = this.estimator.initializeTransaction(this.catalog_proc, this.makeArgs(s_id), base_partition);
+        assertEquals(2, partitions.size());
+        assertTrue(partitions.contains(partition));
+        assertTrue(partitions.contains(base_partition));
+    }
+
+    /**
+     * testMultipleInvocations
+     */
+    public void testMultipleInvocations() throws Exception {
+        // The second invocation of the Statement gets its S_IDs from a different ProcParameter
+        Statement catalog_stmt = this.getStatement(this.catalog_proc, "GetData");
+        ProcParameter proc_param = this.catalog_proc.getParameters().get(1);
+        for (int i = 0; i < 2; i++) {
+            StmtParameter stmt_param = catalog_stmt.getParameters().get(i);
+            this.mappings.add(new ParameterMapping(catalog_stmt, 1, stmt_param, proc_param, 0, 1.0));
+        } // FOR
+        MappingsEstimator estimator = new MappingsEstimator(this.hstore_site, this.mappings,
+                                                            Collections.singleton(this.catalog_proc.getName()));
+        MappingsEstimator.ProcedureRule rule = estimator.getRule(this.catalog_proc);
+        assertNotNull(rule);
+        assertEquals(2, rule.size());
+
+        long s_id0 = 1;
+        long s_id1 = 2;
+        int partition0 = this.getPartition(s_id0);
+        int partition1 = this.getPartition(s_id1);
+        assertFalse(partition0 == partition1);
+
+        Object args[] = { s_id0, s_id1, 0l, 0l };
+        Collection<Integer> partitions = estimator.initializeTransaction(this.catalog_proc, args, partition0);
+        assertNotNull(partitions);
+        assertEquals(2, partitions.size());
+        assertTrue(partitions.contains(partition0));
+        assertTrue(partitions.contains(partition1));
+    }
+}
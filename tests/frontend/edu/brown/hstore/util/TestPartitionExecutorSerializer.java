@@ -0,0 +1,79 @@
+package edu.brown.hstore.util;
+
+import org.voltdb.DependencySet;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.exceptions.SerializableException;
+import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.messaging.FastSerializer;
+
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.hstore.Hstoreservice.WorkResult;
+import junit.framework.TestCase;
+
+public class TestPartitionExecutorSerializer extends TestCase {
+
+    private static final int PARTITION_ID = 3;
+    private static final int NUM_ROWS = 100;
+
+    private final FastSerializer fs = new FastSerializer();
+
+    private VoltTable makeTable(int offset) {
+        VoltTable vt = new VoltTable(new VoltTable.ColumnInfo("ID", VoltType.BIGINT),
+                                     new VoltTable.ColumnInfo("NAME", VoltType.STRING));
+        for (int i = 0; i < NUM_ROWS; i++) {
+            vt.addRow(offset + i, "row" + i);
+        } // FOR
+        return (vt);
+    }
+
+    /**
+     * testBuildWorkResult
+     */
+    public void testBuildWorkResult() throws Exception {
+        int depIds[] = { 1001, 1002 };
+        VoltTable tables[] = { this.makeTable(0), this.makeTable(NUM_ROWS) };
+        DependencySet result = new DependencySet(depIds, tables);
+
+        // Reuse the same serializer to make sure that it gets cleared in between
+        for (int round = 0; round < 2; round++) {
+            WorkResult wr = PartitionExecutorSerializer.buildWorkResult(PARTITION_ID, null, result, Status.OK, null, fs);
+            assertNotNull(wr);
+            assertEquals(PARTITION_ID, wr.getPartitionId());
+            assertEquals(Status.OK, wr.getStatus());
+            assertFalse(wr.hasError());
+            assertEquals(depIds.length, wr.getDepIdCount());
+            assertEquals(depIds.length, wr.getDepDataCount());
+
+            for (int i = 0; i < depIds.length; i++) {
+                assertEquals(depIds[i], wr.getDepId(i));
+                FastDeserializer fd = new FastDeserializer(wr.getDepData(i).asReadOnlyByteBuffer());
+                VoltTable vt = fd.readObject(VoltTable.class);
+                assertEquals(NUM_ROWS, vt.getRowCount());
+                tables[i].resetRowPosition();
+                while (vt.advanceRow()) {
+                    assertTrue(tables[i].advanceRow());
+                    assertEquals(tables[i].getLong(0), vt.getLong(0));
+                    assertEquals(tables[i].getString(1), vt.getString(1));
+                } // WHILE
+            } // FOR
+        } // FOR
+    }
+
+    /**
+     * testBuildWorkResultError
+     */
+    public void testBuildWorkResultError() throws Exception {
+        SerializableException error = new SerializableException(new RuntimeException("Oh noes!"));
+        WorkResult wr = PartitionExecutorSerializer.buildWorkResult(PARTITION_ID, null, null, Status.ABORT_UNEXPECTED, error, fs);
+        assertNotNull(wr);
+        assertEquals(Status.ABORT_UNEXPECTED, wr.getStatus());
+        assertEquals(0, wr.getDepDataCount());
+        assertTrue(wr.hasError());
+
+        SerializableException clone = SerializableException.deserializeFromBuffer(wr.getError().asReadOnlyByteBuffer());
+        assertNotNull(clone);
+        assertEquals(error.getMessage(), clone.getMessage());
+        assertTrue(clone.getMessage().contains("Oh noes!"));
+    }
+}
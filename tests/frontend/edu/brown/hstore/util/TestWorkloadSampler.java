@@ -0,0 +1,158 @@
+package edu.brown.hstore.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.voltdb.SQLStmt;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Site;
+import org.voltdb.catalog.Statement;
+
+import edu.brown.BaseTestCase;
+import edu.brown.benchmark.tm1.procedures.GetNewDestination;
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.MockHStoreSite;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.utils.CollectionUtil;
+import edu.brown.utils.FileUtil;
+import edu.brown.utils.ProjectType;
+import edu.brown.workload.QueryTrace;
+import edu.brown.workload.TransactionTrace;
+import edu.brown.workload.Workload;
+
+public class TestWorkloadSampler extends BaseTestCase {
+
+    private static final int NUM_TXNS = 50;
+    private static final Object PARAMS[] = {
+        new Long(0), // S_ID
+        new Long(1), // SF_TYPE
+        new Long(2), // START_TIME
+        new Long(3), // END_TIME
+    };
+    
+    private HStoreSite hstore_site;
+    private HStoreConf hstore_conf;
+    private WorkloadSampler sampler;
+    private Procedure catalog_proc;
+    private File output_dir;
+    
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+        this.catalog_proc = this.getProcedure(GetNewDestination.class);
+        
+        this.output_dir = FileUtil.getTempFile("traces", true);
+        this.output_dir.delete();
+        
+        Site catalog_site = CollectionUtil.first(CatalogUtil.getCluster(catalog).getSites());
+        this.hstore_conf = HStoreConf.singleton();
+        this.hstore_conf.site.trace_sampling = true;
+        this.hstore_conf.site.trace_sampling_rate = 1.0;
+        this.hstore_conf.site.trace_sampling_interval = 10;
+        this.hstore_conf.site.trace_sampling_dir = this.output_dir.getAbsolutePath();
+        this.hstore_site = new MockHStoreSite(catalog_site, this.hstore_conf);
+        this.sampler = this.hstore_site.getWorkloadSampler();
+        assertNotNull(this.sampler);
+    }
+    
+    @Override
+    protected void tearDown() throws Exception {
+        this.hstore_conf.site.trace_sampling = false;
+        super.tearDown();
+    }
+    
+    private void execute(WorkloadSampler.PartitionBuffer buffer, long txn_id, boolean aborted) {
+        SQLStmt stmts[] = new SQLStmt[this.catalog_proc.getStatements().size()];
+        Object args[][] = new Object[stmts.length][];
+        int i = 0;
+        for (Statement catalog_stmt : this.catalog_proc.getStatements()) {
+            stmts[i] = new SQLStmt(catalog_stmt);
+            args[i] = new Object[catalog_stmt.getParameters().size()];
+            for (int j = 0; j < args[i].length; j++) {
+                args[i][j] = new Long(txn_id + j);
+            } // FOR
+            i++;
+        } // FOR
+        
+        if (buffer.startTransaction(txn_id, this.catalog_proc, PARAMS)) {
+            buffer.recordBatch(stmts, args, stmts.length, System.nanoTime());
+            buffer.stopTransaction(aborted);
+        }
+    }
+    
+    /**
+     * testSampling
+     */
+    public void testSampling() throws Exception {
+        int partition = CollectionUtil.first(this.hstore_site.getLocalPartitionIds());
+        WorkloadSampler.PartitionBuffer buffer = this.sampler.getPartitionBuffer(partition);
+        assertNotNull(buffer);
+        for (int i = 0; i < NUM_TXNS; i++) {
+            this.execute(buffer, i, (i % 5 == 0));
+            assertFalse(buffer.isActive());
+        } // FOR
+        assertEquals(NUM_TXNS, this.sampler.getSampledCount());
+        assertEquals(0, this.sampler.getDroppedCount());
+        
+        // Nothing should get recorded when sampling is turned off
+        this.sampler.setSamplingRate(0);
+        for (int i = 0; i < NUM_TXNS; i++) {
+            this.execute(buffer, NUM_TXNS + i, false);
+        } // FOR
+        assertEquals(NUM_TXNS, this.sampler.getSampledCount());
+        
+        // Let the sampler thread drain the buffer and then make sure that we
+        // can load everything back in as a regular workload
+        Thread t = new Thread(this.sampler);
+        t.start();
+        this.sampler.prepareShutdown(false);
+        t.join();
+        
+        File files[] = this.output_dir.listFiles();
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        Workload workload = new Workload(catalog);
+        workload.load(files[0].getAbsolutePath(), catalog_db);
+        assertEquals(NUM_TXNS, workload.getTransactionCount());
+        
+        Iterator<TransactionTrace> it = workload.iterator();
+        for (int i = 0; i < NUM_TXNS; i++) {
+            assertTrue(it.hasNext());
+            TransactionTrace txn_trace = it.next();
+            assertEquals(i, txn_trace.getTransactionId());
+            assertEquals(this.catalog_proc, txn_trace.getCatalogItem(catalog_db));
+            assertEquals((i % 5 == 0), txn_trace.isAborted());
+            assertEquals(PARAMS.length, txn_trace.getParamCount());
+            for (int j = 0; j < PARAMS.length; j++) {
+                assertEquals(PARAMS[j], txn_trace.getParam(j));
+            } // FOR
+            assertEquals(this.catalog_proc.getStatements().size(), txn_trace.getQueryCount());
+            for (QueryTrace query_trace : txn_trace.getQueries()) {
+                assertNotNull(query_trace.getCatalogItem(catalog_db));
+                assertEquals(0, query_trace.getBatchId());
+                assertEquals(new Long(i), query_trace.getParam(0));
+            } // FOR
+        } // FOR
+    }
+    
+    /**
+     * testBufferFull
+     */
+    public void testBufferFull() throws Exception {
+        int partition = CollectionUtil.first(this.hstore_site.getLocalPartitionIds());
+        WorkloadSampler.PartitionBuffer buffer = this.sampler.getPartitionBuffer(partition);
+        
+        // Keep going until the ring buffer fills up. Nobody is draining it, so we
+        // should start dropping records without blocking
+        List<Long> txn_ids = new ArrayList<Long>();
+        long txn_id = 0;
+        while (this.sampler.getDroppedCount() == 0) {
+            this.execute(buffer, txn_id, false);
+            txn_ids.add(txn_id++);
+        } // WHILE
+        assertEquals(txn_ids.size() - 1, this.sampler.getSampledCount());
+    }
+}
@@ -48,6 +48,7 @@ import edu.brown.hstore.Hstoreservice.Status;
 import edu.brown.hstore.MockHStoreSite;
 import edu.brown.hstore.conf.HStoreConf;
 import edu.brown.hstore.dtxn.LocalTransaction;
+import edu.brown.hstore.util.ProcedureLatencies;
 import edu.brown.utils.CollectionUtil;
 import edu.brown.utils.FileUtil;
 import edu.brown.utils.ProjectType;
@@ -81,6 +82,7 @@ public class TestCommandLogger extends BaseTestCase {
         HStoreConf hstore_conf = HStoreConf.singleton();
         hstore_conf.site.exec_command_logging_group_commit = 2;
         hstore_conf.site.exec_command_logging_group_commit_timeout = 5000000;
+        hstore_conf.site.txn_profiling = true;
         hstore_site = new MockHStoreSite(catalog_site, hstore_conf);
         assert(hstore_site.isLocalPartition(0));
         
@@ -119,6 +121,13 @@ public class TestCommandLogger extends BaseTestCase {
         logger.finishAndPrepareShutdown(); //This makes sure everything is written to the file
         logger.shutdown(); // This closes the file
         
+        // The WAL latency for each txn should have been recorded when its group was flushed
+        ProcedureLatencies latencies = hstore_site.getProcedureLatencies();
+        assertNotNull(latencies);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(1, latencies.get(catalog_proc[i], ProcedureLatencies.Phase.WAL).getCount());
+        } // FOR
+        
         // Now read in the file back in and check to see that we have two
         // entries that have our expected information
         CommandLogReader reader = new CommandLogReader(outputFile.getAbsolutePath());
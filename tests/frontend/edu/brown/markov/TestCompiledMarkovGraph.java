@@ -0,0 +1,199 @@
+package edu.brown.markov;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+
+import edu.brown.BaseTestCase;
+import edu.brown.benchmark.tm1.procedures.InsertCallForwarding;
+import edu.brown.benchmark.tm1.procedures.UpdateSubscriberData;
+import edu.brown.mappings.ParameterMappingsSet;
+import edu.brown.markov.containers.MarkovGraphsContainer;
+import edu.brown.utils.ProjectType;
+
+public class TestCompiledMarkovGraph extends BaseTestCase {
+
+    private static final int NUM_PARTITIONS = 4;
+    private static final int BASE_PARTITION = 0;
+    
+    private MarkovGraph markov;
+    private TransactionEstimator t_estimator;
+    private MarkovVertex vertices[];
+    
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+        this.addPartitions(NUM_PARTITIONS);
+        
+        Procedure catalog_proc = this.getProcedure(InsertCallForwarding.class);
+        Statement write_stmt = this.getStatement(catalog_proc, "update");
+        Statement read_stmt = this.getStatement(catalog_proc, "query2");
+        
+        this.markov = new MarkovGraph(catalog_proc).initialize();
+        this.vertices = new MarkovVertex[] {
+            new MarkovVertex(write_stmt, MarkovVertex.Type.QUERY, 0, Arrays.asList(0), new HashSet<Integer>()),
+            new MarkovVertex(read_stmt, MarkovVertex.Type.QUERY, 0, Arrays.asList(0, 1), Arrays.asList(0)),
+            new MarkovVertex(read_stmt, MarkovVertex.Type.QUERY, 0, Arrays.asList(2), new HashSet<Integer>()),
+        };
+        for (MarkovVertex v : this.vertices) {
+            this.markov.addVertex(v);
+        } // FOR
+        
+        MarkovVertex start = this.markov.getStartVertex();
+        MarkovVertex commit = this.markov.getCommitVertex();
+        MarkovVertex abort = this.markov.getAbortVertex();
+        this.addPath(6, start, this.vertices[0], this.vertices[1], commit);
+        this.addPath(3, start, this.vertices[2], commit);
+        this.addPath(1, start, this.vertices[0], abort);
+        this.markov.calculateProbabilities();
+        
+        this.t_estimator = new TransactionEstimator(p_estimator, null, new MarkovGraphsContainer());
+    }
+    
+    private void addPath(int hits, MarkovVertex...path) {
+        this.addPath(this.markov, hits, path);
+    }
+    
+    private void addPath(MarkovGraph markov, int hits, MarkovVertex...path) {
+        for (int i = 0; i < path.length; i++) {
+            for (int h = 0; h < hits; h++) {
+                path[i].incrementInstanceHits();
+                if (i > 0) markov.addToEdge(path[i-1], path[i]).incrementInstanceHits();
+            } // FOR
+        } // FOR
+    }
+    
+    private MarkovPathEstimator estimate(boolean compiled) {
+        return (this.estimate(this.markov, this.t_estimator, new Object[0], compiled));
+    }
+    
+    private MarkovPathEstimator estimate(MarkovGraph markov, TransactionEstimator t_estimator, Object args[], boolean compiled) {
+        MarkovPathEstimator estimator = new MarkovPathEstimator(NUM_PARTITIONS);
+        estimator.init(markov, t_estimator, BASE_PARTITION, args);
+        estimator.enableForceTraversal(true);
+        if (compiled) {
+            estimator.traverse(markov.getCompiledGraph(t_estimator.getCorrelations()));
+        } else {
+            estimator.traverse(markov.getStartVertex());
+        }
+        return (estimator);
+    }
+    
+    private void compareEstimates(MarkovPathEstimator expected, MarkovPathEstimator actual) {
+        assertEquals(new ArrayList<MarkovVertex>(expected.getVisitPath()), new ArrayList<MarkovVertex>(actual.getVisitPath()));
+        assertEquals(expected.getConfidence(), actual.getConfidence(), MarkovGraph.PROBABILITY_EPSILON);
+        assertEquals(expected.getTouchedPartitions(), actual.getTouchedPartitions());
+        assertEquals(expected.getReadPartitions(), actual.getReadPartitions());
+        assertEquals(expected.getWritePartitions(), actual.getWritePartitions());
+        assertEquals(expected.getForcedVertices(), actual.getForcedVertices());
+        
+        MarkovEstimate expected_est = expected.getEstimate();
+        MarkovEstimate actual_est = actual.getEstimate();
+        assertEquals(expected_est.getSingleSitedProbability(), actual_est.getSingleSitedProbability(), MarkovGraph.PROBABILITY_EPSILON);
+        assertEquals(expected_est.getAbortProbability(), actual_est.getAbortProbability(), MarkovGraph.PROBABILITY_EPSILON);
+        for (int p = 0; p < NUM_PARTITIONS; p++) {
+            assertEquals(expected_est.getReadOnlyProbability(p), actual_est.getReadOnlyProbability(p), MarkovGraph.PROBABILITY_EPSILON);
+            assertEquals(expected_est.getWriteProbability(p), actual_est.getWriteProbability(p), MarkovGraph.PROBABILITY_EPSILON);
+            assertEquals(expected_est.getDoneProbability(p), actual_est.getDoneProbability(p), MarkovGraph.PROBABILITY_EPSILON);
+            assertEquals(expected_est.getTouchedCounter(p), actual_est.getTouchedCounter(p));
+        } // FOR
+    }
+    
+    /**
+     * testCompile
+     */
+    public void testCompile() throws Exception {
+        CompiledMarkovGraph compiled = this.markov.getCompiledGraph(this.t_estimator.getCorrelations());
+        assertNotNull(compiled);
+        assertEquals(this.markov.getVertexCount(), compiled.getVertexCount());
+        assertEquals(this.markov.getEdgeCount(), compiled.getEdgeCount());
+        
+        // We should get back the same one until the graph changes
+        assertSame(compiled, this.markov.getCompiledGraph(this.t_estimator.getCorrelations()));
+        this.markov.calculateProbabilities();
+        assertNotSame(compiled, this.markov.getCompiledGraph(this.t_estimator.getCorrelations()));
+        
+        // The out-edges for each vertex must be sorted by their probability
+        for (int v = 0; v < compiled.getVertexCount(); v++) {
+            for (int e = compiled.edge_offsets[v] + 1; e < compiled.edge_offsets[v+1]; e++) {
+                assert(compiled.edge_probs[e-1] >= compiled.edge_probs[e]);
+            } // FOR
+        } // FOR
+    }
+    
+    /**
+     * testTraverse
+     */
+    public void testTraverse() throws Exception {
+        MarkovPathEstimator expected = this.estimate(false);
+        MarkovPathEstimator actual = this.estimate(true);
+        
+        // Without any ParameterMappings, the only candidate edge at the first query is to ABORT
+        List<MarkovVertex> path = new ArrayList<MarkovVertex>(expected.getVisitPath());
+        assertEquals(Arrays.asList(this.markov.getStartVertex(), this.vertices[0], this.markov.getAbortVertex()), path);
+        this.compareEstimates(expected, actual);
+    }
+    
+    /**
+     * testTraverseMappings
+     */
+    public void testTraverseMappings() throws Exception {
+        File file = getProjectBuilder(ProjectType.TM1).getParameterMappings();
+        assertNotNull(file);
+        ParameterMappingsSet mappings = new ParameterMappingsSet();
+        mappings.load(file.getAbsolutePath(), catalog_db);
+        
+        Procedure catalog_proc = this.getProcedure(UpdateSubscriberData.class);
+        Statement update1 = this.getStatement(catalog_proc, "update1");
+        Statement update2 = this.getStatement(catalog_proc, "update2");
+        assertNotNull(mappings.get(update1, 0));
+        assertNotNull(mappings.get(update2, 0));
+        
+        // Find a S_ID for each partition
+        Long s_ids[] = new Long[NUM_PARTITIONS];
+        int found = 0;
+        for (long s_id = 0; found < NUM_PARTITIONS; s_id++) {
+            int p = p_estimator.getHasher().hash(s_id);
+            if (s_ids[p] == null) {
+                s_ids[p] = s_id;
+                found++;
+            }
+        } // FOR
+        
+        // The most likely path goes to partition 1, but the mappings should
+        // pick the path for whatever partition the S_ID is on
+        MarkovGraph markov = new MarkovGraph(catalog_proc).initialize();
+        MarkovVertex start = markov.getStartVertex();
+        MarkovVertex commit = markov.getCommitVertex();
+        MarkovVertex abort = markov.getAbortVertex();
+        MarkovVertex paths[][] = new MarkovVertex[NUM_PARTITIONS][];
+        for (int p = 0; p < NUM_PARTITIONS; p++) {
+            MarkovVertex v1 = new MarkovVertex(update1, MarkovVertex.Type.QUERY, 0, Arrays.asList(p), new HashSet<Integer>());
+            MarkovVertex v2 = new MarkovVertex(update2, MarkovVertex.Type.QUERY, 0, Arrays.asList(p), Arrays.asList(p));
+            markov.addVertex(v1);
+            markov.addVertex(v2);
+            this.addPath(markov, (p == 1 ? 10 : 2), start, v1, v2, commit);
+            paths[p] = new MarkovVertex[]{ start, v1, v2, commit };
+        } // FOR
+        this.addPath(markov, 1, start, paths[1][1], abort);
+        markov.calculateProbabilities();
+        
+        TransactionEstimator t_estimator = new TransactionEstimator(p_estimator, mappings, new MarkovGraphsContainer());
+        for (int p = 0; p < NUM_PARTITIONS; p++) {
+            Object args[] = { s_ids[p], 1l, 2l, 3l };
+            MarkovPathEstimator expected = this.estimate(markov, t_estimator, args, false);
+            MarkovPathEstimator actual = this.estimate(markov, t_estimator, args, true);
+            
+            assertEquals(Arrays.asList(paths[p]), new ArrayList<MarkovVertex>(expected.getVisitPath()));
+            assertTrue(expected.getForcedVertices().isEmpty());
+            assertEquals(Collections.singleton(p), expected.getTouchedPartitions());
+            this.compareEstimates(expected, actual);
+        } // FOR
+    }
+}
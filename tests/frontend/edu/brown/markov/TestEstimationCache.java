@@ -0,0 +1,100 @@
+package edu.brown.markov;
+
+import org.voltdb.catalog.ProcParameter;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.StmtParameter;
+
+import edu.brown.BaseTestCase;
+import edu.brown.benchmark.tm1.procedures.GetNewDestination;
+import edu.brown.mappings.ParameterMapping;
+import edu.brown.mappings.ParameterMappingsSet;
+import edu.brown.utils.ProjectType;
+
+public class TestEstimationCache extends BaseTestCase {
+
+    private static final int NUM_PARTITIONS = 4;
+    private static final int BASE_PARTITION = 1;
+    
+    private Procedure catalog_proc;
+    private MarkovGraph markov;
+    private EstimationCache cache;
+    
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+        this.addPartitions(NUM_PARTITIONS);
+        
+        this.catalog_proc = this.getProcedure(GetNewDestination.class);
+        Statement catalog_stmt = this.getStatement(this.catalog_proc, "GetData");
+        
+        // Only S_ID is mapped to the query 
+        ParameterMappingsSet mappings = new ParameterMappingsSet();
+        ProcParameter proc_param = this.catalog_proc.getParameters().get(0);
+        for (int i = 0; i < 2; i++) {
+            StmtParameter stmt_param = catalog_stmt.getParameters().get(i);
+            mappings.add(new ParameterMapping(catalog_stmt, 0, stmt_param, proc_param, 0, 1.0));
+        } // FOR
+        
+        this.markov = new MarkovGraph(this.catalog_proc).initialize();
+        this.cache = new EstimationCache(p_estimator.getHasher(), mappings, 2);
+    }
+    
+    private Object[] makeArgs(long s_id, long sf_type) {
+        return (new Object[]{ s_id, sf_type, 0l, 0l });
+    }
+    
+    /**
+     * testCreateKey
+     */
+    public void testCreateKey() throws Exception {
+        // Parameters that are not mapped do not matter
+        EstimationCache.Key key0 = this.cache.createKey(this.markov, BASE_PARTITION, this.makeArgs(1, 1));
+        EstimationCache.Key key1 = this.cache.createKey(this.markov, BASE_PARTITION, this.makeArgs(1, 99));
+        assertEquals(key0, key1);
+        assertEquals(key0.hashCode(), key1.hashCode());
+        
+        // Mapped values that hash to the same partition give the same key
+        long other = 1;
+        while (p_estimator.getHasher().hash(other) != p_estimator.getHasher().hash(1l) || other == 1) other++;
+        assertEquals(key0, this.cache.createKey(this.markov, BASE_PARTITION, this.makeArgs(other, 1)));
+        
+        // But not if they go to a different partition
+        other = 2;
+        while (p_estimator.getHasher().hash(other) == p_estimator.getHasher().hash(1l)) other++;
+        assertFalse(key0.equals(this.cache.createKey(this.markov, BASE_PARTITION, this.makeArgs(other, 1))));
+        
+        // Or if the base partition is different
+        assertFalse(key0.equals(this.cache.createKey(this.markov, BASE_PARTITION + 1, this.makeArgs(1, 1))));
+    }
+    
+    /**
+     * testGetPut
+     */
+    public void testGetPut() throws Exception {
+        EstimationCache.Key key = this.cache.createKey(this.markov, BASE_PARTITION, this.makeArgs(1, 1));
+        assertNull(this.cache.get(key));
+        assertEquals(1, this.cache.getMissCount());
+        
+        MarkovPathEstimator estimator = new MarkovPathEstimator(NUM_PARTITIONS);
+        this.cache.put(key, this.markov.getVersion(), estimator);
+        assertTrue(estimator.isCached());
+        assertSame(estimator, this.cache.get(key));
+        assertEquals(1, this.cache.getHitCount());
+        assertEquals(0.5, this.cache.getHitRate(), 0.0001);
+        
+        // Changing the graph should invalidate the cached estimate
+        this.markov.calculateProbabilities();
+        assertNull(this.cache.get(key));
+        assertEquals(1, this.cache.getInvalidationCount());
+        assertEquals(0, this.cache.size());
+        
+        // And we should never hold more than the capacity 
+        for (int i = 0; i < 3; i++) {
+            key = this.cache.createKey(this.markov, i, this.makeArgs(1, 1));
+            this.cache.put(key, this.markov.getVersion(), new MarkovPathEstimator(NUM_PARTITIONS));
+        } // FOR
+        assertEquals(2, this.cache.size());
+        assertEquals(1, this.cache.getEvictionCount());
+    }
+}
@@ -0,0 +1,89 @@
+package edu.brown.markov;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+
+import edu.brown.BaseTestCase;
+import edu.brown.benchmark.tm1.procedures.GetNewDestination;
+import edu.brown.utils.CollectionUtil;
+import edu.brown.utils.ProjectType;
+
+public class TestMarkovHitBuffer extends BaseTestCase {
+
+    private static final int NUM_PARTITIONS = 4;
+    
+    private MarkovGraph markov;
+    private MarkovVertex vertices[] = new MarkovVertex[2];
+    
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+        this.addPartitions(NUM_PARTITIONS);
+        
+        Procedure catalog_proc = this.getProcedure(GetNewDestination.class);
+        Statement catalog_stmt = this.getStatement(catalog_proc, "GetData");
+        this.markov = new MarkovGraph(catalog_proc).initialize();
+        for (int i = 0; i < this.vertices.length; i++) {
+            this.vertices[i] = new MarkovVertex(catalog_stmt, MarkovVertex.Type.QUERY, 0,
+                                                CollectionUtil.addAll(new HashSet<Integer>(), i),
+                                                new HashSet<Integer>());
+            this.markov.addVertex(this.vertices[i]);
+        } // FOR
+    }
+    
+    private void addPath(MarkovHitBuffer buffer, MarkovVertex v) {
+        List<MarkovVertex> path = new ArrayList<MarkovVertex>();
+        List<MarkovEdge> path_edges = new ArrayList<MarkovEdge>();
+        path.add(this.markov.getStartVertex());
+        path.add(v);
+        path.add(this.markov.getCommitVertex());
+        for (int i = 1; i < path.size(); i++) {
+            path_edges.add(this.markov.addToEdge(path.get(i-1), path.get(i)));
+        } // FOR
+        buffer.add(this.markov, path, path_edges);
+    }
+    
+    /**
+     * testApply
+     */
+    public void testApply() throws Exception {
+        MarkovHitBuffer buffer = new MarkovHitBuffer(4);
+        for (int i = 0; i < 3; i++) {
+            this.addPath(buffer, this.vertices[0]);
+        } // FOR
+        assertFalse(buffer.isFull());
+        this.addPath(buffer, this.vertices[1]);
+        assertTrue(buffer.isFull());
+        assertEquals(4, buffer.getTransactionCount());
+        
+        // Nothing should change in the graph until the buffer is applied
+        MarkovVertex start = this.markov.getStartVertex();
+        assertEquals(0, start.getInstanceHits());
+        
+        Map<MarkovGraph, int[]> pending = new IdentityHashMap<MarkovGraph, int[]>();
+        buffer.apply(pending);
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertEquals(4, pending.get(this.markov)[0]);
+        assertEquals(4, start.getInstanceHits());
+        assertEquals(3, this.vertices[0].getInstanceHits());
+        assertEquals(1, this.vertices[1].getInstanceHits());
+        
+        // And then the new probabilities are published when we recompute
+        MarkovEdge e0 = this.markov.findEdge(start, this.vertices[0]);
+        MarkovEdge e1 = this.markov.findEdge(start, this.vertices[1]);
+        assertEquals(0.0f, e0.getProbability());
+        this.markov.calculateProbabilities();
+        assertEquals(0, start.getInstanceHits());
+        assertEquals(4, start.getTotalHits());
+        assertEquals(0.75f, e0.getProbability(), MarkovGraph.PROBABILITY_EPSILON);
+        assertEquals(0.25f, e1.getProbability(), MarkovGraph.PROBABILITY_EPSILON);
+        assertEquals(1.0f, start.getDoneProbability(NUM_PARTITIONS - 1), MarkovGraph.PROBABILITY_EPSILON);
+    }
+}
@@ -19,6 +19,7 @@ import org.voltdb.plannodes.AggregatePlanNode;
 import org.voltdb.plannodes.LimitPlanNode;
 import org.voltdb.plannodes.OrderByPlanNode;
 import org.voltdb.plannodes.ProjectionPlanNode;
+import org.voltdb.plannodes.ReceivePlanNode;
 import org.voltdb.plannodes.SeqScanPlanNode;
 import org.voltdb.types.PlanNodeType;
 
@@ -264,6 +265,14 @@ public class TestPlanOptimizer extends BasePlanOptimizerTestCase {
         assertEquals(agg0.getAggregateOutputColumns(), agg1.getAggregateOutputColumns());
         assertEquals(agg0.getGroupByColumnNames(), agg1.getGroupByColumnNames());
 //        assertEquals(agg0.getGroupByColumnGuids(), agg1.getGroupByColumnGuids());
+        
+        // The top aggregate only combines partial aggregates from its RECEIVE
+        Collection<ReceivePlanNode> recv_nodes = PlanNodeUtil.getPlanNodes(root, ReceivePlanNode.class);
+        assertEquals(1, recv_nodes.size());
+        ReceivePlanNode recv_node = CollectionUtil.first(recv_nodes);
+        assertTrue(recv_node.isCombineAggregates());
+        assertFalse(recv_node.isMergeSorted());
+        assertTrue(recv_node.getParent(0) instanceof AggregatePlanNode);
     }
 
     /**
@@ -576,6 +585,21 @@ public class TestPlanOptimizer extends BasePlanOptimizerTestCase {
                 assertEquals(PlanNodeUtil.debug(node), 1, node.getChildPlanNodeCount());
             } // FOR
         } // FOR
+        
+        // Both the partition-local and the final ORDER BY should be top-N
+        for (OrderByPlanNode node : PlanNodeUtil.getPlanNodes(root, OrderByPlanNode.class)) {
+            LimitPlanNode inline_limit = node.getInlinePlanNode(PlanNodeType.LIMIT);
+            assertNotNull(PlanNodeUtil.debug(node), inline_limit);
+            assertEquals(1000, inline_limit.getLimit());
+        } // FOR
+        
+        // And the final one only has to merge what each partition sent
+        Collection<ReceivePlanNode> recv_nodes = PlanNodeUtil.getPlanNodes(root, ReceivePlanNode.class);
+        assertEquals(1, recv_nodes.size());
+        ReceivePlanNode recv_node = CollectionUtil.first(recv_nodes);
+        assertTrue(recv_node.isMergeSorted());
+        assertFalse(recv_node.isCombineAggregates());
+        assertTrue(recv_node.getParent(0) instanceof OrderByPlanNode);
     }
     
     /**
@@ -51,7 +51,7 @@ public final class MockEventLoop implements EventLoop {
 
     @Override
     public void runInEventThread(Runnable callback) {
-        throw new UnsupportedOperationException("TODO: implement");
+        callback.run();
     }
 
     @Override
@@ -0,0 +1,185 @@
+package edu.brown.statistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.json.JSONObject;
+
+import edu.brown.BaseTestCase;
+
+public class TestConcurrentHistogram extends BaseTestCase {
+
+    private static final int NUM_KEYS = 16;
+    private static final int NUM_THREADS = 8;
+    private static final int NUM_SAMPLES = 10000;
+
+    private ConcurrentHistogram h = new ConcurrentHistogram(NUM_KEYS);
+
+    /**
+     * testConcurrentPut
+     */
+    public void testConcurrentPut() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(NUM_THREADS);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < NUM_THREADS; i++) {
+            threads.add(new Thread() {
+                public void run() {
+                    for (int j = 0; j < NUM_SAMPLES; j++) {
+                        h.put(j % NUM_KEYS);
+                        // Read while other threads are writing
+                        if (j % 1000 == 0) h.getSampleCount();
+                    } // FOR
+                    latch.countDown();
+                };
+            });
+        } // FOR
+        for (Thread t : threads) t.start();
+        latch.await();
+
+        assertEquals(NUM_THREADS * NUM_SAMPLES, h.getSampleCount());
+        assertEquals(NUM_KEYS, h.getValueCount());
+        for (int key = 0; key < NUM_KEYS; key++) {
+            assertEquals(NUM_THREADS * NUM_SAMPLES / NUM_KEYS, h.get(key).longValue());
+        } // FOR
+    }
+
+    /**
+     * testOutOfRange
+     */
+    public void testOutOfRange() throws Exception {
+        h.put(1);
+        h.put(NUM_KEYS + 5, 3);
+        h.put(-1);
+        assertEquals(5, h.getSampleCount());
+        assertEquals(3, h.get(NUM_KEYS + 5).longValue());
+        assertEquals(1, h.get(-1).longValue());
+        assertEquals(-1, h.getMinValue().intValue());
+        assertEquals(NUM_KEYS + 5, h.getMaxValue().intValue());
+    }
+
+    /**
+     * testSnapshotMerge
+     */
+    public void testSnapshotMerge() throws Exception {
+        h.put(1, 10);
+        h.put(2, 5);
+        Histogram<Integer> snapshot = h.snapshot();
+        assertFalse(snapshot instanceof ConcurrentHistogram);
+        assertEquals(15, snapshot.getSampleCount());
+
+        // Updates after the snapshot are not included
+        h.put(1);
+        assertEquals(10, snapshot.get(1).longValue());
+        assertEquals(11, h.get(1).longValue());
+
+        ConcurrentHistogram other = new ConcurrentHistogram(NUM_KEYS);
+        other.put(2, 5);
+        other.put(3);
+        h.merge(other);
+        assertEquals(11, h.get(1).longValue());
+        assertEquals(10, h.get(2).longValue());
+        assertEquals(1, h.get(3).longValue());
+
+        // Plain histograms need to see the pending counts too
+        Histogram<Integer> copy = new Histogram<Integer>(other);
+        assertEquals(other.getSampleCount(), copy.getSampleCount());
+        assertEquals(copy, other);
+    }
+
+    /**
+     * testClear
+     */
+    public void testClear() throws Exception {
+        h.put(1, 10);
+        h.put(NUM_KEYS);
+        h.clear();
+        assertTrue(h.isEmpty());
+        assertEquals(0, h.getSampleCount());
+    }
+
+    /**
+     * testSerialization
+     */
+    public void testSerialization() throws Exception {
+        for (int i = 0; i < NUM_KEYS; i++) {
+            h.put(i, i + 1);
+        } // FOR
+        String json = h.toJSONString();
+        assertNotNull(json);
+
+        // It should be readable by a plain Histogram and vice versa
+        Histogram<Long> clone = new Histogram<Long>();
+        clone.fromJSON(new JSONObject(json), null);
+        assertEquals(h.getSampleCount(), clone.getSampleCount());
+        for (int i = 0; i < NUM_KEYS; i++) {
+            assertEquals(h.get(i), clone.get((long)i));
+        } // FOR
+
+        ConcurrentHistogram clone2 = new ConcurrentHistogram(NUM_KEYS);
+        clone2.fromJSON(new JSONObject(clone.toJSONString()), null);
+        assertEquals(h.getSampleCount(), clone2.getSampleCount());
+        assertEquals(h, clone2);
+    }
+
+    private ConcurrentHistogram makeHistogram() {
+        ConcurrentHistogram h = new ConcurrentHistogram(NUM_KEYS);
+        h.put(1, 10);
+        h.put(2, 5);
+        h.put(3, 5);
+        return (h);
+    }
+
+    /**
+     * testReadWithoutFlush
+     */
+    @SuppressWarnings("deprecation")
+    public void testReadWithoutFlush() throws Exception {
+        // Each of these needs a new histogram so that the pending counts are
+        // still in the stripes when the method is called
+        Histogram<Integer> expected = new Histogram<Integer>();
+        expected.put(1, 10);
+        expected.put(2, 5);
+        expected.put(3, 5);
+        assertTrue(this.makeHistogram().equals(expected));
+        assertEquals(2, this.makeHistogram().<Integer>getMinCountValue().intValue());
+        assertEquals(1, this.makeHistogram().<Integer>getMaxCountValue().intValue());
+        assertEquals(expected.getEstimatedType(), this.makeHistogram().getEstimatedType());
+        assertEquals(expected.isSkewed(1.0), this.makeHistogram().isSkewed(1.0));
+        assertTrue(this.makeHistogram().isSkewed(1.0));
+
+        // putAll() only increments the values that are already in the histogram
+        ConcurrentHistogram h = this.makeHistogram();
+        h.putAll();
+        assertEquals(23, h.getSampleCount());
+        assertEquals(11, h.get(1).longValue());
+    }
+
+    /**
+     * testNegativeDelta
+     */
+    public void testNegativeDelta() throws Exception {
+        // Make the increment land in a stripe that gets flushed after the
+        // stripe of the thread that decrements it
+        final ConcurrentHistogram h = new ConcurrentHistogram(NUM_KEYS, 2);
+        Thread inc = null, dec = null;
+        while (inc == null || dec == null) {
+            Thread t = new Thread() {
+                public void run() {
+                    h.put(1, (this.getId() & 1) == 1 ? 5 : -3);
+                };
+            };
+            if ((t.getId() & 1) == 1) {
+                if (inc == null) inc = t;
+            } else if (dec == null) {
+                dec = t;
+            }
+        } // WHILE
+        inc.start();
+        inc.join();
+        dec.start();
+        dec.join();
+        assertEquals(2, h.get(1).longValue());
+        assertEquals(2, h.getSampleCount());
+    }
+}
@@ -0,0 +1,85 @@
+package edu.brown.statistics;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class TestLatencyHistogram extends TestCase {
+
+    private static final int NUM_SAMPLES = 100000;
+
+    private final LatencyHistogram h = new LatencyHistogram();
+    private final Random rand = new Random(1);
+
+    /**
+     * testBuckets
+     */
+    public void testBuckets() throws Exception {
+        int last_idx = -1;
+        for (long value = 0; value < 100000; value++) {
+            int idx = LatencyHistogram.getBucketIndex(value);
+            assert(idx >= last_idx) : value;
+            assertTrue(value <= LatencyHistogram.getBucketValue(idx));
+
+            // The reported value should be within the precision of the histogram
+            double error = (LatencyHistogram.getBucketValue(idx) - value) / (double)Math.max(1, value);
+            assertTrue(value + " -> " + error, error <= 1.0d / LatencyHistogram.SUB_BUCKET_COUNT);
+            last_idx = idx;
+        } // FOR
+
+        // Huge values go in the last bucket
+        assertEquals(LatencyHistogram.NUM_BUCKETS - 1, LatencyHistogram.getBucketIndex(Long.MAX_VALUE));
+        assertEquals(0, LatencyHistogram.getBucketIndex(-1));
+    }
+
+    /**
+     * testPercentiles
+     */
+    public void testPercentiles() throws Exception {
+        for (int i = 1; i <= NUM_SAMPLES; i++) {
+            h.record(i * 1000l);
+        } // FOR
+        assertEquals(NUM_SAMPLES, h.getCount());
+        assertEquals(NUM_SAMPLES * 1000l, h.getMax());
+        assertEquals(NUM_SAMPLES * 1000l, h.getValueAtPercentile(100));
+
+        double percentiles[] = { 50, 90, 99, 99.9 };
+        for (double pct : percentiles) {
+            long expected = (long)(NUM_SAMPLES * 1000l * pct / 100d);
+            long actual = h.getValueAtPercentile(pct);
+            assertTrue(pct + ": " + actual, actual >= expected);
+            assertTrue(pct + ": " + actual, actual <= expected * (1.0d + 1.0d / LatencyHistogram.SUB_BUCKET_COUNT));
+        } // FOR
+    }
+
+    /**
+     * testMerge
+     */
+    public void testMerge() throws Exception {
+        LatencyHistogram other = new LatencyHistogram();
+        LatencyHistogram all = new LatencyHistogram();
+        for (int i = 0; i < NUM_SAMPLES; i++) {
+            long value = rand.nextInt(1000000);
+            if (i % 2 == 0) {
+                h.record(value);
+            } else {
+                other.record(value);
+            }
+            all.record(value);
+        } // FOR
+
+        LatencyHistogram merged = h.copy();
+        merged.add(other);
+        assertEquals(all.getCount(), merged.getCount());
+        assertEquals(all.getMax(), merged.getMax());
+        assertEquals(all.getMean(), merged.getMean(), 0.0001);
+        for (double pct = 0; pct <= 100; pct += 0.5) {
+            assertEquals(all.getValueAtPercentile(pct), merged.getValueAtPercentile(pct));
+        } // FOR
+
+        // Copies are not affected by later updates
+        h.reset();
+        assertTrue(h.isEmpty());
+        assertEquals(all.getCount(), merged.getCount());
+    }
+}
@@ -0,0 +1,164 @@
+package edu.brown.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class TestTypedThreadLocalObjectPool extends TestCase {
+
+    private static final int NUM_IDLE = 20;
+    private static final int NUM_LOCAL_IDLE = 5;
+    private static final int NUM_THREADS = 8;
+    private static final int NUM_ROUNDS = 10000;
+
+    public static class MockObject implements Poolable {
+        boolean initialized = false;
+        boolean finished = false;
+        @Override
+        public void finish() {
+            this.initialized = false;
+            this.finished = true;
+        }
+        @Override
+        public boolean isInitialized() {
+            return (this.initialized);
+        }
+    }
+
+    private TypedPoolableObjectFactory<MockObject> factory;
+    private TypedThreadLocalObjectPool<MockObject> pool;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.factory = TypedPoolableObjectFactory.makeFactory(MockObject.class, true);
+        this.pool = new TypedThreadLocalObjectPool<MockObject>(this.factory, NUM_IDLE, NUM_LOCAL_IDLE);
+    }
+
+    private MockObject borrow() throws Exception {
+        MockObject obj = this.pool.borrowObject();
+        obj.initialized = true;
+        obj.finished = false;
+        return (obj);
+    }
+
+    /**
+     * testReuse
+     */
+    public void testReuse() throws Exception {
+        MockObject obj = this.borrow();
+        assertNotNull(obj);
+        assertEquals(1, this.pool.getNumActive());
+        this.pool.returnObject(obj);
+        assertTrue(obj.finished);
+        assertEquals(0, this.pool.getNumActive());
+        assertEquals(1, this.pool.getNumIdle());
+
+        // We should get the same object back
+        assertSame(obj, this.borrow());
+        assertEquals(1, this.factory.getCreatedCount());
+        assertEquals(1, this.factory.getPassivatedCount());
+    }
+
+    /**
+     * testIdleLimit
+     */
+    public void testIdleLimit() throws Exception {
+        int num_objects = NUM_IDLE * 2;
+        List<MockObject> objs = new ArrayList<MockObject>();
+        for (int i = 0; i < num_objects; i++) {
+            objs.add(this.borrow());
+        } // FOR
+        assertEquals(num_objects, this.pool.getNumActive());
+        for (MockObject obj : objs) {
+            this.pool.returnObject(obj);
+        } // FOR
+
+        // The local cache and the shared stack are both full, so the rest get destroyed
+        int expected = NUM_IDLE + NUM_LOCAL_IDLE;
+        assertEquals(expected, this.pool.getNumIdle());
+        assertEquals(num_objects - expected, this.factory.getDestroyedCount());
+
+        this.pool.clear();
+        assertEquals(0, this.pool.getNumIdle());
+        assertEquals(num_objects, this.factory.getDestroyedCount());
+    }
+
+    /**
+     * testCrossThreadReturn
+     */
+    public void testCrossThreadReturn() throws Exception {
+        final List<MockObject> objs = new ArrayList<MockObject>();
+        for (int i = 0; i < NUM_IDLE; i++) {
+            objs.add(this.borrow());
+        } // FOR
+
+        // Return them from a thread that never borrows from the pool
+        Thread t = new Thread() {
+            public void run() {
+                for (MockObject obj : objs) {
+                    pool.returnObject(obj);
+                } // FOR
+            };
+        };
+        t.start();
+        t.join();
+        assertEquals(NUM_IDLE, this.pool.getNumIdle());
+
+        // The borrowing thread should get all of them back without creating new ones
+        Map<MockObject, Boolean> seen = new IdentityHashMap<MockObject, Boolean>();
+        for (int i = 0; i < NUM_IDLE; i++) {
+            MockObject obj = this.borrow();
+            assertTrue(objs.contains(obj));
+            assertNull(seen.put(obj, Boolean.TRUE));
+        } // FOR
+        assertEquals(NUM_IDLE, this.factory.getCreatedCount());
+        assertEquals(0, this.factory.getDestroyedCount());
+    }
+
+    /**
+     * testConcurrentBorrow
+     */
+    public void testConcurrentBorrow() throws Exception {
+        final Map<MockObject, Boolean> inUse = Collections.synchronizedMap(new IdentityHashMap<MockObject, Boolean>());
+        final AtomicInteger errors = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(NUM_THREADS);
+        for (int i = 0; i < NUM_THREADS; i++) {
+            new Thread() {
+                public void run() {
+                    List<MockObject> held = new ArrayList<MockObject>();
+                    try {
+                        for (int j = 0; j < NUM_ROUNDS; j++) {
+                            MockObject obj = borrow();
+                            if (inUse.put(obj, Boolean.TRUE) != null) errors.incrementAndGet();
+                            held.add(obj);
+                            if (held.size() > 3) {
+                                obj = held.remove(0);
+                                inUse.remove(obj);
+                                pool.returnObject(obj);
+                            }
+                        } // FOR
+                        for (MockObject obj : held) {
+                            inUse.remove(obj);
+                            pool.returnObject(obj);
+                        } // FOR
+                    } catch (Exception ex) {
+                        errors.incrementAndGet();
+                    } finally {
+                        latch.countDown();
+                    }
+                };
+            }.start();
+        } // FOR
+        latch.await();
+
+        assertEquals(0, errors.get());
+        assertEquals(0, this.pool.getNumActive());
+        assertEquals(this.factory.getCreatedCount() - this.factory.getDestroyedCount(), this.pool.getNumIdle());
+    }
+}
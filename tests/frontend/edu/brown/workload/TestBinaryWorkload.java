@@ -0,0 +1,203 @@
+package edu.brown.workload;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.voltdb.VoltType;
+import org.voltdb.benchmark.tpcc.procedures.neworder;
+import org.voltdb.benchmark.tpcc.procedures.slev;
+import org.voltdb.catalog.ProcParameter;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.StmtParameter;
+import org.voltdb.utils.VoltTypeUtil;
+
+import edu.brown.BaseTestCase;
+import edu.brown.statistics.Histogram;
+import edu.brown.utils.FileUtil;
+import edu.brown.utils.ProjectType;
+import edu.brown.workload.filters.ProcedureLimitFilter;
+import edu.brown.workload.filters.ProcedureNameFilter;
+
+public class TestBinaryWorkload extends BaseTestCase {
+
+    private static final int NUM_TXNS = 200;
+    private static final Random rand = new Random(0);
+    
+    private static Workload workload;
+    private static File binary_file;
+    
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TPCC);
+        
+        if (workload == null) {
+            workload = new Workload(catalog);
+            Procedure procs[] = { this.getProcedure(neworder.class), this.getProcedure(slev.class) };
+            for (int i = 0; i < NUM_TXNS; i++) {
+                Procedure catalog_proc = procs[i % procs.length];
+                Object params[] = new Object[catalog_proc.getParameters().size()];
+                for (ProcParameter catalog_param : catalog_proc.getParameters()) {
+                    params[catalog_param.getIndex()] = this.makeParam(VoltType.get((byte)catalog_param.getType()),
+                                                                     catalog_param.getIsarray());
+                } // FOR
+                TransactionTrace txn_trace = new TransactionTrace(i, catalog_proc, params);
+                int batch_id = 0;
+                for (Statement catalog_stmt : catalog_proc.getStatements()) {
+                    Object stmt_params[] = new Object[catalog_stmt.getParameters().size()];
+                    for (StmtParameter catalog_param : catalog_stmt.getParameters()) {
+                        stmt_params[catalog_param.getIndex()] = this.makeParam(VoltType.get((byte)catalog_param.getJavatype()), false);
+                    } // FOR
+                    QueryTrace query_trace = new QueryTrace(catalog_stmt, stmt_params, batch_id++);
+                    query_trace.stop();
+                    txn_trace.addQuery(query_trace);
+                } // FOR
+                txn_trace.setWeight(1 + (i % 3));
+                if (i % 10 == 0) txn_trace.abort();
+                else txn_trace.stop();
+                workload.addTransaction(catalog_proc, txn_trace);
+            } // FOR
+            
+            binary_file = FileUtil.getTempFile("bin", true);
+            BinaryWorkloadWriter writer = new BinaryWorkloadWriter(binary_file);
+            for (TransactionTrace txn_trace : workload) {
+                writer.write(txn_trace);
+            } // FOR
+            writer.close();
+            assertEquals(NUM_TXNS, writer.getTransactionCount());
+        }
+        assertTrue(BinaryWorkloadFormat.isBinaryWorkload(binary_file));
+    }
+    
+    private Object makeParam(VoltType type, boolean isarray) {
+        if (isarray) {
+            Object inner[] = new Object[rand.nextInt(10)];
+            for (int i = 0; i < inner.length; i++) {
+                inner[i] = VoltTypeUtil.getRandomValue(type, rand);
+            } // FOR
+            return (inner);
+        }
+        return (VoltTypeUtil.getRandomValue(type, rand));
+    }
+    
+    /**
+     * testLoad
+     */
+    @Test
+    public void testLoad() throws Exception {
+        Workload clone = new Workload(catalog);
+        clone.load(binary_file.getAbsolutePath(), catalog_db);
+        assertEquals(workload.getTransactionCount(), clone.getTransactionCount());
+        assertEquals(workload.getQueryCount(), clone.getQueryCount());
+        
+        Iterator<TransactionTrace> it = clone.iterator();
+        for (TransactionTrace expected : workload) {
+            assertTrue(it.hasNext());
+            TransactionTrace actual = it.next();
+            assertEquals(expected.getTransactionId(), actual.getTransactionId());
+            assertEquals(expected.getWeight(), actual.getWeight());
+            assertEquals(expected.isAborted(), actual.isAborted());
+            assertEquals(expected.getStartTimestamp(), actual.getStartTimestamp());
+            assertEquals(expected.getStopTimestamp(), actual.getStopTimestamp());
+            assertEquals(expected.toJSONString(catalog_db), actual.toJSONString(catalog_db));
+        } // FOR
+        assertFalse(it.hasNext());
+    }
+    
+    /**
+     * testProcedureNameFilter
+     */
+    @Test
+    public void testProcedureNameFilter() throws Exception {
+        Procedure catalog_proc = this.getProcedure(slev.class);
+        ProcedureNameFilter filter = new ProcedureNameFilter(false);
+        filter.include(catalog_proc.getName());
+        
+        BinaryWorkloadIterator it = new BinaryWorkloadIterator(binary_file, catalog_db, filter);
+        List<TransactionTrace> txns = new ArrayList<TransactionTrace>();
+        while (it.hasNext()) {
+            TransactionTrace txn_trace = it.next();
+            assertEquals(catalog_proc, txn_trace.getCatalogItem(catalog_db));
+            txns.add(txn_trace);
+        } // WHILE
+        it.close();
+        assertEquals(NUM_TXNS / 2, txns.size());
+        assertEquals(NUM_TXNS / 2, it.getSkippedCount());
+    }
+    
+    /**
+     * testProcedureLimitFilter
+     */
+    @Test
+    public void testProcedureLimitFilter() throws Exception {
+        int limit = NUM_TXNS / 4;
+        Workload clone = new Workload(catalog);
+        clone.load(binary_file.getAbsolutePath(), catalog_db, new ProcedureLimitFilter(limit));
+        assertEquals(limit, clone.getTransactionCount());
+    }
+    
+    /**
+     * testGetProcedureHistogram
+     */
+    @Test
+    public void testGetProcedureHistogram() throws Exception {
+        Histogram<String> h = WorkloadUtil.getProcedureHistogram(binary_file);
+        assertEquals(NUM_TXNS, h.getSampleCount());
+        assertEquals(NUM_TXNS / 2, h.get(this.getProcedure(neworder.class).getName()).intValue());
+        assertEquals(NUM_TXNS / 2, h.get(this.getProcedure(slev.class).getName()).intValue());
+    }
+    
+    /**
+     * testLongString
+     */
+    @Test
+    public void testLongString() throws Exception {
+        // DataOutput.writeUTF() can't write strings that are longer than 64KB
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() <= 70000) {
+            sb.append("abcdefghij\u00e9\u4e2d");
+        } // WHILE
+        String value = sb.toString();
+        
+        Procedure catalog_proc = this.getProcedure(slev.class);
+        Object params[] = new Object[catalog_proc.getParameters().size()];
+        params[0] = value;
+        TransactionTrace txn_trace = new TransactionTrace(NUM_TXNS, catalog_proc, params);
+        txn_trace.stop();
+        
+        File path = FileUtil.getTempFile("bin", true);
+        BinaryWorkloadWriter writer = new BinaryWorkloadWriter(path);
+        writer.write(txn_trace);
+        writer.close();
+        
+        BinaryWorkloadIterator it = new BinaryWorkloadIterator(path, catalog_db, null);
+        assertTrue(it.hasNext());
+        TransactionTrace clone = it.next();
+        assertFalse(it.hasNext());
+        it.close();
+        String actual = clone.getParam(0);
+        assertEquals(value, actual);
+    }
+    
+    /**
+     * testConvert
+     */
+    @Test
+    public void testConvert() throws Exception {
+        File json_path = FileUtil.getTempFile("trace", true);
+        workload.save(json_path.getAbsolutePath(), catalog_db);
+        
+        File path = FileUtil.getTempFile("bin", true);
+        assertEquals(NUM_TXNS, BinaryWorkloadWriter.convert(json_path, path, catalog_db));
+        assertTrue(BinaryWorkloadFormat.isBinaryWorkload(path));
+        
+        Workload clone = new Workload(catalog);
+        clone.load(path.getAbsolutePath(), catalog_db);
+        assertEquals(workload.getTransactionCount(), clone.getTransactionCount());
+        assertEquals(workload.getQueryCount(), clone.getQueryCount());
+    }
+}
@@ -0,0 +1,103 @@
+package org.voltdb;
+
+import java.lang.reflect.Method;
+
+import junit.framework.TestCase;
+
+public class TestProcedureInvokerGenerator extends TestCase {
+
+    public static class PrimitiveProc extends VoltProcedure {
+        public long run(long a, int b, short c, byte d, double e, boolean f) {
+            return (a + b + c + d + (long)e + (f ? 1000 : 0));
+        }
+    }
+
+    public static class ObjectProc extends VoltProcedure {
+        public VoltTable[] run(String name, long ids[], VoltTable table) {
+            VoltTable vt = new VoltTable(new VoltTable.ColumnInfo("NAME", VoltType.STRING),
+                                         new VoltTable.ColumnInfo("NUM_IDS", VoltType.BIGINT));
+            vt.addRow(name, ids.length);
+            return (new VoltTable[]{ vt, table });
+        }
+    }
+
+    public static class AbortProc extends VoltProcedure {
+        public VoltTable[] run(long id) {
+            throw new VoltAbortException("Abort " + id);
+        }
+    }
+
+    static class HiddenProc extends VoltProcedure {
+        public VoltTable[] run(long id) {
+            return (null);
+        }
+    }
+
+    private static Method getRunMethod(Class<?> procClass) {
+        for (Method m : procClass.getMethods()) {
+            if (m.getName().equals("run")) return (m);
+        } // FOR
+        return (null);
+    }
+
+    private static ProcedureInvoker getInvoker(Class<?> procClass) {
+        return (ProcedureInvokerGenerator.getInvoker(procClass, getRunMethod(procClass)));
+    }
+
+    /**
+     * testPrimitiveParameters
+     */
+    public void testPrimitiveParameters() throws Throwable {
+        ProcedureInvoker invoker = getInvoker(PrimitiveProc.class);
+        assertNotNull(invoker);
+        assertTrue(invoker.getClass().getName().endsWith(ProcedureInvokerGenerator.CLASS_SUFFIX));
+
+        // Make sure that we get the same invoker back the second time
+        assertSame(invoker, getInvoker(PrimitiveProc.class));
+
+        // Smaller boxed types should get widened like they are with Method.invoke()
+        Object params[] = { new Integer(1), new Short((short)20), new Short((short)300), new Byte((byte)4), new Double(5000d), Boolean.TRUE };
+        Object result = invoker.invoke(new PrimitiveProc(), params);
+        assertEquals(Long.valueOf(6325), result);
+    }
+
+    /**
+     * testObjectParameters
+     */
+    public void testObjectParameters() throws Throwable {
+        ProcedureInvoker invoker = getInvoker(ObjectProc.class);
+        assertNotNull(invoker);
+
+        VoltTable table = new VoltTable(new VoltTable.ColumnInfo("ID", VoltType.BIGINT));
+        Object params[] = { "abc", new long[]{ 1, 2, 3 }, table };
+        Object result = invoker.invoke(new ObjectProc(), params);
+        assertTrue(result instanceof VoltTable[]);
+        VoltTable results[] = (VoltTable[])result;
+        assertEquals(2, results.length);
+        assertTrue(results[0].advanceRow());
+        assertEquals("abc", results[0].getString(0));
+        assertEquals(3, results[0].getLong(1));
+        assertSame(table, results[1]);
+    }
+
+    /**
+     * testException
+     */
+    public void testException() throws Throwable {
+        ProcedureInvoker invoker = getInvoker(AbortProc.class);
+        assertNotNull(invoker);
+        try {
+            invoker.invoke(new AbortProc(), new Object[]{ 99l });
+            fail("Expected VoltAbortException");
+        } catch (VoltProcedure.VoltAbortException ex) {
+            assertTrue(ex.getMessage().contains("99"));
+        }
+    }
+
+    /**
+     * testNotPublic
+     */
+    public void testNotPublic() throws Throwable {
+        assertNull(getInvoker(HiddenProc.class));
+    }
+}
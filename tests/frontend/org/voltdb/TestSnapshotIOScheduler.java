@@ -0,0 +1,42 @@
+package org.voltdb;
+
+import junit.framework.TestCase;
+
+public class TestSnapshotIOScheduler extends TestCase {
+
+    private static final int MAX_CHUNK = 2 * 1024 * 1024;
+
+    /**
+     * testUnlimited
+     */
+    public void testUnlimited() throws Exception {
+        SnapshotIOScheduler scheduler = new SnapshotIOScheduler(0, true);
+        assertTrue(scheduler.isWriteThrough());
+        for (int i = 0; i < 100; i++) {
+            scheduler.acquire(MAX_CHUNK);
+        } // FOR
+        assertEquals(100l * MAX_CHUNK, scheduler.getBytesWritten());
+        assertEquals(0, scheduler.getThrottleTime());
+    }
+
+    /**
+     * testRateLimit
+     */
+    public void testRateLimit() throws Exception {
+        int mb_per_sec = 20;
+        SnapshotIOScheduler scheduler = new SnapshotIOScheduler(mb_per_sec, false);
+
+        // The first burst goes through right away, but after that we should
+        // not be able to write faster than the limit
+        int num_chunks = 20;
+        long start = System.nanoTime();
+        for (int i = 0; i < num_chunks; i++) {
+            scheduler.acquire(MAX_CHUNK);
+        } // FOR
+        double elapsed = (System.nanoTime() - start) / 1000000000d;
+        double expected = ((num_chunks - 1) * MAX_CHUNK - SnapshotSiteProcessor.m_snapshotBufferLength) /
+                          (double)scheduler.getBytesPerSecond();
+        assertTrue(elapsed + " < " + expected, elapsed >= expected * 0.95);
+        assertTrue(scheduler.getThrottleTime() > 0);
+    }
+}
@@ -0,0 +1,150 @@
+package org.voltdb;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.catalog.Partition;
+import org.voltdb.catalog.ProcParameter;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Site;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.StmtParameter;
+import org.voltdb.catalog.Table;
+import org.voltdb.client.ClientResponse;
+
+import edu.brown.BaseTestCase;
+import edu.brown.benchmark.tm1.TM1Constants;
+import edu.brown.benchmark.tm1.procedures.GetAccessData;
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.HStore;
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.hstore.PartitionExecutor;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.hstore.dtxn.ExecutionState;
+import edu.brown.hstore.dtxn.LocalTransaction;
+import edu.brown.utils.PartitionEstimator;
+import edu.brown.utils.ProjectType;
+
+/**
+ * Executes a straight-line procedure through VoltProcedure.call() with the real EE
+ */
+public class TestStraightLineProcedure extends BaseTestCase {
+
+    private static final int LOCAL_PARTITION = 0;
+    private static final long S_ID = 1;
+    private static final int NUM_AI_TYPES = 4;
+
+    private static final AtomicLong NEXT_TXN_ID = new AtomicLong(0);
+
+    private static HStoreSite hstore_site;
+    private static PartitionExecutor executor;
+
+    private Procedure catalog_proc;
+
+    /**
+     * A PartitionExecutor that is backed by the native EE
+     */
+    private static class NativePartitionExecutor extends PartitionExecutor {
+        public NativePartitionExecutor(Procedure catalog_proc, PartitionEstimator p_estimator) {
+            super(LOCAL_PARTITION, catalog_proc.getCatalog(), BackendTarget.NATIVE_EE_JNI, p_estimator, null);
+            this.initializeVoltProcedures();
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+        this.addPartitions(1);
+        this.catalog_proc = this.getProcedure(GetAccessData.class);
+        assertTrue(this.catalog_proc.getStraightline());
+
+        if (executor == null) {
+            // The parameter mappings only store their best guess in StmtParameter.procparameter
+            // Make it point at the wrong ProcParameter to make sure that it doesn't get used
+            Statement catalog_stmt = this.getStatement(this.catalog_proc, "GetData");
+            StmtParameter catalog_param = catalog_stmt.getParameters().get(1);
+            ProcParameter orig_param = catalog_param.getProcparameter();
+            catalog_param.setProcparameter(this.catalog_proc.getParameters().get(0));
+
+            HStoreConf hstore_conf = HStoreConf.singleton();
+            boolean orig_straightline = hstore_conf.site.exec_straightline_procedures;
+            hstore_conf.site.exec_straightline_procedures = true;
+            try {
+                executor = new NativePartitionExecutor(this.catalog_proc, new PartitionEstimator(catalog_db));
+            } finally {
+                hstore_conf.site.exec_straightline_procedures = orig_straightline;
+                catalog_param.setProcparameter(orig_param);
+            }
+            Partition catalog_part = CatalogUtil.getPartitionById(catalog_db, LOCAL_PARTITION);
+            hstore_site = HStore.initialize((Site)catalog_part.getParent(), HStoreConf.singleton());
+            hstore_site.addPartitionExecutor(LOCAL_PARTITION, executor);
+
+            // Give the subscriber one ACCESS_INFO record for each AI_TYPE
+            Table catalog_tbl = this.getTable(TM1Constants.TABLENAME_ACCESS_INFO);
+            VoltTable vt = CatalogUtil.getVoltTable(catalog_tbl);
+            for (int ai_type = 1; ai_type <= NUM_AI_TYPES; ai_type++) {
+                vt.addRow(S_ID, ai_type, ai_type * 10, ai_type * 100, "abc", "abcde");
+            } // FOR
+            executor.loadTable(this.createTransaction(), catalog.getName(), catalog_db.getName(),
+                               catalog_tbl.getName(), vt, 0);
+        }
+    }
+
+    private LocalTransaction createTransaction() {
+        return (new LocalTransaction(hstore_site).testInit(NEXT_TXN_ID.incrementAndGet(), LOCAL_PARTITION,
+                                                           Collections.singleton(LOCAL_PARTITION), this.catalog_proc));
+    }
+
+    /**
+     * testCall
+     */
+    public void testCall() throws Exception {
+        VoltProcedure volt_proc = executor.getVoltProcedure(this.catalog_proc.getName());
+        assertNotNull(volt_proc);
+        assertTrue(volt_proc.isStraightLine());
+
+        for (int ai_type = 1; ai_type <= NUM_AI_TYPES; ai_type++) {
+            LocalTransaction ts = this.createTransaction();
+            ts.setExecutionState(new ExecutionState(executor));
+            ClientResponse cresponse = null;
+            try {
+                cresponse = volt_proc.call(ts, S_ID, (long)ai_type);
+            } finally {
+                ts.resetExecutionState();
+            }
+            assertNotNull(cresponse);
+            assertEquals(cresponse.getStatusString(), Status.OK, cresponse.getStatus());
+            assertEquals(1, cresponse.getResults().length);
+
+            // Make sure that AI_TYPE was passed to the query and not S_ID
+            VoltTable vt = cresponse.getResults()[0];
+            assertEquals(1, vt.getRowCount());
+            assertTrue(vt.advanceRow());
+            assertEquals(ai_type * 10, vt.getLong(0));
+        } // FOR
+    }
+
+    /**
+     * testArrayParameter
+     */
+    public void testArrayParameter() throws Exception {
+        // We can't pass a whole array to a single StmtParameter
+        ProcParameter catalog_param = this.catalog_proc.getParameters().get(1);
+        catalog_param.setIsarray(true);
+        try {
+            VoltProcedure volt_proc = new GetAccessData();
+            HStoreConf hstore_conf = HStoreConf.singleton();
+            boolean orig_straightline = hstore_conf.site.exec_straightline_procedures;
+            hstore_conf.site.exec_straightline_procedures = true;
+            try {
+                volt_proc.globalInit(executor, this.catalog_proc, BackendTarget.NATIVE_EE_JNI, null, p_estimator);
+            } finally {
+                hstore_conf.site.exec_straightline_procedures = orig_straightline;
+            }
+            assertFalse(volt_proc.isStraightLine());
+        } finally {
+            catalog_param.setIsarray(false);
+        }
+    }
+}
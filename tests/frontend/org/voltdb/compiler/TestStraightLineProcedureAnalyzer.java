@@ -0,0 +1,103 @@
+package org.voltdb.compiler;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.voltdb.SQLStmt;
+import org.voltdb.VoltProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.compiler.StraightLineProcedureAnalyzer.QueuedStatement;
+
+public class TestStraightLineProcedureAnalyzer extends TestCase {
+
+    public static class SingleQuery extends VoltProcedure {
+        public final SQLStmt getItem = new SQLStmt("SELECT * FROM ITEM WHERE I_ID = ?");
+        public VoltTable[] run(long i_id) {
+            voltQueueSQL(getItem, i_id);
+            return (voltExecuteSQL());
+        }
+    }
+
+    public static class MultiQuery extends VoltProcedure {
+        public final SQLStmt getItem = new SQLStmt("SELECT * FROM ITEM WHERE I_ID = ? AND I_NAME = ?");
+        public final SQLStmt updateItem = new SQLStmt("UPDATE ITEM SET I_PRICE = ? WHERE I_ID = ?");
+        public final SQLStmt getAll = new SQLStmt("SELECT * FROM ITEM");
+        public VoltTable[] run(String name, long i_id, double price) {
+            voltQueueSQL(getItem, i_id, name);
+            voltQueueSQL(updateItem, price, i_id);
+            voltQueueSQL(getAll);
+            return (voltExecuteSQL(true));
+        }
+    }
+
+    public static class Branching extends VoltProcedure {
+        public final SQLStmt getItem = new SQLStmt("SELECT * FROM ITEM WHERE I_ID = ?");
+        public VoltTable[] run(long i_id) {
+            if (i_id < 0) i_id = 0;
+            voltQueueSQL(getItem, i_id);
+            return (voltExecuteSQL());
+        }
+    }
+
+    public static class ComputedParam extends VoltProcedure {
+        public final SQLStmt getItem = new SQLStmt("SELECT * FROM ITEM WHERE I_ID = ?");
+        public VoltTable[] run(long i_id) {
+            voltQueueSQL(getItem, i_id + 1);
+            return (voltExecuteSQL());
+        }
+    }
+
+    public static class MultipleBatches extends VoltProcedure {
+        public final SQLStmt getItem = new SQLStmt("SELECT * FROM ITEM WHERE I_ID = ?");
+        public VoltTable[] run(long i_id) {
+            voltQueueSQL(getItem, i_id);
+            voltExecuteSQL();
+            voltQueueSQL(getItem, i_id);
+            return (voltExecuteSQL());
+        }
+    }
+
+    /**
+     * testSingleQuery
+     */
+    public void testSingleQuery() throws Exception {
+        List<QueuedStatement> batch = StraightLineProcedureAnalyzer.analyze(SingleQuery.class);
+        assertNotNull(batch);
+        assertEquals(1, batch.size());
+        assertEquals("getItem", batch.get(0).name);
+        assertEquals(1, batch.get(0).params.length);
+        assertEquals(0, batch.get(0).params[0]);
+    }
+
+    /**
+     * testMultiQuery
+     */
+    public void testMultiQuery() throws Exception {
+        List<QueuedStatement> batch = StraightLineProcedureAnalyzer.analyze(MultiQuery.class);
+        assertNotNull(batch);
+        assertEquals(3, batch.size());
+
+        assertEquals("getItem", batch.get(0).name);
+        assertEquals(2, batch.get(0).params.length);
+        assertEquals(1, batch.get(0).params[0]);
+        assertEquals(0, batch.get(0).params[1]);
+
+        assertEquals("updateItem", batch.get(1).name);
+        assertEquals(2, batch.get(1).params.length);
+        assertEquals(2, batch.get(1).params[0]);
+        assertEquals(1, batch.get(1).params[1]);
+
+        assertEquals("getAll", batch.get(2).name);
+        assertEquals(0, batch.get(2).params.length);
+    }
+
+    /**
+     * testNotStraightLine
+     */
+    public void testNotStraightLine() throws Exception {
+        assertNull(StraightLineProcedureAnalyzer.analyze(Branching.class));
+        assertNull(StraightLineProcedureAnalyzer.analyze(ComputedParam.class));
+        assertNull(StraightLineProcedureAnalyzer.analyze(MultipleBatches.class));
+    }
+}
@@ -0,0 +1,205 @@
+package org.voltdb.jni;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.voltdb.DependencySet;
+import org.voltdb.EELibraryLoader;
+import org.voltdb.ParameterSet;
+import org.voltdb.VoltTable;
+import org.voltdb.catalog.PlanFragment;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.Table;
+import org.voltdb.exceptions.SerializableException;
+
+import edu.brown.BaseTestCase;
+import edu.brown.benchmark.tm1.TM1Constants;
+import edu.brown.benchmark.tm1.procedures.InsertCallForwarding;
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.HStoreConstants;
+import edu.brown.utils.CollectionUtil;
+import edu.brown.utils.ProjectType;
+
+/**
+ * Tests executing the batches of multiple txns with a single call into the EE
+ */
+public class TestExecutionEngineJNI extends BaseTestCase {
+
+    private static final int NUM_TXNS = 3;
+    private static final long FIRST_UNDO_TOKEN = 1000;
+
+    private ExecutionEngine engine;
+    private Table catalog_tbl;
+    private PlanFragment insertFrag;
+    private PlanFragment checkFrag;
+
+    // Everything that we're going to pass to the EE for a group of txns
+    private final List<Long> fragmentIds = new ArrayList<Long>();
+    private final List<Integer> outputDepIds = new ArrayList<Integer>();
+    private final List<ParameterSet> params = new ArrayList<ParameterSet>();
+    private int batchSizes[];
+    private long txnIds[];
+    private long undoTokens[];
+    private int nextDepId = 0;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+        EELibraryLoader.loadExecutionEngineLibrary(true);
+        this.engine = new ExecutionEngineJNI(null, CatalogUtil.getCluster(catalog).getRelativeIndex(), 0, 0, 0, "localhost");
+        this.engine.loadCatalog(catalog.serialize());
+
+        this.catalog_tbl = this.getTable(TM1Constants.TABLENAME_CALL_FORWARDING);
+        Procedure catalog_proc = this.getProcedure(InsertCallForwarding.class);
+        this.insertFrag = this.getFragment(catalog_proc, "update");
+        this.checkFrag = this.getFragment(catalog_proc, "check");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.engine.release();
+        this.engine = null;
+        super.tearDown();
+    }
+
+    private PlanFragment getFragment(Procedure catalog_proc, String stmt_name) {
+        Statement catalog_stmt = this.getStatement(catalog_proc, stmt_name);
+        assertEquals(1, catalog_stmt.getFragments().size());
+        return (CollectionUtil.first(catalog_stmt.getFragments()));
+    }
+
+    private void addFragment(PlanFragment catalog_frag, Object...args) {
+        this.fragmentIds.add((long)catalog_frag.getId());
+        this.outputDepIds.add(this.nextDepId++);
+        this.params.add(new ParameterSet(args));
+    }
+
+    /**
+     * Queue up a batch for each txn that inserts a CALL_FORWARDING record
+     * and then reads it back
+     */
+    private void createBatches(long s_ids[]) {
+        this.fragmentIds.clear();
+        this.outputDepIds.clear();
+        this.params.clear();
+        this.batchSizes = new int[s_ids.length];
+        this.txnIds = new long[s_ids.length];
+        this.undoTokens = new long[s_ids.length];
+        for (int i = 0; i < s_ids.length; i++) {
+            this.addFragment(this.insertFrag, s_ids[i], 1, 0, 8, "abc");
+            this.addFragment(this.checkFrag, s_ids[i], 1, 0);
+            this.batchSizes[i] = 2;
+            this.txnIds[i] = 100 + i;
+            this.undoTokens[i] = FIRST_UNDO_TOKEN + i;
+        } // FOR
+    }
+
+    private DependencySet[] executeBatches() {
+        int numFragments = this.fragmentIds.size();
+        long fragmentIds[] = new long[numFragments];
+        int input_depIds[] = new int[numFragments];
+        int output_depIds[] = new int[numFragments];
+        for (int i = 0; i < numFragments; i++) {
+            fragmentIds[i] = this.fragmentIds.get(i);
+            input_depIds[i] = HStoreConstants.NULL_DEPENDENCY_ID;
+            output_depIds[i] = this.outputDepIds.get(i);
+        } // FOR
+        return (this.engine.executeQueryPlanFragmentBatches(this.batchSizes.length,
+                                                            this.batchSizes,
+                                                            fragmentIds,
+                                                            input_depIds,
+                                                            output_depIds,
+                                                            this.params.toArray(new ParameterSet[numFragments]),
+                                                            this.txnIds, 0,
+                                                            this.undoTokens));
+    }
+
+    private int getRowCount() {
+        return (this.engine.serializeTable(this.catalog_tbl).getRowCount());
+    }
+
+    /**
+     * testResults
+     */
+    public void testResults() throws Exception {
+        long s_ids[] = { 1, 2, 3 };
+        this.createBatches(s_ids);
+        DependencySet results[] = this.executeBatches();
+        assertNotNull(results);
+        assertEquals(NUM_TXNS, results.length);
+
+        // Each txn has to get back only its own results
+        int depCtr = 0;
+        for (int i = 0; i < NUM_TXNS; i++) {
+            assertNotNull(results[i]);
+            assertEquals(this.batchSizes[i], results[i].size());
+            for (int ii = 0; ii < this.batchSizes[i]; ii++) {
+                assertEquals(this.outputDepIds.get(depCtr++).intValue(), results[i].depIds[ii]);
+            } // FOR
+
+            VoltTable inserted = results[i].dependencies[0];
+            assertEquals(1, inserted.getRowCount());
+            assertEquals(1, inserted.asScalarLong());
+
+            VoltTable check = results[i].dependencies[1];
+            assertEquals(1, check.getRowCount());
+            assertTrue(check.advanceRow());
+            assertEquals(s_ids[i], check.getLong(0));
+        } // FOR
+        assertEquals(NUM_TXNS, this.getRowCount());
+    }
+
+    /**
+     * testUndoTokens
+     */
+    public void testUndoTokens() throws Exception {
+        this.createBatches(new long[]{ 1, 2, 3 });
+        this.executeBatches();
+        assertEquals(NUM_TXNS, this.getRowCount());
+
+        // Every txn has its own undo quantum, so we can roll back just the last one
+        // and still commit the ones in front of it
+        assertTrue(this.engine.undoUndoToken(this.undoTokens[NUM_TXNS - 1]));
+        assertEquals(NUM_TXNS - 1, this.getRowCount());
+        assertTrue(this.engine.releaseUndoToken(this.undoTokens[NUM_TXNS - 2]));
+        assertEquals(NUM_TXNS - 1, this.getRowCount());
+    }
+
+    /**
+     * testRollback
+     */
+    public void testRollback() throws Exception {
+        this.createBatches(new long[]{ 1 });
+        this.executeBatches();
+        assertTrue(this.engine.releaseUndoToken(this.undoTokens[0]));
+        assertEquals(1, this.getRowCount());
+
+        // The last txn inserts a duplicate record, so the EE has to bail out
+        // after it already executed the batches for the first two
+        this.createBatches(new long[]{ 2, 3, 1 });
+        for (int i = 0; i < NUM_TXNS; i++) {
+            this.undoTokens[i] += NUM_TXNS;
+        } // FOR
+        try {
+            this.executeBatches();
+            fail("Expected the duplicate insert to fail");
+        } catch (SerializableException ex) {
+            // Expected
+        }
+        assertEquals(NUM_TXNS, this.getRowCount());
+
+        // Undoing the first txn's token rolls back the whole group
+        assertTrue(this.engine.undoUndoToken(this.undoTokens[0]));
+        assertEquals(1, this.getRowCount());
+
+        // And then the EE is still good to go for the next group
+        this.createBatches(new long[]{ 2, 3 });
+        for (int i = 0; i < this.undoTokens.length; i++) {
+            this.undoTokens[i] += 2 * NUM_TXNS;
+        } // FOR
+        DependencySet results[] = this.executeBatches();
+        assertEquals(2, results.length);
+        assertEquals(NUM_TXNS, this.getRowCount());
+    }
+}
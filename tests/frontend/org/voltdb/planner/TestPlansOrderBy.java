@@ -23,12 +23,15 @@
 
 package org.voltdb.planner;
 
+import java.util.List;
+
 import junit.framework.TestCase;
 
 import org.voltdb.catalog.CatalogMap;
 import org.voltdb.catalog.Cluster;
 import org.voltdb.catalog.Table;
 import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.LimitPlanNode;
 import org.voltdb.types.PlanNodeType;
 
 public class TestPlansOrderBy extends TestCase {
@@ -131,6 +134,25 @@ public class TestPlansOrderBy extends TestCase {
         }
     }
 
+    public void testOrderByLimitTopN() {
+        AbstractPlanNode pn = compile("SELECT * FROM T ORDER BY T_D2 LIMIT 10", 0);
+        List<AbstractPlanNode> orderby_nodes = pn.findAllNodesOfType(PlanNodeType.ORDERBY);
+        assertEquals(1, orderby_nodes.size());
+        LimitPlanNode inline_limit = orderby_nodes.get(0).getInlinePlanNode(PlanNodeType.LIMIT);
+        assertNotNull(inline_limit);
+        assertEquals(10, inline_limit.getLimit());
+        assertFalse(pn.findAllNodesOfType(PlanNodeType.LIMIT).isEmpty());
+    }
+
+    public void testOrderByLimitParameterTopN() {
+        AbstractPlanNode pn = compile("SELECT * FROM T ORDER BY T_D2 LIMIT ?", 1);
+        List<AbstractPlanNode> orderby_nodes = pn.findAllNodesOfType(PlanNodeType.ORDERBY);
+        assertEquals(1, orderby_nodes.size());
+        LimitPlanNode inline_limit = orderby_nodes.get(0).getInlinePlanNode(PlanNodeType.LIMIT);
+        assertNotNull(inline_limit);
+        assertEquals(0, inline_limit.getLimitParameterIndex());
+    }
+
     public void testEng450()
     {
         compile("select T.T_PKEY, " +
@@ -0,0 +1,143 @@
+package org.voltdb.sysprocs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.voltdb.TheHashinator;
+import org.voltdb.VoltSystemProcedure.SynthesizedPlanFragment;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Column;
+import org.voltdb.catalog.Table;
+import org.voltdb.utils.DBBPool;
+import org.voltdb.utils.VoltTypeUtil;
+
+import edu.brown.BaseTestCase;
+import edu.brown.benchmark.tm1.TM1Constants;
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.utils.ProjectType;
+
+public class TestSnapshotRestore extends BaseTestCase {
+
+    private static final int NUM_PARTITIONS = 4;
+    private static final int NUM_CHUNKS = 3;
+    private static final int ROWS_PER_CHUNK = 500;
+    private static final int ALLOW_EXPORT = 0;
+
+    private final Random rand = new Random(0);
+    private Table catalog_tbl;
+    private Column partition_col;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+        this.addPartitions(NUM_PARTITIONS);
+        this.catalog_tbl = this.getTable(TM1Constants.TABLENAME_SUBSCRIBER);
+        this.partition_col = this.catalog_tbl.getPartitioncolumn();
+        assertNotNull(this.partition_col);
+    }
+
+    private VoltTable createChunk() {
+        VoltTable vt = CatalogUtil.getVoltTable(this.catalog_tbl);
+        Object row[] = new Object[this.catalog_tbl.getColumns().size()];
+        for (int i = 0; i < ROWS_PER_CHUNK; i++) {
+            for (Column catalog_col : this.catalog_tbl.getColumns()) {
+                VoltType vtype = VoltType.get(catalog_col.getType());
+                row[catalog_col.getIndex()] = VoltTypeUtil.getRandomValue(vtype, this.rand);
+            } // FOR
+            vt.addRow(row);
+        } // FOR
+        return (vt);
+    }
+
+    private int getPartition(VoltTable vt) {
+        VoltType vtype = VoltType.get(this.partition_col.getType());
+        return (TheHashinator.hashToPartition(vt.get(this.partition_col.getIndex(), vtype), NUM_PARTITIONS));
+    }
+
+    /**
+     * testSendPartitionedTables
+     */
+    public void testSendPartitionedTables() throws Exception {
+        // Figure out where each row should end up before we split them up
+        Map<Integer, List<Long>> expected = new HashMap<Integer, List<Long>>();
+        List<VoltTable> chunks = new ArrayList<VoltTable>();
+        for (int i = 0; i < NUM_CHUNKS; i++) {
+            VoltTable vt = this.createChunk();
+            while (vt.advanceRow()) {
+                int partition = this.getPartition(vt);
+                List<Long> rows = expected.get(partition);
+                if (rows == null) {
+                    rows = new ArrayList<Long>();
+                    expected.put(partition, rows);
+                }
+                rows.add(vt.getLong(0));
+            } // WHILE
+            vt.resetRowPosition();
+            chunks.add(vt);
+        } // FOR
+        assertEquals(NUM_PARTITIONS, expected.size());
+
+        Map<Integer, List<VoltTable>> batches = new HashMap<Integer, List<VoltTable>>();
+        long batchSize = 0;
+        for (VoltTable vt : chunks) {
+            SnapshotRestore.ChunkPartitioner partitioner =
+                new SnapshotRestore.ChunkPartitioner(this.catalog_tbl, NUM_PARTITIONS,
+                                                     DBBPool.wrapBB(vt.getTableDataReference()), false);
+            VoltTable partitioned_tables[] = partitioner.call();
+            assertEquals(NUM_PARTITIONS, partitioned_tables.length);
+            batchSize += SnapshotRestore.addToBatches(batches, partitioned_tables);
+        } // FOR
+        assertTrue(batchSize > 0);
+
+        String tableName = this.catalog_tbl.getName();
+        SynthesizedPlanFragment pfs[] = SnapshotRestore.createPartitionedTableFragments(tableName, batches, ALLOW_EXPORT);
+        assertEquals(NUM_PARTITIONS * NUM_CHUNKS + 1, pfs.length);
+
+        // Every table has to be sent to the partition that its rows hash to
+        Map<Integer, List<Long>> actual = new HashMap<Integer, List<Long>>();
+        Set<Integer> dependencyIds = new HashSet<Integer>();
+        for (int i = 0; i < pfs.length - 1; i++) {
+            SynthesizedPlanFragment pf = pfs[i];
+            assertEquals(SysProcFragmentId.PF_restoreSendPartitionedTable, pf.fragmentId);
+            assertFalse(pf.multipartition);
+            assertEquals(0, pf.inputDependencyIds.length);
+            assertEquals(1, pf.outputDependencyIds.length);
+            assertTrue(dependencyIds.add(pf.outputDependencyIds[0]));
+
+            Object params[] = pf.parameters.toArray();
+            assertEquals(tableName, params[0]);
+            assertEquals(pf.destPartitionId, ((Number)params[1]).intValue());
+            assertEquals(pf.outputDependencyIds[0], ((Number)params[2]).intValue());
+            assertEquals(ALLOW_EXPORT, ((Number)params[4]).intValue());
+
+            VoltTable vt = (VoltTable)params[3];
+            assertTrue(vt.getRowCount() > 0);
+            List<Long> rows = actual.get(pf.destPartitionId);
+            if (rows == null) {
+                rows = new ArrayList<Long>();
+                actual.put(pf.destPartitionId, rows);
+            }
+            while (vt.advanceRow()) {
+                assertEquals(pf.destPartitionId, this.getPartition(vt));
+                rows.add(vt.getLong(0));
+            } // WHILE
+        } // FOR
+        assertEquals(expected, actual);
+
+        // The last fragment collects the results from all of the others
+        SynthesizedPlanFragment last = pfs[pfs.length - 1];
+        assertEquals(SysProcFragmentId.PF_restoreSendPartitionedTableResults, last.fragmentId);
+        assertEquals(dependencyIds.size(), last.inputDependencyIds.length);
+        for (int dependencyId : last.inputDependencyIds) {
+            assertTrue(dependencyIds.contains(dependencyId));
+        } // FOR
+        assertFalse(dependencyIds.contains(last.outputDependencyIds[0]));
+        assertEquals(last.outputDependencyIds[0], ((Number)last.parameters.toArray()[0]).intValue());
+    }
+}
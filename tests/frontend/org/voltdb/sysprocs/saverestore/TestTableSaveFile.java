@@ -0,0 +1,205 @@
+package org.voltdb.sysprocs.saverestore;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import junit.framework.TestCase;
+
+import org.voltdb.DefaultSnapshotDataTarget;
+import org.voltdb.EELibraryLoader;
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.utils.DBBPool;
+import org.voltdb.utils.DBBPool.BBContainer;
+
+public class TestTableSaveFile extends TestCase {
+
+    private static final String TABLE_NAME = "SAVED";
+    private static final int NUM_PARTITIONS = 2;
+
+    /**
+     * Each chunk is about 1MB so that the chunks end up straddling the
+     * boundaries of the ChunkReader's read ahead buffer
+     */
+    private static final int NUM_CHUNKS = 6;
+    private static final int ROWS_PER_CHUNK = 4000;
+    private static final String PADDING;
+    static {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 240; i++) {
+            sb.append((char)('a' + (i % 26)));
+        } // FOR
+        PADDING = sb.toString();
+    }
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        EELibraryLoader.loadExecutionEngineLibrary(true);
+        this.file = File.createTempFile("TestTableSaveFile", ".vpt");
+        this.file.deleteOnExit();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.file.delete();
+        super.tearDown();
+    }
+
+    private static VoltTable createTable() {
+        return (new VoltTable(new VoltTable.ColumnInfo("ID", VoltType.BIGINT),
+                              new VoltTable.ColumnInfo("NAME", VoltType.STRING)));
+    }
+
+    private static int getPartition(int chunk) {
+        return (chunk % NUM_PARTITIONS);
+    }
+
+    /**
+     * Build a chunk the way the EE serializes it for DefaultSnapshotDataTarget:
+     * space for the length, the partition id and its CRC, the CRC of the data,
+     * and then the tuple data followed by the row count
+     */
+    private static BBContainer createChunk(int chunk, boolean corrupt) {
+        VoltTable vt = createTable();
+        for (int i = 0; i < ROWS_PER_CHUNK; i++) {
+            vt.addRow(chunk * ROWS_PER_CHUNK + i, PADDING);
+        } // FOR
+        ByteBuffer data = vt.getTableDataReference();
+        data.position(data.getInt(0) + 8);
+
+        ByteBuffer b = ByteBuffer.allocate(16 + data.remaining() + 4);
+        b.position(16);
+        b.put(data);
+        b.putInt(vt.getRowCount());
+
+        CRC32 crc = new CRC32();
+        crc.update(b.array(), 16, b.capacity() - 16);
+        int dataCRC = (int)crc.getValue();
+        if (corrupt) dataCRC = ~dataCRC;
+
+        crc.reset();
+        b.putInt(4, getPartition(chunk));
+        crc.update(b.array(), 4, 4);
+        b.putInt(8, (int)crc.getValue());
+        b.putInt(12, dataCRC);
+        b.position(0);
+        return (DBBPool.wrapBB(b));
+    }
+
+    private void writeSaveFile(int corruptChunk) throws Exception {
+        int partitionIds[] = new int[NUM_PARTITIONS];
+        for (int i = 0; i < partitionIds.length; i++) {
+            partitionIds[i] = i;
+        } // FOR
+        DefaultSnapshotDataTarget target = new DefaultSnapshotDataTarget(this.file, 0, "cluster", "database",
+                                                                         TABLE_NAME, NUM_PARTITIONS, false,
+                                                                         partitionIds, createTable(), 1234l);
+        for (int chunk = 0; chunk < NUM_CHUNKS; chunk++) {
+            target.write(createChunk(chunk, chunk == corruptChunk));
+        } // FOR
+        target.close();
+    }
+
+    private TableSaveFile openSaveFile(boolean continueOnCorruptedChunk) throws Exception {
+        FileInputStream fis = new FileInputStream(this.file);
+        return (new TableSaveFile(fis.getChannel(), 3, null, continueOnCorruptedChunk));
+    }
+
+    /**
+     * Pull all of the chunks out of the file and return the ids of the rows
+     * that were in them. The validators can hand back the chunks in any order.
+     */
+    private static Set<Long> readRows(TableSaveFile savefile) throws IOException {
+        Set<Long> ids = new HashSet<Long>();
+        while (savefile.hasMoreChunks()) {
+            BBContainer c = savefile.getNextChunk();
+            if (c == null) continue;
+            try {
+                VoltTable vt = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b, true);
+                assertEquals(2, vt.getColumnCount());
+                while (vt.advanceRow()) {
+                    assertTrue(ids.add(vt.getLong(0)));
+                    assertEquals(PADDING, vt.getString(1));
+                } // WHILE
+            } finally {
+                c.discard();
+            }
+        } // WHILE
+        return (ids);
+    }
+
+    private static Set<Long> expectedRows(int skipChunk) {
+        Set<Long> ids = new HashSet<Long>();
+        for (int chunk = 0; chunk < NUM_CHUNKS; chunk++) {
+            if (chunk == skipChunk) continue;
+            for (int i = 0; i < ROWS_PER_CHUNK; i++) {
+                ids.add((long)(chunk * ROWS_PER_CHUNK + i));
+            } // FOR
+        } // FOR
+        return (ids);
+    }
+
+    /**
+     * testRoundTrip
+     */
+    public void testRoundTrip() throws Exception {
+        this.writeSaveFile(-1);
+        TableSaveFile savefile = this.openSaveFile(false);
+        try {
+            assertTrue(savefile.getCompleted());
+            assertEquals(TABLE_NAME, savefile.getTableName());
+            assertEquals(NUM_PARTITIONS, savefile.getPartitionIds().length);
+            assertEquals(NUM_PARTITIONS, savefile.getTotalPartitions());
+            assertEquals(1234l, savefile.getCreateTime());
+            assertEquals(expectedRows(-1), readRows(savefile));
+            assertTrue(savefile.getCorruptedPartitionIds().isEmpty());
+            assertFalse(savefile.hasMoreChunks());
+        } finally {
+            savefile.close();
+        }
+    }
+
+    /**
+     * testCorruptedChunk
+     */
+    public void testCorruptedChunk() throws Exception {
+        int corruptChunk = NUM_CHUNKS - 1;
+        this.writeSaveFile(corruptChunk);
+        TableSaveFile savefile = this.openSaveFile(false);
+        try {
+            readRows(savefile);
+            fail("Expected the corrupted chunk to fail the CRC check");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("CRC"));
+        } finally {
+            savefile.close();
+        }
+        assertEquals(1, savefile.getCorruptedPartitionIds().size());
+        assertTrue(savefile.getCorruptedPartitionIds().contains(getPartition(corruptChunk)));
+    }
+
+    /**
+     * testContinueOnCorruptedChunk
+     */
+    public void testContinueOnCorruptedChunk() throws Exception {
+        int corruptChunk = 2;
+        this.writeSaveFile(corruptChunk);
+        TableSaveFile savefile = this.openSaveFile(true);
+        try {
+            assertEquals(expectedRows(corruptChunk), readRows(savefile));
+        } finally {
+            savefile.close();
+        }
+        assertEquals(1, savefile.getCorruptedPartitionIds().size());
+        assertTrue(savefile.getCorruptedPartitionIds().contains(getPartition(corruptChunk)));
+    }
+}